@@ -5,26 +5,48 @@ package software.amazon.encryption.s3;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.s3.DelegatingS3AsyncClient;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.internal.crt.S3CrtAsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Request;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.utils.Pair;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+import software.amazon.encryption.s3.internal.CopyEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.DecryptedBlockCache;
+import software.amazon.encryption.s3.internal.DeleteEncryptedObjectsPipeline;
+import software.amazon.encryption.s3.internal.EncryptedObjectCache;
 import software.amazon.encryption.s3.internal.GetEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.IntegrityScrubReport;
+import software.amazon.encryption.s3.internal.MultipartUploadObjectPipeline;
 import software.amazon.encryption.s3.internal.NoRetriesAsyncRequestBody;
 import software.amazon.encryption.s3.internal.PutEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.RewrapDataKeyPipeline;
+import software.amazon.encryption.s3.internal.StreamingPutObjectPipeline;
 import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CachingCryptoMaterialsManager;
 import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
 import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
 import software.amazon.encryption.s3.materials.Keyring;
@@ -33,16 +55,23 @@ import software.amazon.encryption.s3.materials.PartialRsaKeyPair;
 import software.amazon.encryption.s3.materials.RsaKeyring;
 
 import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyPair;
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
-
-import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+import java.util.function.Supplier;
 
 /**
  * This client is a drop-in replacement for the S3 Async client. It will automatically encrypt objects
@@ -56,6 +85,23 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
     private final boolean _enableLegacyUnauthenticatedModes;
     private final boolean _enableDelayedAuthenticationMode;
     private final boolean _enableMultipartPutObject;
+    private final Long _multipartPutObjectThreshold;
+    private final CompressionCodec _compressionCodec;
+    private final DecryptedBlockCache _decryptedBlockCache;
+    private final EncryptedObjectCache _encryptedObjectCache;
+    private final int _cbcDecryptionParallelism;
+    private final AlgorithmSuite _encryptionAlgorithm;
+    private final MultipartUploadObjectPipeline _multipartPipeline;
+    private final CopyEncryptedObjectPipeline _copyPipeline;
+    private final DeleteEncryptedObjectsPipeline _deletePipeline;
+    private final RewrapDataKeyPipeline _rewrapPipeline;
+    private final Supplier<S3AsyncClient> _crtClientFactory;
+    // Lazily created on the first multipart putObject, only when the wrapped client is not a CRT client
+    private volatile S3AsyncClient _crtClient;
+    // Lazily created on the first request which needs materials
+    private volatile ExecutorService _materialsExecutor;
+    // Lazily created on the first AES-CBC object decrypted in parallel
+    private volatile ExecutorService _cbcDecryptionExecutor;
 
     private S3AsyncEncryptionClient(Builder builder) {
         super(builder._wrappedClient);
@@ -65,6 +111,34 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
         _enableLegacyUnauthenticatedModes = builder._enableLegacyUnauthenticatedModes;
         _enableDelayedAuthenticationMode = builder._enableDelayedAuthenticationMode;
         _enableMultipartPutObject = builder._enableMultipartPutObject;
+        _multipartPutObjectThreshold = builder._multipartPutObjectThreshold;
+        _compressionCodec = builder._compressionCodec;
+        _decryptedBlockCache = builder._decryptedBlockCache;
+        _encryptedObjectCache = builder._encryptedObjectCache;
+        _cbcDecryptionParallelism = builder._cbcDecryptionParallelism;
+        _encryptionAlgorithm = builder._encryptionAlgorithm;
+        _multipartPipeline = builder._multipartPipeline;
+        _copyPipeline = builder._copyPipeline;
+        _deletePipeline = builder._deletePipeline;
+        // Keys are rewrapped on the materials executor, which is only created once it is used
+        _rewrapPipeline = RewrapDataKeyPipeline.builder()
+                .s3AsyncClient(builder._wrappedClient)
+                .cryptoMaterialsManager(builder._cryptoMaterialsManager)
+                .materialsExecutor(runnable -> materialsExecutor().execute(runnable))
+                .maxConcurrency(builder._rewrapMaxConcurrency)
+                .build();
+        if (builder._crtClientFactory != null) {
+            _crtClientFactory = builder._crtClientFactory;
+        } else {
+            final Double crtTargetThroughputInGbps = builder._crtTargetThroughputInGbps;
+            final Long crtMinimumPartSizeInBytes = builder._crtMinimumPartSizeInBytes;
+            final Integer crtMaxConcurrency = builder._crtMaxConcurrency;
+            _crtClientFactory = () -> S3AsyncClient.crtBuilder()
+                    .targetThroughputInGbps(crtTargetThroughputInGbps)
+                    .minimumPartSizeInBytes(crtMinimumPartSizeInBytes)
+                    .maxConcurrency(crtMaxConcurrency)
+                    .build();
+        }
     }
 
     /**
@@ -117,38 +191,211 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
     public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest putObjectRequest, AsyncRequestBody requestBody)
             throws AwsServiceException, SdkClientException {
 
-        if (_enableMultipartPutObject) {
+        if (_enableMultipartPutObject || exceedsMultipartThreshold(putObjectRequest, requestBody)) {
             return multipartPutObject(putObjectRequest, requestBody);
         }
 
         PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
                 .s3AsyncClient(_wrappedClient)
                 .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
                 .secureRandom(_secureRandom)
+                .compressionCodec(_compressionCodec)
+                .algorithmSuite(_encryptionAlgorithm)
                 .build();
 
+        if (_compressionCodec == null && StreamingPutObjectPipeline.isUnknownLength(putObjectRequest, requestBody)) {
+            // Content of unknown length is uploaded with a single PutObject if it is small, else as a multipart upload
+            return StreamingPutObjectPipeline.builder()
+                    .putObjectPipeline(pipeline)
+                    .multipartPipeline(_multipartPipeline)
+                    .build()
+                    .putObject(putObjectRequest, requestBody);
+        }
         return pipeline.putObject(putObjectRequest, requestBody);
     }
 
-    private CompletableFuture<PutObjectResponse> multipartPutObject(PutObjectRequest putObjectRequest, AsyncRequestBody requestBody) {
-        S3AsyncClient crtClient;
-        if (_wrappedClient instanceof S3CrtAsyncClient) {
-            // if the wrappedClient is a CRT, use it
-            crtClient = _wrappedClient;
-        } else {
-            // else create a default one
-            crtClient = S3AsyncClient.crtCreate();
+    /**
+     * Encrypts and uploads many objects, for workloads with many small objects. A single
+     * pipeline is shared by every object, and up to
+     * {@value PutEncryptedObjectPipeline#DEFAULT_PUT_OBJECTS_MAX_CONCURRENCY} objects are
+     * in flight at once, so that obtaining materials, encryption and network I/O of
+     * different objects overlap. Content of unknown length is uploaded with a single PutObject
+     * request if it is small, else as a multipart upload.
+     * @param objects the request and content of each object
+     * @return A Java Future containing the response for each object, in the order of the list
+     */
+    public CompletableFuture<List<PutObjectResponse>> putObjects(List<Pair<PutObjectRequest, AsyncRequestBody>> objects) {
+        return putObjects(objects, PutEncryptedObjectPipeline.DEFAULT_PUT_OBJECTS_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #putObjects(List)}.
+     * @param objects the request and content of each object
+     * @param maxConcurrency the maximum number of objects being prepared or uploaded at once
+     * @return A Java Future containing the response for each object, in the order of the list
+     */
+    public CompletableFuture<List<PutObjectResponse>> putObjects(List<Pair<PutObjectRequest, AsyncRequestBody>> objects,
+                                                                 int maxConcurrency) {
+        PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .secureRandom(_secureRandom)
+                .compressionCodec(_compressionCodec)
+                .algorithmSuite(_encryptionAlgorithm)
+                .build();
+        StreamingPutObjectPipeline streamingPipeline = StreamingPutObjectPipeline.builder()
+                .putObjectPipeline(pipeline)
+                .multipartPipeline(_multipartPipeline)
+                .build();
+
+        List<PutObjectRequest> requests = new ArrayList<>();
+        List<Supplier<AsyncRequestBody>> requestBodies = new ArrayList<>();
+        for (Pair<PutObjectRequest, AsyncRequestBody> object : objects) {
+            requests.add(object.left());
+            requestBodies.add(object::right);
+        }
+        return pipeline.putObjects(requests, requestBodies, maxConcurrency, streamingPipeline);
+    }
+
+    /**
+     * Encrypts and uploads a file. A file larger than one part is read through a
+     * FileChannel, encrypted part by part in memory and uploaded as an encrypted
+     * multipart upload with up to
+     * {@value MultipartUploadObjectPipeline#DEFAULT_UPLOAD_FILE_MAX_CONCURRENCY} parts
+     * in flight, without writing temporary files. Smaller files, and all files when
+     * compression or an algorithm suite other than
+     * {@link MultipartUploadObjectPipeline#MULTIPART_ALGORITHM_SUITE} is configured,
+     * are uploaded with putObject.
+     * @param putObjectRequest the request instance
+     * @param source the file to upload
+     * @return A Java Future containing the result of the upload.
+     */
+    public CompletableFuture<PutObjectResponse> uploadFile(PutObjectRequest putObjectRequest, Path source) {
+        return uploadFile(putObjectRequest, source, MultipartUploadObjectPipeline.DEFAULT_UPLOAD_FILE_PART_SIZE,
+                MultipartUploadObjectPipeline.DEFAULT_UPLOAD_FILE_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #uploadFile(PutObjectRequest, Path)}.
+     * @param putObjectRequest the request instance
+     * @param source the file to upload
+     * @param partSize the size of the plaintext parts; at least 5 MiB and a multiple of 16 bytes
+     * @param maxConcurrency the maximum number of encrypted parts held in memory or being uploaded at once
+     * @return A Java Future containing the result of the upload.
+     */
+    public CompletableFuture<PutObjectResponse> uploadFile(PutObjectRequest putObjectRequest, Path source, long partSize,
+                                                           int maxConcurrency) {
+        final long fileLength;
+        try {
+            fileLength = Files.size(source);
+        } catch (IOException e) {
+            final CompletableFuture<PutObjectResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new S3EncryptionClientException("Unable to read file " + source, e));
+            return failed;
+        }
+        if (_compressionCodec != null || _encryptionAlgorithm != MultipartUploadObjectPipeline.MULTIPART_ALGORITHM_SUITE
+                || fileLength <= partSize) {
+            return putObject(putObjectRequest, AsyncRequestBody.fromFile(source));
         }
+        // The encryption loop fetches materials and then waits whenever maxConcurrency parts
+        // are in flight, so it runs on the materials pool, which grows rather than queue work
+        // behind it, instead of on a thread of the wrapped client
+        return _multipartPipeline.uploadFile(putObjectRequest, source, partSize, maxConcurrency, materialsExecutor())
+                .thenApply(response -> PutObjectResponse.builder()
+                        .eTag(response.eTag())
+                        .versionId(response.versionId())
+                        .build());
+    }
+
+    private boolean exceedsMultipartThreshold(PutObjectRequest putObjectRequest, AsyncRequestBody requestBody) {
+        if (_multipartPutObjectThreshold == null) {
+            return false;
+        }
+        final Long contentLength = putObjectRequest.contentLength() != null
+                ? putObjectRequest.contentLength()
+                : requestBody.contentLength().orElse(null);
+        return contentLength != null && contentLength >= _multipartPutObjectThreshold;
+    }
+
+    private CompletableFuture<PutObjectResponse> multipartPutObject(PutObjectRequest putObjectRequest, AsyncRequestBody requestBody) {
+        S3AsyncClient crtClient = crtClient();
         PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
                 .s3AsyncClient(crtClient)
                 .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
                 .secureRandom(_secureRandom)
+                .compressionCodec(_compressionCodec)
+                .algorithmSuite(_encryptionAlgorithm)
                 .build();
         // Ensures parts are not retried to avoid corrupting ciphertext
         AsyncRequestBody noRetryBody = new NoRetriesAsyncRequestBody(requestBody);
         return pipeline.putObject(putObjectRequest, noRetryBody);
     }
 
+    /**
+     * Returns the CRT client used for multipart putObject. If the wrapped client
+     * is a CRT client, it is used; otherwise a single CRT client owned by this
+     * client is created on first use and closed in {@link #close()}.
+     */
+    private S3AsyncClient crtClient() {
+        if (_wrappedClient instanceof S3CrtAsyncClient) {
+            // if the wrappedClient is a CRT, use it
+            return _wrappedClient;
+        }
+        S3AsyncClient crtClient = _crtClient;
+        if (crtClient == null) {
+            synchronized (this) {
+                crtClient = _crtClient;
+                if (crtClient == null) {
+                    // else create one, and reuse it for subsequent uploads
+                    crtClient = _crtClientFactory.get();
+                    _crtClient = crtClient;
+                }
+            }
+        }
+        return crtClient;
+    }
+
+    /**
+     * Returns the thread pool on which the CMM is asked for materials, so that a blocking
+     * call to a key service does not hold up the threads of the wrapped client. It is
+     * created on first use, shared by all requests and shut down in {@link #close()}.
+     */
+    private ExecutorService materialsExecutor() {
+        ExecutorService executor = _materialsExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _materialsExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool();
+                    _materialsExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the thread pool on which AES-CBC objects are decrypted, with one thread for
+     * each of the configured cbcDecryptionParallelism. It is created on first use, shared
+     * by all requests and shut down in {@link #close()}.
+     */
+    private ExecutorService cbcDecryptionExecutor() {
+        ExecutorService executor = _cbcDecryptionExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _cbcDecryptionExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(_cbcDecryptionParallelism);
+                    _cbcDecryptionExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * See {@link S3AsyncClient#getObject(GetObjectRequest, AsyncResponseTransformer)}
      * <p>
@@ -179,44 +426,131 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
         GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
                 .s3AsyncClient(_wrappedClient)
                 .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
                 .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
                 .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .compressionCodec(_compressionCodec)
+                .decryptedBlockCache(_decryptedBlockCache)
+                .encryptedObjectCache(_encryptedObjectCache)
+                .cbcDecryptionParallelism(_cbcDecryptionParallelism)
+                .cbcDecryptionExecutor(runnable -> cbcDecryptionExecutor().execute(runnable))
                 .build();
 
         return pipeline.getObject(getObjectRequest, asyncResponseTransformer);
     }
 
+    /**
+     * Gets and decrypts many whole objects at once, for fan-outs over many small objects.
+     * Up to {@value GetEncryptedObjectPipeline#DEFAULT_GET_OBJECTS_MAX_CONCURRENCY} objects
+     * are fetched concurrently, and their data keys are then decrypted as one batch:
+     * objects sharing an encrypted data key are decrypted with a single key operation,
+     * and distinct keys are decrypted concurrently up to the same bound. Every object is
+     * held in memory, and the future fails if any object cannot be fetched or decrypted.
+     * @param getObjectRequests the requests for the objects, which must not have ranges
+     * @return A Java Future containing the decrypted objects, in the order requested
+     */
+    public CompletableFuture<List<ResponseBytes<GetObjectResponse>>> getObjects(Collection<GetObjectRequest> getObjectRequests) {
+        return getObjects(getObjectRequests, GetEncryptedObjectPipeline.DEFAULT_GET_OBJECTS_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #getObjects(Collection)}.
+     * @param getObjectRequests the requests for the objects, which must not have ranges
+     * @param maxConcurrency the maximum number of gets, and of data key decryptions, in flight
+     * @return A Java Future containing the decrypted objects, in the order requested
+     */
+    public CompletableFuture<List<ResponseBytes<GetObjectResponse>>> getObjects(Collection<GetObjectRequest> getObjectRequests,
+                                                                               int maxConcurrency) {
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .compressionCodec(_compressionCodec)
+                .cbcDecryptionParallelism(_cbcDecryptionParallelism)
+                .cbcDecryptionExecutor(runnable -> cbcDecryptionExecutor().execute(runnable))
+                .build();
+
+        return pipeline.getObjects(new ArrayList<>(getObjectRequests), maxConcurrency);
+    }
+
+    /**
+     * Verifies the integrity of an object encrypted with AES-GCM without decrypting it.
+     * Only the object's data key is decrypted; its ciphertext is hashed and compared
+     * against the stored tag (or the tag of each segment), which takes roughly half the
+     * work of a full decrypt and produces no plaintext. Objects encrypted with legacy
+     * algorithm suites have no tag and cannot be verified.
+     * @param getObjectRequest the request for the object, which must not have a range
+     * @return A Java Future which is true if the object's tags are valid
+     */
+    public CompletableFuture<Boolean> verifyObject(GetObjectRequest getObjectRequest) {
+        return getPipelineForVerification().verifyObject(getObjectRequest);
+    }
+
+    /**
+     * Verifies every object in the bucket whose key begins with the given prefix, as
+     * {@link #verifyObject(GetObjectRequest)} does, for periodic integrity audits.
+     * Several objects are verified concurrently. Objects which cannot be verified are
+     * listed in the report instead of failing the whole scrub.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @return A Java Future containing a report of the verified, failed and unverifiable objects
+     */
+    public CompletableFuture<IntegrityScrubReport> verifyObjectsWithPrefix(String bucket, String prefix) {
+        return getPipelineForVerification().verifyObjectsWithPrefix(bucket, prefix);
+    }
+
+    private GetEncryptedObjectPipeline getPipelineForVerification() {
+        return GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .build();
+    }
+
+    /**
+     * See {@link S3AsyncClient#copyObject(CopyObjectRequest)}.
+     * <p>
+     * In the S3 Encryption Client, copyObject copies the ciphertext server-side and
+     * then copies the instruction file, if present. If the instruction file cannot be
+     * copied, the copied object is deleted. When a version of the source object is
+     * copied, the latest version of its instruction file is copied with it, since
+     * version ids are not shared between keys. Objects larger than 5 GiB are
+     * copied with parallel UploadPartCopy requests. When the metadata is replaced,
+     * the encryption metadata of the source object is kept.
+     * </p>
+     * @param copyObjectRequest the request instance
+     * @return A Java Future containing the result of the CopyObject operation returned by the service.
+     */
+    @Override
+    public CompletableFuture<CopyObjectResponse> copyObject(CopyObjectRequest copyObjectRequest) {
+        return _copyPipeline.copyObject(copyObjectRequest);
+    }
+
     /**
      * See {@link S3AsyncClient#deleteObject(DeleteObjectRequest)}.
      * <p>
      * In the S3 Encryption Client, deleteObject also deletes the instruction file,
-     * if present.
+     * if present, unless instruction file deletes have been disabled.
      * </p>
      * @param deleteObjectRequest the request instance
      * @return A Java Future containing the result of the DeleteObject operation returned by the service.
      */
     @Override
     public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest deleteObjectRequest) {
-        final DeleteObjectRequest actualRequest = deleteObjectRequest.toBuilder()
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .build();
-        final CompletableFuture<DeleteObjectResponse> response =  _wrappedClient.deleteObject(actualRequest);
-        final String instructionObjectKey = deleteObjectRequest.key() + ".instruction";
-        final CompletableFuture<DeleteObjectResponse> instructionResponse =  _wrappedClient.deleteObject(builder -> builder
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .bucket(deleteObjectRequest.bucket())
-                .key(instructionObjectKey));
-        // Delete the instruction file, then delete the object
-        Function<DeleteObjectResponse, DeleteObjectResponse> deletion = deleteObjectResponse ->
-                response.join();
-        return instructionResponse.thenApplyAsync(deletion);
+        // The object and its instruction file are deleted concurrently
+        return _deletePipeline.deleteObject(deleteObjectRequest);
     }
 
     /**
      * See {@link S3AsyncClient#deleteObjects(DeleteObjectsRequest)}.
      * <p>
      * In the S3 Encryption Client, deleteObjects also deletes the instruction file(s),
-     * if present.
+     * if present. Requests with more than 1000 keys are split into multiple
+     * batches which are deleted concurrently, and the results are merged.
+     * Only the requested keys are reported as deleted.
      * </p>
      * @param deleteObjectsRequest the request instance
      * @return A Java Future containing the result of the DeleteObjects operation returned by the service.
@@ -224,28 +558,141 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
     @Override
     public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest deleteObjectsRequest) throws AwsServiceException,
             SdkClientException {
-        // Add the instruction file keys to the list of objects to delete
-        final List<ObjectIdentifier> objectsToDelete = S3EncryptionClientUtilities.instructionFileKeysToDelete(deleteObjectsRequest);
-        // Add the original objects
-        objectsToDelete.addAll(deleteObjectsRequest.delete().objects());
-        return _wrappedClient.deleteObjects(deleteObjectsRequest.toBuilder()
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .delete(builder -> builder.objects(objectsToDelete))
-                .build());
+        return _deletePipeline.deleteObjects(deleteObjectsRequest);
+    }
+
+    /**
+     * Deletes every object in the bucket whose key begins with the given prefix,
+     * including any instruction files. Each listed page is deleted as one batch
+     * while the next page is listed.
+     * @param bucket the bucket to delete from
+     * @param prefix the key prefix of the objects to delete
+     * @return A Java Future containing the merged results of the DeleteObjects operations returned by the service.
+     */
+    public CompletableFuture<DeleteObjectsResponse> deleteObjectsWithPrefix(String bucket, String prefix) {
+        return _deletePipeline.deleteObjectsWithPrefix(bucket, prefix);
+    }
+
+    /**
+     * Wraps the data key of an encrypted object with the given keyring, without
+     * downloading or re-encrypting its content. The data key is unwrapped using
+     * this client's keyring, or re-encrypted within KMS when both keys are KMS keys.
+     * The new encrypted data key is written by copying the object onto itself with
+     * replaced metadata, or by rewriting its instruction file.
+     * @param bucket the bucket of the object
+     * @param key the key of the object
+     * @param newKeyring the keyring to wrap the data key with
+     * @return A Java Future which completes once the new data key has been written.
+     */
+    public CompletableFuture<Void> rewrapObject(String bucket, String key, Keyring newKeyring) {
+        return _rewrapPipeline.rewrapObject(bucket, key, newKeyring);
+    }
+
+    /**
+     * Wraps the data keys of all encrypted objects under the given prefix with the
+     * given keyring. See {@link #rewrapObject(String, String, Keyring)}. Objects
+     * without encryption metadata are skipped. After each page of up to 1000 keys
+     * has completed, its last key is passed to the checkpoint consumer; an
+     * interrupted operation can be resumed by passing that key as startAfter.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @param startAfter the key to resume after, or null to start from the beginning
+     * @param newKeyring the keyring to wrap the data keys with
+     * @param checkpoint receives the last key of each completed page, may be null
+     * @return A Java Future containing the number of objects which were rewrapped.
+     */
+    public CompletableFuture<Long> rewrapObjectsWithPrefix(String bucket, String prefix, String startAfter,
+                                                          Keyring newKeyring, Consumer<String> checkpoint) {
+        return _rewrapPipeline.rewrapObjectsWithPrefix(bucket, prefix, startAfter, newKeyring, checkpoint);
+    }
+
+    /**
+     * See {@link S3AsyncClient#createMultipartUpload(CreateMultipartUploadRequest)}
+     * <p>
+     * In the S3AsyncEncryptionClient, createMultipartUpload creates an encrypted
+     * multipart upload. Parts MUST be uploaded sequentially.
+     * See {@link S3AsyncEncryptionClient#uploadPart(UploadPartRequest, AsyncRequestBody)} for details.
+     * </p>
+     * @param createMultipartUploadRequest the request instance
+     * @return A Java Future containing the result of the CreateMultipartUpload operation returned by the service.
+     */
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(CreateMultipartUploadRequest createMultipartUploadRequest) {
+        return _multipartPipeline.createMultipartUploadAsync(createMultipartUploadRequest);
+    }
+
+    /**
+     * See {@link S3AsyncClient#uploadPart(UploadPartRequest, AsyncRequestBody)}
+     * <p>
+     * <b>NOTE:</b> Because the encryption process requires context from block
+     * N-1 in order to encrypt block N, parts uploaded with the
+     * S3AsyncEncryptionClient (as opposed to the normal S3AsyncClient) must
+     * be uploaded serially, and in order. The returned future MUST complete
+     * before the next part is uploaded, e.g. by chaining the next upload
+     * with {@link CompletableFuture#thenCompose(Function)}.
+     * </p>
+     * @param uploadPartRequest the request instance
+     * @param requestBody the plaintext content of the part
+     * @return A Java Future containing the result of the UploadPart operation returned by the service.
+     */
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest uploadPartRequest, AsyncRequestBody requestBody)
+            throws AwsServiceException, SdkClientException {
+        return _multipartPipeline.uploadPartAsync(uploadPartRequest, requestBody);
+    }
+
+    /**
+     * See {@link S3AsyncClient#completeMultipartUpload(CompleteMultipartUploadRequest)}
+     * @param completeMultipartUploadRequest the request instance
+     * @return A Java Future containing the result of the CompleteMultipartUpload operation returned by the service.
+     */
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(CompleteMultipartUploadRequest completeMultipartUploadRequest)
+            throws AwsServiceException, SdkClientException {
+        return _multipartPipeline.completeMultipartUploadAsync(completeMultipartUploadRequest);
     }
 
     /**
-     * Closes the wrapped {@link S3AsyncClient} instance.
+     * See {@link S3AsyncClient#abortMultipartUpload(AbortMultipartUploadRequest)}
+     * @param abortMultipartUploadRequest the request instance
+     * @return A Java Future containing the result of the AbortMultipartUpload operation returned by the service.
+     */
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest)
+            throws AwsServiceException, SdkClientException {
+        return _multipartPipeline.abortMultipartUploadAsync(abortMultipartUploadRequest);
+    }
+
+    /**
+     * Closes the wrapped {@link S3AsyncClient} instance, as well as the
+     * CRT client created for multipart putObject and the thread pools created by this client, if any.
      */
     @Override
     public void close() {
         _wrappedClient.close();
+        synchronized (this) {
+            if (_crtClient != null) {
+                _crtClient.close();
+                _crtClient = null;
+            }
+            if (_materialsExecutor != null) {
+                _materialsExecutor.shutdownNow();
+                _materialsExecutor = null;
+            }
+            if (_cbcDecryptionExecutor != null) {
+                _cbcDecryptionExecutor.shutdownNow();
+                _cbcDecryptionExecutor = null;
+            }
+        }
     }
 
     // This is very similar to the S3EncryptionClient builder
     // Make sure to keep both clients in mind when adding new builder options
     public static class Builder {
         private S3AsyncClient _wrappedClient = S3AsyncClient.builder().build();
+        private MultipartUploadObjectPipeline _multipartPipeline;
+        private CopyEncryptedObjectPipeline _copyPipeline;
+        private DeleteEncryptedObjectsPipeline _deletePipeline;
         private CryptographicMaterialsManager _cryptoMaterialsManager;
         private Keyring _keyring;
         private SecretKey _aesKey;
@@ -255,6 +702,20 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
         private boolean _enableLegacyUnauthenticatedModes = false;
         private boolean _enableDelayedAuthenticationMode = false;
         private boolean _enableMultipartPutObject = false;
+        private Long _multipartPutObjectThreshold = null;
+        private CompressionCodec _compressionCodec = null;
+        private Duration _dataKeyCacheMaxAge = null;
+        private DecryptedBlockCache _decryptedBlockCache = null;
+        private EncryptedObjectCache _encryptedObjectCache = null;
+        private int _cbcDecryptionParallelism = 1;
+        private AlgorithmSuite _encryptionAlgorithm = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
+        private Double _crtTargetThroughputInGbps = null;
+        private Long _crtMinimumPartSizeInBytes = null;
+        private Integer _crtMaxConcurrency = null;
+        private Supplier<S3AsyncClient> _crtClientFactory = null;
+        private boolean _enableInstructionFileDeletes = true;
+        private int _deleteMaxConcurrency = DeleteEncryptedObjectsPipeline.DEFAULT_MAX_CONCURRENCY;
+        private int _rewrapMaxConcurrency = RewrapDataKeyPipeline.DEFAULT_MAX_CONCURRENCY;
         private Provider _cryptoProvider = null;
         private SecureRandom _secureRandom = new SecureRandom();
 
@@ -423,6 +884,105 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
             return this;
         }
 
+        /**
+         * Sets the algorithm suite used to encrypt content with putObject. Defaults to
+         * {@link AlgorithmSuite#ALG_AES_256_GCM_IV12_TAG16_NO_KDF}, which authenticates the
+         * object as a whole. {@link AlgorithmSuite#ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF}
+         * authenticates each 64 KiB segment separately, so plaintext is released as soon as its
+         * segment is verified, without buffering, and ranged gets are authenticated. Objects
+         * encrypted with the segmented suite can only be read by clients which support it.
+         * Encrypted multipart uploads, including content of unknown length larger than one
+         * part, only support the default suite and fail with any other.
+         * @param encryptionAlgorithm the algorithm suite to encrypt with
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder encryptionAlgorithm(AlgorithmSuite encryptionAlgorithm) {
+            if (encryptionAlgorithm == null || encryptionAlgorithm.isLegacy()) {
+                throw new S3EncryptionClientException("Legacy algorithm suites cannot be used for encryption.");
+            }
+            this._encryptionAlgorithm = encryptionAlgorithm;
+            return this;
+        }
+
+        /**
+         * Sets a codec used to compress content before it is encrypted. Compressed objects
+         * are decompressed transparently after decryption, and objects compressed with
+         * Deflate can be read whether or not a codec is configured. Disabled by default.
+         * <p>
+         * The length of compressed ciphertext depends on the content of the plaintext.
+         * Do not enable compression for content which mixes secrets with data an attacker
+         * can influence.
+         * </p>
+         * @param compressionCodec the codec to compress with, or null to disable compression
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder compressionCodec(CompressionCodec compressionCodec) {
+            this._compressionCodec = compressionCodec;
+            return this;
+        }
+
+        /**
+         * Caches data keys obtained from the keyring for the given length of time, so that
+         * repeated requests do not each call the keyring (e.g. KMS). Decryption materials are
+         * cached for every algorithm suite. Encryption materials are only cached when
+         * {@link #encryptionAlgorithm(AlgorithmSuite)} is set to
+         * {@link AlgorithmSuite#ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256}, which derives a unique
+         * content key for each object from the cached data key. Disabled by default.
+         * @param dataKeyCacheMaxAge the length of time a data key may be reused for, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder dataKeyCacheMaxAge(Duration dataKeyCacheMaxAge) {
+            this._dataKeyCacheMaxAge = dataKeyCacheMaxAge;
+            return this;
+        }
+
+        /**
+         * Caches decrypted plaintext so that repeated ranged gets of the same object are
+         * served without fetching or decrypting it again. Cached plaintext is tied to the
+         * object's ETag, so it is not returned once the object is overwritten. Only
+         * uncompressed GCM objects whose metadata is stored with the object are cached.
+         * The cache may be shared between clients and reports its hit ratio. Disabled by default.
+         * @param decryptedBlockCache the cache to use, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between clients")
+        public Builder decryptedBlockCache(DecryptedBlockCache decryptedBlockCache) {
+            this._decryptedBlockCache = decryptedBlockCache;
+            return this;
+        }
+
+        /**
+         * Caches the ciphertext and metadata of recently read objects in memory and, if
+         * configured, on local disk. Each get of a cached object is sent conditionally on
+         * its ETag, and the cached ciphertext is decrypted when S3 reports it unchanged, so
+         * plaintext is never stored and a changed object is always fetched again. Only
+         * whole-object gets without their own conditions or customer-provided keys are
+         * cached. Disabled by default.
+         * @param encryptedObjectCache the cache to use, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between clients")
+        public Builder encryptedObjectCache(EncryptedObjectCache encryptedObjectCache) {
+            this._encryptedObjectCache = encryptedObjectCache;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to decrypt whole objects encrypted with the legacy
+         * AES-CBC algorithm, such as objects written by V1 clients. CBC decryption can run on
+         * several blocks at once, so larger values let reads and migrations of legacy objects
+         * use more than one core. Ranged gets are always decrypted on one thread. Defaults to 1.
+         * @param cbcDecryptionParallelism the number of threads used to decrypt CBC objects
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder cbcDecryptionParallelism(int cbcDecryptionParallelism) {
+            if (cbcDecryptionParallelism < 1) {
+                throw new S3EncryptionClientException("cbcDecryptionParallelism must be at least 1");
+            }
+            this._cbcDecryptionParallelism = cbcDecryptionParallelism;
+            return this;
+        }
+
         /**
          * When set to true, the putObject method will use multipart upload to perform
          * the upload. Disabled by default.
@@ -434,6 +994,107 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
             return this;
         }
 
+        /**
+         * Chooses the upload method of putObject per request: objects whose content length
+         * is known and at least the threshold use multipart upload, smaller objects use a
+         * single PutObject. Ignored when multipart putObject is enabled for all objects.
+         * Disabled by default.
+         * @param multipartPutObjectThreshold the smallest content length, in bytes, uploaded with multipart upload
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder multipartPutObjectThreshold(long multipartPutObjectThreshold) {
+            if (multipartPutObjectThreshold < 1) {
+                throw new S3EncryptionClientException("multipartPutObjectThreshold must be positive");
+            }
+            this._multipartPutObjectThreshold = multipartPutObjectThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the target throughput of the CRT client used for multipart putObject.
+         * Only used when the wrapped client is not a CRT client. Defaults to the CRT client's default.
+         * @param crtTargetThroughputInGbps the target throughput in gigabits per second
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder crtTargetThroughputInGbps(double crtTargetThroughputInGbps) {
+            this._crtTargetThroughputInGbps = crtTargetThroughputInGbps;
+            return this;
+        }
+
+        /**
+         * Sets the part size of the CRT client used for multipart putObject.
+         * Only used when the wrapped client is not a CRT client. Defaults to the CRT client's default.
+         * @param crtMinimumPartSizeInBytes the minimum part size in bytes
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder crtMinimumPartSizeInBytes(long crtMinimumPartSizeInBytes) {
+            this._crtMinimumPartSizeInBytes = crtMinimumPartSizeInBytes;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of concurrent requests of the CRT client used for
+         * multipart putObject. Only used when the wrapped client is not a CRT client.
+         * Defaults to the CRT client's default.
+         * @param crtMaxConcurrency the maximum number of concurrent requests
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder crtMaxConcurrency(int crtMaxConcurrency) {
+            this._crtMaxConcurrency = crtMaxConcurrency;
+            return this;
+        }
+
+        /**
+         * Replaces how the CRT client used for multipart putObject is created, so that
+         * tests can observe it. The crt* options are ignored when this is set.
+         */
+        Builder crtClientFactory(Supplier<S3AsyncClient> crtClientFactory) {
+            this._crtClientFactory = crtClientFactory;
+            return this;
+        }
+
+        /**
+         * When set to false, deleteObject and deleteObjects do not attempt to delete
+         * instruction files alongside the objects. The S3 Encryption Client only writes
+         * instruction files when rewrapping objects which already have one, so this saves
+         * a request per object when no object in the bucket uses an instruction file.
+         * Enabled by default.
+         * @param shouldEnableInstructionFileDeletes false to skip deleting instruction files
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder enableInstructionFileDeletes(boolean shouldEnableInstructionFileDeletes) {
+            this._enableInstructionFileDeletes = shouldEnableInstructionFileDeletes;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of DeleteObjects batches in flight at once when
+         * deleting more than 1000 keys or deleting by prefix. Defaults to 8.
+         * @param deleteMaxConcurrency the maximum number of concurrent batches
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder deleteMaxConcurrency(int deleteMaxConcurrency) {
+            if (deleteMaxConcurrency < 1) {
+                throw new S3EncryptionClientException("deleteMaxConcurrency must be at least 1");
+            }
+            this._deleteMaxConcurrency = deleteMaxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of objects rewrapped at once by
+         * rewrapObjectsWithPrefix. Defaults to 8.
+         * @param rewrapMaxConcurrency the maximum number of concurrent rewraps
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder rewrapMaxConcurrency(int rewrapMaxConcurrency) {
+            if (rewrapMaxConcurrency < 1) {
+                throw new S3EncryptionClientException("rewrapMaxConcurrency must be at least 1");
+            }
+            this._rewrapMaxConcurrency = rewrapMaxConcurrency;
+            return this;
+        }
+
         /**
          * Allows the user to pass an instance of {@link Provider} to be used
          * for cryptographic operations. By default, the S3 Encryption Client
@@ -505,6 +1166,30 @@ public class S3AsyncEncryptionClient extends DelegatingS3AsyncClient {
                         .build();
             }
 
+            if (_dataKeyCacheMaxAge != null) {
+                _cryptoMaterialsManager = CachingCryptoMaterialsManager.builder()
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .maxAge(_dataKeyCacheMaxAge)
+                        .build();
+            }
+
+            _multipartPipeline = MultipartUploadObjectPipeline.builder()
+                    .s3AsyncClient(_wrappedClient)
+                    .cryptoMaterialsManager(_cryptoMaterialsManager)
+                    .secureRandom(_secureRandom)
+                    .algorithmSuite(_encryptionAlgorithm)
+                    .build();
+
+            _copyPipeline = CopyEncryptedObjectPipeline.builder()
+                    .s3AsyncClient(_wrappedClient)
+                    .build();
+
+            _deletePipeline = DeleteEncryptedObjectsPipeline.builder()
+                    .s3AsyncClient(_wrappedClient)
+                    .deleteInstructionFiles(_enableInstructionFileDeletes)
+                    .maxConcurrency(_deleteMaxConcurrency)
+                    .build();
+
             return new S3AsyncEncryptionClient(this);
         }
     }
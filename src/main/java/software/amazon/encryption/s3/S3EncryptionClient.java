@@ -5,6 +5,7 @@ package software.amazon.encryption.s3;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
@@ -20,6 +21,8 @@ import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
@@ -29,19 +32,33 @@ import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Request;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.utils.Pair;
 import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+import software.amazon.encryption.s3.internal.CopyEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.DecryptedBlockCache;
+import software.amazon.encryption.s3.internal.DecryptingSeekableByteChannel;
+import software.amazon.encryption.s3.internal.DeleteEncryptedObjectsPipeline;
+import software.amazon.encryption.s3.internal.EncryptedObjectCache;
 import software.amazon.encryption.s3.internal.GetEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.IntegrityScrubReport;
 import software.amazon.encryption.s3.internal.MultiFileOutputStream;
 import software.amazon.encryption.s3.internal.MultipartUploadObjectPipeline;
+import software.amazon.encryption.s3.internal.PackReader;
+import software.amazon.encryption.s3.internal.PackedObjectPipeline;
+import software.amazon.encryption.s3.internal.PrefixScanReader;
 import software.amazon.encryption.s3.internal.PutEncryptedObjectPipeline;
+import software.amazon.encryption.s3.internal.RewrapDataKeyPipeline;
+import software.amazon.encryption.s3.internal.StreamingPutObjectPipeline;
+import software.amazon.encryption.s3.internal.ShardedObjectPipeline;
 import software.amazon.encryption.s3.internal.UploadObjectObserver;
 import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CachingCryptoMaterialsManager;
 import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
 import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
 import software.amazon.encryption.s3.materials.Keyring;
@@ -52,10 +69,16 @@ import software.amazon.encryption.s3.materials.RsaKeyring;
 
 import javax.crypto.SecretKey;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyPair;
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -65,10 +88,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
-
-import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
-import static software.amazon.encryption.s3.S3EncryptionClientUtilities.instructionFileKeysToDelete;
-import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+import java.util.function.Supplier;
 
 /**
  * This client is a drop-in replacement for the S3 client. It will automatically encrypt objects
@@ -87,7 +107,26 @@ public class S3EncryptionClient extends DelegatingS3Client {
     private final boolean _enableLegacyUnauthenticatedModes;
     private final boolean _enableDelayedAuthenticationMode;
     private final boolean _enableMultipartPutObject;
+    private final Long _multipartPutObjectThreshold;
+    private final CompressionCodec _compressionCodec;
+    private final DecryptedBlockCache _decryptedBlockCache;
+    private final EncryptedObjectCache _encryptedObjectCache;
+    private final int _cbcDecryptionParallelism;
+    private final AlgorithmSuite _encryptionAlgorithm;
+    private final int _shardSize;
+    private final int _shardMaxConcurrency;
     private final MultipartUploadObjectPipeline _multipartPipeline;
+    private final CopyEncryptedObjectPipeline _copyPipeline;
+    private final DeleteEncryptedObjectsPipeline _deletePipeline;
+    private final RewrapDataKeyPipeline _rewrapPipeline;
+    // Lazily created on the first multipart putObject without its own MultipartConfiguration
+    private volatile ExecutorService _multipartExecutor;
+    // Lazily created on the first request which needs materials
+    private volatile ExecutorService _materialsExecutor;
+    // Lazily created on the first AES-CBC object decrypted in parallel
+    private volatile ExecutorService _cbcDecryptionExecutor;
+    // Lazily created on the first putObjects
+    private volatile ExecutorService _streamExecutor;
 
     private S3EncryptionClient(Builder builder) {
         super(builder._wrappedClient);
@@ -98,7 +137,24 @@ public class S3EncryptionClient extends DelegatingS3Client {
         _enableLegacyUnauthenticatedModes = builder._enableLegacyUnauthenticatedModes;
         _enableDelayedAuthenticationMode = builder._enableDelayedAuthenticationMode;
         _enableMultipartPutObject = builder._enableMultipartPutObject;
+        _multipartPutObjectThreshold = builder._multipartPutObjectThreshold;
+        _compressionCodec = builder._compressionCodec;
+        _decryptedBlockCache = builder._decryptedBlockCache;
+        _encryptedObjectCache = builder._encryptedObjectCache;
+        _cbcDecryptionParallelism = builder._cbcDecryptionParallelism;
+        _encryptionAlgorithm = builder._encryptionAlgorithm;
+        _shardSize = builder._shardSize;
+        _shardMaxConcurrency = builder._shardMaxConcurrency;
         _multipartPipeline = builder._multipartPipeline;
+        _copyPipeline = builder._copyPipeline;
+        _deletePipeline = builder._deletePipeline;
+        // Keys are rewrapped on the materials executor, which is only created once it is used
+        _rewrapPipeline = RewrapDataKeyPipeline.builder()
+                .s3AsyncClient(builder._wrappedAsyncClient)
+                .cryptoMaterialsManager(builder._cryptoMaterialsManager)
+                .materialsExecutor(runnable -> materialsExecutor().execute(runnable))
+                .maxConcurrency(builder._rewrapMaxConcurrency)
+                .build();
     }
 
     /**
@@ -170,7 +226,7 @@ public class S3EncryptionClient extends DelegatingS3Client {
     public PutObjectResponse putObject(PutObjectRequest putObjectRequest, RequestBody requestBody)
             throws AwsServiceException, SdkClientException {
 
-        if (_enableMultipartPutObject) {
+        if (_enableMultipartPutObject || exceedsMultipartThreshold(putObjectRequest, requestBody)) {
             try {
                 CompleteMultipartUploadResponse completeResponse = multipartPutObject(putObjectRequest, requestBody);
                 PutObjectResponse response = PutObjectResponse.builder()
@@ -184,11 +240,24 @@ public class S3EncryptionClient extends DelegatingS3Client {
         PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
                 .s3AsyncClient(_wrappedAsyncClient)
                 .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
                 .secureRandom(_secureRandom)
+                .compressionCodec(_compressionCodec)
+                .algorithmSuite(_encryptionAlgorithm)
                 .build();
 
         try {
-            CompletableFuture<PutObjectResponse> futurePut = pipeline.putObject(putObjectRequest, AsyncRequestBody.fromInputStream(requestBody.contentStreamProvider().newStream(), requestBody.optionalContentLength().orElse(-1L), Executors.newSingleThreadExecutor()));
+            AsyncRequestBody asyncRequestBody = AsyncRequestBody.fromInputStream(requestBody.contentStreamProvider().newStream(), requestBody.optionalContentLength().orElse(-1L), Executors.newSingleThreadExecutor());
+            if (_compressionCodec == null && StreamingPutObjectPipeline.isUnknownLength(putObjectRequest, asyncRequestBody)) {
+                // Content of unknown length is uploaded with a single PutObject if it is small, else as a multipart upload
+                return StreamingPutObjectPipeline.builder()
+                        .putObjectPipeline(pipeline)
+                        .multipartPipeline(_multipartPipeline)
+                        .build()
+                        .putObject(putObjectRequest, asyncRequestBody)
+                        .join();
+            }
+            CompletableFuture<PutObjectResponse> futurePut = pipeline.putObject(putObjectRequest, asyncRequestBody);
             return futurePut.join();
         } catch (CompletionException completionException) {
             throw new S3EncryptionClientException(completionException.getMessage(), completionException.getCause());
@@ -198,6 +267,111 @@ public class S3EncryptionClient extends DelegatingS3Client {
 
     }
 
+    /**
+     * Encrypts and uploads many objects, for workloads with many small objects. A single
+     * pipeline is shared by every object, and up to
+     * {@value PutEncryptedObjectPipeline#DEFAULT_PUT_OBJECTS_MAX_CONCURRENCY} objects are
+     * in flight at once, so that obtaining materials, encryption and network I/O of
+     * different objects overlap. Content of unknown length is uploaded with a single PutObject
+     * request if it is small, else as a multipart upload.
+     * @param objects the request and content of each object
+     * @return the response for each object, in the order of the list
+     */
+    public List<PutObjectResponse> putObjects(List<Pair<PutObjectRequest, RequestBody>> objects) {
+        return putObjects(objects, PutEncryptedObjectPipeline.DEFAULT_PUT_OBJECTS_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #putObjects(List)}.
+     * @param objects the request and content of each object
+     * @param maxConcurrency the maximum number of objects being prepared or uploaded at once
+     * @return the response for each object, in the order of the list
+     */
+    public List<PutObjectResponse> putObjects(List<Pair<PutObjectRequest, RequestBody>> objects, int maxConcurrency) {
+        PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .secureRandom(_secureRandom)
+                .compressionCodec(_compressionCodec)
+                .algorithmSuite(_encryptionAlgorithm)
+                .build();
+        StreamingPutObjectPipeline streamingPipeline = StreamingPutObjectPipeline.builder()
+                .putObjectPipeline(pipeline)
+                .multipartPipeline(_multipartPipeline)
+                .build();
+
+        ExecutorService streamExecutor = streamExecutor();
+        try {
+            List<PutObjectRequest> requests = new ArrayList<>();
+            List<Supplier<AsyncRequestBody>> requestBodies = new ArrayList<>();
+            for (Pair<PutObjectRequest, RequestBody> object : objects) {
+                RequestBody requestBody = object.right();
+                requests.add(object.left());
+                // Streams are opened only as each object is uploaded
+                requestBodies.add(() -> AsyncRequestBody.fromInputStream(requestBody.contentStreamProvider().newStream(),
+                        requestBody.optionalContentLength().orElse(-1L), streamExecutor));
+            }
+            return pipeline.putObjects(requests, requestBodies, maxConcurrency, streamingPipeline).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to put objects.", e);
+        }
+    }
+
+    /**
+     * Encrypts and uploads a file. A file larger than one part is read through a
+     * FileChannel, encrypted part by part in memory and uploaded as an encrypted
+     * multipart upload with up to
+     * {@value MultipartUploadObjectPipeline#DEFAULT_UPLOAD_FILE_MAX_CONCURRENCY} parts
+     * in flight, without writing temporary files. Smaller files, and all files when
+     * compression or an algorithm suite other than
+     * {@link MultipartUploadObjectPipeline#MULTIPART_ALGORITHM_SUITE} is configured,
+     * are uploaded with putObject.
+     * @param putObjectRequest the request instance
+     * @param source the file to upload
+     * @return Result of the upload.
+     * @throws S3EncryptionClientException Base class for all encryption client exceptions.
+     */
+    public PutObjectResponse uploadFile(PutObjectRequest putObjectRequest, Path source) {
+        return uploadFile(putObjectRequest, source, MultipartUploadObjectPipeline.DEFAULT_UPLOAD_FILE_PART_SIZE,
+                MultipartUploadObjectPipeline.DEFAULT_UPLOAD_FILE_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #uploadFile(PutObjectRequest, Path)}.
+     * @param putObjectRequest the request instance
+     * @param source the file to upload
+     * @param partSize the size of the plaintext parts; at least 5 MiB and a multiple of 16 bytes
+     * @param maxConcurrency the maximum number of encrypted parts held in memory or being uploaded at once
+     * @return Result of the upload.
+     * @throws S3EncryptionClientException Base class for all encryption client exceptions.
+     */
+    public PutObjectResponse uploadFile(PutObjectRequest putObjectRequest, Path source, long partSize, int maxConcurrency) {
+        try {
+            if (_compressionCodec != null || _encryptionAlgorithm != MultipartUploadObjectPipeline.MULTIPART_ALGORITHM_SUITE
+                    || Files.size(source) <= partSize) {
+                return putObject(putObjectRequest, RequestBody.fromFile(source));
+            }
+            // The file is encrypted on this thread while the parts are uploaded
+            CompleteMultipartUploadResponse response = _multipartPipeline.uploadFile(putObjectRequest, source, partSize,
+                    maxConcurrency, Runnable::run).join();
+            return PutObjectResponse.builder()
+                    .eTag(response.eTag())
+                    .versionId(response.versionId())
+                    .build();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to upload file.", e);
+        }
+    }
+
     /**
      * See {@link S3EncryptionClient#getObject(GetObjectRequest, ResponseTransformer)}
      * <p>
@@ -222,8 +396,14 @@ public class S3EncryptionClient extends DelegatingS3Client {
         GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
                 .s3AsyncClient(_wrappedAsyncClient)
                 .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
                 .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
                 .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .compressionCodec(_compressionCodec)
+                .decryptedBlockCache(_decryptedBlockCache)
+                .encryptedObjectCache(_encryptedObjectCache)
+                .cbcDecryptionParallelism(_cbcDecryptionParallelism)
+                .cbcDecryptionExecutor(runnable -> cbcDecryptionExecutor().execute(runnable))
                 .build();
 
         try {
@@ -236,6 +416,303 @@ public class S3EncryptionClient extends DelegatingS3Client {
         }
     }
 
+    /**
+     * Opens a read-only, seekable channel over the plaintext of an encrypted object,
+     * for readers such as Parquet or ORC which seek to footers and column chunks.
+     * The object's metadata is read and its data key decrypted once, when the channel
+     * is opened; reads then fetch only the ranges they need, with the next range
+     * fetched ahead while the channel is read sequentially. Reads fail if the object
+     * is overwritten while the channel is open.
+     * <p>
+     * Objects encrypted with {@link AlgorithmSuite#ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF}
+     * are authenticated segment by segment. Other GCM objects are decrypted without
+     * authentication, and require legacy unauthenticated modes to be enabled.
+     * </p>
+     * @param getObjectRequest the request for the object
+     * @return a channel over the object's plaintext
+     */
+    public SeekableByteChannel openSeekableChannel(GetObjectRequest getObjectRequest) {
+        return openSeekableChannel(getObjectRequest, DecryptingSeekableByteChannel.DEFAULT_READ_AHEAD_BYTES);
+    }
+
+    /**
+     * See {@link #openSeekableChannel(GetObjectRequest)}.
+     * @param getObjectRequest the request for the object
+     * @param readAheadBytes the minimum number of bytes fetched by each ranged get
+     * @return a channel over the object's plaintext
+     */
+    public SeekableByteChannel openSeekableChannel(GetObjectRequest getObjectRequest, int readAheadBytes) {
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .build();
+
+        try {
+            return pipeline.openSeekableChannel(getObjectRequest, readAheadBytes).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to open object.", e);
+        }
+    }
+
+    /**
+     * Gets several ranges of the plaintext of an encrypted object, for readers which
+     * know in advance which parts of a large object they need. The object's metadata
+     * is read and its data key decrypted once, and nearby ranges are merged so that
+     * each segment (or cipher block) is fetched at most once. Offsets beyond 2 GiB are
+     * supported, and each range may take any of the forms "bytes=N-M", "bytes=N-" or
+     * "bytes=-N". The same algorithm suites are supported as for
+     * {@link #openSeekableChannel(GetObjectRequest)}.
+     * @param getObjectRequest the request for the object; its range is ignored
+     * @param ranges the ranges to get
+     * @return the plaintext of each range, in the order requested
+     */
+    public List<byte[]> getObjectRanges(GetObjectRequest getObjectRequest, List<String> ranges) {
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .build();
+
+        try {
+            return pipeline.getObjectRanges(getObjectRequest.toBuilder().range(null).build(), ranges).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to get object ranges.", e);
+        }
+    }
+
+    /**
+     * Gets and decrypts many whole objects at once, for fan-outs over many small objects.
+     * Up to {@value GetEncryptedObjectPipeline#DEFAULT_GET_OBJECTS_MAX_CONCURRENCY} objects
+     * are fetched concurrently, and their data keys are then decrypted as one batch:
+     * objects sharing an encrypted data key are decrypted with a single key operation,
+     * and distinct keys are decrypted concurrently up to the same bound. Every object is
+     * held in memory, and the call fails if any object cannot be fetched or decrypted.
+     * @param getObjectRequests the requests for the objects, which must not have ranges
+     * @return the decrypted objects, in the order requested
+     */
+    public List<ResponseBytes<GetObjectResponse>> getObjects(Collection<GetObjectRequest> getObjectRequests) {
+        return getObjects(getObjectRequests, GetEncryptedObjectPipeline.DEFAULT_GET_OBJECTS_MAX_CONCURRENCY);
+    }
+
+    /**
+     * See {@link #getObjects(Collection)}.
+     * @param getObjectRequests the requests for the objects, which must not have ranges
+     * @param maxConcurrency the maximum number of gets, and of data key decryptions, in flight
+     * @return the decrypted objects, in the order requested
+     */
+    public List<ResponseBytes<GetObjectResponse>> getObjects(Collection<GetObjectRequest> getObjectRequests,
+                                                             int maxConcurrency) {
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .compressionCodec(_compressionCodec)
+                .cbcDecryptionParallelism(_cbcDecryptionParallelism)
+                .cbcDecryptionExecutor(runnable -> cbcDecryptionExecutor().execute(runnable))
+                .build();
+
+        try {
+            return pipeline.getObjects(new ArrayList<>(getObjectRequests), maxConcurrency).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to get objects.", e);
+        }
+    }
+
+    /**
+     * Opens a reader over the decrypted objects in the bucket whose keys begin with the
+     * given prefix, for batch jobs which process every object under a prefix. While one
+     * object is consumed, up to {@value PrefixScanReader#DEFAULT_PREFETCH_OBJECTS} of the
+     * following objects (and at most 64 MiB of them) are fetched and decrypted concurrently,
+     * and the next page of the listing is requested ahead of time. Instruction files are skipped.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @return a reader over the objects, which should be closed when done
+     */
+    public PrefixScanReader scanObjectsWithPrefix(String bucket, String prefix) {
+        return scanObjectsWithPrefix(bucket, prefix, PrefixScanReader.DEFAULT_PREFETCH_OBJECTS,
+                PrefixScanReader.DEFAULT_PREFETCH_BYTES);
+    }
+
+    /**
+     * See {@link #scanObjectsWithPrefix(String, String)}.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @param prefetchObjects the maximum number of objects fetched ahead of the consumer
+     * @param prefetchBytes the maximum number of bytes, by listed size, fetched ahead of the consumer
+     * @return a reader over the objects, which should be closed when done
+     */
+    public PrefixScanReader scanObjectsWithPrefix(String bucket, String prefix, int prefetchObjects, long prefetchBytes) {
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                .compressionCodec(_compressionCodec)
+                .encryptedObjectCache(_encryptedObjectCache)
+                .cbcDecryptionParallelism(_cbcDecryptionParallelism)
+                .cbcDecryptionExecutor(runnable -> cbcDecryptionExecutor().execute(runnable))
+                .build();
+
+        return pipeline.scanObjectsWithPrefix(bucket, prefix, prefetchObjects, prefetchBytes);
+    }
+
+    /**
+     * Verifies the integrity of an object encrypted with AES-GCM without decrypting it.
+     * Only the object's data key is decrypted; its ciphertext is hashed and compared
+     * against the stored tag (or the tag of each segment), which takes roughly half the
+     * work of a full decrypt and produces no plaintext. Objects encrypted with legacy
+     * algorithm suites have no tag and cannot be verified.
+     * @param getObjectRequest the request for the object, which must not have a range
+     * @return true if the object's tags are valid, false if the object has been altered
+     */
+    public boolean verifyObject(GetObjectRequest getObjectRequest) {
+        try {
+            return getPipelineForVerification().verifyObject(getObjectRequest).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to verify object.", e);
+        }
+    }
+
+    /**
+     * Verifies every object in the bucket whose key begins with the given prefix, as
+     * {@link #verifyObject(GetObjectRequest)} does, for periodic integrity audits.
+     * Several objects are verified concurrently. Objects which cannot be verified are
+     * listed in the report instead of failing the whole scrub.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @return a report of the verified, failed and unverifiable objects
+     */
+    public IntegrityScrubReport verifyObjectsWithPrefix(String bucket, String prefix) {
+        try {
+            return getPipelineForVerification().verifyObjectsWithPrefix(bucket, prefix).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to verify objects.", e);
+        }
+    }
+
+    private GetEncryptedObjectPipeline getPipelineForVerification() {
+        return GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(_wrappedAsyncClient)
+                .cryptoMaterialsManager(_cryptoMaterialsManager)
+                .materialsExecutor(materialsExecutor())
+                .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                .build();
+    }
+
+    private boolean exceedsMultipartThreshold(PutObjectRequest putObjectRequest, RequestBody requestBody) {
+        if (_multipartPutObjectThreshold == null) {
+            return false;
+        }
+        final Long contentLength = putObjectRequest.contentLength() != null
+                ? putObjectRequest.contentLength()
+                : requestBody.optionalContentLength().orElse(null);
+        return contentLength != null && contentLength >= _multipartPutObjectThreshold;
+    }
+
+    /**
+     * Returns the thread pool used to upload parts when a multipart putObject does not
+     * bring its own {@link MultipartConfiguration}. It is created on first use, shared by
+     * all such uploads and shut down in {@link #close()}.
+     */
+    private ExecutorService multipartExecutor() {
+        ExecutorService executor = _multipartExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _multipartExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(MultipartConfiguration.DEFAULT_MAX_CONNECTIONS);
+                    _multipartExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the thread pool on which the CMM is asked for materials, so that a blocking
+     * call to a key service does not hold up the threads of the wrapped client. It is
+     * created on first use, shared by all requests and shut down in {@link #close()}.
+     */
+    private ExecutorService materialsExecutor() {
+        ExecutorService executor = _materialsExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _materialsExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool();
+                    _materialsExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the thread pool on which AES-CBC objects are decrypted, with one thread for
+     * each of the configured cbcDecryptionParallelism. It is created on first use, shared
+     * by all requests and shut down in {@link #close()}.
+     */
+    private ExecutorService cbcDecryptionExecutor() {
+        ExecutorService executor = _cbcDecryptionExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _cbcDecryptionExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(_cbcDecryptionParallelism);
+                    _cbcDecryptionExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the thread pool which reads the request bodies of putObjects. Each body
+     * holds a thread while it is read, and at most maxConcurrency are read at once. It
+     * is created on first use, shared by all calls and shut down in {@link #close()}.
+     */
+    private ExecutorService streamExecutor() {
+        ExecutorService executor = _streamExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _streamExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool();
+                    _streamExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     private CompleteMultipartUploadResponse multipartPutObject(PutObjectRequest request, RequestBody requestBody) throws Throwable {
         // Similar logic exists in the MultipartUploadObjectPipeline,
         // but the request types do not match so refactoring is not possible
@@ -261,12 +738,13 @@ public class S3EncryptionClient extends DelegatingS3Client {
                     "the maximum length allowed for GCM encryption.");
         }
 
-        AwsRequestOverrideConfiguration overrideConfig = request.overrideConfiguration().get();
-        // If MultipartConfiguration is null, Initialize MultipartConfiguration
-        MultipartConfiguration multipartConfiguration = overrideConfig
-                .executionAttributes()
-                .getOptionalAttribute(S3EncryptionClient.CONFIGURATION)
-                .orElse(MultipartConfiguration.builder().build());
+        // If MultipartConfiguration is null, Initialize MultipartConfiguration on the client's thread pool
+        MultipartConfiguration multipartConfiguration = request.overrideConfiguration()
+                .flatMap(overrideConfig -> overrideConfig.executionAttributes()
+                        .getOptionalAttribute(S3EncryptionClient.CONFIGURATION))
+                .orElseGet(() -> MultipartConfiguration.builder()
+                        .executorService(multipartExecutor())
+                        .build());
 
         ExecutorService es = multipartConfiguration.executorService();
         final boolean defaultExecutorService = es == null;
@@ -280,7 +758,6 @@ public class S3EncryptionClient extends DelegatingS3Client {
         }
 
         observer.init(request, _wrappedAsyncClient, this, es);
-        final String uploadId = observer.onUploadCreation(request);
         final List<CompletedPart> partETags = new ArrayList<>();
 
         MultiFileOutputStream outputStream = multipartConfiguration.multiFileOutputStream();
@@ -291,9 +768,9 @@ public class S3EncryptionClient extends DelegatingS3Client {
         try {
             // initialize the multi-file output stream
             outputStream.init(observer, multipartConfiguration.partSize(), multipartConfiguration.diskLimit());
-            // Kicks off the encryption-upload pipeline;
+            // Kicks off the encryption-upload pipeline, which creates the upload while encrypting;
             // Note outputStream is automatically closed upon method completion.
-            _multipartPipeline.putLocalObject(requestBody, uploadId, outputStream);
+            _multipartPipeline.putLocalObject(request, requestBody, observer, outputStream);
             // block till all part have been uploaded
             for (Future<Map<Integer, UploadPartResponse>> future : observer.futures()) {
                 Map<Integer, UploadPartResponse> partResponseMap = future.get();
@@ -321,11 +798,39 @@ public class S3EncryptionClient extends DelegatingS3Client {
         throw new S3EncryptionClientException(t.getMessage(), t);
     }
 
+    /**
+     * See {@link S3Client#copyObject(CopyObjectRequest)}.
+     * <p>
+     * In the S3 Encryption Client, copyObject copies the ciphertext server-side and
+     * then copies the instruction file, if present. If the instruction file cannot be
+     * copied, the copied object is deleted. When a version of the source object is
+     * copied, the latest version of its instruction file is copied with it, since
+     * version ids are not shared between keys. Objects larger than 5 GiB are
+     * copied with parallel UploadPartCopy requests. When the metadata is replaced,
+     * the encryption metadata of the source object is kept.
+     * </p>
+     * @param copyObjectRequest the request instance
+     * @return Result of the CopyObject operation returned by the service.
+     */
+    @Override
+    public CopyObjectResponse copyObject(CopyObjectRequest copyObjectRequest) throws AwsServiceException,
+            SdkClientException {
+        try {
+            return _copyPipeline.copyObject(copyObjectRequest).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to copy object.", e);
+        }
+    }
+
     /**
      * See {@link S3Client#deleteObject(DeleteObjectRequest)}.
      * <p>
      * In the S3 Encryption Client, deleteObject also deletes the instruction file,
-     * if present.
+     * if present, unless instruction file deletes have been disabled.
      * </p>
      * @param deleteObjectRequest the request instance
      * @return Result of the DeleteObject operation returned by the service.
@@ -333,21 +838,9 @@ public class S3EncryptionClient extends DelegatingS3Client {
     @Override
     public DeleteObjectResponse deleteObject(DeleteObjectRequest deleteObjectRequest) throws AwsServiceException,
             SdkClientException {
-        DeleteObjectRequest actualRequest = deleteObjectRequest.toBuilder()
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .build();
-
         try {
-            // Delete the object
-            DeleteObjectResponse deleteObjectResponse = _wrappedAsyncClient.deleteObject(actualRequest).join();
-            // If Instruction file exists, delete the instruction file as well.
-            String instructionObjectKey = deleteObjectRequest.key() + INSTRUCTION_FILE_SUFFIX;
-            _wrappedAsyncClient.deleteObject(builder -> builder
-                    .overrideConfiguration(API_NAME_INTERCEPTOR)
-                    .bucket(deleteObjectRequest.bucket())
-                    .key(instructionObjectKey)).join();
-            // Return original deletion
-            return deleteObjectResponse;
+            // The object and its instruction file are deleted concurrently
+            return _deletePipeline.deleteObject(deleteObjectRequest).join();
         } catch (CompletionException e) {
             throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
         } catch (Exception e) {
@@ -359,7 +852,9 @@ public class S3EncryptionClient extends DelegatingS3Client {
      * See {@link S3Client#deleteObjects(DeleteObjectsRequest)}.
      * <p>
      * In the S3 Encryption Client, deleteObjects also deletes the instruction file(s),
-     * if present.
+     * if present. Requests with more than 1000 keys are split into multiple
+     * batches which are deleted concurrently, and the results are merged.
+     * Only the requested keys are reported as deleted.
      * </p>
      * @param deleteObjectsRequest the request instance
      * @return Result of the DeleteObjects operation returned by the service.
@@ -367,20 +862,8 @@ public class S3EncryptionClient extends DelegatingS3Client {
     @Override
     public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest deleteObjectsRequest) throws AwsServiceException,
             SdkClientException {
-        DeleteObjectsRequest actualRequest = deleteObjectsRequest.toBuilder()
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .build();
         try {
-            // Delete the objects
-            DeleteObjectsResponse deleteObjectsResponse = _wrappedAsyncClient.deleteObjects(actualRequest).join();
-            // If Instruction files exists, delete the instruction files as well.
-            List<ObjectIdentifier> deleteObjects = instructionFileKeysToDelete(deleteObjectsRequest);
-            _wrappedAsyncClient.deleteObjects(DeleteObjectsRequest.builder()
-                    .overrideConfiguration(API_NAME_INTERCEPTOR)
-                    .bucket(deleteObjectsRequest.bucket())
-                    .delete(builder -> builder.objects(deleteObjects))
-                    .build()).join();
-            return deleteObjectsResponse;
+            return _deletePipeline.deleteObjects(deleteObjectsRequest).join();
         } catch (CompletionException e) {
             throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
         } catch (Exception e) {
@@ -388,6 +871,206 @@ public class S3EncryptionClient extends DelegatingS3Client {
         }
     }
 
+    /**
+     * Deletes every object in the bucket whose key begins with the given prefix,
+     * including any instruction files. Each listed page is deleted as one batch
+     * while the next page is listed.
+     * @param bucket the bucket to delete from
+     * @param prefix the key prefix of the objects to delete
+     * @return the merged results of the DeleteObjects operations returned by the service.
+     */
+    public DeleteObjectsResponse deleteObjectsWithPrefix(String bucket, String prefix) throws AwsServiceException,
+            SdkClientException {
+        try {
+            return _deletePipeline.deleteObjectsWithPrefix(bucket, prefix).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to delete objects.", e);
+        }
+    }
+
+    /**
+     * Wraps the data key of an encrypted object with the given keyring, without
+     * downloading or re-encrypting its content. The data key is unwrapped using
+     * this client's keyring, or re-encrypted within KMS when both keys are KMS keys.
+     * The new encrypted data key is written by copying the object onto itself with
+     * replaced metadata, or by rewriting its instruction file.
+     * @param bucket the bucket of the object
+     * @param key the key of the object
+     * @param newKeyring the keyring to wrap the data key with
+     */
+    public void rewrapObject(String bucket, String key, Keyring newKeyring) {
+        try {
+            _rewrapPipeline.rewrapObject(bucket, key, newKeyring).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to rewrap object.", e);
+        }
+    }
+
+    /**
+     * Wraps the data keys of all encrypted objects under the given prefix with the
+     * given keyring. See {@link #rewrapObject(String, String, Keyring)}. Objects
+     * without encryption metadata are skipped. After each page of up to 1000 keys
+     * has completed, its last key is passed to the checkpoint consumer; an
+     * interrupted operation can be resumed by passing that key as startAfter.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @param startAfter the key to resume after, or null to start from the beginning
+     * @param newKeyring the keyring to wrap the data keys with
+     * @param checkpoint receives the last key of each completed page, may be null
+     * @return the number of objects which were rewrapped
+     */
+    public long rewrapObjectsWithPrefix(String bucket, String prefix, String startAfter, Keyring newKeyring,
+                                        Consumer<String> checkpoint) {
+        try {
+            return _rewrapPipeline.rewrapObjectsWithPrefix(bucket, prefix, startAfter, newKeyring, checkpoint).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to rewrap objects.", e);
+        }
+    }
+
+    /**
+     * Uploads content of any length as a sharded object. The content is split into
+     * shards which are encrypted and uploaded concurrently as separate objects, so
+     * it is not limited by the maximum length GCM can encrypt under one key. Once all
+     * shards are uploaded, an encrypted manifest listing them is written to the
+     * requested key. Sharded objects must be read with
+     * {@link #getShardedObject(GetObjectRequest, Path)}.
+     * <p>
+     * Shards are stored under the requested key followed by ".shards/". At most
+     * shardMaxConcurrency shards of shardSize bytes are held in memory at once.
+     * If the upload fails, shards which were already uploaded are deleted. To
+     * remove a sharded object, delete its key and
+     * {@link #deleteObjectsWithPrefix(String, String)} with the key followed by
+     * ".shards/"; the bare key as a prefix also matches unrelated objects.
+     * </p>
+     * @param putObjectRequest the request for the manifest object
+     * @param content the content to upload, which is read to its end but not closed
+     * @return Result of the PutObject operation for the manifest returned by the service.
+     */
+    public PutObjectResponse putShardedObject(PutObjectRequest putObjectRequest, InputStream content) {
+        try {
+            return shardedObjectPipeline().putShardedObject(putObjectRequest, content).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to put sharded object.", e);
+        }
+    }
+
+    /**
+     * Downloads a sharded object written by {@link #putShardedObject(PutObjectRequest, InputStream)}
+     * into the destination file. Shards are downloaded and decrypted concurrently,
+     * and each is written directly to its position in the file.
+     * @param getObjectRequest the request for the manifest object
+     * @param destination the file to write the content to, which is created or truncated
+     * @return Result of the GetObject operation for the manifest returned by the service.
+     */
+    public GetObjectResponse getShardedObject(GetObjectRequest getObjectRequest, Path destination) {
+        try {
+            return shardedObjectPipeline().getShardedObject(getObjectRequest, destination).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to get sharded object.", e);
+        }
+    }
+
+    private ShardedObjectPipeline shardedObjectPipeline() {
+        return ShardedObjectPipeline.builder()
+                .putObjectPipeline(PutEncryptedObjectPipeline.builder()
+                        .s3AsyncClient(_wrappedAsyncClient)
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .materialsExecutor(materialsExecutor())
+                        .secureRandom(_secureRandom)
+                        .compressionCodec(_compressionCodec)
+                        .algorithmSuite(_encryptionAlgorithm)
+                        .build())
+                .getObjectPipeline(GetEncryptedObjectPipeline.builder()
+                        .s3AsyncClient(_wrappedAsyncClient)
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .materialsExecutor(materialsExecutor())
+                        .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                        .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                        .compressionCodec(_compressionCodec)
+                        .build())
+                .deleteObjectsPipeline(_deletePipeline)
+                .shardSize(_shardSize)
+                .maxConcurrency(_shardMaxConcurrency)
+                .build();
+    }
+
+    /**
+     * Packs many small records into a single encrypted object, so they share one
+     * data key, one PutObject request and one set of metadata. The pack holds an
+     * index of the records followed by the records themselves, and is always
+     * encrypted with {@link AlgorithmSuite#ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF}
+     * so that each record can be fetched by an authenticated ranged get.
+     * Records are read with {@link #openPack(GetObjectRequest)}.
+     * @param putObjectRequest the request for the pack object
+     * @param records the records to pack, keyed by name, in the order they are written
+     * @return Result of the PutObject operation returned by the service.
+     */
+    public PutObjectResponse putPack(PutObjectRequest putObjectRequest, Map<String, byte[]> records) {
+        try {
+            return packedObjectPipeline().putPack(putObjectRequest, records).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to put pack.", e);
+        }
+    }
+
+    /**
+     * Reads the index of a pack written by {@link #putPack(PutObjectRequest, Map)}.
+     * The returned reader fetches individual records with ranged gets.
+     * @param getObjectRequest the request for the pack object
+     * @return a reader for the records in the pack
+     */
+    public PackReader openPack(GetObjectRequest getObjectRequest) {
+        try {
+            return packedObjectPipeline().openPack(getObjectRequest).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to open pack.", e);
+        }
+    }
+
+    private PackedObjectPipeline packedObjectPipeline() {
+        return PackedObjectPipeline.builder()
+                .putObjectPipeline(PutEncryptedObjectPipeline.builder()
+                        .s3AsyncClient(_wrappedAsyncClient)
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .materialsExecutor(materialsExecutor())
+                        .secureRandom(_secureRandom)
+                        .algorithmSuite(PackedObjectPipeline.PACK_ALGORITHM_SUITE)
+                        .build())
+                .getObjectPipeline(GetEncryptedObjectPipeline.builder()
+                        .s3AsyncClient(_wrappedAsyncClient)
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .materialsExecutor(materialsExecutor())
+                        .enableLegacyUnauthenticatedModes(_enableLegacyUnauthenticatedModes)
+                        .enableDelayedAuthentication(_enableDelayedAuthenticationMode)
+                        .build())
+                .build();
+    }
+
     /**
      * See {@link S3Client#createMultipartUpload(CreateMultipartUploadRequest)}
      * <p>
@@ -461,12 +1144,30 @@ public class S3EncryptionClient extends DelegatingS3Client {
     }
 
     /**
-     * Closes the wrapped clients.
+     * Closes the wrapped clients and the thread pools created by this client, if any.
      */
     @Override
     public void close() {
         _wrappedClient.close();
         _wrappedAsyncClient.close();
+        synchronized (this) {
+            if (_multipartExecutor != null) {
+                _multipartExecutor.shutdownNow();
+                _multipartExecutor = null;
+            }
+            if (_materialsExecutor != null) {
+                _materialsExecutor.shutdownNow();
+                _materialsExecutor = null;
+            }
+            if (_cbcDecryptionExecutor != null) {
+                _cbcDecryptionExecutor.shutdownNow();
+                _cbcDecryptionExecutor = null;
+            }
+            if (_streamExecutor != null) {
+                _streamExecutor.shutdownNow();
+                _streamExecutor = null;
+            }
+        }
     }
 
     // This is very similar to the S3EncryptionClient builder
@@ -477,6 +1178,8 @@ public class S3EncryptionClient extends DelegatingS3Client {
         private S3AsyncClient _wrappedAsyncClient;
 
         private MultipartUploadObjectPipeline _multipartPipeline;
+        private CopyEncryptedObjectPipeline _copyPipeline;
+        private DeleteEncryptedObjectsPipeline _deletePipeline;
         private CryptographicMaterialsManager _cryptoMaterialsManager;
         private Keyring _keyring;
         private SecretKey _aesKey;
@@ -485,9 +1188,21 @@ public class S3EncryptionClient extends DelegatingS3Client {
         private boolean _enableLegacyWrappingAlgorithms = false;
         private boolean _enableDelayedAuthenticationMode = false;
         private boolean _enableMultipartPutObject = false;
+        private Long _multipartPutObjectThreshold = null;
+        private CompressionCodec _compressionCodec = null;
+        private Duration _dataKeyCacheMaxAge = null;
+        private DecryptedBlockCache _decryptedBlockCache = null;
+        private EncryptedObjectCache _encryptedObjectCache = null;
+        private int _cbcDecryptionParallelism = 1;
+        private AlgorithmSuite _encryptionAlgorithm = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
         private Provider _cryptoProvider = null;
         private SecureRandom _secureRandom = new SecureRandom();
         private boolean _enableLegacyUnauthenticatedModes = false;
+        private boolean _enableInstructionFileDeletes = true;
+        private int _deleteMaxConcurrency = DeleteEncryptedObjectsPipeline.DEFAULT_MAX_CONCURRENCY;
+        private int _rewrapMaxConcurrency = RewrapDataKeyPipeline.DEFAULT_MAX_CONCURRENCY;
+        private int _shardSize = ShardedObjectPipeline.DEFAULT_SHARD_SIZE;
+        private int _shardMaxConcurrency = ShardedObjectPipeline.DEFAULT_MAX_CONCURRENCY;
 
         private Builder() {
         }
@@ -665,6 +1380,107 @@ public class S3EncryptionClient extends DelegatingS3Client {
             return this;
         }
 
+        /**
+         * Sets the algorithm suite used to encrypt content with putObject. Defaults to
+         * {@link AlgorithmSuite#ALG_AES_256_GCM_IV12_TAG16_NO_KDF}, which authenticates the
+         * object as a whole. {@link AlgorithmSuite#ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF}
+         * authenticates each 64 KiB segment separately, so plaintext is released as soon as its
+         * segment is verified, without buffering, and ranged gets are authenticated. Objects
+         * encrypted with the segmented suite can only be read by clients which support it.
+         * Multipart uploads only support the default suite, so building a client with
+         * another suite and multipart putObject fails, as do createMultipartUpload and
+         * content of unknown length larger than one part.
+         * @param encryptionAlgorithm the algorithm suite to encrypt with
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder encryptionAlgorithm(AlgorithmSuite encryptionAlgorithm) {
+            if (encryptionAlgorithm == null || encryptionAlgorithm.isLegacy()) {
+                throw new S3EncryptionClientException("Legacy algorithm suites cannot be used for encryption.");
+            }
+            this._encryptionAlgorithm = encryptionAlgorithm;
+            return this;
+        }
+
+        /**
+         * Sets a codec used to compress content before it is encrypted. Compressed objects
+         * are decompressed transparently after decryption, and objects compressed with
+         * Deflate can be read whether or not a codec is configured. Disabled by default.
+         * <p>
+         * The length of compressed ciphertext depends on the content of the plaintext.
+         * Do not enable compression for content which mixes secrets with data an attacker
+         * can influence. Multipart putObject does not compress, so it cannot be enabled
+         * together with compression.
+         * </p>
+         * @param compressionCodec the codec to compress with, or null to disable compression
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder compressionCodec(CompressionCodec compressionCodec) {
+            this._compressionCodec = compressionCodec;
+            return this;
+        }
+
+        /**
+         * Caches data keys obtained from the keyring for the given length of time, so that
+         * repeated requests do not each call the keyring (e.g. KMS). Decryption materials are
+         * cached for every algorithm suite. Encryption materials are only cached when
+         * {@link #encryptionAlgorithm(AlgorithmSuite)} is set to
+         * {@link AlgorithmSuite#ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256}, which derives a unique
+         * content key for each object from the cached data key. Disabled by default.
+         * @param dataKeyCacheMaxAge the length of time a data key may be reused for, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder dataKeyCacheMaxAge(Duration dataKeyCacheMaxAge) {
+            this._dataKeyCacheMaxAge = dataKeyCacheMaxAge;
+            return this;
+        }
+
+        /**
+         * Caches decrypted plaintext so that repeated ranged gets of the same object are
+         * served without fetching or decrypting it again. Cached plaintext is tied to the
+         * object's ETag, so it is not returned once the object is overwritten. Only
+         * uncompressed GCM objects whose metadata is stored with the object are cached.
+         * The cache may be shared between clients and reports its hit ratio. Disabled by default.
+         * @param decryptedBlockCache the cache to use, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between clients")
+        public Builder decryptedBlockCache(DecryptedBlockCache decryptedBlockCache) {
+            this._decryptedBlockCache = decryptedBlockCache;
+            return this;
+        }
+
+        /**
+         * Caches the ciphertext and metadata of recently read objects in memory and, if
+         * configured, on local disk. Each get of a cached object is sent conditionally on
+         * its ETag, and the cached ciphertext is decrypted when S3 reports it unchanged, so
+         * plaintext is never stored and a changed object is always fetched again. Only
+         * whole-object gets without their own conditions or customer-provided keys are
+         * cached. Disabled by default.
+         * @param encryptedObjectCache the cache to use, or null to disable caching
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between clients")
+        public Builder encryptedObjectCache(EncryptedObjectCache encryptedObjectCache) {
+            this._encryptedObjectCache = encryptedObjectCache;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to decrypt whole objects encrypted with the legacy
+         * AES-CBC algorithm, such as objects written by V1 clients. CBC decryption can run on
+         * several blocks at once, so larger values let reads and migrations of legacy objects
+         * use more than one core. Ranged gets are always decrypted on one thread. Defaults to 1.
+         * @param cbcDecryptionParallelism the number of threads used to decrypt CBC objects
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder cbcDecryptionParallelism(int cbcDecryptionParallelism) {
+            if (cbcDecryptionParallelism < 1) {
+                throw new S3EncryptionClientException("cbcDecryptionParallelism must be at least 1");
+            }
+            this._cbcDecryptionParallelism = cbcDecryptionParallelism;
+            return this;
+        }
+
         /**
          * When set to true, the putObject method will use multipart upload to perform
          * the upload. Disabled by default.
@@ -676,6 +1492,93 @@ public class S3EncryptionClient extends DelegatingS3Client {
             return this;
         }
 
+        /**
+         * Chooses the upload method of putObject per request: objects whose content length
+         * is known and at least the threshold use multipart upload, smaller objects use a
+         * single PutObject. Ignored when multipart putObject is enabled for all objects.
+         * Disabled by default.
+         * @param multipartPutObjectThreshold the smallest content length, in bytes, uploaded with multipart upload
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder multipartPutObjectThreshold(long multipartPutObjectThreshold) {
+            if (multipartPutObjectThreshold < 1) {
+                throw new S3EncryptionClientException("multipartPutObjectThreshold must be positive");
+            }
+            this._multipartPutObjectThreshold = multipartPutObjectThreshold;
+            return this;
+        }
+
+        /**
+         * When set to false, deleteObject and deleteObjects do not attempt to delete
+         * instruction files alongside the objects. The S3 Encryption Client only writes
+         * instruction files when rewrapping objects which already have one, so this saves
+         * a request per object when no object in the bucket uses an instruction file.
+         * Enabled by default.
+         * @param shouldEnableInstructionFileDeletes false to skip deleting instruction files
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder enableInstructionFileDeletes(boolean shouldEnableInstructionFileDeletes) {
+            this._enableInstructionFileDeletes = shouldEnableInstructionFileDeletes;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of DeleteObjects batches in flight at once when
+         * deleting more than 1000 keys or deleting by prefix. Defaults to 8.
+         * @param deleteMaxConcurrency the maximum number of concurrent batches
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder deleteMaxConcurrency(int deleteMaxConcurrency) {
+            if (deleteMaxConcurrency < 1) {
+                throw new S3EncryptionClientException("deleteMaxConcurrency must be at least 1");
+            }
+            this._deleteMaxConcurrency = deleteMaxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of objects rewrapped at once by
+         * rewrapObjectsWithPrefix. Defaults to 8.
+         * @param rewrapMaxConcurrency the maximum number of concurrent rewraps
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder rewrapMaxConcurrency(int rewrapMaxConcurrency) {
+            if (rewrapMaxConcurrency < 1) {
+                throw new S3EncryptionClientException("rewrapMaxConcurrency must be at least 1");
+            }
+            this._rewrapMaxConcurrency = rewrapMaxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the number of plaintext bytes in each shard written by putShardedObject.
+         * Defaults to 32 MiB, and may be at most 1 GiB. Shards larger than 64 MiB can only
+         * be read with a segmented algorithm suite or with delayed authentication enabled.
+         * @param shardSize the number of bytes in each shard
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder shardSize(int shardSize) {
+            if (shardSize < 1 || shardSize > ShardedObjectPipeline.MAX_SHARD_SIZE) {
+                throw new S3EncryptionClientException("shardSize must be between 1 and " + ShardedObjectPipeline.MAX_SHARD_SIZE);
+            }
+            this._shardSize = shardSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of shards uploaded or downloaded at once by
+         * putShardedObject and getShardedObject. Defaults to 8.
+         * @param shardMaxConcurrency the maximum number of concurrent shards
+         * @return Returns a reference to this object so that method calls can be chained together.
+         */
+        public Builder shardMaxConcurrency(int shardMaxConcurrency) {
+            if (shardMaxConcurrency < 1) {
+                throw new S3EncryptionClientException("shardMaxConcurrency must be at least 1");
+            }
+            this._shardMaxConcurrency = shardMaxConcurrency;
+            return this;
+        }
+
         /**
          * Allows the user to pass an instance of {@link Provider} to be used
          * for cryptographic operations. By default, the S3 Encryption Client
@@ -755,10 +1658,34 @@ public class S3EncryptionClient extends DelegatingS3Client {
                         .build();
             }
 
+            if (_dataKeyCacheMaxAge != null) {
+                _cryptoMaterialsManager = CachingCryptoMaterialsManager.builder()
+                        .cryptoMaterialsManager(_cryptoMaterialsManager)
+                        .maxAge(_dataKeyCacheMaxAge)
+                        .build();
+            }
+
+            if ((_enableMultipartPutObject || _multipartPutObjectThreshold != null)
+                    && (_compressionCodec != null || _encryptionAlgorithm != MultipartUploadObjectPipeline.MULTIPART_ALGORITHM_SUITE)) {
+                throw new S3EncryptionClientException("Multipart putObject only supports "
+                        + MultipartUploadObjectPipeline.MULTIPART_ALGORITHM_SUITE + " without compression.");
+            }
+
             _multipartPipeline = MultipartUploadObjectPipeline.builder()
                     .s3AsyncClient(_wrappedAsyncClient)
                     .cryptoMaterialsManager(_cryptoMaterialsManager)
                     .secureRandom(_secureRandom)
+                    .algorithmSuite(_encryptionAlgorithm)
+                    .build();
+
+            _copyPipeline = CopyEncryptedObjectPipeline.builder()
+                    .s3AsyncClient(_wrappedAsyncClient)
+                    .build();
+
+            _deletePipeline = DeleteEncryptedObjectsPipeline.builder()
+                    .s3AsyncClient(_wrappedAsyncClient)
+                    .deleteInstructionFiles(_enableInstructionFileDeletes)
+                    .maxConcurrency(_deleteMaxConcurrency)
                     .build();
 
             return new S3EncryptionClient(this);
@@ -22,7 +22,7 @@ public class S3EncryptionClientUtilities {
      * @param request a DeleteObjectsRequest
      * @return the list of ObjectIdentifiers for instruction files to delete
      */
-    static List<ObjectIdentifier> instructionFileKeysToDelete(final DeleteObjectsRequest request) {
+    public static List<ObjectIdentifier> instructionFileKeysToDelete(final DeleteObjectsRequest request) {
         return request.delete().objects().stream()
                 .map(o -> o.toBuilder().key(o.key() + INSTRUCTION_FILE_SUFFIX).build())
                 .collect(Collectors.toList());
@@ -23,4 +23,15 @@ class AlgorithmConstants {
      * The maximum number of bytes that can be securely encrypted per a single key using AES/CTR.
      */
     static final long CTR_MAX_CONTENT_LENGTH_BYTES = -1;
+
+    /**
+     * The number of plaintext bytes in each segment of segmented GCM content.
+     */
+    static final int GCM_SEGMENT_LENGTH_BYTES = 64 * 1024;
+
+    /**
+     * Segmented GCM derives each segment's nonce from a 32-bit segment index,
+     * so at most 2^32 segments can be encrypted under a single IV.
+     */
+    static final long SEGMENTED_GCM_MAX_CONTENT_LENGTH_BITS = (1L << 32) * GCM_SEGMENT_LENGTH_BYTES * 8;
 }
@@ -12,6 +12,38 @@ public enum AlgorithmSuite {
             96,
             128,
             AlgorithmConstants.GCM_MAX_CONTENT_LENGTH_BITS),
+    /**
+     * AES-GCM applied to fixed-size segments of the content, each with its own
+     * tag, so that plaintext can be authenticated and released one segment at a
+     * time and ranges of the object can be decrypted independently.
+     */
+    ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF(0x0073,
+            false,
+            "AES",
+            256,
+            "AES/GCM/NoPadding",
+            128,
+            96,
+            128,
+            AlgorithmConstants.SEGMENTED_GCM_MAX_CONTENT_LENGTH_BITS,
+            AlgorithmConstants.GCM_SEGMENT_LENGTH_BYTES,
+            null),
+    /**
+     * AES-GCM with a content key derived from the data key and a random per-object
+     * salt using HKDF-SHA256. Since every object has a unique content key, a single
+     * data key can safely be reused for many objects.
+     */
+    ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256(0x0074,
+            false,
+            "AES",
+            256,
+            "AES/GCM/NoPadding",
+            128,
+            96,
+            128,
+            AlgorithmConstants.GCM_MAX_CONTENT_LENGTH_BITS,
+            0,
+            "HmacSHA256"),
     ALG_AES_256_CTR_IV16_TAG16_NO_KDF(0x0071,
             true,
             "AES",
@@ -40,6 +72,8 @@ public enum AlgorithmSuite {
     private int _cipherIvLengthBits;
     private int _cipherTagLengthBits;
     private long _cipherMaxContentLengthBits;
+    private int _cipherSegmentLengthBytes;
+    private String _kdfHmacAlgorithm;
 
     AlgorithmSuite(int id,
                    boolean isLegacy,
@@ -50,6 +84,22 @@ public enum AlgorithmSuite {
                    int cipherIvLengthBits,
                    int cipherTagLengthBits,
                    long cipherMaxContentLengthBits
+    ) {
+        this(id, isLegacy, dataKeyAlgorithm, dataKeyLengthBits, cipherName, cipherBlockSizeBits,
+                cipherIvLengthBits, cipherTagLengthBits, cipherMaxContentLengthBits, 0, null);
+    }
+
+    AlgorithmSuite(int id,
+                   boolean isLegacy,
+                   String dataKeyAlgorithm,
+                   int dataKeyLengthBits,
+                   String cipherName,
+                   int cipherBlockSizeBits,
+                   int cipherIvLengthBits,
+                   int cipherTagLengthBits,
+                   long cipherMaxContentLengthBits,
+                   int cipherSegmentLengthBytes,
+                   String kdfHmacAlgorithm
     ) {
         this._id = id;
         this._isLegacy = isLegacy;
@@ -60,6 +110,8 @@ public enum AlgorithmSuite {
         this._cipherIvLengthBits = cipherIvLengthBits;
         this._cipherTagLengthBits = cipherTagLengthBits;
         this._cipherMaxContentLengthBits = cipherMaxContentLengthBits;
+        this._cipherSegmentLengthBytes = cipherSegmentLengthBytes;
+        this._kdfHmacAlgorithm = kdfHmacAlgorithm;
     }
 
     public int id() {
@@ -105,4 +157,56 @@ public enum AlgorithmSuite {
     public long cipherMaxContentLengthBytes() {
         return _cipherMaxContentLengthBits / 8;
     }
+
+    /**
+     * @return true if the content is encrypted in independently authenticated segments
+     */
+    public boolean isSegmented() {
+        return _cipherSegmentLengthBytes > 0;
+    }
+
+    /**
+     * @return the number of plaintext bytes in each segment, or 0 if the content is not segmented
+     */
+    public int cipherSegmentLengthBytes() {
+        return _cipherSegmentLengthBytes;
+    }
+
+    /**
+     * @return true if the content key is derived from the data key rather than being the data key itself
+     */
+    public boolean usesKdf() {
+        return _kdfHmacAlgorithm != null;
+    }
+
+    /**
+     * @return the HMAC algorithm used by HKDF to derive the content key, or null if no KDF is used
+     */
+    public String kdfHmacAlgorithm() {
+        return _kdfHmacAlgorithm;
+    }
+
+    /**
+     * Returns the length of the ciphertext produced from plaintext of the given length.
+     * Segmented suites add a tag to every segment, and always write at least one segment.
+     */
+    public long ciphertextLength(long plaintextLength) {
+        if (!isSegmented() || plaintextLength < 0) {
+            return plaintextLength + cipherTagLengthBytes();
+        }
+        long segments = Math.max(1, (plaintextLength + _cipherSegmentLengthBytes - 1) / _cipherSegmentLengthBytes);
+        return plaintextLength + segments * cipherTagLengthBytes();
+    }
+
+    /**
+     * Returns the length of the plaintext which encrypts to ciphertext of the given length.
+     */
+    public long plaintextLength(long ciphertextLength) {
+        if (!isSegmented()) {
+            return ciphertextLength - cipherTagLengthBytes();
+        }
+        final long ciphertextSegmentLength = _cipherSegmentLengthBytes + cipherTagLengthBytes();
+        long segments = Math.max(1, (ciphertextLength + ciphertextSegmentLength - 1) / ciphertextSegmentLength);
+        return ciphertextLength - segments * cipherTagLengthBytes();
+    }
 }
@@ -0,0 +1,68 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.algorithms;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compression codec which may be applied to content before it is encrypted.
+ * The codec's name is stored in the object metadata, and the codec with that
+ * name is used to decompress the content after it is decrypted.
+ * <p>
+ * Compressing content before encrypting it can reveal information about the
+ * plaintext through the ciphertext length. Do not enable compression for
+ * content which mixes secrets with data an attacker can influence.
+ * </p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return the name recorded in the object metadata. Must be unique among codecs.
+     */
+    String name();
+
+    /**
+     * @return a new compressor for a single object.
+     */
+    Compressor newCompressor();
+
+    /**
+     * @return a new decompressor for a single object.
+     */
+    Decompressor newDecompressor();
+
+    /**
+     * Compresses a single stream of content, one buffer at a time.
+     */
+    interface Compressor {
+        /**
+         * Compresses the remaining bytes of the buffer.
+         * @return the compressed bytes available so far, possibly empty
+         */
+        byte[] compress(ByteBuffer input);
+
+        /**
+         * Completes the stream and releases any resources held.
+         * @return the remaining compressed bytes
+         */
+        byte[] finish();
+    }
+
+    /**
+     * Decompresses a single stream of content, one buffer at a time.
+     */
+    interface Decompressor {
+        /**
+         * Decompresses the remaining bytes of the buffer.
+         * @return the decompressed bytes available so far, possibly empty
+         */
+        byte[] decompress(ByteBuffer input);
+
+        /**
+         * Completes the stream and releases any resources held. Implementations
+         * must throw if the compressed stream was truncated.
+         * @return the remaining decompressed bytes
+         */
+        byte[] finish();
+    }
+}
@@ -0,0 +1,109 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.algorithms;
+
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses content with the JDK's Deflate implementation.
+ */
+public class DeflateCompressionCodec implements CompressionCodec {
+
+    public static final String NAME = "deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int _level;
+
+    public DeflateCompressionCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level the compression level, from 0 to 9, or -1 for the default
+     */
+    public DeflateCompressionCodec(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new S3EncryptionClientException("Invalid Deflate compression level: " + level);
+        }
+        _level = level;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Compressor newCompressor() {
+        final Deflater deflater = new Deflater(_level);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        return new Compressor() {
+            @Override
+            public byte[] compress(ByteBuffer input) {
+                deflater.setInput(BinaryUtils.copyRemainingBytesFrom(input));
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                while (!deflater.needsInput()) {
+                    int length = deflater.deflate(buffer);
+                    output.write(buffer, 0, length);
+                }
+                return output.toByteArray();
+            }
+
+            @Override
+            public byte[] finish() {
+                deflater.finish();
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    output.write(buffer, 0, length);
+                }
+                deflater.end();
+                return output.toByteArray();
+            }
+        };
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+        final Inflater inflater = new Inflater();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        return new Decompressor() {
+            @Override
+            public byte[] decompress(ByteBuffer input) {
+                inflater.setInput(BinaryUtils.copyRemainingBytesFrom(input));
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try {
+                    while (!inflater.needsInput() && !inflater.finished()) {
+                        int length = inflater.inflate(buffer);
+                        if (length == 0 && inflater.needsDictionary()) {
+                            throw new S3EncryptionClientException("Deflate content requires a preset dictionary.");
+                        }
+                        output.write(buffer, 0, length);
+                    }
+                } catch (DataFormatException e) {
+                    inflater.end();
+                    throw new S3EncryptionClientException("Unable to decompress content.", e);
+                }
+                return output.toByteArray();
+            }
+
+            @Override
+            public byte[] finish() {
+                boolean finished = inflater.finished();
+                inflater.end();
+                if (!finished) {
+                    throw new S3EncryptionClientException("Compressed content ended unexpectedly.");
+                }
+                return new byte[0];
+            }
+        };
+    }
+}
@@ -7,6 +7,7 @@ import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.encryption.s3.legacy.internal.RangedGetUtils;
 import software.amazon.encryption.s3.materials.CryptographicMaterials;
 
+import javax.crypto.Cipher;
 import java.nio.ByteBuffer;
 
 /**
@@ -22,6 +23,7 @@ public class CipherPublisher implements SdkPublisher<ByteBuffer> {
     private final String contentRange;
     private final int cipherTagLengthBits;
     private final byte[] iv;
+    private final Cipher cipher;
 
     public CipherPublisher(final SdkPublisher<ByteBuffer> wrappedPublisher, final Long contentLength, long[] range,
                            String contentRange, int cipherTagLengthBits, final CryptographicMaterials materials, final byte[] iv) {
@@ -32,6 +34,23 @@ public class CipherPublisher implements SdkPublisher<ByteBuffer> {
         this.contentRange = contentRange;
         this.cipherTagLengthBits = cipherTagLengthBits;
         this.iv = iv;
+        this.cipher = null;
+    }
+
+    /**
+     * Creates a publisher which decrypts with a cipher that is already initialized,
+     * for ranges which need a different cipher than the one the materials create.
+     */
+    CipherPublisher(final SdkPublisher<ByteBuffer> wrappedPublisher, final Long contentLength, long[] range,
+                    String contentRange, int cipherTagLengthBits, final Cipher cipher) {
+        this.wrappedPublisher = wrappedPublisher;
+        this.materials = null;
+        this.contentLength = contentLength;
+        this.range = range;
+        this.contentRange = contentRange;
+        this.cipherTagLengthBits = cipherTagLengthBits;
+        this.iv = null;
+        this.cipher = cipher;
     }
 
     @Override
@@ -39,6 +58,8 @@ public class CipherPublisher implements SdkPublisher<ByteBuffer> {
         // Wrap the (customer) subscriber in a CipherSubscriber, then subscribe it
         // to the wrapped (ciphertext) publisher
         Subscriber<? super ByteBuffer> wrappedSubscriber = RangedGetUtils.adjustToDesiredRange(subscriber, range, contentRange, cipherTagLengthBits);
-        wrappedPublisher.subscribe(new CipherSubscriber(wrappedSubscriber, contentLength, materials, iv));
+        wrappedPublisher.subscribe(cipher == null
+                ? new CipherSubscriber(wrappedSubscriber, contentLength, materials, iv)
+                : new CipherSubscriber(wrappedSubscriber, contentLength, cipher));
     }
 }
@@ -33,6 +33,15 @@ public class CipherSubscriber implements Subscriber<ByteBuffer> {
         this.isLastPart = isLastPart;
     }
 
+    CipherSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, Long contentLength, Cipher cipher) {
+        // The cipher is already initialized, so there are no materials or IV to keep
+        this.wrappedSubscriber = wrappedSubscriber;
+        this.contentLength = contentLength;
+        this.materials = null;
+        this.cipher = cipher;
+        this.isLastPart = true;
+    }
+
     CipherSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, Long contentLength, CryptographicMaterials materials, byte[] iv) {
         // When no partType is specified, it's not multipart, so there's one part, which must be the last
         this(wrappedSubscriber, contentLength, materials, iv, true);
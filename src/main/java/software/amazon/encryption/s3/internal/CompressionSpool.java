@@ -0,0 +1,147 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compresses a request body ahead of encryption. The compressed length is not
+ * known until the whole body has been read, but it is needed before the
+ * ciphertext can be sent, so the compressed content is held in memory up to
+ * a threshold and spilled to a temporary file beyond it.
+ */
+class CompressionSpool implements Subscriber<ByteBuffer> {
+
+    static final int DEFAULT_MEMORY_THRESHOLD = 16 * 1024 * 1024;
+
+    private final CompressionCodec.Compressor _compressor;
+    private final int _memoryThreshold;
+    private final CompletableFuture<CompressionSpool> _future = new CompletableFuture<>();
+
+    private ByteArrayOutputStream _memory = new ByteArrayOutputStream();
+    private Path _file;
+    private OutputStream _fileStream;
+    private long _length;
+    private Subscription _subscription;
+
+    private CompressionSpool(CompressionCodec codec, int memoryThreshold) {
+        _compressor = codec.newCompressor();
+        _memoryThreshold = memoryThreshold;
+    }
+
+    /**
+     * Compresses the given body.
+     * @return a future which completes once the body has been compressed entirely
+     */
+    static CompletableFuture<CompressionSpool> compress(AsyncRequestBody requestBody, CompressionCodec codec,
+                                                       int memoryThreshold) {
+        CompressionSpool spool = new CompressionSpool(codec, memoryThreshold);
+        requestBody.subscribe(spool);
+        return spool._future;
+    }
+
+    long length() {
+        return _length;
+    }
+
+    /**
+     * @return a request body of known length over the compressed content
+     */
+    AsyncRequestBody requestBody() {
+        if (_file != null) {
+            return AsyncRequestBody.fromFile(_file);
+        }
+        return AsyncRequestBody.fromBytes(_memory.toByteArray());
+    }
+
+    /**
+     * Removes the temporary file, if one was needed.
+     */
+    void release() {
+        _memory = null;
+        if (_file != null) {
+            try {
+                Files.deleteIfExists(_file);
+            } catch (IOException ignored) {
+                // Best effort, the file is also deleted on exit
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        _subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        try {
+            write(_compressor.compress(byteBuffer));
+        } catch (IOException | RuntimeException e) {
+            _subscription.cancel();
+            fail(e);
+            return;
+        }
+        _subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        fail(t);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            write(_compressor.finish());
+            if (_fileStream != null) {
+                _fileStream.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+        _future.complete(this);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        _length += bytes.length;
+        if (_fileStream == null && _memory.size() + bytes.length > _memoryThreshold) {
+            _file = Files.createTempFile("s3ec-compressed-", ".tmp");
+            _file.toFile().deleteOnExit();
+            _fileStream = Files.newOutputStream(_file);
+            _memory.writeTo(_fileStream);
+            _memory = new ByteArrayOutputStream();
+        }
+        if (_fileStream != null) {
+            _fileStream.write(bytes);
+        } else {
+            _memory.write(bytes);
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (_fileStream != null) {
+            try {
+                _fileStream.close();
+            } catch (IOException ignored) {
+                // The original failure is reported instead
+            }
+        }
+        release();
+        _future.completeExceptionally(new S3EncryptionClientException("Unable to compress content.", t));
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for running many asynchronous S3 requests without
+ * flooding the wrapped client.
+ */
+final class ConcurrencyUtils {
+
+    private ConcurrencyUtils() {
+    }
+
+    /**
+     * Runs the given tasks with at most maxConcurrency in flight at once.
+     * Results are returned in the order of the tasks. The returned future
+     * completes exceptionally as soon as any task fails, or any supplier
+     * throws, and no further tasks are started; tasks already in flight
+     * are left to finish.
+     */
+    static <T> CompletableFuture<List<T>> runBounded(List<Supplier<CompletableFuture<T>>> tasks, int maxConcurrency) {
+        final BoundedRun<T> run = new BoundedRun<>(tasks);
+        if (tasks.isEmpty()) {
+            run.result.complete(run.results);
+            return run.result;
+        }
+        final int workers = Math.min(maxConcurrency, tasks.size());
+        for (int i = 0; i < workers; i++) {
+            run.runLane();
+        }
+        return run.result;
+    }
+
+    private static final class BoundedRun<T> {
+        private final List<Supplier<CompletableFuture<T>>> tasks;
+        private final List<T> results;
+        private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        private final AtomicInteger next = new AtomicInteger(0);
+        private final AtomicInteger remaining;
+
+        private BoundedRun(List<Supplier<CompletableFuture<T>>> tasks) {
+            this.tasks = tasks;
+            this.results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+            this.remaining = new AtomicInteger(tasks.size());
+        }
+
+        /**
+         * Starts tasks one after another until one is still in flight, which
+         * resumes the lane when it completes. Tasks which complete immediately
+         * are handled in the loop so the stack does not grow with each task.
+         */
+        private void runLane() {
+            while (!result.isDone()) {
+                final int index = next.getAndIncrement();
+                if (index >= tasks.size()) {
+                    return;
+                }
+                final CompletableFuture<T> task;
+                try {
+                    task = tasks.get(index).get();
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                if (!task.isDone() || task.isCompletedExceptionally()) {
+                    task.whenComplete((value, error) -> {
+                        if (record(index, value, error)) {
+                            runLane();
+                        }
+                    });
+                    return;
+                }
+                if (!record(index, task.getNow(null), null)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean record(int index, T value, Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return false;
+            }
+            synchronized (results) {
+                results.set(index, value);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(results);
+            }
+            return true;
+        }
+    }
+}
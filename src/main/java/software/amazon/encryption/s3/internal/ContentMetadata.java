@@ -18,9 +18,11 @@ public class ContentMetadata {
     private final Map<String, String> _encryptedDataKeyContext;
 
     private final byte[] _contentIv;
+    private final byte[] _contentKdfSalt;
     private final String _contentCipher;
     private final String _contentCipherTagLength;
     private final String _contentRange;
+    private final String _contentCompression;
 
     private ContentMetadata(Builder builder) {
         _algorithmSuite = builder._algorithmSuite;
@@ -30,9 +32,11 @@ public class ContentMetadata {
         _encryptedDataKeyContext = builder._encryptedDataKeyContext;
 
         _contentIv = builder._contentIv;
+        _contentKdfSalt = builder._contentKdfSalt;
         _contentCipher = builder._contentCipher;
         _contentCipherTagLength = builder._contentCipherTagLength;
         _contentRange = builder._contentRange;
+        _contentCompression = builder._contentCompression;
     }
 
     public static Builder builder() {
@@ -68,6 +72,16 @@ public class ContentMetadata {
         return _contentIv.clone();
     }
 
+    /**
+     * @return the salt the content key was derived with, or null if the algorithm suite does not use a KDF
+     */
+    public byte[] contentKdfSalt() {
+        if (_contentKdfSalt == null) {
+            return null;
+        }
+        return _contentKdfSalt.clone();
+    }
+
     public String contentCipher() {
         return _contentCipher;
     }
@@ -80,6 +94,13 @@ public class ContentMetadata {
         return _contentRange;
     }
 
+    /**
+     * @return the name of the codec the plaintext was compressed with, or null if it was not compressed
+     */
+    public String contentCompression() {
+        return _contentCompression;
+    }
+
     public static class Builder {
         private AlgorithmSuite _algorithmSuite;
 
@@ -88,9 +109,11 @@ public class ContentMetadata {
         private Map<String, String> _encryptedDataKeyContext;
 
         private byte[] _contentIv;
+        private byte[] _contentKdfSalt;
         private String _contentCipher;
         private String _contentCipherTagLength;
         public String _contentRange;
+        private String _contentCompression;
 
         private Builder() {
 
@@ -121,11 +144,21 @@ public class ContentMetadata {
             return this;
         }
 
+        public Builder contentKdfSalt(byte[] contentKdfSalt) {
+            _contentKdfSalt = contentKdfSalt == null ? null : contentKdfSalt.clone();
+            return this;
+        }
+
         public Builder contentRange(String contentRange) {
             _contentRange = contentRange;
             return this;
         }
 
+        public Builder contentCompression(String contentCompression) {
+            _contentCompression = contentCompression;
+            return this;
+        }
+
         public ContentMetadata build() {
             return new ContentMetadata(this);
         }
@@ -30,6 +30,11 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
     private static final Base64.Encoder ENCODER = Base64.getEncoder();
     private static final Base64.Decoder DECODER = Base64.getDecoder();
 
+    // Segmented content uses the same cipher as whole-object GCM, but needs its own
+    // name so that clients which cannot read it fail instead of misreading it
+    static final String SEGMENTED_GCM_CONTENT_CIPHER = "AES/GCM/NoPadding/Segmented";
+    static final String HKDF_GCM_CONTENT_CIPHER = "AES/GCM/NoPadding/HKDF-SHA256";
+
     public static final ContentMetadataDecodingStrategy INSTRUCTION_FILE = new ContentMetadataDecodingStrategy() {
 
         @Override
@@ -56,7 +61,7 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
             for (Map.Entry<String, JsonNode> entry : objectNode.asObject().entrySet()) {
                 metadata.put(entry.getKey(), entry.getValue().asString());
             }
-            return ContentMetadataStrategy.readFromMap(metadata, response);
+            return ContentMetadataStrategy.readFromMap(metadata, response.contentRange());
         }
     };
 
@@ -68,7 +73,14 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
             EncryptedDataKey edk = materials.encryptedDataKeys().get(0);
             metadata.put(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2, ENCODER.encodeToString(edk.encryptedDatakey()));
             metadata.put(MetadataKeyConstants.CONTENT_IV, ENCODER.encodeToString(iv));
-            metadata.put(MetadataKeyConstants.CONTENT_CIPHER, materials.algorithmSuite().cipherName());
+            if (materials.algorithmSuite().isSegmented()) {
+                metadata.put(MetadataKeyConstants.CONTENT_CIPHER, SEGMENTED_GCM_CONTENT_CIPHER);
+                metadata.put(MetadataKeyConstants.CONTENT_SEGMENT_LENGTH, Integer.toString(materials.algorithmSuite().cipherSegmentLengthBytes()));
+            } else if (materials.algorithmSuite().usesKdf()) {
+                metadata.put(MetadataKeyConstants.CONTENT_CIPHER, HKDF_GCM_CONTENT_CIPHER);
+            } else {
+                metadata.put(MetadataKeyConstants.CONTENT_CIPHER, materials.algorithmSuite().cipherName());
+            }
             metadata.put(MetadataKeyConstants.CONTENT_CIPHER_TAG_LENGTH, Integer.toString(materials.algorithmSuite().cipherTagLengthBits()));
             metadata.put(MetadataKeyConstants.ENCRYPTED_DATA_KEY_ALGORITHM, new String(edk.keyProviderInfo(), StandardCharsets.UTF_8));
 
@@ -89,20 +101,33 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
 
         @Override
         public ContentMetadata decodeMetadata(GetObjectRequest request, GetObjectResponse response) {
-            return ContentMetadataStrategy.readFromMap(response.metadata(), response);
+            return ContentMetadataStrategy.readFromMap(response.metadata(), response.contentRange());
         }
     };
 
-    private static ContentMetadata readFromMap(Map<String, String> metadata, GetObjectResponse response) {
+    static ContentMetadata readFromMap(Map<String, String> metadata, String contentRange) {
         // Get algorithm suite
         final String contentEncryptionAlgorithm = metadata.get(MetadataKeyConstants.CONTENT_CIPHER);
         AlgorithmSuite algorithmSuite;
-        String contentRange = response.contentRange();
         if (contentEncryptionAlgorithm == null
                 || contentEncryptionAlgorithm.equals(AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF.cipherName())) {
             algorithmSuite = AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF;
         } else if (contentEncryptionAlgorithm.equals(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherName())) {
             algorithmSuite = (contentRange == null ) ? AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF : AlgorithmSuite.ALG_AES_256_CTR_IV16_TAG16_NO_KDF;
+        } else if (contentEncryptionAlgorithm.equals(SEGMENTED_GCM_CONTENT_CIPHER)) {
+            // Segments are authenticated individually, so ranges are decrypted with GCM as well
+            algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF;
+            final String segmentLength = metadata.get(MetadataKeyConstants.CONTENT_SEGMENT_LENGTH);
+            if (segmentLength == null || Integer.parseInt(segmentLength) != algorithmSuite.cipherSegmentLengthBytes()) {
+                throw new S3EncryptionClientException("Expected segment length (bytes) of: "
+                        + algorithmSuite.cipherSegmentLengthBytes()
+                        + ", got: " + segmentLength);
+            }
+        } else if (contentEncryptionAlgorithm.equals(HKDF_GCM_CONTENT_CIPHER)) {
+            if (contentRange != null) {
+                throw new S3EncryptionClientException("Ranged Get is not supported for " + contentEncryptionAlgorithm);
+            }
+            algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256;
         } else {
             throw new S3EncryptionClientException(
                     "Unknown content encryption algorithm: " + contentEncryptionAlgorithm);
@@ -159,6 +184,8 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
                 }
                 break;
             case ALG_AES_256_GCM_IV12_TAG16_NO_KDF:
+            case ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF:
+            case ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256:
             case ALG_AES_256_CTR_IV16_TAG16_NO_KDF:
                 // Check tag length
                 final int tagLength = Integer.parseInt(metadata.get(MetadataKeyConstants.CONTENT_CIPHER_TAG_LENGTH));
@@ -202,22 +229,31 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
         // Get content iv
         byte[] iv = DECODER.decode(metadata.get(MetadataKeyConstants.CONTENT_IV));
 
+        // Get the salt the content key was derived with
+        byte[] kdfSalt = null;
+        if (algorithmSuite.usesKdf()) {
+            final String encodedSalt = metadata.get(MetadataKeyConstants.CONTENT_KDF_SALT);
+            if (encodedSalt == null) {
+                throw new S3EncryptionClientException("Malformed object metadata! Could not find the content key salt.");
+            }
+            kdfSalt = DECODER.decode(encodedSalt);
+        }
+
         return ContentMetadata.builder()
                 .algorithmSuite(algorithmSuite)
                 .encryptedDataKey(edk)
                 .encryptedDataKeyContext(encryptionContext)
                 .contentIv(iv)
+                .contentKdfSalt(kdfSalt)
                 .contentRange(contentRange)
+                .contentCompression(metadata.get(MetadataKeyConstants.CONTENT_COMPRESSION))
                 .build();
     }
 
     public static ContentMetadata decode(GetObjectRequest request, GetObjectResponse response) {
         Map<String, String> metadata = response.metadata();
         ContentMetadataDecodingStrategy strategy;
-        if (metadata != null
-                && metadata.containsKey(MetadataKeyConstants.CONTENT_IV)
-                && (metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V1)
-                || metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2))) {
+        if (containsEncryptionMetadata(metadata)) {
             strategy = OBJECT_METADATA;
         } else {
             strategy = INSTRUCTION_FILE;
@@ -225,4 +261,45 @@ public abstract class ContentMetadataStrategy implements ContentMetadataEncoding
 
         return strategy.decodeMetadata(request, response);
     }
+
+    /**
+     * Returns true if the given object metadata describes segmented content.
+     */
+    static boolean isSegmented(Map<String, String> metadata) {
+        return metadata != null && SEGMENTED_GCM_CONTENT_CIPHER.equals(metadata.get(MetadataKeyConstants.CONTENT_CIPHER));
+    }
+
+    /**
+     * Returns true if the given object metadata holds the encrypted data key
+     * and IV, i.e. the object does not use an instruction file.
+     */
+    static boolean containsEncryptionMetadata(Map<String, String> metadata) {
+        return metadata != null
+                && metadata.containsKey(MetadataKeyConstants.CONTENT_IV)
+                && (metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V1)
+                || metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2));
+    }
+
+    static Map<String, String> parseInstructionFile(byte[] instruction) {
+        Map<String, String> metadata = new HashMap<>();
+        JsonNodeParser parser = JsonNodeParser.create();
+        JsonNode objectNode = parser.parse(instruction);
+        for (Map.Entry<String, JsonNode> entry : objectNode.asObject().entrySet()) {
+            metadata.put(entry.getKey(), entry.getValue().asString());
+        }
+        return metadata;
+    }
+
+    static byte[] writeInstructionFile(Map<String, String> metadata) {
+        try (JsonWriter jsonWriter = JsonWriter.create()) {
+            jsonWriter.writeStartObject();
+            for (Entry<String, String> entry : metadata.entrySet()) {
+                jsonWriter.writeFieldName(entry.getKey()).writeValue(entry.getValue());
+            }
+            jsonWriter.writeEndObject();
+            return jsonWriter.getBytes();
+        } catch (JsonGenerationException e) {
+            throw new S3EncryptionClientException("Cannot serialize instruction file to JSON.", e);
+        }
+    }
 }
@@ -0,0 +1,354 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.TaggingDirective;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
+import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+
+/**
+ * Copies encrypted objects entirely server-side. The ciphertext is copied
+ * as-is, so no data passes through the client and no cryptographic
+ * operations are needed. Instruction files are copied after their
+ * object, and objects larger than a single CopyObject allows are copied
+ * with parallel UploadPartCopy requests.
+ */
+public class CopyEncryptedObjectPipeline {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    // CopyObject cannot be used on objects larger than 5 GiB
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final long DEFAULT_PART_SIZE = 512L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private static final List<String> ENCRYPTION_METADATA_KEYS = Arrays.asList(
+            MetadataKeyConstants.ENCRYPTED_DATA_KEY_V1,
+            MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2,
+            MetadataKeyConstants.ENCRYPTED_DATA_KEY_ALGORITHM,
+            MetadataKeyConstants.ENCRYPTED_DATA_KEY_CONTEXT,
+            MetadataKeyConstants.CONTENT_IV,
+            MetadataKeyConstants.CONTENT_CIPHER,
+            MetadataKeyConstants.CONTENT_CIPHER_TAG_LENGTH,
+            MetadataKeyConstants.CONTENT_SEGMENT_LENGTH,
+            MetadataKeyConstants.CONTENT_KDF_SALT,
+            MetadataKeyConstants.CONTENT_COMPRESSION);
+
+    private final S3AsyncClient _s3AsyncClient;
+    private final int _maxConcurrency;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private CopyEncryptedObjectPipeline(Builder builder) {
+        this._s3AsyncClient = builder._s3AsyncClient;
+        this._maxConcurrency = builder._maxConcurrency;
+    }
+
+    /**
+     * Copies an encrypted object along with its instruction file, if it has one.
+     * Objects without encryption metadata and without an instruction file, such as
+     * plaintext objects, are copied as they are.
+     * @param copyObjectRequest the request instance
+     * @return a future containing the response of the object copy
+     */
+    public CompletableFuture<CopyObjectResponse> copyObject(CopyObjectRequest copyObjectRequest) {
+        final HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(copyObjectRequest.sourceBucket())
+                .key(copyObjectRequest.sourceKey())
+                .versionId(copyObjectRequest.sourceVersionId())
+                .expectedBucketOwner(copyObjectRequest.expectedSourceBucketOwner())
+                .sseCustomerAlgorithm(copyObjectRequest.copySourceSSECustomerAlgorithm())
+                .sseCustomerKey(copyObjectRequest.copySourceSSECustomerKey())
+                .sseCustomerKeyMD5(copyObjectRequest.copySourceSSECustomerKeyMD5())
+                .requestPayer(copyObjectRequest.requestPayerAsString())
+                .build();
+        return _s3AsyncClient.headObject(headRequest)
+                .thenCompose(headResponse -> copyObject(copyObjectRequest, headResponse));
+    }
+
+    /**
+     * Copies an encrypted object whose source has already been read with HeadObject.
+     */
+    CompletableFuture<CopyObjectResponse> copyObject(CopyObjectRequest copyObjectRequest, HeadObjectResponse headResponse) {
+        final boolean usesObjectMetadata = ContentMetadataStrategy.containsEncryptionMetadata(headResponse.metadata());
+        final CopyObjectRequest.Builder requestBuilder = copyObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR);
+        if (copyObjectRequest.metadataDirective() == MetadataDirective.REPLACE) {
+            requestBuilder.metadata(metadataToWrite(copyObjectRequest, headResponse));
+        }
+        final CopyObjectRequest actualRequest = requestBuilder.build();
+
+        final CompletableFuture<CopyObjectResponse> response;
+        if (headResponse.contentLength() != null && headResponse.contentLength() > MAX_COPY_OBJECT_SIZE) {
+            response = multipartCopy(actualRequest, headResponse);
+        } else {
+            response = _s3AsyncClient.copyObject(actualRequest);
+        }
+        if (usesObjectMetadata) {
+            return response;
+        }
+
+        // Version ids belong to a single key, so the instruction file's own latest version
+        // is copied. It is copied once the object has been, so that a failure can remove
+        // the copied object rather than leave one without its instruction file.
+        final CopyObjectRequest instructionRequest = CopyObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .sourceBucket(copyObjectRequest.sourceBucket())
+                .sourceKey(copyObjectRequest.sourceKey() + INSTRUCTION_FILE_SUFFIX)
+                .destinationBucket(copyObjectRequest.destinationBucket())
+                .destinationKey(copyObjectRequest.destinationKey() + INSTRUCTION_FILE_SUFFIX)
+                .expectedBucketOwner(copyObjectRequest.expectedBucketOwner())
+                .expectedSourceBucketOwner(copyObjectRequest.expectedSourceBucketOwner())
+                .requestPayer(copyObjectRequest.requestPayerAsString())
+                .build();
+        return response.thenCompose(objectResponse -> _s3AsyncClient.copyObject(instructionRequest)
+                .handle((instruction, t) -> {
+                    if (t == null) {
+                        return CompletableFuture.completedFuture(objectResponse);
+                    }
+                    final Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                    if (isMissing(cause)) {
+                        // Not an encrypted object
+                        return CompletableFuture.completedFuture(objectResponse);
+                    }
+                    return deleteCopy(copyObjectRequest, objectResponse, cause);
+                })
+                .thenCompose(Function.identity()));
+    }
+
+    private static boolean isMissing(Throwable t) {
+        return t instanceof NoSuchKeyException
+                || (t instanceof S3Exception && ((S3Exception) t).statusCode() == 404);
+    }
+
+    /**
+     * Deletes the copied object, which cannot be decrypted without its instruction
+     * file, and then fails with the original error.
+     */
+    private CompletableFuture<CopyObjectResponse> deleteCopy(CopyObjectRequest request, CopyObjectResponse copied,
+                                                             Throwable cause) {
+        return _s3AsyncClient.deleteObject(builder -> builder
+                        .overrideConfiguration(API_NAME_INTERCEPTOR)
+                        .bucket(request.destinationBucket())
+                        .key(request.destinationKey())
+                        .versionId(copied.versionId())
+                        .expectedBucketOwner(request.expectedBucketOwner())
+                        .requestPayer(request.requestPayerAsString()))
+                .handle((ignored, t) -> {
+                    if (t != null) {
+                        cause.addSuppressed(t instanceof CompletionException ? t.getCause() : t);
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Returns the metadata the copy should have. When the metadata is replaced, the
+     * encryption metadata of the source must be carried over or the copy could not
+     * be decrypted.
+     */
+    private static Map<String, String> metadataToWrite(CopyObjectRequest request, HeadObjectResponse headResponse) {
+        if (request.metadataDirective() != MetadataDirective.REPLACE) {
+            return headResponse.metadata();
+        }
+        if (ContentMetadataStrategy.containsEncryptionMetadata(request.metadata())) {
+            // The caller is writing new encryption metadata, e.g. when rewrapping
+            return request.metadata();
+        }
+        final Map<String, String> metadata = new HashMap<>(request.metadata());
+        for (String key : ENCRYPTION_METADATA_KEYS) {
+            String value = headResponse.metadata().get(key);
+            if (value != null) {
+                metadata.putIfAbsent(key, value);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Returns the tagging the copy should have. CopyObject copies the tags of the
+     * source unless they are replaced, so a multipart copy has to read them.
+     */
+    private CompletableFuture<String> taggingToWrite(CopyObjectRequest request) {
+        if (request.taggingDirective() == TaggingDirective.REPLACE) {
+            return CompletableFuture.completedFuture(request.tagging());
+        }
+        return _s3AsyncClient.getObjectTagging(builder -> builder
+                        .overrideConfiguration(API_NAME_INTERCEPTOR)
+                        .bucket(request.sourceBucket())
+                        .key(request.sourceKey())
+                        .versionId(request.sourceVersionId())
+                        .expectedBucketOwner(request.expectedSourceBucketOwner())
+                        .requestPayer(request.requestPayerAsString()))
+                .thenApply(taggingResponse -> {
+                    if (taggingResponse.tagSet().isEmpty()) {
+                        return null;
+                    }
+                    return taggingResponse.tagSet().stream()
+                            .map(tag -> SdkHttpUtils.urlEncode(tag.key()) + "=" + SdkHttpUtils.urlEncode(tag.value()))
+                            .collect(Collectors.joining("&"));
+                });
+    }
+
+    private CompletableFuture<CopyObjectResponse> multipartCopy(CopyObjectRequest request, HeadObjectResponse headResponse) {
+        return taggingToWrite(request).thenCompose(tagging -> multipartCopy(request, headResponse, tagging));
+    }
+
+    private CompletableFuture<CopyObjectResponse> multipartCopy(CopyObjectRequest request, HeadObjectResponse headResponse,
+                                                                String tagging) {
+        final boolean replaceMetadata = request.metadataDirective() == MetadataDirective.REPLACE;
+        final CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(request.destinationBucket())
+                .key(request.destinationKey())
+                .expectedBucketOwner(request.expectedBucketOwner())
+                .metadata(metadataToWrite(request, headResponse))
+                .acl(request.acl())
+                .cacheControl(replaceMetadata ? request.cacheControl() : headResponse.cacheControl())
+                .contentDisposition(replaceMetadata ? request.contentDisposition() : headResponse.contentDisposition())
+                .contentEncoding(replaceMetadata ? request.contentEncoding() : headResponse.contentEncoding())
+                .contentLanguage(replaceMetadata ? request.contentLanguage() : headResponse.contentLanguage())
+                .contentType(replaceMetadata ? request.contentType() : headResponse.contentType())
+                .expires(replaceMetadata ? request.expires() : headResponse.expires())
+                .storageClass(request.storageClassAsString())
+                .serverSideEncryption(request.serverSideEncryptionAsString())
+                .ssekmsKeyId(request.ssekmsKeyId())
+                .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                .sseCustomerKey(request.sseCustomerKey())
+                .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                .requestPayer(request.requestPayerAsString())
+                .tagging(tagging)
+                .build();
+
+        return _s3AsyncClient.createMultipartUpload(createRequest).thenCompose(createResponse -> {
+            final String uploadId = createResponse.uploadId();
+            final long contentLength = headResponse.contentLength();
+            final long partSize = Math.max(DEFAULT_PART_SIZE, (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+
+            final List<Supplier<CompletableFuture<CompletedPart>>> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long start = 0; start < contentLength; start += partSize, partNumber++) {
+                final int thisPartNumber = partNumber;
+                final String range = "bytes=" + start + "-" + (Math.min(start + partSize, contentLength) - 1);
+                parts.add(() -> _s3AsyncClient.uploadPartCopy(UploadPartCopyRequest.builder()
+                                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                                .sourceBucket(request.sourceBucket())
+                                .sourceKey(request.sourceKey())
+                                .sourceVersionId(request.sourceVersionId())
+                                .copySourceIfMatch(headResponse.eTag())
+                                .copySourceRange(range)
+                                .destinationBucket(request.destinationBucket())
+                                .destinationKey(request.destinationKey())
+                                .expectedBucketOwner(request.expectedBucketOwner())
+                                .expectedSourceBucketOwner(request.expectedSourceBucketOwner())
+                                .copySourceSSECustomerAlgorithm(request.copySourceSSECustomerAlgorithm())
+                                .copySourceSSECustomerKey(request.copySourceSSECustomerKey())
+                                .copySourceSSECustomerKeyMD5(request.copySourceSSECustomerKeyMD5())
+                                .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                                .sseCustomerKey(request.sseCustomerKey())
+                                .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                                .requestPayer(request.requestPayerAsString())
+                                .uploadId(uploadId)
+                                .partNumber(thisPartNumber)
+                                .build())
+                        .thenApply(partResponse -> CompletedPart.builder()
+                                .partNumber(thisPartNumber)
+                                .eTag(partResponse.copyPartResult().eTag())
+                                .build()));
+            }
+
+            return ConcurrencyUtils.runBounded(parts, _maxConcurrency)
+                    .thenCompose(completedParts -> _s3AsyncClient.completeMultipartUpload(builder -> builder
+                            .overrideConfiguration(API_NAME_INTERCEPTOR)
+                            .bucket(request.destinationBucket())
+                            .key(request.destinationKey())
+                            .expectedBucketOwner(request.expectedBucketOwner())
+                            .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                            .sseCustomerKey(request.sseCustomerKey())
+                            .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                            .requestPayer(request.requestPayerAsString())
+                            .uploadId(uploadId)
+                            .multipartUpload(upload -> upload.parts(completedParts))))
+                    .thenApply(completeResponse -> CopyObjectResponse.builder()
+                            .copyObjectResult(CopyObjectResult.builder()
+                                    .eTag(completeResponse.eTag())
+                                    .build())
+                            .versionId(completeResponse.versionId())
+                            .expiration(completeResponse.expiration())
+                            .serverSideEncryption(completeResponse.serverSideEncryption())
+                            .ssekmsKeyId(completeResponse.ssekmsKeyId())
+                            .build())
+                    .whenComplete((response, t) -> {
+                        if (t != null) {
+                            _s3AsyncClient.abortMultipartUpload(builder -> builder
+                                    .overrideConfiguration(API_NAME_INTERCEPTOR)
+                                    .bucket(request.destinationBucket())
+                                    .key(request.destinationKey())
+                                    .expectedBucketOwner(request.expectedBucketOwner())
+                                    .requestPayer(request.requestPayerAsString())
+                                    .uploadId(uploadId));
+                        }
+                    });
+        });
+    }
+
+    public static class Builder {
+        private S3AsyncClient _s3AsyncClient;
+        private int _maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private Builder() {
+        }
+
+        /**
+         * Note that this does NOT create a defensive clone of S3Client. Any modifications made to the wrapped
+         * S3Client will be reflected in this Builder.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "Pass mutability into wrapping client")
+        public Builder s3AsyncClient(S3AsyncClient s3AsyncClient) {
+            this._s3AsyncClient = s3AsyncClient;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+            }
+            this._maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public CopyEncryptedObjectPipeline build() {
+            return new CopyEncryptedObjectPipeline(this);
+        }
+    }
+}
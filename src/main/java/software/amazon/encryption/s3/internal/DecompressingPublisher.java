@@ -0,0 +1,28 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Publisher which decompresses plaintext as it passes through.
+ */
+public class DecompressingPublisher implements SdkPublisher<ByteBuffer> {
+
+    private final SdkPublisher<ByteBuffer> wrappedPublisher;
+    private final CompressionCodec codec;
+
+    public DecompressingPublisher(final SdkPublisher<ByteBuffer> wrappedPublisher, final CompressionCodec codec) {
+        this.wrappedPublisher = wrappedPublisher;
+        this.codec = codec;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        wrappedPublisher.subscribe(new DecompressingSubscriber(subscriber, codec.newDecompressor()));
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+
+import java.nio.ByteBuffer;
+
+public class DecompressingSubscriber implements Subscriber<ByteBuffer> {
+    private final Subscriber<? super ByteBuffer> wrappedSubscriber;
+    private final CompressionCodec.Decompressor decompressor;
+    private Subscription subscription;
+    private boolean failed;
+
+    DecompressingSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, CompressionCodec.Decompressor decompressor) {
+        this.wrappedSubscriber = wrappedSubscriber;
+        this.decompressor = decompressor;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        wrappedSubscriber.onSubscribe(s);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        if (failed) {
+            return;
+        }
+        try {
+            wrappedSubscriber.onNext(ByteBuffer.wrap(decompressor.decompress(byteBuffer)));
+        } catch (RuntimeException e) {
+            failed = true;
+            subscription.cancel();
+            wrappedSubscriber.onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!failed) {
+            wrappedSubscriber.onError(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (failed) {
+            return;
+        }
+        final byte[] remaining;
+        try {
+            remaining = decompressor.finish();
+        } catch (RuntimeException e) {
+            // Forward error, else the wrapped subscriber waits indefinitely
+            wrappedSubscriber.onError(e);
+            return;
+        }
+        if (remaining.length > 0) {
+            wrappedSubscriber.onNext(ByteBuffer.wrap(remaining));
+        }
+        wrappedSubscriber.onComplete();
+    }
+}
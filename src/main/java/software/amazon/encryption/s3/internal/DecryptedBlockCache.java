@@ -0,0 +1,179 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of decrypted plaintext for ranged gets. Plaintext is held
+ * in fixed-size blocks keyed by bucket, key and ETag. A changed object has a
+ * new ETag, so stale plaintext is never returned; it ages out of the cache
+ * instead. The least recently used blocks are evicted once the total size
+ * of the cached blocks exceeds the configured maximum.
+ * <p>
+ * Cached plaintext stays in memory until it is evicted. Do not share a cache
+ * between clients which should not be able to read each other's objects.
+ * </p>
+ */
+public class DecryptedBlockCache {
+
+    // A multiple of the cipher block size and equal to the segment length,
+    // so blocks never split a unit that must be decrypted as a whole
+    public static final int BLOCK_LENGTH = 64 * 1024;
+
+    private final long _maxBytes;
+    private final boolean _offHeap;
+    private final Map<List<Object>, ByteBuffer> _blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private long _size = 0;
+
+    private DecryptedBlockCache(Builder builder) {
+        _maxBytes = builder._maxBytes;
+        _offHeap = builder._offHeap;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the plaintext in the inclusive range if every block covering it
+     * is cached, otherwise null.
+     */
+    byte[] get(String bucket, String key, String eTag, long first, long last) {
+        final byte[] result = new byte[Math.toIntExact(last - first + 1)];
+        synchronized (_blocks) {
+            for (long block = first / BLOCK_LENGTH; block <= last / BLOCK_LENGTH; block++) {
+                final ByteBuffer cached = _blocks.get(Arrays.asList(bucket, key, eTag, block));
+                final long blockStart = block * BLOCK_LENGTH;
+                final long copyFirst = Math.max(first, blockStart);
+                final long copyLast = Math.min(last, blockStart + BLOCK_LENGTH - 1);
+                if (cached == null || cached.remaining() < copyLast - blockStart + 1) {
+                    _misses.incrementAndGet();
+                    return null;
+                }
+                final ByteBuffer source = cached.duplicate();
+                source.position((int) (copyFirst - blockStart));
+                source.get(result, (int) (copyFirst - first), (int) (copyLast - copyFirst + 1));
+            }
+        }
+        _hits.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Caches plaintext which starts on a block boundary. Only the final block
+     * of an object may be shorter than {@link #BLOCK_LENGTH}.
+     */
+    void put(String bucket, String key, String eTag, long start, byte[] plaintext) {
+        if (start % BLOCK_LENGTH != 0) {
+            throw new S3EncryptionClientException("Cached plaintext must start on a block boundary.");
+        }
+        synchronized (_blocks) {
+            for (int offset = 0; offset < plaintext.length; offset += BLOCK_LENGTH) {
+                final int length = Math.min(BLOCK_LENGTH, plaintext.length - offset);
+                final ByteBuffer block = _offHeap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+                block.put(plaintext, offset, length);
+                block.flip();
+                final ByteBuffer previous = _blocks.put(Arrays.asList(bucket, key, eTag, (start + offset) / BLOCK_LENGTH),
+                        block.asReadOnlyBuffer());
+                _size += length - (previous == null ? 0 : previous.remaining());
+            }
+            evict();
+        }
+    }
+
+    private void evict() {
+        final Iterator<ByteBuffer> eldest = _blocks.values().iterator();
+        while (_size > _maxBytes && eldest.hasNext()) {
+            _size -= eldest.next().remaining();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes all cached plaintext. Hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized (_blocks) {
+            _blocks.clear();
+            _size = 0;
+        }
+    }
+
+    /**
+     * @return the number of ranged gets served entirely from the cache
+     */
+    public long hits() {
+        return _hits.get();
+    }
+
+    /**
+     * @return the number of cacheable ranged gets which had to be fetched
+     */
+    public long misses() {
+        return _misses.get();
+    }
+
+    /**
+     * @return the fraction of cacheable ranged gets served from the cache, or 0 if there were none
+     */
+    public double hitRatio() {
+        final long hits = _hits.get();
+        final long total = hits + _misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of plaintext bytes currently cached
+     */
+    public long size() {
+        synchronized (_blocks) {
+            return _size;
+        }
+    }
+
+    public static class Builder {
+        private long _maxBytes = -1;
+        private boolean _offHeap = false;
+
+        private Builder() {
+        }
+
+        /**
+         * The maximum number of plaintext bytes to cache.
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < BLOCK_LENGTH) {
+                throw new S3EncryptionClientException("maxBytes must be at least " + BLOCK_LENGTH);
+            }
+            this._maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * When true, blocks are held in direct buffers outside the Java heap.
+         * Defaults to false.
+         */
+        public Builder offHeap(boolean offHeap) {
+            this._offHeap = offHeap;
+            return this;
+        }
+
+        public DecryptedBlockCache build() {
+            if (_maxBytes < 0) {
+                throw new S3EncryptionClientException("maxBytes must be provided.");
+            }
+            return new DecryptedBlockCache(this);
+        }
+    }
+}
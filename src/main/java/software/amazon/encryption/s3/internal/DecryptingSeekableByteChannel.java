@@ -0,0 +1,187 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A read-only {@link SeekableByteChannel} over the plaintext of an encrypted
+ * object. Plaintext is fetched in windows which are aligned to the cipher's
+ * block or segment boundaries. While the channel is read sequentially, the
+ * next window is fetched in the background as the current one is consumed;
+ * a seek elsewhere discards it. Use {@link java.nio.channels.Channels#newInputStream}
+ * to read the channel as a stream.
+ */
+public class DecryptingSeekableByteChannel implements SeekableByteChannel {
+
+    public static final int DEFAULT_READ_AHEAD_BYTES = 1024 * 1024;
+
+    /**
+     * Fetches and decrypts an inclusive range of plaintext.
+     */
+    interface RangeFetcher {
+        CompletableFuture<byte[]> fetch(long first, long last);
+    }
+
+    private final RangeFetcher _fetcher;
+    private final long _size;
+    private final int _alignment;
+    private final int _windowLength;
+
+    private long _position = 0;
+    private boolean _open = true;
+    private Window _current;
+    private Window _next;
+
+    DecryptingSeekableByteChannel(RangeFetcher fetcher, long size, int alignment, int readAheadBytes) {
+        if (readAheadBytes < 1) {
+            throw new S3EncryptionClientException("readAheadBytes must be at least 1");
+        }
+        _fetcher = fetcher;
+        _size = size;
+        _alignment = alignment;
+        // Whole blocks or segments are fetched anyway, so round up to use all of them
+        _windowLength = (int) Math.min(Integer.MAX_VALUE - alignment,
+                ((long) readAheadBytes + alignment - 1) / alignment * alignment);
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (_position >= _size) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        final Window window = windowAt(_position);
+        final int offset = (int) (_position - window._start);
+        final int length = Math.min(dst.remaining(), window._plaintext.length - offset);
+        dst.put(window._plaintext, offset, length);
+        _position += length;
+        return length;
+    }
+
+    private Window windowAt(long position) throws IOException {
+        if (_current != null && _current.contains(position)) {
+            return _current;
+        }
+        final boolean sequential = _current != null && position == _current.end();
+        if (_next != null && _next.contains(position)) {
+            _current = _next;
+        } else {
+            _current = fetch(position - position % _alignment);
+        }
+        _next = null;
+        if (sequential && _current.end() < _size) {
+            _next = fetch(_current.end());
+        }
+        try {
+            return _current.await();
+        } catch (IOException e) {
+            // Fetch the window again on the next read rather than failing forever
+            _current = null;
+            _next = null;
+            throw e;
+        }
+    }
+
+    private Window fetch(long start) {
+        final long end = Math.min(_size, start + _windowLength);
+        return new Window(start, end, _fetcher.fetch(start, end - 1));
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return _position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position must not be negative: " + newPosition);
+        }
+        _position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return _size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return _open;
+    }
+
+    @Override
+    public synchronized void close() {
+        _open = false;
+        _current = null;
+        _next = null;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!_open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static final class Window {
+        private final long _start;
+        private final long _end;
+        private final CompletableFuture<byte[]> _future;
+        private byte[] _plaintext;
+
+        private Window(long start, long end, CompletableFuture<byte[]> future) {
+            _start = start;
+            _end = end;
+            _future = future;
+        }
+
+        private boolean contains(long position) {
+            return position >= _start && position < _end;
+        }
+
+        private long end() {
+            return _end;
+        }
+
+        private Window await() throws IOException {
+            if (_plaintext == null) {
+                try {
+                    _plaintext = _future.join();
+                } catch (CompletionException e) {
+                    throw new IOException("Unable to read encrypted object range.", e.getCause());
+                }
+                if (_plaintext.length != _end - _start) {
+                    throw new IOException("Expected " + (_end - _start) + " bytes of plaintext but received "
+                            + _plaintext.length);
+                }
+            }
+            return this;
+        }
+    }
+}
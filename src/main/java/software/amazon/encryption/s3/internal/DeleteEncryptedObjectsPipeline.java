@@ -0,0 +1,248 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.RequestCharged;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.instructionFileKeysToDelete;
+import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+
+/**
+ * Deletes encrypted objects along with their instruction files.
+ * Keys are split into batches no larger than the DeleteObjects limit,
+ * and batches are sent concurrently up to a configured bound.
+ */
+public class DeleteEncryptedObjectsPipeline {
+
+    // The maximum number of keys S3 accepts in a single DeleteObjects request
+    static final int MAX_KEYS_PER_BATCH = 1000;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private final S3AsyncClient _s3AsyncClient;
+    private final boolean _deleteInstructionFiles;
+    private final int _maxConcurrency;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private DeleteEncryptedObjectsPipeline(Builder builder) {
+        this._s3AsyncClient = builder._s3AsyncClient;
+        this._deleteInstructionFiles = builder._deleteInstructionFiles;
+        this._maxConcurrency = builder._maxConcurrency;
+    }
+
+    /**
+     * Deletes the object and, if enabled, its instruction file. Both requests
+     * are sent concurrently.
+     * @param request the request instance
+     * @return a future containing the response of the object deletion
+     */
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        final DeleteObjectRequest actualRequest = request.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .build();
+        final CompletableFuture<DeleteObjectResponse> response = _s3AsyncClient.deleteObject(actualRequest);
+        if (!_deleteInstructionFiles) {
+            return response;
+        }
+
+        final CompletableFuture<DeleteObjectResponse> instructionResponse = _s3AsyncClient.deleteObject(builder -> builder
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(request.bucket())
+                .key(request.key() + INSTRUCTION_FILE_SUFFIX));
+        // Return the original deletion once both have completed
+        return response.thenCombine(instructionResponse, (objectResponse, ignored) -> objectResponse);
+    }
+
+    /**
+     * Deletes the objects and, if enabled, their instruction files. The keys
+     * are split into batches of at most {@value #MAX_KEYS_PER_BATCH}, which
+     * are deleted concurrently. Instruction files which were not requested
+     * are left out of the deleted objects of the response, but any errors
+     * deleting them are reported.
+     * @param request the request instance
+     * @return a future containing the merged responses of all batches
+     */
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest request) {
+        final List<ObjectIdentifier> objectsToDelete = new ArrayList<>(request.delete().objects());
+        final Set<String> addedKeys = new HashSet<>();
+        if (_deleteInstructionFiles) {
+            final Set<String> requestedKeys = objectsToDelete.stream()
+                    .map(ObjectIdentifier::key)
+                    .collect(Collectors.toSet());
+            for (ObjectIdentifier instructionFile : instructionFileKeysToDelete(request)) {
+                objectsToDelete.add(instructionFile);
+                if (!requestedKeys.contains(instructionFile.key())) {
+                    addedKeys.add(instructionFile.key());
+                }
+            }
+        }
+
+        final List<Supplier<CompletableFuture<DeleteObjectsResponse>>> batches = new ArrayList<>();
+        for (int i = 0; i < objectsToDelete.size(); i += MAX_KEYS_PER_BATCH) {
+            final List<ObjectIdentifier> batch = objectsToDelete.subList(i, Math.min(i + MAX_KEYS_PER_BATCH, objectsToDelete.size()));
+            batches.add(() -> deleteBatch(request, batch));
+        }
+        return ConcurrencyUtils.runBounded(batches, _maxConcurrency).thenApply(responses -> {
+            final DeleteObjectsResponse merged = mergeResponses(responses);
+            if (addedKeys.isEmpty()) {
+                return merged;
+            }
+            return merged.toBuilder()
+                    .deleted(merged.deleted().stream()
+                            .filter(deletedObject -> !addedKeys.contains(deletedObject.key()))
+                            .collect(Collectors.toList()))
+                    .build();
+        });
+    }
+
+    /**
+     * Deletes every object whose key begins with the given prefix. Instruction
+     * files share the prefix of their object, so they are found by the listing
+     * itself and no additional requests are made for them.
+     * @param bucket the bucket to delete from
+     * @param prefix the key prefix to delete
+     * @return a future containing the merged responses of all batches
+     */
+    public CompletableFuture<DeleteObjectsResponse> deleteObjectsWithPrefix(String bucket, String prefix) {
+        if (bucket == null || prefix == null) {
+            throw new S3EncryptionClientException("Bucket and prefix must be provided to delete by prefix");
+        }
+        final DeleteObjectsRequest template = DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .build();
+        final List<CompletableFuture<DeleteObjectsResponse>> responses = Collections.synchronizedList(new ArrayList<>());
+        final LinkedList<CompletableFuture<DeleteObjectsResponse>> inFlight = new LinkedList<>();
+        return deletePage(template, prefix, null, inFlight, responses)
+                .thenCompose(ignored -> CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])))
+                .thenApply(ignored -> mergeResponses(responses.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList())));
+    }
+
+    private CompletableFuture<Void> deletePage(DeleteObjectsRequest template, String prefix, String continuationToken,
+                                               LinkedList<CompletableFuture<DeleteObjectsResponse>> inFlight,
+                                               List<CompletableFuture<DeleteObjectsResponse>> responses) {
+        final ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(template.bucket())
+                .prefix(prefix)
+                .maxKeys(MAX_KEYS_PER_BATCH)
+                .continuationToken(continuationToken)
+                .build();
+        return _s3AsyncClient.listObjectsV2(listRequest).thenCompose(listResponse -> {
+            final List<ObjectIdentifier> keys = listResponse.contents().stream()
+                    .map(s3Object -> ObjectIdentifier.builder().key(s3Object.key()).build())
+                    .collect(Collectors.toList());
+            // Wait for the oldest batch to finish before exceeding the concurrency bound
+            final CompletableFuture<?> slot = inFlight.size() >= _maxConcurrency
+                    ? inFlight.removeFirst()
+                    : CompletableFuture.completedFuture(null);
+            return slot.thenCompose(ignored -> {
+                if (!keys.isEmpty()) {
+                    CompletableFuture<DeleteObjectsResponse> batch = deleteBatch(template, keys);
+                    inFlight.addLast(batch);
+                    responses.add(batch);
+                }
+                if (Boolean.TRUE.equals(listResponse.isTruncated())) {
+                    return deletePage(template, prefix, listResponse.nextContinuationToken(), inFlight, responses);
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        });
+    }
+
+    private CompletableFuture<DeleteObjectsResponse> deleteBatch(DeleteObjectsRequest request, List<ObjectIdentifier> batch) {
+        return _s3AsyncClient.deleteObjects(request.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .delete(builder -> builder
+                        .objects(batch)
+                        .quiet(request.delete() == null ? null : request.delete().quiet()))
+                .build());
+    }
+
+    /**
+     * Merges the responses of each batch. The first response supplies the
+     * response metadata, and the request is reported as charged if any
+     * batch was charged.
+     */
+    private static DeleteObjectsResponse mergeResponses(List<DeleteObjectsResponse> responses) {
+        final List<DeletedObject> deleted = new ArrayList<>();
+        final List<S3Error> errors = new ArrayList<>();
+        RequestCharged requestCharged = null;
+        for (DeleteObjectsResponse response : responses) {
+            deleted.addAll(response.deleted());
+            errors.addAll(response.errors());
+            if (response.requestCharged() != null) {
+                requestCharged = response.requestCharged();
+            }
+        }
+        final DeleteObjectsResponse.Builder builder = responses.isEmpty()
+                ? DeleteObjectsResponse.builder()
+                : responses.get(0).toBuilder();
+        return builder
+                .deleted(deleted)
+                .errors(errors)
+                .requestCharged(requestCharged)
+                .build();
+    }
+
+    public static class Builder {
+        private S3AsyncClient _s3AsyncClient;
+        private boolean _deleteInstructionFiles = true;
+        private int _maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private Builder() {
+        }
+
+        /**
+         * Note that this does NOT create a defensive clone of S3Client. Any modifications made to the wrapped
+         * S3Client will be reflected in this Builder.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "Pass mutability into wrapping client")
+        public Builder s3AsyncClient(S3AsyncClient s3AsyncClient) {
+            this._s3AsyncClient = s3AsyncClient;
+            return this;
+        }
+
+        public Builder deleteInstructionFiles(boolean deleteInstructionFiles) {
+            this._deleteInstructionFiles = deleteInstructionFiles;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+            }
+            this._maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public DeleteEncryptedObjectsPipeline build() {
+            return new DeleteEncryptedObjectsPipeline(this);
+        }
+    }
+}
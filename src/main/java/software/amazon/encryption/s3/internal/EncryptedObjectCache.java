@@ -0,0 +1,422 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.protocols.jsoncore.JsonNode;
+import software.amazon.awssdk.protocols.jsoncore.JsonNodeParser;
+import software.amazon.awssdk.protocols.jsoncore.JsonWriter;
+import software.amazon.awssdk.protocols.jsoncore.JsonWriter.JsonGenerationException;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A cache of recently read encrypted objects, held in memory and optionally on
+ * local disk. Only ciphertext and object metadata are cached; objects are
+ * decrypted each time they are read, so plaintext is never written to disk.
+ * Cached objects are revalidated with a conditional get on their ETag, so a
+ * changed object is always fetched again.
+ * <p>
+ * The disk tier may be shared by several processes. Files are written to a
+ * temporary name and then renamed, so readers never see a partial object.
+ * </p>
+ */
+public class EncryptedObjectCache {
+
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_OBJECT_BYTES = 16L * 1024 * 1024;
+
+    private static final String FILE_SUFFIX = ".object";
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+    private static final String VERSION_ID = "versionId";
+    private static final String ETAG = "etag";
+    private static final String CONTENT_TYPE = "contentType";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String METADATA = "metadata";
+
+    private final long _maxMemoryBytes;
+    private final long _maxObjectBytes;
+    private final Path _directory;
+    private final long _maxDiskBytes;
+    private final Map<List<String>, Entry> _memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Long> _disk = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private long _memorySize = 0;
+    private long _diskSize = 0;
+
+    private EncryptedObjectCache(Builder builder) {
+        _maxMemoryBytes = builder._maxMemoryBytes;
+        _maxObjectBytes = builder._maxObjectBytes;
+        _directory = builder._directory;
+        _maxDiskBytes = builder._maxDiskBytes;
+        if (_directory != null) {
+            loadDiskIndex();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the largest object, in ciphertext bytes, which will be cached
+     */
+    long maxObjectBytes() {
+        return _maxObjectBytes;
+    }
+
+    /**
+     * Returns the cached object, promoting it from disk to memory, or null if
+     * it is not cached.
+     */
+    Entry get(String bucket, String key, String versionId) {
+        final List<String> cacheKey = Arrays.asList(bucket, key, versionId);
+        synchronized (_memory) {
+            final Entry entry = _memory.get(cacheKey);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        if (_directory == null) {
+            return null;
+        }
+        final Entry entry = readFile(cacheKey);
+        if (entry != null) {
+            putInMemory(cacheKey, entry);
+        }
+        return entry;
+    }
+
+    void put(String bucket, String key, String versionId, GetObjectResponse response, byte[] ciphertext) {
+        if (ciphertext.length > _maxObjectBytes) {
+            return;
+        }
+        final List<String> cacheKey = Arrays.asList(bucket, key, versionId);
+        final Entry entry = new Entry(response.toBuilder().contentLength((long) ciphertext.length).build(), ciphertext);
+        putInMemory(cacheKey, entry);
+        if (_directory != null) {
+            writeFile(cacheKey, entry);
+        }
+    }
+
+    void recordHit() {
+        _hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        _misses.incrementAndGet();
+    }
+
+    /**
+     * Removes every cached object from memory and from disk.
+     */
+    public void clear() {
+        synchronized (_memory) {
+            _memory.clear();
+            _memorySize = 0;
+        }
+        if (_directory != null) {
+            synchronized (_disk) {
+                for (Path file : _disk.keySet()) {
+                    deleteQuietly(file);
+                }
+                _disk.clear();
+                _diskSize = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of gets served from the cache after revalidation
+     */
+    public long hits() {
+        return _hits.get();
+    }
+
+    /**
+     * @return the number of cacheable gets which had to fetch the object
+     */
+    public long misses() {
+        return _misses.get();
+    }
+
+    private void putInMemory(List<String> cacheKey, Entry entry) {
+        synchronized (_memory) {
+            final Entry previous = _memory.put(cacheKey, entry);
+            _memorySize += entry.ciphertext().length - (previous == null ? 0 : previous.ciphertext().length);
+            final Iterator<Entry> eldest = _memory.values().iterator();
+            while (_memorySize > _maxMemoryBytes && eldest.hasNext()) {
+                _memorySize -= eldest.next().ciphertext().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private Entry readFile(List<String> cacheKey) {
+        final Path file = fileFor(cacheKey);
+        final byte[] contents;
+        try {
+            contents = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        final Entry entry;
+        try {
+            entry = parseFile(cacheKey, contents);
+        } catch (RuntimeException e) {
+            // A damaged file is dropped and the object fetched again
+            deleteQuietly(file);
+            return null;
+        }
+        if (entry != null) {
+            synchronized (_disk) {
+                // Looking the file up marks it as recently used
+                if (_disk.get(file) == null) {
+                    _disk.put(file, (long) contents.length);
+                    _diskSize += contents.length;
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static Entry parseFile(List<String> cacheKey, byte[] contents) {
+        final ByteBuffer buffer = ByteBuffer.wrap(contents);
+        final byte[] header = new byte[buffer.getInt()];
+        buffer.get(header);
+        final Map<String, JsonNode> fields = JsonNodeParser.create()
+                .parse(new ByteArrayInputStream(header))
+                .asObject();
+        // Guard against a digest collision or a file written for another object
+        if (!cacheKey.get(0).equals(fields.get(BUCKET).asString())
+                || !cacheKey.get(1).equals(fields.get(KEY).asString())
+                || !String.valueOf(cacheKey.get(2)).equals(String.valueOf(text(fields.get(VERSION_ID))))) {
+            return null;
+        }
+        final Map<String, String> metadata = new HashMap<>();
+        fields.get(METADATA).asObject().forEach((name, value) -> metadata.put(name, value.asString()));
+        final byte[] ciphertext = new byte[buffer.remaining()];
+        buffer.get(ciphertext);
+        final JsonNode lastModified = fields.get(LAST_MODIFIED);
+        final GetObjectResponse response = GetObjectResponse.builder()
+                .eTag(fields.get(ETAG).asString())
+                .versionId(text(fields.get(VERSION_ID)))
+                .contentType(text(fields.get(CONTENT_TYPE)))
+                .lastModified(lastModified == null ? null : Instant.ofEpochMilli(Long.parseLong(lastModified.asNumber())))
+                .contentLength((long) ciphertext.length)
+                .metadata(metadata)
+                .build();
+        return new Entry(response, ciphertext);
+    }
+
+    private void writeFile(List<String> cacheKey, Entry entry) {
+        final byte[] header = header(cacheKey, entry.response());
+        final Path file = fileFor(cacheKey);
+        try {
+            final Path temporary = Files.createTempFile(_directory, null, ".tmp");
+            try {
+                Files.write(temporary, ByteBuffer.allocate(Integer.BYTES).putInt(header.length).array());
+                Files.write(temporary, header, StandardOpenOption.APPEND);
+                Files.write(temporary, entry.ciphertext(), StandardOpenOption.APPEND);
+                try {
+                    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // The disk tier is best effort; the object is still cached in memory
+            return;
+        }
+        final long size = Integer.BYTES + header.length + entry.ciphertext().length;
+        synchronized (_disk) {
+            final Long previous = _disk.put(file, size);
+            _diskSize += size - (previous == null ? 0 : previous);
+            final Iterator<Map.Entry<Path, Long>> eldest = _disk.entrySet().iterator();
+            while (_diskSize > _maxDiskBytes && eldest.hasNext()) {
+                final Map.Entry<Path, Long> evicted = eldest.next();
+                deleteQuietly(evicted.getKey());
+                _diskSize -= evicted.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static byte[] header(List<String> cacheKey, GetObjectResponse response) {
+        try (JsonWriter jsonWriter = JsonWriter.create()) {
+            jsonWriter.writeStartObject();
+            jsonWriter.writeFieldName(BUCKET).writeValue(cacheKey.get(0));
+            jsonWriter.writeFieldName(KEY).writeValue(cacheKey.get(1));
+            writeNullable(jsonWriter, VERSION_ID, cacheKey.get(2));
+            jsonWriter.writeFieldName(ETAG).writeValue(response.eTag());
+            writeNullable(jsonWriter, CONTENT_TYPE, response.contentType());
+            if (response.lastModified() != null) {
+                jsonWriter.writeFieldName(LAST_MODIFIED).writeValue(response.lastModified().toEpochMilli());
+            }
+            jsonWriter.writeFieldName(METADATA).writeStartObject();
+            for (Map.Entry<String, String> entry : response.metadata().entrySet()) {
+                jsonWriter.writeFieldName(entry.getKey()).writeValue(entry.getValue());
+            }
+            jsonWriter.writeEndObject();
+            jsonWriter.writeEndObject();
+            return jsonWriter.getBytes();
+        } catch (JsonGenerationException e) {
+            throw new S3EncryptionClientException("Cannot serialize cached object metadata to JSON.", e);
+        }
+    }
+
+    private static void writeNullable(JsonWriter jsonWriter, String name, String value) {
+        // Absent fields are read back as null
+        if (value != null) {
+            jsonWriter.writeFieldName(name).writeValue(value);
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asString();
+    }
+
+    private Path fileFor(List<String> cacheKey) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : cacheKey) {
+                final byte[] bytes = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+            return _directory.resolve(BinaryUtils.toHex(digest.digest()) + FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new S3EncryptionClientException("Unable to hash cache key.", e);
+        }
+    }
+
+    private void loadDiskIndex() {
+        try (Stream<Path> files = Files.list(_directory)) {
+            // Oldest first, so the least recently written files are evicted first
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted(Comparator.comparing(EncryptedObjectCache::lastModified))
+                    .collect(Collectors.toList())) {
+                final long size = Files.size(file);
+                _disk.put(file, size);
+                _diskSize += size;
+            }
+        } catch (IOException e) {
+            throw new S3EncryptionClientException("Unable to read cache directory " + _directory, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Another process may be reading it; it will be evicted again later
+        }
+    }
+
+    static final class Entry {
+        private final GetObjectResponse _response;
+        private final byte[] _ciphertext;
+
+        Entry(GetObjectResponse response, byte[] ciphertext) {
+            _response = response;
+            _ciphertext = ciphertext;
+        }
+
+        GetObjectResponse response() {
+            return _response;
+        }
+
+        byte[] ciphertext() {
+            return _ciphertext;
+        }
+    }
+
+    public static class Builder {
+        private long _maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+        private long _maxObjectBytes = DEFAULT_MAX_OBJECT_BYTES;
+        private Path _directory = null;
+        private long _maxDiskBytes = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * The maximum number of ciphertext bytes held in memory.
+         * Defaults to {@value #DEFAULT_MAX_MEMORY_BYTES}.
+         */
+        public Builder maxMemoryBytes(long maxMemoryBytes) {
+            if (maxMemoryBytes < 0) {
+                throw new S3EncryptionClientException("maxMemoryBytes must not be negative");
+            }
+            this._maxMemoryBytes = maxMemoryBytes;
+            return this;
+        }
+
+        /**
+         * Objects larger than this are never cached.
+         * Defaults to {@value #DEFAULT_MAX_OBJECT_BYTES}.
+         */
+        public Builder maxObjectBytes(long maxObjectBytes) {
+            if (maxObjectBytes < 0) {
+                throw new S3EncryptionClientException("maxObjectBytes must not be negative");
+            }
+            this._maxObjectBytes = maxObjectBytes;
+            return this;
+        }
+
+        /**
+         * Also caches objects in files in the given directory, up to the given
+         * number of bytes. The directory must exist. Disabled by default.
+         */
+        public Builder diskCache(Path directory, long maxDiskBytes) {
+            if (directory == null || !Files.isDirectory(directory)) {
+                throw new S3EncryptionClientException("The disk cache directory must exist.");
+            }
+            if (maxDiskBytes < 0) {
+                throw new S3EncryptionClientException("maxDiskBytes must not be negative");
+            }
+            this._directory = directory;
+            this._maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        public EncryptedObjectCache build() {
+            return new EncryptedObjectCache(this);
+        }
+    }
+}
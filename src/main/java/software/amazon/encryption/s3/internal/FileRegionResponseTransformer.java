@@ -0,0 +1,102 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes a response body into a region of a file which is shared with other
+ * concurrent downloads. Positional writes are used, so the regions written by
+ * each transformer do not interfere with each other.
+ */
+class FileRegionResponseTransformer implements AsyncResponseTransformer<GetObjectResponse, GetObjectResponse> {
+
+    private final FileChannel _channel;
+    private final long _position;
+    private final long _length;
+    private volatile CompletableFuture<GetObjectResponse> _future;
+    private volatile GetObjectResponse _response;
+
+    FileRegionResponseTransformer(FileChannel channel, long position, long length) {
+        _channel = channel;
+        _position = position;
+        _length = length;
+    }
+
+    @Override
+    public CompletableFuture<GetObjectResponse> prepare() {
+        _future = new CompletableFuture<>();
+        return _future;
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+        _response = response;
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new RegionSubscriber());
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        _future.completeExceptionally(error);
+    }
+
+    private class RegionSubscriber implements Subscriber<ByteBuffer> {
+        private Subscription _subscription;
+        private long _written = 0;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            _subscription = subscription;
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer byteBuffer) {
+            if (_written + byteBuffer.remaining() > _length) {
+                _subscription.cancel();
+                _future.completeExceptionally(new S3EncryptionClientException(
+                        "Received more content than expected for the file region."));
+                return;
+            }
+            try {
+                while (byteBuffer.hasRemaining()) {
+                    _written += _channel.write(byteBuffer, _position + _written);
+                }
+            } catch (IOException e) {
+                _subscription.cancel();
+                _future.completeExceptionally(new S3EncryptionClientException("Unable to write to file.", e));
+                return;
+            }
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            _future.completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (_written != _length) {
+                _future.completeExceptionally(new S3EncryptionClientException(
+                        "Received less content than expected for the file region."));
+                return;
+            }
+            _future.complete(_response);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+
+/**
+ * Verifies AES-GCM tags from the ciphertext alone. The tag is GHASH over the
+ * ciphertext XORed with the encryption of the initial counter block, so no
+ * keystream needs to be generated and no plaintext is produced.
+ * <p>
+ * The JCE does not expose GHASH, so the ciphertext is hashed by the provider
+ * as the additional authenticated data of an empty GCM message (a GMAC), in
+ * chunks. GHASH is linear, so each chunk's GMAC is corrected for its length
+ * block and folded into the running hash with a few multiplications in
+ * GF(2^128). This keeps the bulk of the work in the provider, which is
+ * usually hardware accelerated, while holding at most one chunk in memory.
+ * </p>
+ */
+class GcmTagVerifier {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final String GCM = "AES/GCM/NoPadding";
+    private static final String ECB = "AES/ECB/NoPadding";
+    private static final int BLOCK_SIZE = 16;
+    private static final int NONCE_LENGTH = 12;
+    // The reduction polynomial x^128 + x^7 + x^2 + x + 1, in GCM's reflected bit order
+    private static final long R = 0xE100000000000000L;
+
+    private final SecretKey key;
+    private final Provider provider;
+    private final Cipher blockCipher;
+    private final long[] hashKey;
+    private final long[] chunkPower;
+    private final byte[] chunk;
+
+    private byte[] nonce;
+    private long[] encryptedCounterBlock;
+    private long[] hash;
+    private int chunkPosition;
+    private long ciphertextLength;
+
+    /**
+     * @param key the content key
+     * @param provider the provider to use, or null for the default
+     * @param chunkSize the number of ciphertext bytes hashed by each GMAC, a multiple of 16
+     */
+    GcmTagVerifier(SecretKey key, Provider provider, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % BLOCK_SIZE != 0) {
+            throw new S3EncryptionClientException("Chunk size must be a positive multiple of " + BLOCK_SIZE);
+        }
+        this.key = key;
+        this.provider = provider;
+        try {
+            this.blockCipher = CryptoFactory.createCipher(ECB, provider);
+            blockCipher.init(Cipher.ENCRYPT_MODE, key);
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientException("Unable to create cipher: " + ECB, e);
+        }
+        this.hashKey = encryptBlock(new byte[BLOCK_SIZE]);
+        this.chunkPower = power(hashKey, chunkSize / BLOCK_SIZE);
+        this.chunk = new byte[chunkSize];
+    }
+
+    /**
+     * Starts verifying a new message encrypted under the given nonce.
+     */
+    void init(byte[] nonce) {
+        if (nonce.length != NONCE_LENGTH) {
+            throw new S3EncryptionClientException("Only " + NONCE_LENGTH + " byte GCM nonces can be verified.");
+        }
+        final byte[] counterBlock = new byte[BLOCK_SIZE];
+        System.arraycopy(nonce, 0, counterBlock, 0, NONCE_LENGTH);
+        counterBlock[BLOCK_SIZE - 1] = 1;
+        this.nonce = nonce.clone();
+        this.encryptedCounterBlock = encryptBlock(counterBlock);
+        this.hash = new long[2];
+        this.chunkPosition = 0;
+        this.ciphertextLength = 0;
+    }
+
+    /**
+     * Adds ciphertext, excluding the tag, to the message being verified.
+     */
+    void update(ByteBuffer ciphertext) {
+        while (ciphertext.hasRemaining()) {
+            final int length = Math.min(ciphertext.remaining(), chunk.length - chunkPosition);
+            ciphertext.get(chunk, chunkPosition, length);
+            chunkPosition += length;
+            ciphertextLength += length;
+            if (chunkPosition == chunk.length) {
+                fold(chunkPower);
+            }
+        }
+    }
+
+    /**
+     * Completes the message and compares its tag in constant time.
+     * @param tag the tag stored with the message
+     * @return whether the tag is valid for the ciphertext
+     */
+    boolean verify(byte[] tag) {
+        if (chunkPosition > 0) {
+            fold(power(hashKey, (chunkPosition + BLOCK_SIZE - 1) / BLOCK_SIZE));
+        }
+        // The final length block holds a zero AAD length and the ciphertext length in bits
+        final long[] expected = multiply(new long[]{0, ciphertextLength * 8}, hashKey);
+        expected[0] ^= hash[0] ^ encryptedCounterBlock[0];
+        expected[1] ^= hash[1] ^ encryptedCounterBlock[1];
+        return MessageDigest.isEqual(toBytes(expected), tag);
+    }
+
+    /**
+     * Folds the buffered chunk into the running hash. For a chunk of k blocks,
+     * GMAC(chunk) = E(J0) + L*H + sum(X_i * H^(k - i + 2)), where L is the length
+     * block of the GMAC, so removing E(J0) and L*H leaves the chunk's GHASH times H.
+     * The running hash is kept multiplied by H as well, so the chunk's contribution
+     * is added after multiplying the running hash by H^k.
+     */
+    private void fold(long[] blocksPower) {
+        final byte[] gmac;
+        try {
+            // A fresh cipher is used for every chunk, as providers refuse to reuse a nonce for encryption
+            final Cipher cipher = CryptoFactory.createCipher(GCM, provider);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(BLOCK_SIZE * 8, nonce));
+            cipher.updateAAD(chunk, 0, chunkPosition);
+            gmac = cipher.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientException("Unable to hash ciphertext with " + GCM, e);
+        }
+        final long[] chunkHash = fromBytes(gmac);
+        final long[] lengthTerm = multiply(new long[]{(long) chunkPosition * 8, 0}, hashKey);
+        final long[] shifted = multiply(hash, blocksPower);
+        hash[0] = shifted[0] ^ chunkHash[0] ^ encryptedCounterBlock[0] ^ lengthTerm[0];
+        hash[1] = shifted[1] ^ chunkHash[1] ^ encryptedCounterBlock[1] ^ lengthTerm[1];
+        chunkPosition = 0;
+    }
+
+    private long[] encryptBlock(byte[] block) {
+        try {
+            return fromBytes(blockCipher.doFinal(block));
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientException("Unable to encrypt block with " + ECB, e);
+        }
+    }
+
+    /**
+     * Returns x^n in GF(2^128), for n of at least 1.
+     */
+    static long[] power(long[] x, long n) {
+        long[] result = null;
+        long[] square = x;
+        while (n > 0) {
+            if ((n & 1) == 1) {
+                result = result == null ? square : multiply(result, square);
+            }
+            n >>>= 1;
+            if (n > 0) {
+                square = multiply(square, square);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two elements of GF(2^128) in GCM's bit order, as in
+     * Algorithm 1 of NIST SP 800-38D.
+     */
+    static long[] multiply(long[] x, long[] y) {
+        long zHi = 0;
+        long zLo = 0;
+        long vHi = y[0];
+        long vLo = y[1];
+        for (int i = 0; i < 128; i++) {
+            final long word = i < 64 ? x[0] : x[1];
+            if (((word >>> (63 - (i & 63))) & 1) == 1) {
+                zHi ^= vHi;
+                zLo ^= vLo;
+            }
+            final boolean carry = (vLo & 1) == 1;
+            vLo = (vLo >>> 1) | (vHi << 63);
+            vHi >>>= 1;
+            if (carry) {
+                vHi ^= R;
+            }
+        }
+        return new long[]{zHi, zLo};
+    }
+
+    static long[] fromBytes(byte[] block) {
+        final ByteBuffer buffer = ByteBuffer.wrap(block);
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+
+    static byte[] toBytes(long[] element) {
+        return ByteBuffer.allocate(BLOCK_SIZE).putLong(element[0]).putLong(element[1]).array();
+    }
+}
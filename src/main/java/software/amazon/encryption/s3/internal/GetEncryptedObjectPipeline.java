@@ -3,13 +3,24 @@
 package software.amazon.encryption.s3.internal;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.encryption.s3.S3EncryptionClientException;
 import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
+import software.amazon.encryption.s3.algorithms.DeflateCompressionCodec;
 import software.amazon.encryption.s3.legacy.internal.AesCtrUtils;
 import software.amazon.encryption.s3.legacy.internal.RangedGetUtils;
 import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
@@ -21,12 +32,23 @@ import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
 import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
 
 /**
@@ -36,10 +58,25 @@ import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INT
  * information is available from the returned object.
  */
 public class GetEncryptedObjectPipeline {
+    public static final int DEFAULT_GET_OBJECTS_MAX_CONCURRENCY = 16;
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int MAX_CONCURRENT_RANGES = 8;
+    private static final int MAX_CONCURRENT_VERIFICATIONS = 8;
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+    private static final long MAX_READ_AHEAD_BYTES = 8L * 1024 * 1024;
+    private static final String CBC_NO_PADDING = "AES/CBC/NoPadding";
+
     private final S3AsyncClient _s3AsyncClient;
     private final CryptographicMaterialsManager _cryptoMaterialsManager;
     private final boolean _enableLegacyUnauthenticatedModes;
     private final boolean _enableDelayedAuthentication;
+    private final CompressionCodec _compressionCodec;
+    private final DecryptedBlockCache _decryptedBlockCache;
+    private final EncryptedObjectCache _encryptedObjectCache;
+    private final int _cbcDecryptionParallelism;
+    private final Executor _cbcDecryptionExecutor;
+    private final Executor _materialsExecutor;
 
     public static Builder builder() {
         return new Builder();
@@ -50,9 +87,656 @@ public class GetEncryptedObjectPipeline {
         this._cryptoMaterialsManager = builder._cryptoMaterialsManager;
         this._enableLegacyUnauthenticatedModes = builder._enableLegacyUnauthenticatedModes;
         this._enableDelayedAuthentication = builder._enableDelayedAuthentication;
+        this._compressionCodec = builder._compressionCodec;
+        this._decryptedBlockCache = builder._decryptedBlockCache;
+        this._encryptedObjectCache = builder._encryptedObjectCache;
+        this._cbcDecryptionParallelism = builder._cbcDecryptionParallelism;
+        this._cbcDecryptionExecutor = builder._cbcDecryptionExecutor;
+        this._materialsExecutor = builder._materialsExecutor;
     }
 
     public <T> CompletableFuture<T> getObject(GetObjectRequest getObjectRequest, AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        if (getObjectRequest.range() == null) {
+            if (_encryptedObjectCache != null && isCacheable(getObjectRequest)) {
+                return getCachedObject(getObjectRequest, asyncResponseTransformer);
+            }
+            return getObjectWithCryptoRange(getObjectRequest, asyncResponseTransformer);
+        }
+        if (!RangedGetUtils.isOpenRange(getObjectRequest.range()) && _decryptedBlockCache == null) {
+            return getClosedObjectRange(getObjectRequest, asyncResponseTransformer);
+        }
+        // Open ranges need the plaintext length, and the block cache the ETag,
+        // so the metadata is read before the ranged request is made. The metadata
+        // may be in an instruction file, so it is decoded off the SDK's threads.
+        return _s3AsyncClient.headObject(headRequest(getObjectRequest)).thenComposeAsync(
+                headResponse -> getObjectRange(getObjectRequest, headResponse, asyncResponseTransformer), _materialsExecutor);
+    }
+
+    private <T> CompletableFuture<T> getObjectRange(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse,
+                                                    AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final ContentMetadata contentMetadata = RangedGetUtils.isOpenRange(getObjectRequest.range())
+                ? ContentMetadataStrategy.decode(getObjectRequest, wholeObjectResponse(headResponse))
+                : null;
+        final GetObjectRequest resolvedRequest = resolveOpenRange(getObjectRequest, headResponse, contentMetadata);
+        final AlgorithmSuite cacheableSuite = cacheableAlgorithmSuite(resolvedRequest, headResponse);
+        if (cacheableSuite != null) {
+            return getCachedObjectRange(resolvedRequest, headResponse, cacheableSuite, asyncResponseTransformer);
+        }
+        if (ContentMetadataStrategy.isSegmented(headResponse.metadata())) {
+            return getSegmentedObjectRange(resolvedRequest, headResponse.eTag(), asyncResponseTransformer);
+        }
+        if (isCbc(headResponse, contentMetadata)) {
+            return getCbcObjectRange(resolvedRequest, headResponse, asyncResponseTransformer);
+        }
+        return getObjectWithCryptoRange(resolvedRequest.toBuilder()
+                .ifMatch(headResponse.eTag())
+                .build(), asyncResponseTransformer);
+    }
+
+    /**
+     * Gets a range of the form "bytes=N-M" with a single request, as the ciphertext range
+     * can be chosen without the object's metadata. Without legacy unauthenticated modes only
+     * segmented objects can be read by range, so their segments are fetched directly, and
+     * the returned future fails once the response shows any other object.
+     * Otherwise the range is fetched as for a legacy object, and fetched again by segment,
+     * pinned to the same ETag, if the object turns out to be segmented.
+     */
+    private <T> CompletableFuture<T> getClosedObjectRange(GetObjectRequest getObjectRequest,
+                                                          AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final long[] desiredRange = RangedGetUtils.getRange(getObjectRequest.range());
+        if (desiredRange == null || desiredRange[0] > desiredRange[1]) {
+            return getObjectWithCryptoRange(getObjectRequest, asyncResponseTransformer);
+        }
+        final boolean fetchSegments = !_enableLegacyUnauthenticatedModes;
+        final GetObjectRequest rangedRequest = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .range(fetchSegments
+                        ? segmentedCiphertextRange(desiredRange[0], desiredRange[1])
+                        : RangedGetUtils.getCryptoRangeAsString(getObjectRequest.range()))
+                .build();
+        return _s3AsyncClient.getObject(rangedRequest, new RangeCheckingResponseTransformer<>(asyncResponseTransformer,
+                getObjectRequest, fetchSegments));
+    }
+
+    /**
+     * Returns true if the object is known to be encrypted with AES-CBC, either from its
+     * object metadata or from the already decoded metadata of its instruction file.
+     */
+    private static boolean isCbc(HeadObjectResponse headResponse, ContentMetadata contentMetadata) {
+        final Map<String, String> metadata = headResponse.metadata();
+        if (metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V1)
+                || metadata.containsKey(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2)) {
+            final String contentCipher = metadata.get(MetadataKeyConstants.CONTENT_CIPHER);
+            return contentCipher == null || AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF.cipherName().equals(contentCipher);
+        }
+        // Otherwise the metadata is in an instruction file, which is only read for open ranges
+        return contentMetadata != null && contentMetadata.algorithmSuite() == AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF;
+    }
+
+    /**
+     * Fetches only the CBC blocks which hold the requested range, plus the block before
+     * them. That block takes the place of the IV, so the first block decrypted from the
+     * range is discarded, and padding is only removed if the range reaches the end of
+     * the object.
+     */
+    private <T> CompletableFuture<T> getCbcObjectRange(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse,
+                                                       AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final long[] desiredRange = RangedGetUtils.getRange(getObjectRequest.range());
+        final long ciphertextLength = headResponse.contentLength();
+        if (desiredRange == null || desiredRange[0] > desiredRange[1] || desiredRange[0] >= ciphertextLength) {
+            // Invalid and unsatisfiable ranges behave as they do for other legacy objects
+            return getObjectWithCryptoRange(getObjectRequest, asyncResponseTransformer);
+        }
+        if (!_enableLegacyUnauthenticatedModes) {
+            throw new S3EncryptionClientException("Enable legacy unauthenticated modes to use Ranged Get.");
+        }
+        final GetObjectRequest rangedRequest = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .ifMatch(headResponse.eTag())
+                .range(RangedGetUtils.getCbcCryptoRangeAsString(desiredRange, ciphertextLength))
+                .build();
+        return _s3AsyncClient.getObject(rangedRequest, new DecryptingResponseTransformer<>(asyncResponseTransformer,
+                getObjectRequest));
+    }
+
+    /**
+     * Rewrites a range of the form "bytes=N-" or "bytes=-N" as "bytes=N-M" using the
+     * plaintext length of the object, so that only the ciphertext it covers is fetched.
+     * For CBC objects the plaintext length includes padding, so suffix ranges may
+     * return fewer bytes than requested.
+     */
+    private GetObjectRequest resolveOpenRange(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse,
+                                              ContentMetadata contentMetadata) {
+        if (!RangedGetUtils.isOpenRange(getObjectRequest.range())) {
+            return getObjectRequest;
+        }
+        final AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
+        final long plaintextLength = algorithmSuite.plaintextLength(headResponse.contentLength());
+        final long[] range = RangedGetUtils.resolveRange(getObjectRequest.range(), plaintextLength);
+        if (range[0] > range[1]) {
+            throw new S3EncryptionClientException("The requested range " + getObjectRequest.range()
+                    + " is not satisfiable for an object of " + plaintextLength + " bytes.");
+        }
+        return getObjectRequest.toBuilder()
+                .range("bytes=" + range[0] + "-" + range[1])
+                .build();
+    }
+
+    /**
+     * Builds a response describing the whole ciphertext of an object from its metadata.
+     * The content range makes whole-object GCM decode as CTR, which can start at any block.
+     */
+    private static GetObjectResponse wholeObjectResponse(HeadObjectResponse headResponse) {
+        final long ciphertextLength = headResponse.contentLength();
+        return GetObjectResponse.builder()
+                .metadata(headResponse.metadata())
+                .contentLength(ciphertextLength)
+                .contentRange("bytes 0-" + (ciphertextLength - 1) + "/" + ciphertextLength)
+                .eTag(headResponse.eTag())
+                .build();
+    }
+
+    /**
+     * Whole-object gets without their own conditions or customer-provided keys can be
+     * served from the encrypted object cache.
+     */
+    private static boolean isCacheable(GetObjectRequest getObjectRequest) {
+        return getObjectRequest.partNumber() == null
+                && getObjectRequest.ifMatch() == null
+                && getObjectRequest.ifNoneMatch() == null
+                && getObjectRequest.ifModifiedSince() == null
+                && getObjectRequest.ifUnmodifiedSince() == null
+                && getObjectRequest.sseCustomerKey() == null;
+    }
+
+    /**
+     * Gets an object through the encrypted object cache. A cached object is revalidated
+     * with a get conditional on its ETag; if S3 reports it unchanged, the cached
+     * ciphertext is decrypted instead. Otherwise the fetched ciphertext is cached as it
+     * is decrypted.
+     */
+    private <T> CompletableFuture<T> getCachedObject(GetObjectRequest getObjectRequest,
+                                                     AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final EncryptedObjectCache.Entry cached = _encryptedObjectCache.get(getObjectRequest.bucket(),
+                getObjectRequest.key(), getObjectRequest.versionId());
+        final GetObjectRequest conditionalRequest = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .ifNoneMatch(cached == null ? null : cached.response().eTag())
+                .build();
+        final CompletableFuture<T> fetched = _s3AsyncClient.getObject(conditionalRequest, new CachingResponseTransformer<>(
+                new DecryptingResponseTransformer<>(asyncResponseTransformer, getObjectRequest), getObjectRequest));
+        if (cached == null) {
+            return fetched;
+        }
+        return fetched.handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            final Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == HTTP_NOT_MODIFIED) {
+                _encryptedObjectCache.recordHit();
+                return deliver(new DecryptingResponseTransformer<>(asyncResponseTransformer, getObjectRequest),
+                        cached.response(), cached.ciphertext());
+            }
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(cause);
+            return failed;
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Returns the algorithm suite of the object if the requested range can be served
+     * through the decrypted block cache, otherwise null. Only uncompressed GCM objects
+     * whose metadata is stored with the object are cached, since their plaintext
+     * length follows from the ciphertext length alone.
+     */
+    private AlgorithmSuite cacheableAlgorithmSuite(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse) {
+        final long[] desiredRange = RangedGetUtils.getRange(getObjectRequest.range());
+        final Map<String, String> metadata = headResponse.metadata();
+        if (_decryptedBlockCache == null || desiredRange == null || desiredRange[0] > desiredRange[1]
+                || metadata.containsKey(MetadataKeyConstants.CONTENT_COMPRESSION)) {
+            return null;
+        }
+        final AlgorithmSuite algorithmSuite;
+        if (ContentMetadataStrategy.isSegmented(metadata)) {
+            algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF;
+        } else if (AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherName().equals(metadata.get(MetadataKeyConstants.CONTENT_CIPHER))) {
+            algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
+        } else {
+            return null;
+        }
+        return desiredRange[0] < algorithmSuite.plaintextLength(headResponse.contentLength()) ? algorithmSuite : null;
+    }
+
+    /**
+     * Serves a ranged get from the decrypted block cache. On a hit, the data key is still
+     * decrypted through the CMM, so the request's encryption context and legacy settings
+     * are checked as they would be for a fetch. On a miss, the whole blocks covering the
+     * range are fetched and decrypted, bound to the ETag from the HEAD request, and cached
+     * before the requested bytes are returned.
+     */
+    private <T> CompletableFuture<T> getCachedObjectRange(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse,
+                                                          AlgorithmSuite algorithmSuite,
+                                                          AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final String bucket = getObjectRequest.bucket();
+        final String key = getObjectRequest.key();
+        final String eTag = headResponse.eTag();
+        final long plaintextLength = algorithmSuite.plaintextLength(headResponse.contentLength());
+        final long[] desiredRange = RangedGetUtils.getRange(getObjectRequest.range());
+        final long first = desiredRange[0];
+        final long last = Math.min(desiredRange[1], plaintextLength - 1);
+        final GetObjectResponse response = GetObjectResponse.builder()
+                .metadata(headResponse.metadata())
+                .eTag(eTag)
+                .versionId(headResponse.versionId())
+                .lastModified(headResponse.lastModified())
+                .contentType(headResponse.contentType())
+                .contentLength(last - first + 1)
+                .contentRange("bytes " + first + "-" + last + "/" + plaintextLength)
+                .build();
+
+        final byte[] cached = _decryptedBlockCache.get(bucket, key, eTag, first, last);
+        if (cached != null) {
+            // The cache is shared between requests, so a hit is only served to a request
+            // which could have decrypted the range itself
+            if (!algorithmSuite.isSegmented() && !_enableLegacyUnauthenticatedModes) {
+                throw new S3EncryptionClientException("Enable legacy unauthenticated modes to use Ranged Get.");
+            }
+            final GetObjectResponse wholeObjectResponse = wholeObjectResponse(headResponse);
+            prepareMaterialsFromRequest(getObjectRequest, wholeObjectResponse,
+                    ContentMetadataStrategy.decode(getObjectRequest, wholeObjectResponse));
+            return deliver(asyncResponseTransformer, response, cached);
+        }
+
+        final long blockLength = DecryptedBlockCache.BLOCK_LENGTH;
+        final long coverFirst = first / blockLength * blockLength;
+        final long coverLast = Math.min(plaintextLength, (last / blockLength + 1) * blockLength) - 1;
+        final GetObjectRequest coverRequest = getObjectRequest.toBuilder()
+                .ifMatch(eTag)
+                .range("bytes=" + coverFirst + "-" + coverLast)
+                .build();
+        final CompletableFuture<ResponseBytes<GetObjectResponse>> fetched = algorithmSuite.isSegmented()
+                ? getSegmentedObjectRange(coverRequest, eTag, AsyncResponseTransformer.toBytes())
+                : getObjectWithCryptoRange(coverRequest, AsyncResponseTransformer.toBytes());
+        return fetched.thenCompose(responseBytes -> {
+            final byte[] plaintext = responseBytes.asByteArrayUnsafe();
+            if (plaintext.length != coverLast - coverFirst + 1) {
+                throw new S3EncryptionClientException("Expected " + (coverLast - coverFirst + 1)
+                        + " bytes of plaintext but received " + plaintext.length);
+            }
+            _decryptedBlockCache.put(bucket, key, eTag, coverFirst, plaintext);
+            return deliver(asyncResponseTransformer, response,
+                    Arrays.copyOfRange(plaintext, (int) (first - coverFirst), (int) (last - coverFirst + 1)));
+        });
+    }
+
+    private static <T> CompletableFuture<T> deliver(AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer,
+                                                    GetObjectResponse response, byte[] plaintext) {
+        final CompletableFuture<T> result = asyncResponseTransformer.prepare();
+        asyncResponseTransformer.onResponse(response);
+        asyncResponseTransformer.onStream(AsyncRequestBody.fromBytes(plaintext));
+        return result;
+    }
+
+    /**
+     * Opens a read-only, seekable channel over the plaintext of an object. The object's
+     * metadata is read and its data key decrypted once, when the channel is opened, and
+     * each read after that is a ranged get of only the ciphertext it needs. Segmented
+     * objects are authenticated segment by segment; other GCM objects are decrypted
+     * with CTR, without authentication, so legacy unauthenticated modes must be enabled.
+     * @param getObjectRequest the request for the object
+     * @param readAheadBytes the minimum number of bytes fetched by each ranged get
+     * @return a future containing the channel
+     */
+    public CompletableFuture<DecryptingSeekableByteChannel> openSeekableChannel(GetObjectRequest getObjectRequest,
+                                                                                int readAheadBytes) {
+        // The data key is decrypted on the materials executor, as it may block on a key service
+        return _s3AsyncClient.headObject(headRequest(getObjectRequest)).thenApplyAsync(headResponse -> {
+            final RangedReads reads = new RangedReads(getObjectRequest, headResponse);
+            return new DecryptingSeekableByteChannel(reads::fetch, reads.plaintextLength(), reads.alignment(), readAheadBytes);
+        }, _materialsExecutor);
+    }
+
+    /**
+     * Opens a reader over the decrypted objects whose keys begin with the given prefix.
+     * Objects are fetched and decrypted ahead of the consumer, so that a scan is limited
+     * by throughput rather than by the latency of each object.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @param prefetchObjects the maximum number of objects fetched ahead of the consumer
+     * @param prefetchBytes the maximum number of listed bytes fetched ahead of the consumer
+     * @return the reader
+     */
+    public PrefixScanReader scanObjectsWithPrefix(String bucket, String prefix, int prefetchObjects, long prefetchBytes) {
+        return new PrefixScanReader(_s3AsyncClient, this, bucket, prefix, prefetchObjects, prefetchBytes);
+    }
+
+    /**
+     * Gets several ranges of the plaintext of an object. The object's metadata is read
+     * and its data key decrypted once, then ranges which share or nearly share a segment
+     * (or cipher block, for GCM objects read as CTR) are merged and fetched with a single
+     * ranged get. Ranges may take any of the forms "bytes=N-M", "bytes=N-" or "bytes=-N".
+     * The same algorithm suites are supported as for {@link #openSeekableChannel}.
+     * @param getObjectRequest the request for the object
+     * @param ranges the ranges to get
+     * @return a future containing the plaintext of each range, in the order requested
+     */
+    public CompletableFuture<List<byte[]>> getObjectRanges(GetObjectRequest getObjectRequest, List<String> ranges) {
+        return _s3AsyncClient.headObject(headRequest(getObjectRequest)).thenComposeAsync(headResponse -> {
+            final RangedReads reads = new RangedReads(getObjectRequest, headResponse);
+            final List<long[]> requested = new ArrayList<>();
+            for (String range : ranges) {
+                final long[] resolved = RangedGetUtils.resolveRange(range, reads.plaintextLength());
+                if (resolved == null) {
+                    throw new S3EncryptionClientException("Invalid range: " + range);
+                }
+                requested.add(resolved);
+            }
+            final List<long[]> merged = RangedGetUtils.coalesce(requested, reads.alignment());
+            final List<Supplier<CompletableFuture<byte[]>>> fetches = new ArrayList<>();
+            for (long[] range : merged) {
+                fetches.add(() -> reads.fetch(range[0], range[1]));
+            }
+            return ConcurrencyUtils.runBounded(fetches, MAX_CONCURRENT_RANGES).thenApply(plaintexts -> {
+                final List<byte[]> results = new ArrayList<>();
+                for (long[] range : requested) {
+                    results.add(slice(merged, plaintexts, range));
+                }
+                return results;
+            });
+        }, _materialsExecutor);
+    }
+
+    /**
+     * Cancels a response body without reading it.
+     */
+    private static void discard(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
+
+    private static byte[] slice(List<long[]> merged, List<byte[]> plaintexts, long[] range) {
+        if (range[0] > range[1]) {
+            return new byte[0];
+        }
+        for (int i = 0; i < merged.size(); i++) {
+            final long[] fetched = merged.get(i);
+            if (fetched[0] <= range[0] && range[1] <= fetched[1]) {
+                return Arrays.copyOfRange(plaintexts.get(i), (int) (range[0] - fetched[0]), (int) (range[1] - fetched[0] + 1));
+            }
+        }
+        throw new S3EncryptionClientException("Range " + range[0] + "-" + range[1] + " was not fetched.");
+    }
+
+    /**
+     * Gets and decrypts many whole objects. The ciphertext of every object is fetched
+     * first, with at most maxConcurrency requests in flight, and the decryption materials
+     * of all objects are then resolved as one batch through the materials manager, which
+     * resolves identical encrypted data keys once and the rest concurrently. Metadata is
+     * decoded, and the batch resolved, on the materials executor. This suits
+     * many small objects, as every object's ciphertext is held in memory at once.
+     * @param getObjectRequests the requests for the objects, which must not have ranges
+     * @param maxConcurrency the maximum number of gets, and of data key decryptions, in flight
+     * @return a future containing the decrypted objects, in the order requested
+     */
+    public CompletableFuture<List<ResponseBytes<GetObjectResponse>>> getObjects(List<GetObjectRequest> getObjectRequests,
+                                                                               int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+        }
+        final List<Supplier<CompletableFuture<ResponseBytes<GetObjectResponse>>>> fetches = new ArrayList<>();
+        for (GetObjectRequest getObjectRequest : getObjectRequests) {
+            if (getObjectRequest.range() != null || getObjectRequest.partNumber() != null) {
+                throw new S3EncryptionClientException("Only whole objects can be fetched together.");
+            }
+            fetches.add(() -> _s3AsyncClient.getObject(getObjectRequest.toBuilder()
+                    .overrideConfiguration(API_NAME_INTERCEPTOR)
+                    .build(), AsyncResponseTransformer.toBytes()));
+        }
+        return ConcurrencyUtils.runBounded(fetches, maxConcurrency).thenComposeAsync(ciphertexts -> {
+            final List<ContentMetadata> contentMetadata = new ArrayList<>();
+            final List<DecryptMaterialsRequest> materialsRequests = new ArrayList<>();
+            for (int i = 0; i < ciphertexts.size(); i++) {
+                final GetObjectRequest getObjectRequest = getObjectRequests.get(i);
+                final GetObjectResponse response = ciphertexts.get(i).response();
+                final ContentMetadata metadata = ContentMetadataStrategy.decode(getObjectRequest, response);
+                contentMetadata.add(metadata);
+                materialsRequests.add(decryptMaterialsRequest(getObjectRequest, response, metadata));
+            }
+            final List<DecryptionMaterials> materials = _cryptoMaterialsManager.decryptMaterials(materialsRequests,
+                    maxConcurrency, _materialsExecutor);
+
+            final List<CompletableFuture<ResponseBytes<GetObjectResponse>>> plaintexts = new ArrayList<>();
+            for (int i = 0; i < ciphertexts.size(); i++) {
+                plaintexts.add(deliver(new DecryptingResponseTransformer<>(AsyncResponseTransformer.toBytes(),
+                                getObjectRequests.get(i), contentMetadata.get(i),
+                                deriveContentKey(materials.get(i), contentMetadata.get(i))),
+                        ciphertexts.get(i).response(), ciphertexts.get(i).asByteArrayUnsafe()));
+            }
+            return CompletableFuture.allOf(plaintexts.toArray(new CompletableFuture[0]))
+                    .thenApply(ignored -> plaintexts.stream()
+                            .map(CompletableFuture::join)
+                            .collect(Collectors.toList()));
+        }, _materialsExecutor);
+    }
+
+    /**
+     * Verifies the tags of an AES-GCM object without decrypting its content. The data
+     * key is decrypted as for a get, but the ciphertext is only hashed and compared
+     * against its tag (or against the tag of each segment), so no keystream is
+     * generated and no plaintext is produced. Objects encrypted with legacy algorithm
+     * suites have no tag to verify and are rejected.
+     * @param getObjectRequest the request for the object, which must not have a range
+     * @return a future which is true if every tag of the object is valid
+     */
+    public CompletableFuture<Boolean> verifyObject(GetObjectRequest getObjectRequest) {
+        if (getObjectRequest.range() != null || getObjectRequest.partNumber() != null) {
+            throw new S3EncryptionClientException("Only whole objects can be verified.");
+        }
+        final GetObjectRequest actualRequest = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .build();
+        return _s3AsyncClient.getObject(actualRequest, new VerifyingResponseTransformer(getObjectRequest));
+    }
+
+    /**
+     * Verifies the tags of every object whose key begins with the given prefix, as
+     * {@link #verifyObject} does. Instruction files are skipped. Each listed page is
+     * verified with at most {@value #MAX_CONCURRENT_VERIFICATIONS} objects in flight
+     * before the next page is listed. Objects which cannot be verified are reported
+     * rather than failing the scrub.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @return a future containing the outcome for every object
+     */
+    public CompletableFuture<IntegrityScrubReport> verifyObjectsWithPrefix(String bucket, String prefix) {
+        if (bucket == null || prefix == null) {
+            throw new S3EncryptionClientException("Bucket and prefix must be provided to verify by prefix");
+        }
+        final List<String> verifiedKeys = Collections.synchronizedList(new ArrayList<>());
+        final List<String> failedKeys = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, String> unverifiableKeys = Collections.synchronizedMap(new TreeMap<>());
+        return verifyPage(bucket, prefix, null, verifiedKeys, failedKeys, unverifiableKeys).thenApply(ignored -> {
+            Collections.sort(verifiedKeys);
+            Collections.sort(failedKeys);
+            return new IntegrityScrubReport(verifiedKeys, failedKeys, unverifiableKeys);
+        });
+    }
+
+    private CompletableFuture<Void> verifyPage(String bucket, String prefix, String continuationToken,
+                                               List<String> verifiedKeys, List<String> failedKeys,
+                                               Map<String, String> unverifiableKeys) {
+        final ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(bucket)
+                .prefix(prefix)
+                .continuationToken(continuationToken)
+                .maxKeys(MAX_KEYS_PER_PAGE)
+                .build();
+        return _s3AsyncClient.listObjectsV2(listRequest).thenCompose(listResponse -> {
+            final List<Supplier<CompletableFuture<Void>>> tasks = listResponse.contents().stream()
+                    .map(S3Object::key)
+                    // Instruction files are read along with their object
+                    .filter(key -> !key.endsWith(INSTRUCTION_FILE_SUFFIX))
+                    .map(key -> (Supplier<CompletableFuture<Void>>) () -> verifyObject(GetObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build())
+                            .handle((valid, error) -> {
+                                if (error != null) {
+                                    final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                            ? error.getCause()
+                                            : error;
+                                    unverifiableKeys.put(key, String.valueOf(cause.getMessage()));
+                                } else if (valid) {
+                                    verifiedKeys.add(key);
+                                } else {
+                                    failedKeys.add(key);
+                                }
+                                return null;
+                            }))
+                    .collect(Collectors.toList());
+            return ConcurrencyUtils.runBounded(tasks, MAX_CONCURRENT_VERIFICATIONS).thenCompose(ignored -> {
+                if (Boolean.TRUE.equals(listResponse.isTruncated())) {
+                    return verifyPage(bucket, prefix, listResponse.nextContinuationToken(),
+                            verifiedKeys, failedKeys, unverifiableKeys);
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        });
+    }
+
+    /**
+     * The metadata and decryption materials needed to read ranges of one object,
+     * resolved once from its HEAD response.
+     */
+    private final class RangedReads {
+        private final GetObjectRequest _getObjectRequest;
+        private final String _eTag;
+        private final ContentMetadata _contentMetadata;
+        private final DecryptionMaterials _materials;
+        private final long _plaintextLength;
+        private final int _alignment;
+
+        RangedReads(GetObjectRequest getObjectRequest, HeadObjectResponse headResponse) {
+            final GetObjectResponse response = wholeObjectResponse(headResponse);
+            final ContentMetadata contentMetadata = ContentMetadataStrategy.decode(getObjectRequest, response);
+            if (contentMetadata.contentCompression() != null) {
+                throw new S3EncryptionClientException("Ranged reads are not supported for compressed objects.");
+            }
+            final AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
+            if (!algorithmSuite.isSegmented() && algorithmSuite != AlgorithmSuite.ALG_AES_256_CTR_IV16_TAG16_NO_KDF) {
+                throw new S3EncryptionClientException("Ranged reads are not supported for " + algorithmSuite.cipherName());
+            }
+            _getObjectRequest = getObjectRequest;
+            _eTag = headResponse.eTag();
+            _contentMetadata = contentMetadata;
+            _materials = prepareMaterialsFromRequest(getObjectRequest, response, contentMetadata);
+            _plaintextLength = algorithmSuite.plaintextLength(headResponse.contentLength());
+            _alignment = algorithmSuite.isSegmented()
+                    ? algorithmSuite.cipherSegmentLengthBytes()
+                    : algorithmSuite.cipherBlockSizeBytes();
+        }
+
+        long plaintextLength() {
+            return _plaintextLength;
+        }
+
+        int alignment() {
+            return _alignment;
+        }
+
+        CompletableFuture<byte[]> fetch(long first, long last) {
+            return getPlaintextRange(_getObjectRequest, _eTag, _contentMetadata, _materials, first, last);
+        }
+    }
+
+    /**
+     * Fetches and decrypts a plaintext range using metadata and materials which were
+     * already resolved, so no further metadata requests or key decryption are needed.
+     */
+    private CompletableFuture<byte[]> getPlaintextRange(GetObjectRequest getObjectRequest, String eTag,
+                                                        ContentMetadata contentMetadata, DecryptionMaterials materials,
+                                                        long first, long last) {
+        final GetObjectRequest desiredRequest = getObjectRequest.toBuilder()
+                .range("bytes=" + first + "-" + last)
+                .build();
+        final String ciphertextRange = materials.algorithmSuite().isSegmented()
+                ? segmentedCiphertextRange(first, last)
+                : RangedGetUtils.getCryptoRangeAsString(desiredRequest.range());
+        final GetObjectRequest rangedRequest = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .ifMatch(eTag)
+                .range(ciphertextRange)
+                .build();
+        return _s3AsyncClient.getObject(rangedRequest, new DecryptingResponseTransformer<>(AsyncResponseTransformer.toBytes(),
+                        desiredRequest, contentMetadata, materials.toBuilder().s3Request(desiredRequest).build()))
+                .thenApply(ResponseBytes::asByteArray);
+    }
+
+    private static HeadObjectRequest headRequest(GetObjectRequest getObjectRequest) {
+        return HeadObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(getObjectRequest.bucket())
+                .key(getObjectRequest.key())
+                .versionId(getObjectRequest.versionId())
+                .ifMatch(getObjectRequest.ifMatch())
+                .expectedBucketOwner(getObjectRequest.expectedBucketOwner())
+                .requestPayer(getObjectRequest.requestPayerAsString())
+                .sseCustomerAlgorithm(getObjectRequest.sseCustomerAlgorithm())
+                .sseCustomerKey(getObjectRequest.sseCustomerKey())
+                .sseCustomerKeyMD5(getObjectRequest.sseCustomerKeyMD5())
+                .build();
+    }
+
+    /**
+     * Fetches only the segments which hold the requested range. Each segment is
+     * authenticated on its own, so no legacy mode is needed.
+     */
+    private <T> CompletableFuture<T> getSegmentedObjectRange(GetObjectRequest getObjectRequest, String eTag,
+                                                             AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
+        final long[] desiredRange = RangedGetUtils.getRange(getObjectRequest.range());
+        final GetObjectRequest.Builder requestBuilder = getObjectRequest.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .ifMatch(eTag)
+                .range(null);
+        if (desiredRange != null && desiredRange[0] <= desiredRange[1]) {
+            requestBuilder.range(segmentedCiphertextRange(desiredRange[0], desiredRange[1]));
+        }
+        return _s3AsyncClient.getObject(requestBuilder.build(), new DecryptingResponseTransformer<>(asyncResponseTransformer,
+                getObjectRequest));
+    }
+
+    /**
+     * Returns the range of whole ciphertext segments holding the given plaintext range.
+     */
+    private static String segmentedCiphertextRange(long first, long last) {
+        final int segmentLength = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF.cipherSegmentLengthBytes();
+        final int ciphertextSegmentLength = segmentLength
+                + AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF.cipherTagLengthBytes();
+        final long firstSegment = first / segmentLength;
+        final long lastSegment = last / segmentLength;
+        return "bytes=" + firstSegment * ciphertextSegmentLength + "-" + ((lastSegment + 1) * ciphertextSegmentLength - 1);
+    }
+
+    private <T> CompletableFuture<T> getObjectWithCryptoRange(GetObjectRequest getObjectRequest,
+                                                              AsyncResponseTransformer<GetObjectResponse, T> asyncResponseTransformer) {
         // In async, decryption is done within a response transformation
         String cryptoRange = RangedGetUtils.getCryptoRangeAsString(getObjectRequest.range());
         GetObjectRequest adjustedRangeRequest = getObjectRequest.toBuilder()
@@ -68,6 +752,13 @@ public class GetEncryptedObjectPipeline {
 
     private DecryptionMaterials prepareMaterialsFromRequest(final GetObjectRequest getObjectRequest, final GetObjectResponse getObjectResponse,
                                                             final ContentMetadata contentMetadata) {
+        DecryptionMaterials materials = _cryptoMaterialsManager.decryptMaterials(
+                decryptMaterialsRequest(getObjectRequest, getObjectResponse, contentMetadata));
+        return deriveContentKey(materials, contentMetadata);
+    }
+
+    private DecryptMaterialsRequest decryptMaterialsRequest(final GetObjectRequest getObjectRequest, final GetObjectResponse getObjectResponse,
+                                                            final ContentMetadata contentMetadata) {
         AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
         if (!_enableLegacyUnauthenticatedModes && algorithmSuite.isLegacy()) {
             throw new S3EncryptionClientException("Enable legacy unauthenticated modes to use legacy content decryption: " + algorithmSuite.cipherName());
@@ -75,15 +766,46 @@ public class GetEncryptedObjectPipeline {
 
         List<EncryptedDataKey> encryptedDataKeys = Collections.singletonList(contentMetadata.encryptedDataKey());
 
-        DecryptMaterialsRequest materialsRequest = DecryptMaterialsRequest.builder()
+        return DecryptMaterialsRequest.builder()
                 .s3Request(getObjectRequest)
                 .algorithmSuite(algorithmSuite)
                 .encryptedDataKeys(encryptedDataKeys)
                 .encryptionContext(contentMetadata.encryptedDataKeyContext())
                 .ciphertextLength(getObjectResponse.contentLength())
                 .build();
+    }
+
+    private static DecryptionMaterials deriveContentKey(DecryptionMaterials materials, ContentMetadata contentMetadata) {
+        AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
+        if (algorithmSuite.usesKdf()) {
+            materials = materials.toBuilder()
+                    .plaintextDataKey(HkdfKeyDerivation.deriveContentKey(algorithmSuite, materials.plaintextDataKey(),
+                            contentMetadata.contentKdfSalt(), materials.cryptoProvider()))
+                    .build();
+        }
+        return materials;
+    }
 
-        return _cryptoMaterialsManager.decryptMaterials(materialsRequest);
+    /**
+     * Returns the codec needed to decompress the object's plaintext, or null
+     * if the object was not compressed.
+     */
+    private CompressionCodec resolveCompressionCodec(final GetObjectRequest getObjectRequest,
+                                                     final ContentMetadata contentMetadata) {
+        final String compression = contentMetadata.contentCompression();
+        if (compression == null) {
+            return null;
+        }
+        if (getObjectRequest.range() != null) {
+            throw new S3EncryptionClientException("Ranged Get is not supported for compressed objects.");
+        }
+        if (_compressionCodec != null && _compressionCodec.name().equals(compression)) {
+            return _compressionCodec;
+        }
+        if (DeflateCompressionCodec.NAME.equals(compression)) {
+            return new DeflateCompressionCodec();
+        }
+        throw new S3EncryptionClientException("Unknown compression codec: " + compression);
     }
 
     private class DecryptingResponseTransformer<T> implements AsyncResponseTransformer<GetObjectResponse, T> {
@@ -97,6 +819,8 @@ public class GetEncryptedObjectPipeline {
         ContentMetadata contentMetadata;
         GetObjectResponse getObjectResponse;
         DecryptionMaterials materials;
+        CompressionCodec compressionCodec;
+        CompletableFuture<DecryptionMaterials> materialsFuture;
 
         CompletableFuture<T> resultFuture;
 
@@ -106,6 +830,18 @@ public class GetEncryptedObjectPipeline {
             this.getObjectRequest = getObjectRequest;
         }
 
+        /**
+         * Decrypts using metadata and materials which were already resolved for this object.
+         */
+        DecryptingResponseTransformer(AsyncResponseTransformer<GetObjectResponse, T> wrappedAsyncResponseTransformer,
+                                      GetObjectRequest getObjectRequest, ContentMetadata contentMetadata,
+                                      DecryptionMaterials materials) {
+            this(wrappedAsyncResponseTransformer, getObjectRequest);
+            this.contentMetadata = contentMetadata;
+            this.materials = materials;
+            this.compressionCodec = resolveCompressionCodec(getObjectRequest, contentMetadata);
+        }
+
         @Override
         public CompletableFuture<T> prepare() {
             resultFuture = wrappedAsyncResponseTransformer.prepare();
@@ -115,8 +851,15 @@ public class GetEncryptedObjectPipeline {
         @Override
         public void onResponse(GetObjectResponse response) {
             getObjectResponse = response;
-            contentMetadata = ContentMetadataStrategy.decode(getObjectRequest, response);
-            materials = prepareMaterialsFromRequest(getObjectRequest, response, contentMetadata);
+            if (materials == null) {
+                contentMetadata = ContentMetadataStrategy.decode(getObjectRequest, response);
+                final DecryptMaterialsRequest materialsRequest = decryptMaterialsRequest(getObjectRequest, response, contentMetadata);
+                compressionCodec = resolveCompressionCodec(getObjectRequest, contentMetadata);
+                // Unwrap the data key while the body starts to download, rather than before
+                final ContentMetadata metadata = contentMetadata;
+                materialsFuture = CompletableFuture.supplyAsync(() -> deriveContentKey(
+                        _cryptoMaterialsManager.decryptMaterials(materialsRequest), metadata), _materialsExecutor);
+            }
             wrappedAsyncResponseTransformer.onResponse(response);
         }
 
@@ -127,19 +870,71 @@ public class GetEncryptedObjectPipeline {
 
         @Override
         public void onStream(SdkPublisher<ByteBuffer> ciphertextPublisher) {
+            if (materialsFuture == null) {
+                wrappedAsyncResponseTransformer.onStream(plaintextPublisher(ciphertextPublisher));
+                return;
+            }
+            final ReadAheadPublisher readAhead = new ReadAheadPublisher(ciphertextPublisher, MAX_READ_AHEAD_BYTES);
+            wrappedAsyncResponseTransformer.onStream(subscriber -> materialsFuture.whenComplete((resolved, error) -> {
+                Throwable failure = error instanceof CompletionException ? error.getCause() : error;
+                SdkPublisher<ByteBuffer> plaintextPublisher = null;
+                if (failure == null) {
+                    try {
+                        materials = resolved;
+                        plaintextPublisher = plaintextPublisher(readAhead);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                if (failure != null) {
+                    readAhead.cancel();
+                    subscriber.onSubscribe(new Subscription() {
+                        @Override
+                        public void request(long n) {
+                        }
+
+                        @Override
+                        public void cancel() {
+                        }
+                    });
+                    subscriber.onError(failure);
+                    return;
+                }
+                plaintextPublisher.subscribe(subscriber);
+            }));
+        }
+
+        private SdkPublisher<ByteBuffer> plaintextPublisher(SdkPublisher<ByteBuffer> ciphertextPublisher) {
             long[] desiredRange = RangedGetUtils.getRange(materials.s3Request().range());
             long[] cryptoRange = RangedGetUtils.getCryptoRange(materials.s3Request().range());
             AlgorithmSuite algorithmSuite = materials.algorithmSuite();
+            if (algorithmSuite.isSegmented()) {
+                return decompress(segmentedPlaintextPublisher(ciphertextPublisher, desiredRange));
+            }
             SecretKey contentKey = materials.dataKey();
             final int tagLength = algorithmSuite.cipherTagLengthBits();
             byte[] iv = contentMetadata.contentIv();
             if (algorithmSuite == AlgorithmSuite.ALG_AES_256_CTR_IV16_TAG16_NO_KDF) {
                 iv = AesCtrUtils.adjustIV(iv, cryptoRange[0]);
             }
+            if (algorithmSuite == AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF
+                    && !RangedGetUtils.isFinalRange(contentMetadata.contentRange())) {
+                // A slice which ends before the final block has no padding to remove
+                return decompress(new CipherPublisher(ciphertextPublisher,
+                        getObjectResponse.contentLength(), desiredRange, contentMetadata.contentRange(),
+                        algorithmSuite.cipherTagLengthBits(), unpaddedCbcCipher(contentKey, iv)));
+            }
+            if (algorithmSuite == AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF && contentMetadata.contentRange() == null
+                    && _cbcDecryptionParallelism > 1) {
+                return decompress(new ParallelCbcCipherPublisher(ciphertextPublisher,
+                        getObjectResponse.contentLength(), contentKey, materials.cryptoProvider(), iv,
+                        _cbcDecryptionParallelism, _cbcDecryptionExecutor));
+            }
             try {
                 final Cipher cipher = CryptoFactory.createCipher(algorithmSuite.cipherName(), materials.cryptoProvider());
                 switch (algorithmSuite) {
                     case ALG_AES_256_GCM_IV12_TAG16_NO_KDF:
+                    case ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256:
                         cipher.init(Cipher.DECRYPT_MODE, contentKey, new GCMParameterSpec(tagLength, iv));
                         break;
                     case ALG_AES_256_CTR_IV16_TAG16_NO_KDF:
@@ -156,19 +951,279 @@ public class GetEncryptedObjectPipeline {
                     // CBC and GCM with delayed auth enabled use a standard publisher
                     CipherPublisher plaintextPublisher = new CipherPublisher(ciphertextPublisher,
                             getObjectResponse.contentLength(), desiredRange, contentMetadata.contentRange(), algorithmSuite.cipherTagLengthBits(), materials, iv);
-                    wrappedAsyncResponseTransformer.onStream(plaintextPublisher);
+                    return decompress(plaintextPublisher);
                 } else {
                     // Use buffered publisher for GCM when delayed auth is not enabled
                     BufferedCipherPublisher plaintextPublisher = new BufferedCipherPublisher(ciphertextPublisher,
                             getObjectResponse.contentLength(), desiredRange, contentMetadata.contentRange(), algorithmSuite.cipherTagLengthBits(),
                             materials, iv);
-                    wrappedAsyncResponseTransformer.onStream(plaintextPublisher);
+                    return decompress(plaintextPublisher);
                 }
 
             } catch (GeneralSecurityException e) {
                 throw new S3EncryptionClientException("Unable to " + algorithmSuite.cipherName() + " content decrypt.", e);
             }
         }
+
+        private Cipher unpaddedCbcCipher(SecretKey contentKey, byte[] iv) {
+            try {
+                final Cipher cipher = CryptoFactory.createCipher(CBC_NO_PADDING, materials.cryptoProvider());
+                cipher.init(Cipher.DECRYPT_MODE, contentKey, new IvParameterSpec(iv));
+                return cipher;
+            } catch (GeneralSecurityException e) {
+                throw new S3EncryptionClientException("Unable to " + CBC_NO_PADDING + " content decrypt.", e);
+            }
+        }
+
+        private SdkPublisher<ByteBuffer> segmentedPlaintextPublisher(SdkPublisher<ByteBuffer> ciphertextPublisher,
+                                                                     long[] desiredRange) {
+            final String contentRange = getObjectResponse.contentRange();
+            if (contentRange == null) {
+                return new SegmentedCipherPublisher(ciphertextPublisher, materials, contentMetadata.contentIv(),
+                        0, getObjectResponse.contentLength(), getObjectResponse.contentLength(), 0, -1);
+            }
+            // Content-Range is of the form "bytes first-last/total"
+            final long firstByte = Long.parseLong(contentRange.substring(contentRange.indexOf(' ') + 1, contentRange.indexOf('-')));
+            final long lastByte = Long.parseLong(contentRange.substring(contentRange.indexOf('-') + 1, contentRange.lastIndexOf('/')));
+            final long totalCiphertextLength = Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1));
+            final AlgorithmSuite algorithmSuite = materials.algorithmSuite();
+            final long segmentLength = algorithmSuite.cipherSegmentLengthBytes();
+            final long firstSegment = firstByte / (segmentLength + algorithmSuite.cipherTagLengthBytes());
+            final long plaintextToSkip = desiredRange == null ? 0 : desiredRange[0] - firstSegment * segmentLength;
+            final long plaintextLength = desiredRange == null ? -1 : desiredRange[1] - desiredRange[0] + 1;
+            return new SegmentedCipherPublisher(ciphertextPublisher, materials, contentMetadata.contentIv(),
+                    firstSegment, lastByte + 1, totalCiphertextLength, plaintextToSkip, plaintextLength);
+        }
+
+        private SdkPublisher<ByteBuffer> decompress(SdkPublisher<ByteBuffer> plaintextPublisher) {
+            if (compressionCodec == null) {
+                return plaintextPublisher;
+            }
+            return new DecompressingPublisher(plaintextPublisher, compressionCodec);
+        }
+    }
+
+    /**
+     * Hashes the ciphertext of a GCM object against its tags instead of decrypting it.
+     */
+    private class VerifyingResponseTransformer implements AsyncResponseTransformer<GetObjectResponse, Boolean> {
+        private final GetObjectRequest getObjectRequest;
+        private CompletableFuture<Boolean> resultFuture;
+        private GetObjectResponse response;
+        private ContentMetadata contentMetadata;
+        private CompletableFuture<DecryptionMaterials> materialsFuture;
+
+        VerifyingResponseTransformer(GetObjectRequest getObjectRequest) {
+            this.getObjectRequest = getObjectRequest;
+        }
+
+        @Override
+        public CompletableFuture<Boolean> prepare() {
+            resultFuture = new CompletableFuture<>();
+            return resultFuture;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            this.response = response;
+            // The metadata may be in an instruction file and the data key may need a key
+            // service, so both are resolved on the materials executor
+            materialsFuture = CompletableFuture.supplyAsync(() -> {
+                contentMetadata = ContentMetadataStrategy.decode(getObjectRequest, response);
+                final AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
+                if (algorithmSuite.isLegacy()) {
+                    throw new S3EncryptionClientException("Only objects encrypted with AES-GCM can be verified: "
+                            + algorithmSuite.cipherName());
+                }
+                return prepareMaterialsFromRequest(getObjectRequest, response, contentMetadata);
+            }, _materialsExecutor);
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            resultFuture.completeExceptionally(error);
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> ciphertextPublisher) {
+            materialsFuture.whenComplete((materials, error) -> {
+                if (error == null) {
+                    ciphertextPublisher.subscribe(new TagVerifyingSubscriber(resultFuture, materials,
+                            contentMetadata.contentIv(), response.contentLength()));
+                    return;
+                }
+                discard(ciphertextPublisher);
+                resultFuture.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            });
+        }
+    }
+
+    /**
+     * Decrypts a range fetched by {@link #getClosedObjectRange}, once the response shows
+     * whether the object is segmented. If segments were fetched from an object which is
+     * not segmented, the get fails and the body is cancelled unread; if a legacy crypto range was fetched from a segmented
+     * object, the body is discarded and the segments are fetched instead. The wrapped
+     * transformer is only prepared by the request whose body it decrypts.
+     */
+    private class RangeCheckingResponseTransformer<T> implements AsyncResponseTransformer<GetObjectResponse, T> {
+        private final AsyncResponseTransformer<GetObjectResponse, T> wrappedAsyncResponseTransformer;
+        private final GetObjectRequest getObjectRequest;
+        private final boolean fetchedSegments;
+        private CompletableFuture<T> resultFuture;
+        private DecryptingResponseTransformer<T> decryptingTransformer;
+        private GetObjectResponse response;
+        private boolean discarding;
+
+        RangeCheckingResponseTransformer(AsyncResponseTransformer<GetObjectResponse, T> wrappedAsyncResponseTransformer,
+                                         GetObjectRequest getObjectRequest, boolean fetchedSegments) {
+            this.wrappedAsyncResponseTransformer = wrappedAsyncResponseTransformer;
+            this.getObjectRequest = getObjectRequest;
+            this.fetchedSegments = fetchedSegments;
+        }
+
+        @Override
+        public CompletableFuture<T> prepare() {
+            resultFuture = new CompletableFuture<>();
+            decryptingTransformer = null;
+            discarding = false;
+            return resultFuture;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            this.response = response;
+            final boolean segmented = ContentMetadataStrategy.isSegmented(response.metadata());
+            if (fetchedSegments && !segmented) {
+                // The body is cancelled as soon as it arrives rather than downloaded
+                discarding = true;
+                resultFuture.completeExceptionally(new S3EncryptionClientException(
+                        "Enable legacy unauthenticated modes to use Ranged Get."));
+                return;
+            }
+            if (segmented != fetchedSegments) {
+                // The segments are fetched once this body has been discarded
+                return;
+            }
+            decryptingTransformer = new DecryptingResponseTransformer<>(wrappedAsyncResponseTransformer, getObjectRequest);
+            final CompletableFuture<T> result = resultFuture;
+            decryptingTransformer.prepare().whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            decryptingTransformer.onResponse(response);
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            if (discarding) {
+                // The discarded body no longer decides the result
+                return;
+            }
+            if (decryptingTransformer != null) {
+                decryptingTransformer.exceptionOccurred(error);
+            }
+            resultFuture.completeExceptionally(error);
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> ciphertextPublisher) {
+            if (decryptingTransformer != null) {
+                decryptingTransformer.onStream(ciphertextPublisher);
+                return;
+            }
+            final boolean rejected = discarding;
+            discarding = true;
+            discard(ciphertextPublisher);
+            if (rejected) {
+                return;
+            }
+            final CompletableFuture<T> result = resultFuture;
+            getSegmentedObjectRange(getObjectRequest, response.eTag(), wrappedAsyncResponseTransformer)
+                    .whenComplete((value, error) -> {
+                        if (error != null) {
+                            result.completeExceptionally(error);
+                        } else {
+                            result.complete(value);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Copies the ciphertext of an object into the encrypted object cache as it is passed
+     * on to be decrypted. The wrapped transformer is only prepared once a response
+     * arrives, so a not-modified response can be answered from the cache instead.
+     */
+    private class CachingResponseTransformer<T> implements AsyncResponseTransformer<GetObjectResponse, T> {
+        private final AsyncResponseTransformer<GetObjectResponse, T> wrappedAsyncResponseTransformer;
+        private final GetObjectRequest getObjectRequest;
+        private CompletableFuture<T> resultFuture;
+        private boolean wrappedPrepared;
+        private GetObjectResponse response;
+
+        CachingResponseTransformer(AsyncResponseTransformer<GetObjectResponse, T> wrappedAsyncResponseTransformer,
+                                   GetObjectRequest getObjectRequest) {
+            this.wrappedAsyncResponseTransformer = wrappedAsyncResponseTransformer;
+            this.getObjectRequest = getObjectRequest;
+        }
+
+        @Override
+        public CompletableFuture<T> prepare() {
+            resultFuture = new CompletableFuture<>();
+            wrappedPrepared = false;
+            return resultFuture;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            this.response = response;
+            _encryptedObjectCache.recordMiss();
+            wrappedPrepared = true;
+            final CompletableFuture<T> result = resultFuture;
+            wrappedAsyncResponseTransformer.prepare().whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            wrappedAsyncResponseTransformer.onResponse(response);
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            if (wrappedPrepared) {
+                wrappedAsyncResponseTransformer.exceptionOccurred(error);
+            }
+            resultFuture.completeExceptionally(error);
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> ciphertextPublisher) {
+            final Long contentLength = response.contentLength();
+            if (contentLength == null || contentLength > _encryptedObjectCache.maxObjectBytes()) {
+                wrappedAsyncResponseTransformer.onStream(ciphertextPublisher);
+                return;
+            }
+            final ByteArrayOutputStream ciphertext = new ByteArrayOutputStream(contentLength.intValue());
+            wrappedAsyncResponseTransformer.onStream(ciphertextPublisher
+                    .map(buffer -> {
+                        final ByteBuffer copy = buffer.duplicate();
+                        final byte[] bytes = new byte[copy.remaining()];
+                        copy.get(bytes);
+                        ciphertext.write(bytes, 0, bytes.length);
+                        return buffer;
+                    })
+                    .doAfterOnComplete(() -> {
+                        if (ciphertext.size() == contentLength) {
+                            _encryptedObjectCache.put(getObjectRequest.bucket(), getObjectRequest.key(),
+                                    getObjectRequest.versionId(), response, ciphertext.toByteArray());
+                        }
+                    }));
+        }
     }
 
     public static class Builder {
@@ -176,6 +1231,12 @@ public class GetEncryptedObjectPipeline {
         private CryptographicMaterialsManager _cryptoMaterialsManager;
         private boolean _enableLegacyUnauthenticatedModes;
         private boolean _enableDelayedAuthentication;
+        private CompressionCodec _compressionCodec;
+        private DecryptedBlockCache _decryptedBlockCache;
+        private EncryptedObjectCache _encryptedObjectCache;
+        private int _cbcDecryptionParallelism = 1;
+        private Executor _cbcDecryptionExecutor = Runnable::run;
+        private Executor _materialsExecutor = Runnable::run;
 
         private Builder() {
         }
@@ -205,6 +1266,67 @@ public class GetEncryptedObjectPipeline {
             return this;
         }
 
+        /**
+         * The codec used to decompress objects which were compressed with a codec of
+         * the same name. Objects compressed with Deflate can always be decompressed.
+         */
+        public Builder compressionCodec(CompressionCodec compressionCodec) {
+            this._compressionCodec = compressionCodec;
+            return this;
+        }
+
+        /**
+         * A cache of decrypted plaintext used to serve repeated ranged gets.
+         * Defaults to null, which disables caching.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between pipelines")
+        public Builder decryptedBlockCache(DecryptedBlockCache decryptedBlockCache) {
+            this._decryptedBlockCache = decryptedBlockCache;
+            return this;
+        }
+
+        /**
+         * A cache of the ciphertext of recently read objects, revalidated on each get.
+         * Defaults to null, which disables caching.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "The cache is shared between pipelines")
+        public Builder encryptedObjectCache(EncryptedObjectCache encryptedObjectCache) {
+            this._encryptedObjectCache = encryptedObjectCache;
+            return this;
+        }
+
+        /**
+         * The number of threads used to decrypt whole objects encrypted with AES-CBC.
+         * Defaults to 1, which decrypts on the thread delivering the response.
+         */
+        public Builder cbcDecryptionParallelism(int cbcDecryptionParallelism) {
+            if (cbcDecryptionParallelism < 1) {
+                throw new S3EncryptionClientException("cbcDecryptionParallelism must be at least 1");
+            }
+            this._cbcDecryptionParallelism = cbcDecryptionParallelism;
+            return this;
+        }
+
+        /**
+         * The executor on which chunks of AES-CBC objects are decrypted when
+         * {@link #cbcDecryptionParallelism(int)} is greater than 1. It should have at least
+         * that many threads. Defaults to running on the thread delivering the response.
+         */
+        public Builder cbcDecryptionExecutor(Executor cbcDecryptionExecutor) {
+            this._cbcDecryptionExecutor = cbcDecryptionExecutor;
+            return this;
+        }
+
+        /**
+         * The executor on which the CMM is asked to decrypt materials, so that a blocking
+         * call to a key service does not hold up the thread delivering the response.
+         * Defaults to running on the thread delivering the response.
+         */
+        public Builder materialsExecutor(Executor materialsExecutor) {
+            this._materialsExecutor = materialsExecutor;
+            return this;
+        }
+
         public GetEncryptedObjectPipeline build() {
             return new GetEncryptedObjectPipeline(this);
         }
@@ -0,0 +1,72 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+
+/**
+ * Derives per-object content keys from a data key using HKDF (RFC 5869).
+ */
+final class HkdfKeyDerivation {
+
+    static final int SALT_LENGTH_BYTES = 32;
+
+    private static final byte[] INFO_LABEL = "S3EncryptionClient content key".getBytes(StandardCharsets.UTF_8);
+
+    private HkdfKeyDerivation() {
+    }
+
+    /**
+     * Derives the content key for a single object. The algorithm suite id is
+     * bound into the derivation so a key is never shared across suites.
+     */
+    static byte[] deriveContentKey(AlgorithmSuite algorithmSuite, byte[] dataKey, byte[] salt, Provider provider) {
+        if (!algorithmSuite.usesKdf()) {
+            throw new S3EncryptionClientException("Algorithm does not use a KDF: " + algorithmSuite.cipherName());
+        }
+        if (salt == null || salt.length != SALT_LENGTH_BYTES) {
+            throw new S3EncryptionClientException("Content key salt must be " + SALT_LENGTH_BYTES + " bytes.");
+        }
+        final byte[] info = new byte[INFO_LABEL.length + 2];
+        System.arraycopy(INFO_LABEL, 0, info, 0, INFO_LABEL.length);
+        info[INFO_LABEL.length] = (byte) (algorithmSuite.id() >>> 8);
+        info[INFO_LABEL.length + 1] = (byte) algorithmSuite.id();
+        return hkdf(algorithmSuite.kdfHmacAlgorithm(), provider, dataKey, salt, info,
+                algorithmSuite.dataKeyLengthBits() / 8);
+    }
+
+    static byte[] hkdf(String hmacAlgorithm, Provider provider, byte[] inputKeyMaterial, byte[] salt, byte[] info,
+                       int length) {
+        try {
+            final Mac mac = provider == null ? Mac.getInstance(hmacAlgorithm) : Mac.getInstance(hmacAlgorithm, provider);
+            // Extract
+            mac.init(new SecretKeySpec(salt, hmacAlgorithm));
+            final byte[] pseudoRandomKey = mac.doFinal(inputKeyMaterial);
+
+            // Expand
+            mac.init(new SecretKeySpec(pseudoRandomKey, hmacAlgorithm));
+            final byte[] output = new byte[length];
+            byte[] block = new byte[0];
+            int offset = 0;
+            for (int counter = 1; offset < length; counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                final int toCopy = Math.min(block.length, length - offset);
+                System.arraycopy(block, 0, output, offset, toCopy);
+                offset += toCopy;
+            }
+            return output;
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientException("Unable to derive content key with " + hmacAlgorithm, e);
+        }
+    }
+}
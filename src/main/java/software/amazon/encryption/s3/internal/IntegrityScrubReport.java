@@ -0,0 +1,54 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of verifying the tags of every object under a prefix. Each object
+ * is either verified, failed (its tag does not match its ciphertext) or
+ * unverifiable (it could not be checked, for example because it was not
+ * encrypted with AES-GCM or its data key could not be decrypted).
+ */
+public final class IntegrityScrubReport {
+    private final List<String> _verifiedKeys;
+    private final List<String> _failedKeys;
+    private final Map<String, String> _unverifiableKeys;
+
+    IntegrityScrubReport(List<String> verifiedKeys, List<String> failedKeys, Map<String, String> unverifiableKeys) {
+        _verifiedKeys = Collections.unmodifiableList(verifiedKeys);
+        _failedKeys = Collections.unmodifiableList(failedKeys);
+        _unverifiableKeys = Collections.unmodifiableMap(new LinkedHashMap<>(unverifiableKeys));
+    }
+
+    /**
+     * @return the keys of objects whose tags are valid
+     */
+    public List<String> verifiedKeys() {
+        return _verifiedKeys;
+    }
+
+    /**
+     * @return the keys of objects whose tags do not match their ciphertext
+     */
+    public List<String> failedKeys() {
+        return _failedKeys;
+    }
+
+    /**
+     * @return the keys of objects which could not be verified, mapped to the reason
+     */
+    public Map<String, String> unverifiableKeys() {
+        return _unverifiableKeys;
+    }
+
+    /**
+     * @return true if no object failed verification
+     */
+    public boolean isClean() {
+        return _failedKeys.isEmpty();
+    }
+}
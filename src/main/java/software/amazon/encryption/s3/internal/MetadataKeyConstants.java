@@ -13,4 +13,12 @@ public class MetadataKeyConstants {
     // This is usually an actual Java cipher e.g. AES/GCM/NoPadding
     public static final String CONTENT_CIPHER = "x-amz-cek-alg";
     public static final String CONTENT_CIPHER_TAG_LENGTH = "x-amz-tag-len";
+    // The number of plaintext bytes in each segment of segmented content
+    public static final String CONTENT_SEGMENT_LENGTH = "x-amz-segment-len";
+    // The salt the content key is derived with, for algorithm suites which use a KDF
+    public static final String CONTENT_KDF_SALT = "x-amz-kdf-salt";
+    // The name of the codec the plaintext was compressed with before encryption, if any
+    public static final String CONTENT_COMPRESSION = "x-amz-content-compression";
+    // Marks an object whose content is a manifest of separately encrypted shards
+    public static final String SHARD_MANIFEST_VERSION = "x-amz-shard-manifest";
 }
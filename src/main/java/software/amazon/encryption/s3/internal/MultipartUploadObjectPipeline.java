@@ -12,8 +12,10 @@ import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.SdkPartType;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
@@ -28,19 +30,39 @@ import javax.crypto.Cipher;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
 
 public class MultipartUploadObjectPipeline {
+    /**
+     * The only algorithm suite multipart uploads are encrypted with.
+     */
+    public static final AlgorithmSuite MULTIPART_ALGORITHM_SUITE = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
+    public static final long DEFAULT_UPLOAD_FILE_PART_SIZE = 16L * 1024 * 1024;
+    public static final int DEFAULT_UPLOAD_FILE_MAX_CONCURRENCY = 8;
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
     final private S3AsyncClient _s3AsyncClient;
     final private CryptographicMaterialsManager _cryptoMaterialsManager;
     final private MultipartContentEncryptionStrategy _contentEncryptionStrategy;
     final private ContentMetadataEncodingStrategy _contentMetadataEncodingStrategy;
+    final private AlgorithmSuite _algorithmSuite;
     /**
      * Map of data about in progress encrypted multipart uploads.
      */
@@ -52,60 +74,166 @@ public class MultipartUploadObjectPipeline {
         this._contentEncryptionStrategy = builder._contentEncryptionStrategy;
         this._contentMetadataEncodingStrategy = builder._contentMetadataEncodingStrategy;
         this._multipartUploadMaterials = builder._multipartUploadMaterials;
+        this._algorithmSuite = builder._algorithmSuite;
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
-    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
-        EncryptionMaterialsRequest.Builder requestBuilder = EncryptionMaterialsRequest.builder()
-                .s3Request(request);
+    /**
+     * Builds the CreateMultipartUpload request for an object which would otherwise be
+     * uploaded with the given PutObject request, keeping its headers, such as the
+     * content type, server-side encryption, tagging, ACL and storage class.
+     */
+    static CreateMultipartUploadRequest createMultipartUploadRequest(PutObjectRequest request) {
+        return CreateMultipartUploadRequest.builder()
+                .bucket(request.bucket())
+                .key(request.key())
+                .metadata(request.metadata())
+                .overrideConfiguration(request.overrideConfiguration().orElse(null))
+                .acl(request.aclAsString())
+                .cacheControl(request.cacheControl())
+                .contentDisposition(request.contentDisposition())
+                .contentEncoding(request.contentEncoding())
+                .contentLanguage(request.contentLanguage())
+                .contentType(request.contentType())
+                .expires(request.expires())
+                .grantFullControl(request.grantFullControl())
+                .grantRead(request.grantRead())
+                .grantReadACP(request.grantReadACP())
+                .grantWriteACP(request.grantWriteACP())
+                .serverSideEncryption(request.serverSideEncryptionAsString())
+                .storageClass(request.storageClassAsString())
+                .websiteRedirectLocation(request.websiteRedirectLocation())
+                .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                .sseCustomerKey(request.sseCustomerKey())
+                .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                .ssekmsKeyId(request.ssekmsKeyId())
+                .ssekmsEncryptionContext(request.ssekmsEncryptionContext())
+                .bucketKeyEnabled(request.bucketKeyEnabled())
+                .requestPayer(request.requestPayerAsString())
+                .tagging(request.tagging())
+                .objectLockMode(request.objectLockModeAsString())
+                .objectLockRetainUntilDate(request.objectLockRetainUntilDate())
+                .objectLockLegalHoldStatus(request.objectLockLegalHoldStatusAsString())
+                .expectedBucketOwner(request.expectedBucketOwner())
+                .build();
+    }
 
-        EncryptionMaterials materials = _cryptoMaterialsManager.getEncryptionMaterials(requestBuilder.build());
-        MultipartEncryptedContent encryptedContent = _contentEncryptionStrategy.initMultipartEncryption(materials);
+    /**
+     * Starts an UploadPart request for the object of the given PutObject request,
+     * with the headers S3 requires on every part, such as the customer-provided key.
+     */
+    static UploadPartRequest.Builder uploadPartRequest(PutObjectRequest request) {
+        return UploadPartRequest.builder()
+                .bucket(request.bucket())
+                .key(request.key())
+                .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                .sseCustomerKey(request.sseCustomerKey())
+                .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                .requestPayer(request.requestPayerAsString())
+                .expectedBucketOwner(request.expectedBucketOwner());
+    }
 
-        Map<String, String> metadata = new HashMap<>(request.metadata());
-        metadata = _contentMetadataEncodingStrategy.encodeMetadata(materials, encryptedContent.getIv(), metadata);
-        request = request.toBuilder()
-                .overrideConfiguration(API_NAME_INTERCEPTOR)
-                .metadata(metadata).build();
+    /**
+     * Multipart uploads encrypt the parts as one AES-GCM stream, so the object is
+     * encrypted with {@link #MULTIPART_ALGORITHM_SUITE} or not at all; any other
+     * configured suite is rejected rather than silently replaced.
+     */
+    private EncryptionMaterials getEncryptionMaterials(CreateMultipartUploadRequest request) {
+        if (_algorithmSuite != MULTIPART_ALGORITHM_SUITE) {
+            throw new S3EncryptionClientException("Multipart uploads can only be encrypted with "
+                    + MULTIPART_ALGORITHM_SUITE + ", not " + _algorithmSuite + ".");
+        }
+        return _cryptoMaterialsManager.getEncryptionMaterials(EncryptionMaterialsRequest.builder()
+                .s3Request(request)
+                .algorithmSuite(_algorithmSuite)
+                .build());
+    }
 
-        CreateMultipartUploadResponse response = _s3AsyncClient.createMultipartUpload(request).join();
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        return createMultipartUploadAsync(request).join();
+    }
 
+    /**
+     * Creates an encrypted multipart upload without blocking on the service call.
+     * The encryption materials for the upload are registered once the
+     * CreateMultipartUpload response is received.
+     * @param request the request instance
+     * @return a future containing the CreateMultipartUpload response
+     */
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUploadAsync(CreateMultipartUploadRequest request) {
+        EncryptionMaterials materials = getEncryptionMaterials(request);
+        MultipartEncryptedContent encryptedContent = _contentEncryptionStrategy.initMultipartEncryption(materials);
         MultipartUploadMaterials mpuMaterials = MultipartUploadMaterials.builder()
                 .fromEncryptionMaterials(materials)
                 .cipher(encryptedContent.getCipher())
                 .build();
 
-        _multipartUploadMaterials.put(response.uploadId(), mpuMaterials);
+        return sendCreateMultipartUpload(request, materials, encryptedContent.getIv(), mpuMaterials);
+    }
 
-        return response;
+    private CompletableFuture<CreateMultipartUploadResponse> sendCreateMultipartUpload(CreateMultipartUploadRequest request,
+                                                                                     EncryptionMaterials materials, byte[] iv,
+                                                                                     MultipartUploadMaterials mpuMaterials) {
+        Map<String, String> metadata = new HashMap<>(request.metadata());
+        metadata = _contentMetadataEncodingStrategy.encodeMetadata(materials, iv, metadata);
+        CreateMultipartUploadRequest actualRequest = request.toBuilder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .metadata(metadata).build();
+
+        return _s3AsyncClient.createMultipartUpload(actualRequest).thenApply(response -> {
+            _multipartUploadMaterials.put(response.uploadId(), mpuMaterials);
+            return response;
+        });
     }
 
     public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody requestBody)
             throws AwsServiceException, SdkClientException {
+        // The body keeps its own length, so that uploadPartAsync can validate it against the request
+        final AsyncRequestBody plaintextAsyncRequestBody = AsyncRequestBody.fromInputStream(requestBody.contentStreamProvider().newStream(),
+                requestBody.optionalContentLength().orElse(null),
+                Executors.newSingleThreadExecutor());
+        return uploadPartAsync(request, plaintextAsyncRequestBody).join();
+    }
 
-        final AlgorithmSuite algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
+    /**
+     * Encrypts and uploads a part without blocking on the service call.
+     * Parts MUST still be uploaded in series; callers should wait for the
+     * returned future to complete before uploading the next part. Invalid
+     * requests fail the returned future rather than throwing.
+     * @param request the request instance
+     * @param requestBody the plaintext content of the part
+     * @return a future containing the UploadPart response
+     */
+    public CompletableFuture<UploadPartResponse> uploadPartAsync(UploadPartRequest request, AsyncRequestBody requestBody)
+            throws AwsServiceException, SdkClientException {
+        try {
+            return encryptAndUploadPart(request, requestBody);
+        } catch (RuntimeException e) {
+            final CompletableFuture<UploadPartResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private CompletableFuture<UploadPartResponse> encryptAndUploadPart(UploadPartRequest request, AsyncRequestBody requestBody) {
+
+        final AlgorithmSuite algorithmSuite = MULTIPART_ALGORITHM_SUITE;
         final int blockSize = algorithmSuite.cipherBlockSizeBytes();
         // Validate the partSize / contentLength in the request and requestBody
-        // There is similar logic in PutEncryptedObjectPipeline,
-        // but this uses non-async requestBody, so the code is not shared
         final long partContentLength;
         if (request.contentLength() != null) {
-            if (requestBody.optionalContentLength().isPresent() && !request.contentLength().equals(requestBody.optionalContentLength().get())) {
+            if (requestBody.contentLength().isPresent() && !request.contentLength().equals(requestBody.contentLength().get())) {
                 // if the contentLength values do not match, throw an exception, since we don't know which is correct
                 throw new S3EncryptionClientException("The contentLength provided in the request object MUST match the " +
                         "contentLength in the request body");
-            } else if (!requestBody.optionalContentLength().isPresent()) {
-                // no contentLength in request body, use the one in request
-                partContentLength = request.contentLength();
             } else {
-                // only remaining case is when the values match, so either works here
                 partContentLength = request.contentLength();
             }
         } else {
-            partContentLength = requestBody.optionalContentLength().orElse(-1L);
+            partContentLength = requestBody.contentLength().orElse(-1L);
         }
 
         final boolean isLastPart = request.sdkPartType() != null && request.sdkPartType().equals(SdkPartType.LAST);
@@ -129,14 +257,13 @@ public class MultipartUploadObjectPipeline {
         if (materials == null) {
             throw new S3EncryptionClientException("No client-side information available on upload ID " + uploadId);
         }
-        final UploadPartResponse response;
         // Checks the parts are uploaded in series
         materials.beginPartUpload(actualRequest.partNumber(), partContentLength);
-        Cipher cipher = materials.getCipher(materials.getIv());
+        final CompletableFuture<UploadPartResponse> response;
         try {
-            final AsyncRequestBody cipherAsyncRequestBody = new CipherAsyncRequestBody(AsyncRequestBody.fromInputStream(requestBody.contentStreamProvider().newStream(),
-                    partContentLength, // this MUST be the original contentLength; it refers to the plaintext stream
-                    Executors.newSingleThreadExecutor()), ciphertextLength, materials, cipher.getIV(), isLastPart);
+            Cipher cipher = materials.getCipher(materials.getIv());
+            final AsyncRequestBody cipherAsyncRequestBody = new CipherAsyncRequestBody(requestBody, ciphertextLength,
+                    materials, cipher.getIV(), isLastPart);
 
             // Ensure we haven't already seen the last part
             if (isLastPart) {
@@ -148,47 +275,96 @@ public class MultipartUploadObjectPipeline {
             }
             // Ensures parts are not retried to avoid corrupting ciphertext
             AsyncRequestBody noRetryBody = new NoRetriesAsyncRequestBody(cipherAsyncRequestBody);
-            response =  _s3AsyncClient.uploadPart(actualRequest, noRetryBody).join();
-        } finally {
+            response = _s3AsyncClient.uploadPart(actualRequest, noRetryBody);
+        } catch (RuntimeException e) {
             materials.endPartUpload();
+            throw e;
         }
-        if (isLastPart) {
-            materials.setHasFinalPartBeenSeen(true);
-        }
-        return response;
+        return response.whenComplete((uploadPartResponse, throwable) -> {
+            materials.endPartUpload();
+            if (throwable == null && isLastPart) {
+                materials.setHasFinalPartBeenSeen(true);
+            }
+        });
     }
 
     public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request)
             throws AwsServiceException, SdkClientException {
+        return completeMultipartUploadAsync(request).join();
+    }
+
+    /**
+     * Completes an encrypted multipart upload without blocking on the service call.
+     * An upload whose last part has not been uploaded fails the returned future
+     * rather than throwing.
+     * @param request the request instance
+     * @return a future containing the CompleteMultipartUpload response
+     */
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUploadAsync(CompleteMultipartUploadRequest request)
+            throws AwsServiceException, SdkClientException {
         String uploadId = request.uploadId();
         final MultipartUploadMaterials uploadContext = _multipartUploadMaterials.get(uploadId);
 
         if (uploadContext != null && !uploadContext.hasFinalPartBeenSeen()) {
-            throw new S3EncryptionClientException(
+            final CompletableFuture<CompleteMultipartUploadResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new S3EncryptionClientException(
                     "Unable to complete an encrypted multipart upload without being told which part was the last.  "
-                            + "Without knowing which part was the last, the encrypted data in Amazon S3 is incomplete and corrupt.");
+                            + "Without knowing which part was the last, the encrypted data in Amazon S3 is incomplete and corrupt."));
+            return failed;
         }
 
         CompleteMultipartUploadRequest actualRequest = request.toBuilder()
                 .overrideConfiguration(API_NAME_INTERCEPTOR)
                 .build();
 
-        CompleteMultipartUploadResponse response = _s3AsyncClient.completeMultipartUpload(actualRequest).join();
-
-        _multipartUploadMaterials.remove(uploadId);
-        return response;
+        return _s3AsyncClient.completeMultipartUpload(actualRequest).thenApply(response -> {
+            _multipartUploadMaterials.remove(uploadId);
+            return response;
+        });
     }
 
     public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        return abortMultipartUploadAsync(request).join();
+    }
+
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUploadAsync(AbortMultipartUploadRequest request) {
         _multipartUploadMaterials.remove(request.uploadId());
         AbortMultipartUploadRequest actualRequest = request.toBuilder()
                 .overrideConfiguration(API_NAME_INTERCEPTOR)
                 .build();
-        return _s3AsyncClient.abortMultipartUpload(actualRequest).join();
+        return _s3AsyncClient.abortMultipartUpload(actualRequest);
     }
 
     public void putLocalObject(RequestBody requestBody, String uploadId, OutputStream os) throws IOException {
-        final MultipartUploadMaterials materials = _multipartUploadMaterials.get(uploadId);
+        encryptLocalObject(requestBody, _multipartUploadMaterials.get(uploadId), os);
+    }
+
+    /**
+     * Creates an encrypted multipart upload for a local object and encrypts the object
+     * into the output stream. Only the materials are needed to encrypt, so encryption
+     * begins while the CreateMultipartUpload request is still in flight, and the
+     * observer holds back the parts until the upload id is known.
+     * @param request the request for the object
+     * @param requestBody the content of the object
+     * @param observer the observer which creates and uploads the parts
+     * @param os the stream which splits the ciphertext into parts
+     */
+    public void putLocalObject(PutObjectRequest request, RequestBody requestBody, UploadObjectObserver observer,
+                               OutputStream os) throws IOException {
+        final CreateMultipartUploadRequest createRequest = observer.newCreateMultipartUploadRequest(request);
+        final EncryptionMaterials materials = getEncryptionMaterials(createRequest);
+        final MultipartEncryptedContent encryptedContent = _contentEncryptionStrategy.initMultipartEncryption(materials);
+        final MultipartUploadMaterials mpuMaterials = MultipartUploadMaterials.builder()
+                .fromEncryptionMaterials(materials)
+                .cipher(encryptedContent.getCipher())
+                .build();
+
+        observer.onUploadCreation(sendCreateMultipartUpload(createRequest, materials, encryptedContent.getIv(), mpuMaterials)
+                .thenApply(CreateMultipartUploadResponse::uploadId));
+        encryptLocalObject(requestBody, mpuMaterials, os);
+    }
+
+    private void encryptLocalObject(RequestBody requestBody, MultipartUploadMaterials materials, OutputStream os) throws IOException {
         Cipher cipher = materials.getCipher(materials.getIv());
         final InputStream cipherInputStream = new AuthenticatedCipherInputStream(requestBody.contentStreamProvider().newStream(), cipher);
 
@@ -201,6 +377,153 @@ public class MultipartUploadObjectPipeline {
         }
     }
 
+    /**
+     * Uploads a file as an encrypted multipart upload. The file is read region by region
+     * through a FileChannel into a direct buffer and each region is encrypted straight into
+     * the buffer of its part, so nothing is spooled to disk. Encryption runs in order on the
+     * executor, starting while the CreateMultipartUpload request is in flight, and up to
+     * maxConcurrency encrypted parts are uploaded at once. Since the parts hold ciphertext,
+     * they can safely be retried. Any failure aborts the upload.
+     * @param request the request for the object
+     * @param file the file to upload
+     * @param partSize the size of the plaintext parts, raised if the file would need more than 10,000 parts
+     * @param maxConcurrency the maximum number of encrypted parts held in memory or being uploaded at once
+     * @param executor the executor which reads and encrypts the file; it blocks while maxConcurrency parts are in flight
+     * @return a future containing the CompleteMultipartUpload response
+     */
+    public CompletableFuture<CompleteMultipartUploadResponse> uploadFile(PutObjectRequest request, Path file, long partSize,
+                                                                         int maxConcurrency, Executor executor) {
+        final int blockSize = MULTIPART_ALGORITHM_SUITE.cipherBlockSizeBytes();
+        if (partSize < MIN_PART_SIZE || partSize > Integer.MAX_VALUE || partSize % blockSize != 0) {
+            throw new S3EncryptionClientException("partSize must be at least " + MIN_PART_SIZE
+                    + " and a multiple of the cipher block size (" + blockSize + ")");
+        }
+        if (maxConcurrency < 1) {
+            throw new S3EncryptionClientException("maxConcurrency must be positive");
+        }
+        return CompletableFuture.supplyAsync(() -> encryptAndUploadFile(request, file, partSize, maxConcurrency), executor)
+                .thenCompose(result -> result);
+    }
+
+    private CompletableFuture<CompleteMultipartUploadResponse> encryptAndUploadFile(PutObjectRequest request, Path file,
+                                                                                    long minPartSize, int maxConcurrency) {
+        final AlgorithmSuite algorithmSuite = MULTIPART_ALGORITHM_SUITE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileLength = channel.size();
+            if (fileLength > algorithmSuite.cipherMaxContentLengthBytes()) {
+                throw new S3EncryptionClientException("The contentLength of the object you are attempting to encrypt exceeds" +
+                        "the maximum length allowed for GCM encryption.");
+            }
+            final int blockSize = algorithmSuite.cipherBlockSizeBytes();
+            final long partsLimitedSize = (fileLength / MAX_PARTS + blockSize) / blockSize * blockSize;
+            final int partSize = (int) Math.max(minPartSize, partsLimitedSize);
+
+            final CreateMultipartUploadRequest createRequest = createMultipartUploadRequest(request);
+            final EncryptionMaterials materials = getEncryptionMaterials(createRequest);
+            final MultipartEncryptedContent encryptedContent = _contentEncryptionStrategy.initMultipartEncryption(materials);
+            final MultipartUploadMaterials mpuMaterials = MultipartUploadMaterials.builder()
+                    .fromEncryptionMaterials(materials)
+                    .cipher(encryptedContent.getCipher())
+                    .build();
+            final CompletableFuture<String> uploadId = sendCreateMultipartUpload(createRequest, materials,
+                    encryptedContent.getIv(), mpuMaterials).thenApply(CreateMultipartUploadResponse::uploadId);
+
+            // Completed exceptionally as soon as the upload cannot succeed, to stop encrypting
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            uploadId.whenComplete((id, error) -> {
+                if (error != null) {
+                    failed.completeExceptionally(error);
+                }
+            });
+            final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+            try {
+                final Cipher cipher = mpuMaterials.getCipher(mpuMaterials.getIv());
+                final Semaphore inFlightParts = new Semaphore(maxConcurrency);
+                final ByteBuffer plaintext = ByteBuffer.allocateDirect(partSize);
+                long position = 0;
+                int partNumber = 0;
+                boolean isLastPart = false;
+                while (!isLastPart && !failed.isDone()) {
+                    final int length = (int) Math.min(partSize, fileLength - position);
+                    isLastPart = position + length == fileLength;
+                    plaintext.clear();
+                    plaintext.limit(length);
+                    while (plaintext.hasRemaining()) {
+                        if (channel.read(plaintext, position + plaintext.position()) < 0) {
+                            throw new S3EncryptionClientException("The file " + file + " was truncated during upload");
+                        }
+                    }
+                    plaintext.flip();
+                    final ByteBuffer ciphertext = ByteBuffer.allocate(cipher.getOutputSize(length));
+                    if (isLastPart) {
+                        cipher.doFinal(plaintext, ciphertext);
+                        mpuMaterials.setHasFinalPartBeenSeen(true);
+                    } else {
+                        cipher.update(plaintext, ciphertext);
+                    }
+                    ciphertext.flip();
+                    position += length;
+
+                    // Bounds the memory held by encrypted parts
+                    inFlightParts.acquire();
+                    final int number = ++partNumber;
+                    final CompletableFuture<CompletedPart> part = uploadId
+                            .thenCompose(id -> _s3AsyncClient.uploadPart(uploadPartRequest(request)
+                                    .uploadId(id)
+                                    .partNumber(number)
+                                    .contentLength((long) ciphertext.remaining())
+                                    .overrideConfiguration(API_NAME_INTERCEPTOR)
+                                    .build(), AsyncRequestBody.fromByteBuffer(ciphertext)))
+                            .thenApply(response -> CompletedPart.builder()
+                                    .partNumber(number)
+                                    .eTag(response.eTag())
+                                    .build());
+                    part.whenComplete((completedPart, error) -> {
+                        inFlightParts.release();
+                        if (error != null) {
+                            failed.completeExceptionally(error);
+                        }
+                    });
+                    parts.add(part);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.completeExceptionally(e);
+            } catch (GeneralSecurityException | IOException | RuntimeException e) {
+                failed.completeExceptionally(e);
+            }
+
+            final CompletableFuture<Void> allParts = CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]));
+            final CompletableFuture<CompleteMultipartUploadResponse> result = new CompletableFuture<>();
+            CompletableFuture.anyOf(failed, allParts)
+                    .thenCompose(ignored -> {
+                        final List<CompletedPart> completedParts = new ArrayList<>();
+                        parts.forEach(part -> completedParts.add(part.join()));
+                        return uploadId.thenCompose(id -> completeMultipartUploadAsync(CompleteMultipartUploadRequest.builder()
+                                .bucket(request.bucket())
+                                .key(request.key())
+                                .uploadId(id)
+                                .multipartUpload(partBuilder -> partBuilder.parts(completedParts))
+                                .build()));
+                    })
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            uploadId.thenCompose(id -> abortMultipartUploadAsync(AbortMultipartUploadRequest.builder()
+                                    .bucket(request.bucket())
+                                    .key(request.key())
+                                    .uploadId(id)
+                                    .build()));
+                            result.completeExceptionally(error);
+                        } else {
+                            result.complete(response);
+                        }
+                    });
+            return result;
+        } catch (IOException e) {
+            throw new S3EncryptionClientException("Unable to read file " + file, e);
+        }
+    }
+
     public static class Builder {
         private final Map<String, MultipartUploadMaterials> _multipartUploadMaterials =
                 Collections.synchronizedMap(new HashMap<>());
@@ -210,6 +533,7 @@ public class MultipartUploadObjectPipeline {
         private SecureRandom _secureRandom;
         // To Create Cipher which is used in during uploadPart requests.
         private MultipartContentEncryptionStrategy _contentEncryptionStrategy;
+        private AlgorithmSuite _algorithmSuite = MULTIPART_ALGORITHM_SUITE;
 
         private Builder() {
         }
@@ -234,6 +558,18 @@ public class MultipartUploadObjectPipeline {
             return this;
         }
 
+        /**
+         * The algorithm suite the client is configured to encrypt with. Uploads are
+         * rejected unless it is {@link #MULTIPART_ALGORITHM_SUITE}, which is the default.
+         */
+        public Builder algorithmSuite(AlgorithmSuite algorithmSuite) {
+            if (algorithmSuite == null || algorithmSuite.isLegacy()) {
+                throw new S3EncryptionClientException("Legacy algorithm suites cannot be used for encryption.");
+            }
+            this._algorithmSuite = algorithmSuite;
+            return this;
+        }
+
         public MultipartUploadObjectPipeline build() {
             // Default to AesGcm since it is the only active (non-legacy) content encryption strategy
             if (_contentEncryptionStrategy == null) {
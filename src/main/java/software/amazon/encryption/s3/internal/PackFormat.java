@@ -0,0 +1,150 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The plaintext layout of a pack: a fixed header, an index of named records
+ * and then the records themselves, back to back.
+ * <pre>
+ * header:  magic (4) | version (4) | index length (4)
+ * index:   record count (4) | { name length (2) | name (UTF-8) | offset (8) | length (4) } ...
+ * records: record bytes ...
+ * </pre>
+ * Offsets are from the start of the pack. The whole pack is encrypted as one
+ * object, so the header and index are authenticated along with the records.
+ */
+final class PackFormat {
+
+    static final int MAGIC = 0x53334550;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 12;
+
+    private PackFormat() {
+    }
+
+    static byte[] encode(Map<String, byte[]> records) {
+        final List<byte[]> names = new ArrayList<>(records.size());
+        long indexLength = 4;
+        long recordsLength = 0;
+        for (Map.Entry<String, byte[]> record : records.entrySet()) {
+            final byte[] name = record.getKey().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new S3EncryptionClientException("Record name is too long: " + record.getKey());
+            }
+            names.add(name);
+            indexLength += 2 + name.length + 8 + 4;
+            recordsLength += record.getValue().length;
+        }
+        final long packLength = HEADER_LENGTH + indexLength + recordsLength;
+        if (packLength > Integer.MAX_VALUE - 8) {
+            throw new S3EncryptionClientException("Records are too large to pack into one object.");
+        }
+
+        final ByteBuffer pack = ByteBuffer.allocate((int) packLength);
+        pack.putInt(MAGIC).putInt(VERSION).putInt((int) indexLength);
+        pack.putInt(records.size());
+        long offset = HEADER_LENGTH + indexLength;
+        int i = 0;
+        for (byte[] record : records.values()) {
+            final byte[] name = names.get(i++);
+            pack.putShort((short) name.length).put(name).putLong(offset).putInt(record.length);
+            offset += record.length;
+        }
+        for (byte[] record : records.values()) {
+            pack.put(record);
+        }
+        return pack.array();
+    }
+
+    /**
+     * Returns the number of bytes from the start of the pack needed to read its index.
+     */
+    static int indexEnd(ByteBuffer header) {
+        try {
+            if (header.getInt(0) != MAGIC) {
+                throw new S3EncryptionClientException("Object is not a pack.");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new S3EncryptionClientException("Unsupported pack version: " + header.getInt(4));
+            }
+            return HEADER_LENGTH + header.getInt(8);
+        } catch (IndexOutOfBoundsException e) {
+            throw new S3EncryptionClientException("Pack header is truncated.", e);
+        }
+    }
+
+    /**
+     * Parses the index of a pack whose first {@link #indexEnd(ByteBuffer)} bytes are given.
+     */
+    static Map<String, Entry> decodeIndex(ByteBuffer pack) {
+        final int indexEnd = indexEnd(pack);
+        if (indexEnd < HEADER_LENGTH || indexEnd > pack.limit()) {
+            throw new S3EncryptionClientException("Pack index is truncated.");
+        }
+        final ByteBuffer index = pack.duplicate();
+        index.position(HEADER_LENGTH);
+        index.limit(indexEnd);
+        try {
+            final int count = index.getInt();
+            final Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                final byte[] name = new byte[index.getShort() & 0xFFFF];
+                index.get(name);
+                entries.put(new String(name, StandardCharsets.UTF_8), new Entry(index.getLong(), index.getInt()));
+            }
+            return Collections.unmodifiableMap(entries);
+        } catch (BufferUnderflowException e) {
+            throw new S3EncryptionClientException("Pack index is truncated.", e);
+        }
+    }
+
+    /**
+     * Groups entries, in offset order, into ranges which are fetched with one
+     * request each. Entries are joined when the gap between them is at most maxGap.
+     */
+    static List<List<Entry>> coalesce(List<Entry> entries, long maxGap) {
+        final List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Long.compare(a.offset(), b.offset()));
+        final List<List<Entry>> ranges = new ArrayList<>();
+        List<Entry> current = null;
+        long currentEnd = 0;
+        for (Entry entry : sorted) {
+            if (current == null || entry.offset() - currentEnd > maxGap) {
+                current = new ArrayList<>();
+                ranges.add(current);
+            }
+            current.add(entry);
+            currentEnd = Math.max(currentEnd, entry.offset() + entry.length());
+        }
+        return ranges;
+    }
+
+    static final class Entry {
+        private final long _offset;
+        private final int _length;
+
+        Entry(long offset, int length) {
+            _offset = offset;
+            _length = length;
+        }
+
+        long offset() {
+            return _offset;
+        }
+
+        int length() {
+            return _length;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.internal.PackFormat.Entry;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads records from a pack written by
+ * {@link PackedObjectPipeline#putPack(software.amazon.awssdk.services.s3.model.PutObjectRequest, Map)}.
+ * The index is read once when the pack is opened; each read after that fetches
+ * only the segments which hold the requested records. Reads fail if the pack
+ * has been overwritten since it was opened.
+ */
+public class PackReader {
+
+    private final PackedObjectPipeline _pipeline;
+    private final GetObjectRequest _request;
+    private final String _eTag;
+    private final Map<String, Entry> _index;
+
+    PackReader(PackedObjectPipeline pipeline, GetObjectRequest request, String eTag, Map<String, Entry> index) {
+        _pipeline = pipeline;
+        _request = request;
+        _eTag = eTag;
+        _index = index;
+    }
+
+    /**
+     * @return the names of the records in the pack, in the order they were written
+     */
+    public Set<String> recordNames() {
+        return Collections.unmodifiableSet(_index.keySet());
+    }
+
+    /**
+     * @return the length of the named record, or -1 if the pack has no such record
+     */
+    public long recordLength(String name) {
+        final Entry entry = _index.get(name);
+        return entry == null ? -1 : entry.length();
+    }
+
+    /**
+     * Fetches and decrypts one record.
+     * @param name the name of the record
+     * @return the content of the record
+     */
+    public byte[] getRecord(String name) {
+        return getRecords(Collections.singleton(name)).get(name);
+    }
+
+    /**
+     * Fetches and decrypts several records. Records which lie close together in
+     * the pack are fetched with a single ranged get, and separate ranges are
+     * fetched concurrently.
+     * @param names the names of the records
+     * @return the content of each record, keyed by name
+     */
+    public Map<String, byte[]> getRecords(Collection<String> names) {
+        try {
+            return _pipeline.getRecords(_request, _eTag, _index, names).join();
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.internal.PackFormat.Entry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Writes many small records into a single encrypted object, a pack, and
+ * reads individual records back with ranged gets. Packs are encrypted with
+ * {@link AlgorithmSuite#ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF}, so each
+ * ranged get is authenticated by the segments it covers. See {@link PackFormat}
+ * for the layout.
+ */
+public class PackedObjectPipeline {
+
+    public static final AlgorithmSuite PACK_ALGORITHM_SUITE = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    // Reading at least a whole segment costs no more than reading part of one,
+    // so the first read covers the index of most packs and records this close
+    // together are fetched with one request
+    private static final int SEGMENT_LENGTH = PACK_ALGORITHM_SUITE.cipherSegmentLengthBytes();
+
+    private final PutEncryptedObjectPipeline _putPipeline;
+    private final GetEncryptedObjectPipeline _getPipeline;
+    private final int _maxConcurrency;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private PackedObjectPipeline(Builder builder) {
+        this._putPipeline = builder._putPipeline;
+        this._getPipeline = builder._getPipeline;
+        this._maxConcurrency = builder._maxConcurrency;
+    }
+
+    /**
+     * Packs the records, in iteration order, into one object.
+     * @param request the request for the pack object
+     * @param records the records to pack, keyed by name
+     * @return a future containing the response of the upload
+     */
+    public CompletableFuture<PutObjectResponse> putPack(PutObjectRequest request, Map<String, byte[]> records) {
+        final byte[] pack = PackFormat.encode(records);
+        final PutObjectRequest packRequest = request.toBuilder()
+                .contentLength((long) pack.length)
+                .contentMD5(null)
+                .checksumCRC32(null)
+                .checksumCRC32C(null)
+                .checksumSHA1(null)
+                .checksumSHA256(null)
+                .build();
+        return _putPipeline.putObject(packRequest, AsyncRequestBody.fromBytes(pack));
+    }
+
+    /**
+     * Reads the index of a pack. Later reads are bound to the version of the
+     * pack the index was read from.
+     * @param request the request for the pack object
+     * @return a future containing a reader for the pack's records
+     */
+    public CompletableFuture<PackReader> openPack(GetObjectRequest request) {
+        return getRange(request, request.ifMatch(), 0, SEGMENT_LENGTH - 1).thenCompose(head -> {
+            final ByteBuffer headBuffer = head.asByteBuffer();
+            final int indexEnd = PackFormat.indexEnd(headBuffer);
+            final String eTag = head.response().eTag();
+            if (indexEnd <= headBuffer.remaining()) {
+                return CompletableFuture.completedFuture(new PackReader(this, request, eTag,
+                        PackFormat.decodeIndex(headBuffer)));
+            }
+            return getRange(request, eTag, headBuffer.remaining(), indexEnd - 1).thenApply(rest -> {
+                final ByteBuffer index = ByteBuffer.allocate(headBuffer.remaining() + rest.asByteBuffer().remaining());
+                index.put(headBuffer).put(rest.asByteBuffer());
+                index.flip();
+                return new PackReader(this, request, eTag, PackFormat.decodeIndex(index));
+            });
+        });
+    }
+
+    CompletableFuture<Map<String, byte[]>> getRecords(GetObjectRequest request, String eTag,
+                                                      Map<String, Entry> index, Collection<String> names) {
+        final Map<String, byte[]> records = new HashMap<>();
+        final Map<Entry, List<String>> namesByEntry = new HashMap<>();
+        final List<Entry> toFetch = new ArrayList<>();
+        for (String name : names) {
+            final Entry entry = index.get(name);
+            if (entry == null) {
+                throw new S3EncryptionClientException("Pack does not contain a record named " + name);
+            }
+            if (entry.length() == 0) {
+                records.put(name, new byte[0]);
+                continue;
+            }
+            if (!namesByEntry.containsKey(entry)) {
+                namesByEntry.put(entry, new ArrayList<>());
+                toFetch.add(entry);
+            }
+            namesByEntry.get(entry).add(name);
+        }
+
+        final List<Supplier<CompletableFuture<Void>>> tasks = new ArrayList<>();
+        for (List<Entry> range : PackFormat.coalesce(toFetch, SEGMENT_LENGTH)) {
+            final long first = range.get(0).offset();
+            long end = first;
+            for (Entry entry : range) {
+                end = Math.max(end, entry.offset() + entry.length());
+            }
+            final long last = end - 1;
+            tasks.add(() -> getRange(request, eTag, first, last).thenAccept(bytes -> {
+                final ByteBuffer buffer = bytes.asByteBuffer();
+                if (buffer.remaining() != last - first + 1) {
+                    throw new S3EncryptionClientException("Pack is shorter than its index.");
+                }
+                for (Entry entry : range) {
+                    final byte[] record = new byte[entry.length()];
+                    buffer.position((int) (entry.offset() - first));
+                    buffer.get(record);
+                    synchronized (records) {
+                        for (String name : namesByEntry.get(entry)) {
+                            records.put(name, record);
+                        }
+                    }
+                }
+            }));
+        }
+        return ConcurrencyUtils.runBounded(tasks, _maxConcurrency).thenApply(ignored -> records);
+    }
+
+    private CompletableFuture<ResponseBytes<GetObjectResponse>> getRange(GetObjectRequest request, String eTag,
+                                                                         long first, long last) {
+        final GetObjectRequest rangeRequest = request.toBuilder()
+                .ifMatch(eTag)
+                .range("bytes=" + first + "-" + last)
+                .build();
+        return _getPipeline.getObject(rangeRequest, AsyncResponseTransformer.toBytes());
+    }
+
+    public static class Builder {
+        private PutEncryptedObjectPipeline _putPipeline;
+        private GetEncryptedObjectPipeline _getPipeline;
+        private int _maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private Builder() {
+        }
+
+        /**
+         * The pipeline packs are uploaded with, which should encrypt with
+         * {@link #PACK_ALGORITHM_SUITE} and without compression.
+         */
+        public Builder putObjectPipeline(PutEncryptedObjectPipeline putPipeline) {
+            this._putPipeline = putPipeline;
+            return this;
+        }
+
+        public Builder getObjectPipeline(GetEncryptedObjectPipeline getPipeline) {
+            this._getPipeline = getPipeline;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+            }
+            this._maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public PackedObjectPipeline build() {
+            if (_putPipeline == null || _getPipeline == null) {
+                throw new S3EncryptionClientException("Put and get pipelines must be provided.");
+            }
+            return new PackedObjectPipeline(this);
+        }
+    }
+}
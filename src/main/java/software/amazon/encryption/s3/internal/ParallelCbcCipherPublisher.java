@@ -0,0 +1,43 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import software.amazon.awssdk.core.async.SdkPublisher;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.Provider;
+import java.util.concurrent.Executor;
+
+/**
+ * A Publisher which decrypts whole AES-CBC objects using several threads.
+ */
+public class ParallelCbcCipherPublisher implements SdkPublisher<ByteBuffer> {
+
+    private final SdkPublisher<ByteBuffer> wrappedPublisher;
+    private final Long contentLength;
+    private final SecretKey contentKey;
+    private final Provider cryptoProvider;
+    private final byte[] iv;
+    private final int parallelism;
+    private final Executor executor;
+
+    public ParallelCbcCipherPublisher(final SdkPublisher<ByteBuffer> wrappedPublisher, final Long contentLength,
+                                      final SecretKey contentKey, final Provider cryptoProvider, final byte[] iv,
+                                      final int parallelism, final Executor executor) {
+        this.wrappedPublisher = wrappedPublisher;
+        this.contentLength = contentLength;
+        this.contentKey = contentKey;
+        this.cryptoProvider = cryptoProvider;
+        this.iv = iv;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        wrappedPublisher.subscribe(new ParallelCbcCipherSubscriber(subscriber, contentLength, contentKey, cryptoProvider,
+                iv, parallelism, executor));
+    }
+}
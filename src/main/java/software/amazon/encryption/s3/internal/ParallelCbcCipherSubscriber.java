@@ -0,0 +1,166 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.encryption.s3.S3EncryptionClientSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Decrypts AES-CBC ciphertext on several threads. Unlike encryption, CBC decryption
+ * of a block needs only the ciphertext block before it, so ciphertext is gathered
+ * into batches which are split into chunks and decrypted concurrently, each chunk
+ * using the last ciphertext block of the chunk before it as its IV. At least one
+ * block is held back until the stream completes, so that padding can be removed.
+ * <p>
+ * An empty buffer is passed on for each buffer which does not complete a batch,
+ * so that demand keeps flowing to the wrapped publisher.
+ * </p>
+ */
+public class ParallelCbcCipherSubscriber implements Subscriber<ByteBuffer> {
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final String CBC_NO_PADDING = "AES/CBC/NoPadding";
+    private static final String CBC_PKCS5_PADDING = "AES/CBC/PKCS5Padding";
+    private static final int BLOCK_SIZE = 16;
+
+    private final Subscriber<? super ByteBuffer> wrappedSubscriber;
+    private final Long contentLength;
+    private final SecretKey contentKey;
+    private final Provider cryptoProvider;
+    private final int parallelism;
+    private final Executor executor;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private Subscription subscription;
+    private byte[] previousBlock;
+    private long contentRead = 0;
+    private boolean failed = false;
+
+    ParallelCbcCipherSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, Long contentLength, SecretKey contentKey,
+                                Provider cryptoProvider, byte[] iv, int parallelism, Executor executor) {
+        this.wrappedSubscriber = wrappedSubscriber;
+        this.contentLength = contentLength;
+        this.contentKey = contentKey;
+        this.cryptoProvider = cryptoProvider;
+        this.previousBlock = iv.clone();
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        wrappedSubscriber.onSubscribe(s);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        if (failed) {
+            return;
+        }
+        final int amountToRead = getAmountToReadFromByteBuffer(byteBuffer);
+        final byte[] buf = BinaryUtils.copyBytesFrom(byteBuffer, amountToRead);
+        pending.write(buf, 0, buf.length);
+        // Hold back between one and two blocks, so the final block is always decrypted on completion
+        if (pending.size() < parallelism * CHUNK_SIZE + 2 * BLOCK_SIZE) {
+            wrappedSubscriber.onNext(ByteBuffer.allocate(0));
+            return;
+        }
+        final byte[] ciphertext = pending.toByteArray();
+        final int batchLength = (ciphertext.length - BLOCK_SIZE) / BLOCK_SIZE * BLOCK_SIZE;
+        final byte[] plaintext;
+        try {
+            plaintext = decryptBatch(ciphertext, batchLength);
+        } catch (CompletionException e) {
+            fail(e.getCause());
+            return;
+        }
+        pending.reset();
+        pending.write(ciphertext, batchLength, ciphertext.length - batchLength);
+        wrappedSubscriber.onNext(ByteBuffer.wrap(plaintext));
+    }
+
+    private int getAmountToReadFromByteBuffer(ByteBuffer byteBuffer) {
+        if (contentLength == null) {
+            return byteBuffer.remaining();
+        }
+        final long amountRemaining = Math.max(0, contentLength - contentRead);
+        final int amountToRead = (int) Math.min(amountRemaining, byteBuffer.remaining());
+        contentRead += byteBuffer.remaining();
+        return amountToRead;
+    }
+
+    private byte[] decryptBatch(byte[] ciphertext, int length) {
+        final List<CompletableFuture<byte[]>> chunks = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            final int chunkOffset = offset;
+            final int chunkLength = Math.min(CHUNK_SIZE, length - offset);
+            final byte[] iv = offset == 0 ? previousBlock : Arrays.copyOfRange(ciphertext, offset - BLOCK_SIZE, offset);
+            chunks.add(CompletableFuture.supplyAsync(() -> decrypt(CBC_NO_PADDING, iv, ciphertext, chunkOffset, chunkLength), executor));
+        }
+        final byte[] plaintext = new byte[length];
+        for (int i = 0; i < chunks.size(); i++) {
+            final byte[] chunk = chunks.get(i).join();
+            System.arraycopy(chunk, 0, plaintext, i * CHUNK_SIZE, chunk.length);
+        }
+        previousBlock = Arrays.copyOfRange(ciphertext, length - BLOCK_SIZE, length);
+        return plaintext;
+    }
+
+    private byte[] decrypt(String transformation, byte[] iv, byte[] ciphertext, int offset, int length) {
+        try {
+            final Cipher cipher = CryptoFactory.createCipher(transformation, cryptoProvider);
+            cipher.init(Cipher.DECRYPT_MODE, contentKey, new IvParameterSpec(iv));
+            return cipher.doFinal(ciphertext, offset, length);
+        } catch (GeneralSecurityException e) {
+            throw new CompletionException(new S3EncryptionClientSecurityException(e.getMessage(), e));
+        }
+    }
+
+    private void fail(Throwable t) {
+        failed = true;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        // Forward error, else the wrapped subscriber waits indefinitely
+        wrappedSubscriber.onError(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!failed) {
+            wrappedSubscriber.onError(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (failed) {
+            return;
+        }
+        final byte[] ciphertext = pending.toByteArray();
+        final byte[] plaintext;
+        try {
+            plaintext = decrypt(CBC_PKCS5_PADDING, previousBlock, ciphertext, 0, ciphertext.length);
+        } catch (CompletionException e) {
+            fail(e.getCause());
+            return;
+        }
+        wrappedSubscriber.onNext(ByteBuffer.wrap(plaintext));
+        wrappedSubscriber.onComplete();
+    }
+}
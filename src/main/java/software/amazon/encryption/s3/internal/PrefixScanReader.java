@@ -0,0 +1,208 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
+import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+
+/**
+ * Iterates over the decrypted objects under a prefix, in listing order. While
+ * one object is being consumed, the next objects are already being fetched and
+ * decrypted, up to a number of objects and a number of bytes in flight, and the
+ * next page of the listing is requested as soon as the current one arrives.
+ * Instruction files and zero-length folder markers are skipped.
+ * <p>
+ * An object which cannot be fetched or decrypted causes {@link #next()} to throw;
+ * iteration may continue with the following object. Closing the reader cancels
+ * any prefetches which are still in flight.
+ * </p>
+ */
+public class PrefixScanReader implements Iterator<PrefixScanReader.ScannedObject>, Closeable {
+    public static final int DEFAULT_PREFETCH_OBJECTS = 8;
+    public static final long DEFAULT_PREFETCH_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+
+    private final S3AsyncClient _s3AsyncClient;
+    private final GetEncryptedObjectPipeline _pipeline;
+    private final String _bucket;
+    private final String _prefix;
+    private final int _prefetchObjects;
+    private final long _prefetchBytes;
+
+    private final Deque<S3Object> _listed = new ArrayDeque<>();
+    private final Deque<Prefetch> _inFlight = new ArrayDeque<>();
+    private CompletableFuture<ListObjectsV2Response> _nextPage;
+    private long _inFlightBytes;
+    private boolean _closed;
+
+    PrefixScanReader(S3AsyncClient s3AsyncClient, GetEncryptedObjectPipeline pipeline, String bucket, String prefix,
+                     int prefetchObjects, long prefetchBytes) {
+        if (bucket == null || prefix == null) {
+            throw new S3EncryptionClientException("Bucket and prefix must be provided to scan by prefix");
+        }
+        if (prefetchObjects < 1) {
+            throw new S3EncryptionClientException("prefetchObjects must be at least 1");
+        }
+        if (prefetchBytes < 1) {
+            throw new S3EncryptionClientException("prefetchBytes must be at least 1");
+        }
+        _s3AsyncClient = s3AsyncClient;
+        _pipeline = pipeline;
+        _bucket = bucket;
+        _prefix = prefix;
+        _prefetchObjects = prefetchObjects;
+        _prefetchBytes = prefetchBytes;
+        _nextPage = listPage(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !_inFlight.isEmpty();
+    }
+
+    @Override
+    public ScannedObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Prefetch prefetch = _inFlight.removeFirst();
+        _inFlightBytes -= prefetch._size;
+        // Start the replacement before waiting, so the window stays full
+        fill();
+        try {
+            return new ScannedObject(prefetch._key, prefetch._future.join());
+        } catch (CompletionException e) {
+            throw new S3EncryptionClientException("Unable to get object " + prefetch._key + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+        for (Prefetch prefetch : _inFlight) {
+            prefetch._future.cancel(true);
+        }
+        _inFlight.clear();
+        _listed.clear();
+        if (_nextPage != null) {
+            _nextPage.cancel(true);
+            _nextPage = null;
+        }
+    }
+
+    private void fill() {
+        while (!_closed && _inFlight.size() < _prefetchObjects) {
+            final S3Object next = peekListed();
+            if (next == null) {
+                return;
+            }
+            // Always keep at least one object in flight, however large
+            final long size = next.size() == null ? 0 : next.size();
+            if (!_inFlight.isEmpty() && _inFlightBytes + size > _prefetchBytes) {
+                return;
+            }
+            _listed.removeFirst();
+            _inFlight.addLast(new Prefetch(next.key(), size, _pipeline.getObject(GetObjectRequest.builder()
+                    .bucket(_bucket)
+                    .key(next.key())
+                    .build(), AsyncResponseTransformer.toBytes())));
+            _inFlightBytes += size;
+        }
+    }
+
+    /**
+     * Returns the next object to fetch, waiting for the next page of the listing if needed,
+     * or null once the listing is exhausted.
+     */
+    private S3Object peekListed() {
+        while (_listed.isEmpty() && _nextPage != null) {
+            final ListObjectsV2Response page;
+            try {
+                page = _nextPage.join();
+            } catch (CompletionException e) {
+                _nextPage = null;
+                throw new S3EncryptionClientException("Unable to list objects: " + e.getCause().getMessage(), e.getCause());
+            }
+            // Request the following page while this one is consumed
+            _nextPage = Boolean.TRUE.equals(page.isTruncated()) ? listPage(page.nextContinuationToken()) : null;
+            for (S3Object s3Object : page.contents()) {
+                if (s3Object.key().endsWith(INSTRUCTION_FILE_SUFFIX)
+                        || (s3Object.key().endsWith("/") && Long.valueOf(0).equals(s3Object.size()))) {
+                    continue;
+                }
+                _listed.addLast(s3Object);
+            }
+        }
+        return _listed.peekFirst();
+    }
+
+    private CompletableFuture<ListObjectsV2Response> listPage(String continuationToken) {
+        return _s3AsyncClient.listObjectsV2(ListObjectsV2Request.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(_bucket)
+                .prefix(_prefix)
+                .continuationToken(continuationToken)
+                .maxKeys(MAX_KEYS_PER_PAGE)
+                .build());
+    }
+
+    private static final class Prefetch {
+        private final String _key;
+        private final long _size;
+        private final CompletableFuture<ResponseBytes<GetObjectResponse>> _future;
+
+        Prefetch(String key, long size, CompletableFuture<ResponseBytes<GetObjectResponse>> future) {
+            _key = key;
+            _size = size;
+            _future = future;
+        }
+    }
+
+    /**
+     * A decrypted object returned by the reader.
+     */
+    public static final class ScannedObject {
+        private final String _key;
+        private final ResponseBytes<GetObjectResponse> _object;
+
+        ScannedObject(String key, ResponseBytes<GetObjectResponse> object) {
+            _key = key;
+            _object = object;
+        }
+
+        /**
+         * @return the key of the object
+         */
+        public String key() {
+            return _key;
+        }
+
+        /**
+         * @return the response and decrypted content of the object
+         */
+        public ResponseBytes<GetObjectResponse> object() {
+            return _object;
+        }
+    }
+}
@@ -3,29 +3,47 @@
 package software.amazon.encryption.s3.internal;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.reactivestreams.Subscriber;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.encryption.s3.S3EncryptionClientException;
 import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.algorithms.CompressionCodec;
 import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
 import software.amazon.encryption.s3.materials.EncryptionMaterials;
 import software.amazon.encryption.s3.materials.EncryptionMaterialsRequest;
 
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
 
 public class PutEncryptedObjectPipeline {
+    public static final int DEFAULT_PUT_OBJECTS_MAX_CONCURRENCY = 16;
+
+    private static final long MAX_READ_AHEAD_BYTES = 8L * 1024 * 1024;
 
     final private S3AsyncClient _s3AsyncClient;
     final private CryptographicMaterialsManager _cryptoMaterialsManager;
     final private AsyncContentEncryptionStrategy _asyncContentEncryptionStrategy;
     final private ContentMetadataEncodingStrategy _contentMetadataEncodingStrategy;
+    final private CompressionCodec _compressionCodec;
+    final private int _compressionMemoryThreshold;
+    final private AlgorithmSuite _algorithmSuite;
+    final private SecureRandom _secureRandom;
+    final private Executor _materialsExecutor;
 
     public static Builder builder() {
         return new Builder();
@@ -36,9 +54,95 @@ public class PutEncryptedObjectPipeline {
         this._cryptoMaterialsManager = builder._cryptoMaterialsManager;
         this._asyncContentEncryptionStrategy = builder._asyncContentEncryptionStrategy;
         this._contentMetadataEncodingStrategy = builder._contentMetadataEncodingStrategy;
+        this._compressionCodec = builder._compressionCodec;
+        this._compressionMemoryThreshold = builder._compressionMemoryThreshold;
+        this._algorithmSuite = builder._algorithmSuite;
+        this._secureRandom = builder._secureRandom;
+        this._materialsExecutor = builder._materialsExecutor;
     }
 
     public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody requestBody) {
+        if (_compressionCodec == null) {
+            return encryptAndPut(request, requestBody, null);
+        }
+        // The compressed length must be known before the ciphertext length can be,
+        // so the body is compressed completely before encryption begins
+        return CompressionSpool.compress(requestBody, _compressionCodec, _compressionMemoryThreshold)
+                .thenCompose(spool -> {
+                    final PutObjectRequest compressedRequest = request.toBuilder()
+                            .contentLength(spool.length())
+                            .build();
+                    final CompletableFuture<PutObjectResponse> response;
+                    try {
+                        response = encryptAndPut(compressedRequest, spool.requestBody(), _compressionCodec.name());
+                    } catch (RuntimeException e) {
+                        spool.release();
+                        throw e;
+                    }
+                    return response.whenComplete((r, t) -> spool.release());
+                });
+    }
+
+    /**
+     * Encrypts and uploads many objects, with at most maxConcurrency in flight. This pipeline
+     * and its content encryption strategy are shared by every object, and materials are
+     * obtained on the materials executor, so that a blocking call to a key service for one
+     * object overlaps the encryption and upload of the others.
+     * @param requests the requests for the objects
+     * @param requestBodies supplies the content of each object, in the same order as the requests;
+     *                      each is only called once the object is about to be uploaded
+     * @param maxConcurrency the maximum number of objects being prepared or uploaded at once
+     * @return a future containing the response for each object, in order
+     */
+    public CompletableFuture<List<PutObjectResponse>> putObjects(List<PutObjectRequest> requests,
+                                                                 List<Supplier<AsyncRequestBody>> requestBodies,
+                                                                 int maxConcurrency) {
+        return putObjects(requests, requestBodies, maxConcurrency, null);
+    }
+
+    /**
+     * See {@link #putObjects(List, List, int)}. Content of unknown length is uploaded
+     * with the given streaming pipeline instead, as putObject does, unless compression
+     * is enabled.
+     * @param requests the requests for the objects
+     * @param requestBodies supplies the content of each object, in the same order as the requests;
+     *                      each is only called once the object is about to be uploaded
+     * @param maxConcurrency the maximum number of objects being prepared or uploaded at once
+     * @param streamingPipeline the pipeline for content of unknown length, or null to buffer it
+     * @return a future containing the response for each object, in order
+     */
+    public CompletableFuture<List<PutObjectResponse>> putObjects(List<PutObjectRequest> requests,
+                                                                 List<Supplier<AsyncRequestBody>> requestBodies,
+                                                                 int maxConcurrency,
+                                                                 StreamingPutObjectPipeline streamingPipeline) {
+        if (requests.size() != requestBodies.size()) {
+            throw new S3EncryptionClientException("Each request must have exactly one request body.");
+        }
+        if (maxConcurrency < 1) {
+            throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+        }
+        final List<Supplier<CompletableFuture<PutObjectResponse>>> puts = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            final PutObjectRequest request = requests.get(i);
+            final Supplier<AsyncRequestBody> requestBody = requestBodies.get(i);
+            puts.add(() -> {
+                final AsyncRequestBody body = requestBody.get();
+                if (streamingPipeline != null && _compressionCodec == null
+                        && StreamingPutObjectPipeline.isUnknownLength(request, body)) {
+                    return streamingPipeline.putObject(request, body);
+                }
+                return putObject(request, body);
+            });
+        }
+        return ConcurrencyUtils.runBounded(puts, maxConcurrency);
+    }
+
+    /**
+     * Obtains the materials on the materials executor while the body is read ahead, so
+     * that a round trip to a key service overlaps reading the first of the content.
+     */
+    private CompletableFuture<PutObjectResponse> encryptAndPut(PutObjectRequest request, AsyncRequestBody requestBody,
+                                                               String compression) {
         final Long contentLength;
         if (request.contentLength() != null) {
             if (requestBody.contentLength().isPresent() && !request.contentLength().equals(requestBody.contentLength().get())) {
@@ -56,7 +160,7 @@ public class PutEncryptedObjectPipeline {
             contentLength = requestBody.contentLength().orElse(-1L);
         }
 
-        if (contentLength > AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherMaxContentLengthBytes()) {
+        if (contentLength > _algorithmSuite.cipherMaxContentLengthBytes()) {
             throw new S3EncryptionClientException("The contentLength of the object you are attempting to encrypt exceeds" +
                     "the maximum length allowed for GCM encryption.");
         }
@@ -64,13 +168,42 @@ public class PutEncryptedObjectPipeline {
         EncryptionMaterialsRequest encryptionMaterialsRequest = EncryptionMaterialsRequest.builder()
                 .s3Request(request)
                 .plaintextLength(contentLength)
+                .algorithmSuite(_algorithmSuite)
                 .build();
 
-        EncryptionMaterials materials = _cryptoMaterialsManager.getEncryptionMaterials(encryptionMaterialsRequest);
+        final ReadAheadRequestBody readAheadBody = new ReadAheadRequestBody(requestBody);
+        return CompletableFuture.supplyAsync(() -> _cryptoMaterialsManager.getEncryptionMaterials(encryptionMaterialsRequest),
+                        _materialsExecutor)
+                .thenCompose(materials -> encryptAndPut(request, readAheadBody, compression, materials))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        readAheadBody.cancel();
+                    }
+                });
+    }
+
+    private CompletableFuture<PutObjectResponse> encryptAndPut(PutObjectRequest request, AsyncRequestBody requestBody,
+                                                               String compression, EncryptionMaterials materials) {
+        byte[] kdfSalt = null;
+        if (materials.algorithmSuite().usesKdf()) {
+            // The data key may be shared with other objects, so this object's content key is derived from it
+            kdfSalt = new byte[HkdfKeyDerivation.SALT_LENGTH_BYTES];
+            _secureRandom.nextBytes(kdfSalt);
+            materials = materials.toBuilder()
+                    .plaintextDataKey(HkdfKeyDerivation.deriveContentKey(materials.algorithmSuite(),
+                            materials.plaintextDataKey(), kdfSalt, materials.cryptoProvider()))
+                    .build();
+        }
 
         EncryptedContent encryptedContent = _asyncContentEncryptionStrategy.encryptContent(materials, requestBody);
 
         Map<String, String> metadata = new HashMap<>(request.metadata());
+        if (compression != null) {
+            metadata.put(MetadataKeyConstants.CONTENT_COMPRESSION, compression);
+        }
+        if (kdfSalt != null) {
+            metadata.put(MetadataKeyConstants.CONTENT_KDF_SALT, Base64.getEncoder().encodeToString(kdfSalt));
+        }
         metadata = _contentMetadataEncodingStrategy.encodeMetadata(materials, encryptedContent.getIv(), metadata);
         PutObjectRequest encryptedPutRequest = request.toBuilder()
                 .overrideConfiguration(API_NAME_INTERCEPTOR)
@@ -80,12 +213,51 @@ public class PutEncryptedObjectPipeline {
         return _s3AsyncClient.putObject(encryptedPutRequest, encryptedContent.getAsyncCiphertext());
     }
 
+    /**
+     * Reads the body ahead for its first subscriber. Any later subscriber, such as a
+     * retry of the upload, subscribes to the body itself.
+     */
+    private static final class ReadAheadRequestBody implements AsyncRequestBody {
+        private final AsyncRequestBody _wrappedAsyncRequestBody;
+        private final ReadAheadPublisher _readAhead;
+        private final AtomicBoolean _subscribed = new AtomicBoolean(false);
+
+        ReadAheadRequestBody(AsyncRequestBody wrappedAsyncRequestBody) {
+            _wrappedAsyncRequestBody = wrappedAsyncRequestBody;
+            _readAhead = new ReadAheadPublisher(wrappedAsyncRequestBody, MAX_READ_AHEAD_BYTES);
+        }
+
+        @Override
+        public Optional<Long> contentLength() {
+            return _wrappedAsyncRequestBody.contentLength();
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            if (_subscribed.compareAndSet(false, true)) {
+                _readAhead.subscribe(subscriber);
+            } else {
+                _wrappedAsyncRequestBody.subscribe(subscriber);
+            }
+        }
+
+        void cancel() {
+            if (!_subscribed.get()) {
+                _readAhead.cancel();
+            }
+        }
+    }
+
     public static class Builder {
         private S3AsyncClient _s3AsyncClient;
         private CryptographicMaterialsManager _cryptoMaterialsManager;
         private SecureRandom _secureRandom;
         private AsyncContentEncryptionStrategy _asyncContentEncryptionStrategy;
         private final ContentMetadataEncodingStrategy _contentMetadataEncodingStrategy = ContentMetadataStrategy.OBJECT_METADATA;
+        private CompressionCodec _compressionCodec;
+        private int _compressionMemoryThreshold = CompressionSpool.DEFAULT_MEMORY_THRESHOLD;
+        private AlgorithmSuite _algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
+        private Executor _materialsExecutor = Runnable::run;
 
 
         private Builder() {
@@ -111,7 +283,50 @@ public class PutEncryptedObjectPipeline {
             return this;
         }
 
+        /**
+         * Compresses content with the given codec before it is encrypted.
+         * Compression is disabled when this is null, which is the default.
+         */
+        public Builder compressionCodec(CompressionCodec compressionCodec) {
+            this._compressionCodec = compressionCodec;
+            return this;
+        }
+
+        /**
+         * The number of compressed bytes held in memory before they are spilled to a temporary file.
+         */
+        public Builder compressionMemoryThreshold(int compressionMemoryThreshold) {
+            if (compressionMemoryThreshold < 0) {
+                throw new S3EncryptionClientException("compressionMemoryThreshold must not be negative");
+            }
+            this._compressionMemoryThreshold = compressionMemoryThreshold;
+            return this;
+        }
+
+        /**
+         * The algorithm suite to request from the CMM. Defaults to AES-GCM over the whole object.
+         */
+        public Builder algorithmSuite(AlgorithmSuite algorithmSuite) {
+            if (algorithmSuite == null || algorithmSuite.isLegacy()) {
+                throw new S3EncryptionClientException("Legacy algorithm suites cannot be used for encryption.");
+            }
+            this._algorithmSuite = algorithmSuite;
+            return this;
+        }
+
+        /**
+         * The executor on which the CMM is asked for materials while the body is read ahead.
+         * Defaults to running on the calling thread.
+         */
+        public Builder materialsExecutor(Executor materialsExecutor) {
+            this._materialsExecutor = materialsExecutor;
+            return this;
+        }
+
         public PutEncryptedObjectPipeline build() {
+            if (_secureRandom == null) {
+                _secureRandom = new SecureRandom();
+            }
             // Default to AesGcm since it is the only active (non-legacy) content encryption strategy
             if (_asyncContentEncryptionStrategy == null) {
                 _asyncContentEncryptionStrategy = StreamingAesGcmContentStrategy
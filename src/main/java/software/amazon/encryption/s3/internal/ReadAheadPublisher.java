@@ -0,0 +1,172 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Publisher which subscribes to the wrapped publisher as soon as it is created
+ * and buffers what arrives, up to a number of bytes, until its own subscriber
+ * catches up. This lets a body start downloading while whatever its subscriber
+ * is waiting on, such as a data key, is still in progress.
+ */
+class ReadAheadPublisher implements SdkPublisher<ByteBuffer> {
+
+    private final long _maxBufferedBytes;
+    private final Deque<ByteBuffer> _buffered = new ArrayDeque<>();
+    private final AtomicInteger _drains = new AtomicInteger();
+
+    private Subscription _upstream;
+    private Subscriber<? super ByteBuffer> _downstream;
+    private long _bufferedBytes;
+    private long _demand;
+    private boolean _requested;
+    private boolean _done;
+    private Throwable _error;
+    private boolean _terminated;
+    private boolean _cancelled;
+
+    ReadAheadPublisher(SdkPublisher<ByteBuffer> wrappedPublisher, long maxBufferedBytes) {
+        _maxBufferedBytes = maxBufferedBytes;
+        wrappedPublisher.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                synchronized (ReadAheadPublisher.this) {
+                    _upstream = s;
+                }
+                drain();
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                synchronized (ReadAheadPublisher.this) {
+                    _requested = false;
+                    _buffered.addLast(byteBuffer);
+                    _bufferedBytes += byteBuffer.remaining();
+                }
+                drain();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                synchronized (ReadAheadPublisher.this) {
+                    _done = true;
+                    _error = t;
+                }
+                drain();
+            }
+
+            @Override
+            public void onComplete() {
+                synchronized (ReadAheadPublisher.this) {
+                    _done = true;
+                }
+                drain();
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        synchronized (this) {
+            if (_downstream != null) {
+                throw new S3EncryptionClientException("ReadAheadPublisher supports only one subscriber");
+            }
+            _downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                synchronized (ReadAheadPublisher.this) {
+                    if (n <= 0) {
+                        _done = true;
+                        _error = new IllegalArgumentException("Demand must be positive");
+                        _buffered.clear();
+                    } else {
+                        _demand = _demand + n < 0 ? Long.MAX_VALUE : _demand + n;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                ReadAheadPublisher.this.cancel();
+            }
+        });
+        drain();
+    }
+
+    /**
+     * Stops reading ahead and discards anything buffered.
+     */
+    void cancel() {
+        final Subscription upstream;
+        synchronized (this) {
+            _cancelled = true;
+            _buffered.clear();
+            upstream = _upstream;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    private void drain() {
+        // Only one thread delivers at a time; signals which arrive meanwhile are picked up by its next pass
+        if (_drains.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Subscription requestFrom = null;
+            while (true) {
+                final Subscriber<? super ByteBuffer> downstream;
+                ByteBuffer next = null;
+                boolean terminate = false;
+                Throwable error = null;
+                synchronized (this) {
+                    downstream = _downstream;
+                    if (_cancelled) {
+                        break;
+                    }
+                    if (downstream != null && _demand > 0 && !_buffered.isEmpty()) {
+                        next = _buffered.removeFirst();
+                        _bufferedBytes -= next.remaining();
+                        _demand--;
+                    } else if (downstream != null && _buffered.isEmpty() && _done && !_terminated) {
+                        _terminated = true;
+                        terminate = true;
+                        error = _error;
+                    } else {
+                        // Keep one request outstanding while there is room in the buffer
+                        if (_upstream != null && !_requested && !_done && _bufferedBytes < _maxBufferedBytes) {
+                            _requested = true;
+                            requestFrom = _upstream;
+                        }
+                        break;
+                    }
+                }
+                if (next != null) {
+                    downstream.onNext(next);
+                } else if (terminate) {
+                    if (error != null) {
+                        downstream.onError(error);
+                    } else {
+                        downstream.onComplete();
+                    }
+                }
+            }
+            if (requestFrom != null) {
+                requestFrom.request(1);
+            }
+        } while (_drains.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,335 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
+import software.amazon.encryption.s3.materials.DecryptMaterialsRequest;
+import software.amazon.encryption.s3.materials.DecryptionMaterials;
+import software.amazon.encryption.s3.materials.EncryptedDataKey;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+import software.amazon.encryption.s3.materials.Keyring;
+import software.amazon.encryption.s3.materials.KmsKeyring;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static software.amazon.encryption.s3.S3EncryptionClient.withAdditionalConfiguration;
+import static software.amazon.encryption.s3.S3EncryptionClientUtilities.INSTRUCTION_FILE_SUFFIX;
+import static software.amazon.encryption.s3.internal.ApiNameVersion.API_NAME_INTERCEPTOR;
+
+/**
+ * Re-wraps the data key of encrypted objects under a new keyring without
+ * downloading or re-encrypting the content. Only the object metadata or
+ * the instruction file is read and rewritten.
+ */
+public class RewrapDataKeyPipeline {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+
+    // Added to the encryption context by the KmsKeyring, must not be passed back to it
+    private static final String KEY_ID_CONTEXT_KEY = "kms_cmk_id";
+    private static final String ENCRYPTION_CONTEXT_ALGORITHM_KEY = "aws:x-amz-cek-alg";
+
+    private final S3AsyncClient _s3AsyncClient;
+    private final CryptographicMaterialsManager _cryptoMaterialsManager;
+    private final int _maxConcurrency;
+    private final Executor _materialsExecutor;
+    private final CopyEncryptedObjectPipeline _copyPipeline;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private RewrapDataKeyPipeline(Builder builder) {
+        this._s3AsyncClient = builder._s3AsyncClient;
+        this._cryptoMaterialsManager = builder._cryptoMaterialsManager;
+        this._maxConcurrency = builder._maxConcurrency;
+        this._materialsExecutor = builder._materialsExecutor;
+        this._copyPipeline = CopyEncryptedObjectPipeline.builder()
+                .s3AsyncClient(builder._s3AsyncClient)
+                .build();
+    }
+
+    /**
+     * Re-wraps the data key of a single object under the given keyring.
+     * @param bucket the bucket of the object
+     * @param key the key of the object
+     * @param newKeyring the keyring to wrap the data key with
+     * @return a future which completes once the new data key has been written
+     */
+    public CompletableFuture<Void> rewrapObject(String bucket, String key, Keyring newKeyring) {
+        return rewrap(bucket, key, newKeyring).thenAccept(rewrapped -> {
+            if (!rewrapped) {
+                throw new S3EncryptionClientException("Unable to rewrap " + key
+                        + ": the object has no encryption metadata and no instruction file.");
+            }
+        });
+    }
+
+    /**
+     * Re-wraps the data key of every object whose key begins with the given prefix.
+     * Objects without encryption metadata are skipped. After each listed page has been
+     * rewrapped, the last key of the page is passed to the checkpoint consumer; passing
+     * it back as startAfter resumes the operation after that page.
+     * @param bucket the bucket of the objects
+     * @param prefix the key prefix of the objects
+     * @param startAfter the key to start after, or null to start at the beginning of the prefix
+     * @param newKeyring the keyring to wrap the data keys with
+     * @param checkpoint receives the last key of each completed page, may be null
+     * @return a future containing the number of objects which were rewrapped
+     */
+    public CompletableFuture<Long> rewrapObjectsWithPrefix(String bucket, String prefix, String startAfter,
+                                                           Keyring newKeyring, Consumer<String> checkpoint) {
+        final AtomicLong rewrapped = new AtomicLong(0);
+        return rewrapPage(bucket, prefix, startAfter, null, newKeyring, checkpoint, rewrapped)
+                .thenApply(ignored -> rewrapped.get());
+    }
+
+    private CompletableFuture<Void> rewrapPage(String bucket, String prefix, String startAfter, String continuationToken,
+                                               Keyring newKeyring, Consumer<String> checkpoint, AtomicLong rewrapped) {
+        final ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(bucket)
+                .prefix(prefix)
+                .startAfter(continuationToken == null ? startAfter : null)
+                .continuationToken(continuationToken)
+                .maxKeys(MAX_KEYS_PER_PAGE)
+                .build();
+        return _s3AsyncClient.listObjectsV2(listRequest).thenCompose(listResponse -> {
+            final List<S3Object> contents = listResponse.contents();
+            final List<Supplier<CompletableFuture<Boolean>>> tasks = contents.stream()
+                    .map(S3Object::key)
+                    // Instruction files are rewritten along with their object
+                    .filter(key -> !key.endsWith(INSTRUCTION_FILE_SUFFIX))
+                    .map(key -> (Supplier<CompletableFuture<Boolean>>) () -> rewrap(bucket, key, newKeyring))
+                    .collect(Collectors.toList());
+            return ConcurrencyUtils.runBounded(tasks, _maxConcurrency).thenCompose(results -> {
+                rewrapped.addAndGet(results.stream().filter(Boolean::booleanValue).count());
+                if (checkpoint != null && !contents.isEmpty()) {
+                    checkpoint.accept(contents.get(contents.size() - 1).key());
+                }
+                if (Boolean.TRUE.equals(listResponse.isTruncated())) {
+                    return rewrapPage(bucket, prefix, startAfter, listResponse.nextContinuationToken(),
+                            newKeyring, checkpoint, rewrapped);
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        });
+    }
+
+    /**
+     * Returns a future which is true if the object was rewrapped, or false if
+     * it has neither encryption metadata nor an instruction file. The data key
+     * is unwrapped and wrapped again on the materials executor, as the keyring
+     * may block on a key service.
+     */
+    private CompletableFuture<Boolean> rewrap(String bucket, String key, Keyring newKeyring) {
+        final HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(bucket)
+                .key(key)
+                .build();
+        return _s3AsyncClient.headObject(headRequest).thenComposeAsync(headResponse -> {
+            if (ContentMetadataStrategy.containsEncryptionMetadata(headResponse.metadata())) {
+                Map<String, String> metadata = rewrapMetadata(bucket, key, headResponse.metadata(), newKeyring);
+                return replaceObjectMetadata(bucket, key, headResponse, metadata).thenApply(ignored -> true);
+            }
+            return rewrapInstructionFile(bucket, key, newKeyring);
+        }, _materialsExecutor);
+    }
+
+    private CompletableFuture<Boolean> rewrapInstructionFile(String bucket, String key, Keyring newKeyring) {
+        final String instructionFileKey = key + INSTRUCTION_FILE_SUFFIX;
+        final GetObjectRequest instructionRequest = GetObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(bucket)
+                .key(instructionFileKey)
+                .build();
+        return _s3AsyncClient.getObject(instructionRequest, AsyncResponseTransformer.toBytes())
+                .handle((instruction, t) -> {
+                    if (t == null) {
+                        return instruction;
+                    }
+                    Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                    if (cause instanceof NoSuchKeyException) {
+                        // Not an encrypted object
+                        return null;
+                    }
+                    throw new CompletionException(cause);
+                })
+                .thenComposeAsync(instruction -> {
+                    if (instruction == null) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    return rewriteInstructionFile(bucket, key, instruction, newKeyring).thenApply(ignored -> true);
+                }, _materialsExecutor);
+    }
+
+    private CompletableFuture<?> rewriteInstructionFile(String bucket, String key, ResponseBytes<GetObjectResponse> instruction,
+                                                        Keyring newKeyring) {
+        final Map<String, String> metadata = rewrapMetadata(bucket, key,
+                ContentMetadataStrategy.parseInstructionFile(instruction.asByteArray()), newKeyring);
+        final PutObjectRequest putRequest = PutObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .bucket(bucket)
+                .key(key + INSTRUCTION_FILE_SUFFIX)
+                .metadata(instruction.response().metadata())
+                .build();
+        return _s3AsyncClient.putObject(putRequest,
+                AsyncRequestBody.fromBytes(ContentMetadataStrategy.writeInstructionFile(metadata)));
+    }
+
+    private CompletableFuture<?> replaceObjectMetadata(String bucket, String key, HeadObjectResponse headResponse,
+                                                       Map<String, String> metadata) {
+        // Copy the object onto itself, replacing only the metadata. The ETag condition
+        // ensures the object was not overwritten since the metadata was read. Objects
+        // too large for CopyObject are copied in parts.
+        final CopyObjectRequest copyRequest = CopyObjectRequest.builder()
+                .overrideConfiguration(API_NAME_INTERCEPTOR)
+                .sourceBucket(bucket)
+                .sourceKey(key)
+                .destinationBucket(bucket)
+                .destinationKey(key)
+                .copySourceIfMatch(headResponse.eTag())
+                .metadataDirective(MetadataDirective.REPLACE)
+                .metadata(metadata)
+                .cacheControl(headResponse.cacheControl())
+                .contentDisposition(headResponse.contentDisposition())
+                .contentEncoding(headResponse.contentEncoding())
+                .contentLanguage(headResponse.contentLanguage())
+                .contentType(headResponse.contentType())
+                .expires(headResponse.expires())
+                .storageClass(headResponse.storageClassAsString())
+                .serverSideEncryption(headResponse.serverSideEncryptionAsString())
+                .ssekmsKeyId(headResponse.ssekmsKeyId())
+                .build();
+        return _copyPipeline.copyObject(copyRequest, headResponse);
+    }
+
+    /**
+     * Unwraps the data key described by the given metadata and returns a copy of
+     * the metadata with the data key wrapped by the new keyring.
+     */
+    private Map<String, String> rewrapMetadata(String bucket, String key, Map<String, String> metadata, Keyring newKeyring) {
+        final ContentMetadata contentMetadata = ContentMetadataStrategy.readFromMap(metadata, null);
+        final AlgorithmSuite algorithmSuite = contentMetadata.algorithmSuite();
+        final EncryptedDataKey encryptedDataKey = contentMetadata.encryptedDataKey();
+
+        final Map<String, String> encryptionContext = new HashMap<>(contentMetadata.encryptedDataKeyContext());
+        encryptionContext.remove(KEY_ID_CONTEXT_KEY);
+        encryptionContext.remove(ENCRYPTION_CONTEXT_ALGORITHM_KEY);
+
+        EncryptionMaterials materials = EncryptionMaterials.builder()
+                .s3Request(PutObjectRequest.builder().bucket(bucket).key(key).build())
+                .algorithmSuite(algorithmSuite)
+                .encryptionContext(encryptionContext)
+                .build();
+
+        final String keyProviderInfo = new String(encryptedDataKey.keyProviderInfo(), StandardCharsets.UTF_8);
+        if (newKeyring instanceof KmsKeyring && keyProviderInfo.startsWith("kms")) {
+            // Let KMS re-encrypt the data key directly
+            materials = ((KmsKeyring) newKeyring).onReEncrypt(materials, encryptedDataKey,
+                    contentMetadata.encryptedDataKeyContext());
+        } else {
+            final DecryptMaterialsRequest decryptRequest = DecryptMaterialsRequest.builder()
+                    .s3Request(GetObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .overrideConfiguration(withAdditionalConfiguration(encryptionContext))
+                            .build())
+                    .algorithmSuite(algorithmSuite)
+                    .encryptedDataKeys(Collections.singletonList(encryptedDataKey))
+                    .encryptionContext(contentMetadata.encryptedDataKeyContext())
+                    .build();
+            final DecryptionMaterials decryptionMaterials = _cryptoMaterialsManager.decryptMaterials(decryptRequest);
+            materials = newKeyring.onEncrypt(materials.toBuilder()
+                    .plaintextDataKey(decryptionMaterials.plaintextDataKey())
+                    .build());
+        }
+
+        final Map<String, String> rewrappedMetadata = new HashMap<>(metadata);
+        // The v1 key is replaced by the v2 key written below
+        rewrappedMetadata.remove(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V1);
+        ContentMetadataStrategy.OBJECT_METADATA.encodeMetadata(materials, contentMetadata.contentIv(), rewrappedMetadata);
+        if (algorithmSuite.cipherTagLengthBits() == 0) {
+            rewrappedMetadata.remove(MetadataKeyConstants.CONTENT_CIPHER_TAG_LENGTH);
+        }
+        return rewrappedMetadata;
+    }
+
+    public static class Builder {
+        private S3AsyncClient _s3AsyncClient;
+        private CryptographicMaterialsManager _cryptoMaterialsManager;
+        private int _maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private Executor _materialsExecutor = Runnable::run;
+
+        private Builder() {
+        }
+
+        /**
+         * Note that this does NOT create a defensive clone of S3Client. Any modifications made to the wrapped
+         * S3Client will be reflected in this Builder.
+         */
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "Pass mutability into wrapping client")
+        public Builder s3AsyncClient(S3AsyncClient s3AsyncClient) {
+            this._s3AsyncClient = s3AsyncClient;
+            return this;
+        }
+
+        public Builder cryptoMaterialsManager(CryptographicMaterialsManager cryptoMaterialsManager) {
+            this._cryptoMaterialsManager = cryptoMaterialsManager;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+            }
+            this._maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * The executor on which data keys are unwrapped and wrapped again, so that
+         * blocking calls to a key service do not hold SDK response threads. By default
+         * they run on the thread which completed the preceding request.
+         */
+        public Builder materialsExecutor(Executor materialsExecutor) {
+            this._materialsExecutor = materialsExecutor;
+            return this;
+        }
+
+        public RewrapDataKeyPipeline build() {
+            return new RewrapDataKeyPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * An AsyncRequestBody which encrypts content in independently authenticated segments.
+ */
+public class SegmentedCipherAsyncRequestBody implements AsyncRequestBody {
+
+    private final AsyncRequestBody wrappedAsyncRequestBody;
+    private final EncryptionMaterials materials;
+    private final byte[] iv;
+
+    public SegmentedCipherAsyncRequestBody(final AsyncRequestBody wrappedAsyncRequestBody,
+                                           final EncryptionMaterials materials, final byte[] iv) {
+        this.wrappedAsyncRequestBody = wrappedAsyncRequestBody;
+        this.materials = materials;
+        this.iv = iv.clone();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        wrappedAsyncRequestBody.subscribe(new SegmentedCipherSubscriber(subscriber, materials, iv,
+                materials.getPlaintextLength()));
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return Optional.of(materials.getCiphertextLength());
+    }
+}
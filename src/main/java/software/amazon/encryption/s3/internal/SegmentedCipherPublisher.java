@@ -0,0 +1,51 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.materials.CryptographicMaterials;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Publisher which decrypts segmented GCM content, releasing plaintext
+ * one authenticated segment at a time.
+ */
+public class SegmentedCipherPublisher implements SdkPublisher<ByteBuffer> {
+
+    private final SdkPublisher<ByteBuffer> wrappedPublisher;
+    private final CryptographicMaterials materials;
+    private final byte[] iv;
+    private final long firstSegmentIndex;
+    private final long ciphertextEnd;
+    private final long totalCiphertextLength;
+    private final long plaintextToSkip;
+    private final long plaintextLength;
+
+    /**
+     * @param firstSegmentIndex the index of the first segment the ciphertext publisher emits
+     * @param ciphertextEnd the offset in the object's ciphertext at which the publisher's ciphertext ends
+     * @param totalCiphertextLength the ciphertext length of the whole object
+     * @param plaintextToSkip the number of leading plaintext bytes to discard
+     * @param plaintextLength the number of plaintext bytes to release, or -1 for all of them
+     */
+    public SegmentedCipherPublisher(final SdkPublisher<ByteBuffer> wrappedPublisher, final CryptographicMaterials materials,
+                                    final byte[] iv, long firstSegmentIndex, long ciphertextEnd, long totalCiphertextLength,
+                                    long plaintextToSkip, long plaintextLength) {
+        this.wrappedPublisher = wrappedPublisher;
+        this.materials = materials;
+        this.iv = iv.clone();
+        this.firstSegmentIndex = firstSegmentIndex;
+        this.ciphertextEnd = ciphertextEnd;
+        this.totalCiphertextLength = totalCiphertextLength;
+        this.plaintextToSkip = plaintextToSkip;
+        this.plaintextLength = plaintextLength;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        wrappedPublisher.subscribe(new SegmentedCipherSubscriber(subscriber, materials, iv, firstSegmentIndex,
+                ciphertextEnd, totalCiphertextLength, plaintextToSkip, plaintextLength));
+    }
+}
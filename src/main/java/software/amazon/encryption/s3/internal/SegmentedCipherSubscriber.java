@@ -0,0 +1,211 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.S3EncryptionClientSecurityException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.CryptographicMaterials;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts or decrypts segmented GCM content. Input is collected one segment
+ * at a time, and each segment is encrypted or decrypted and authenticated on
+ * its own, so at most one segment is held in memory. When decrypting, no
+ * plaintext from a segment is released until its tag has been verified.
+ * <p>
+ * Each segment's nonce is the content IV with the segment index and a flag
+ * marking the final segment mixed into its last five bytes. Reordering,
+ * dropping or truncating segments therefore causes authentication to fail.
+ * </p>
+ */
+public class SegmentedCipherSubscriber implements Subscriber<ByteBuffer> {
+    private final Subscriber<? super ByteBuffer> wrappedSubscriber;
+    private final CryptographicMaterials materials;
+    private final byte[] iv;
+    private final Cipher cipher;
+    private final SecretKey dataKey;
+    private final int tagLengthBits;
+    private final long inputEnd;
+    private final long totalInputLength;
+    private final byte[] segment;
+
+    private long segmentIndex;
+    private long inputOffset;
+    private int segmentPosition;
+    private boolean finalSegmentDone;
+    private boolean failed;
+    private Subscription subscription;
+
+    // Used to release only the desired plaintext range when decrypting
+    private long outputToSkip;
+    private long outputRemaining;
+
+    /**
+     * @param wrappedSubscriber the subscriber receiving the output
+     * @param materials the materials, which determine whether this encrypts or decrypts
+     * @param iv the content IV
+     * @param firstSegmentIndex the index of the first segment in the input
+     * @param inputEnd the offset in the entire input at which this input ends
+     * @param totalInputLength the length of the entire plaintext when encrypting, or of the
+     *                         entire ciphertext when decrypting, even if only a range is input
+     * @param outputToSkip the number of leading output bytes to discard
+     * @param outputLength the maximum number of output bytes to release, or -1 for all of them
+     */
+    SegmentedCipherSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, CryptographicMaterials materials,
+                              byte[] iv, long firstSegmentIndex, long inputEnd, long totalInputLength,
+                              long outputToSkip, long outputLength) {
+        this.wrappedSubscriber = wrappedSubscriber;
+        this.materials = materials;
+        this.iv = iv.clone();
+        final AlgorithmSuite algorithmSuite = materials.algorithmSuite();
+        if (!algorithmSuite.isSegmented()) {
+            throw new S3EncryptionClientException("Algorithm is not segmented: " + algorithmSuite.cipherName());
+        }
+        this.tagLengthBits = algorithmSuite.cipherTagLengthBits();
+        try {
+            this.cipher = CryptoFactory.createCipher(algorithmSuite.cipherName(), materials.cryptoProvider());
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientException("Unable to create cipher: " + algorithmSuite.cipherName(), e);
+        }
+        this.dataKey = materials.dataKey();
+        final int inputSegmentLength = isEncrypting()
+                ? algorithmSuite.cipherSegmentLengthBytes()
+                : algorithmSuite.cipherSegmentLengthBytes() + algorithmSuite.cipherTagLengthBytes();
+        this.segment = new byte[inputSegmentLength];
+        this.segmentIndex = firstSegmentIndex;
+        this.inputOffset = firstSegmentIndex * inputSegmentLength;
+        this.inputEnd = inputEnd;
+        this.totalInputLength = totalInputLength;
+        this.outputToSkip = outputToSkip;
+        this.outputRemaining = outputLength < 0 ? Long.MAX_VALUE : outputLength;
+    }
+
+    SegmentedCipherSubscriber(Subscriber<? super ByteBuffer> wrappedSubscriber, CryptographicMaterials materials,
+                              byte[] iv, long totalInputLength) {
+        this(wrappedSubscriber, materials, iv, 0, totalInputLength, totalInputLength, 0, -1);
+    }
+
+    /**
+     * Returns the nonce for a single segment.
+     */
+    static byte[] segmentNonce(byte[] iv, long segmentIndex, boolean isFinalSegment) {
+        final byte[] nonce = iv.clone();
+        final int counterOffset = nonce.length - 5;
+        nonce[counterOffset] ^= (byte) (segmentIndex >>> 24);
+        nonce[counterOffset + 1] ^= (byte) (segmentIndex >>> 16);
+        nonce[counterOffset + 2] ^= (byte) (segmentIndex >>> 8);
+        nonce[counterOffset + 3] ^= (byte) segmentIndex;
+        nonce[counterOffset + 4] ^= (byte) (isFinalSegment ? 1 : 0);
+        return nonce;
+    }
+
+    private boolean isEncrypting() {
+        return materials.cipherMode().opMode() == Cipher.ENCRYPT_MODE;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        wrappedSubscriber.onSubscribe(s);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        if (failed) {
+            return;
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            while (byteBuffer.hasRemaining()) {
+                if (finalSegmentDone || inputOffset == inputEnd) {
+                    throw new S3EncryptionClientSecurityException("Content continues past its final segment.");
+                }
+                final int length = Math.min(byteBuffer.remaining(), segment.length - segmentPosition);
+                byteBuffer.get(segment, segmentPosition, length);
+                segmentPosition += length;
+                inputOffset += length;
+                if (segmentPosition == segment.length) {
+                    processSegment(inputOffset == totalInputLength, output);
+                }
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        wrappedSubscriber.onNext(ByteBuffer.wrap(output.toByteArray()));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!failed) {
+            wrappedSubscriber.onError(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (failed) {
+            return;
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            if (inputOffset != inputEnd) {
+                throw new S3EncryptionClientSecurityException("Content ended before its final segment.");
+            }
+            if (!finalSegmentDone && inputEnd == totalInputLength) {
+                processSegment(true, output);
+            } else if (segmentPosition != 0) {
+                throw new S3EncryptionClientSecurityException("Content range does not end on a segment boundary.");
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        if (output.size() > 0) {
+            wrappedSubscriber.onNext(ByteBuffer.wrap(output.toByteArray()));
+        }
+        wrappedSubscriber.onComplete();
+    }
+
+    private void processSegment(boolean isFinalSegment, ByteArrayOutputStream output) {
+        final byte[] result;
+        try {
+            cipher.init(materials.cipherMode().opMode(), dataKey,
+                    new GCMParameterSpec(tagLengthBits, segmentNonce(iv, segmentIndex, isFinalSegment)));
+            result = cipher.doFinal(segment, 0, segmentPosition);
+        } catch (GeneralSecurityException e) {
+            throw new S3EncryptionClientSecurityException("Unable to " + (isEncrypting() ? "encrypt" : "decrypt")
+                    + " content segment " + segmentIndex + ".", e);
+        }
+        segmentIndex++;
+        segmentPosition = 0;
+        finalSegmentDone = isFinalSegment;
+        release(result, output);
+    }
+
+    private void release(byte[] result, ByteArrayOutputStream output) {
+        int start = (int) Math.min(outputToSkip, result.length);
+        outputToSkip -= start;
+        int length = (int) Math.min(outputRemaining, result.length - start);
+        outputRemaining -= length;
+        output.write(result, start, length);
+    }
+
+    private void fail(RuntimeException e) {
+        failed = true;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        // Forward error, else the wrapped subscriber waits indefinitely
+        wrappedSubscriber.onError(e);
+    }
+}
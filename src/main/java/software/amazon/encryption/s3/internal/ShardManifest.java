@@ -0,0 +1,122 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.protocols.jsoncore.JsonNode;
+import software.amazon.awssdk.protocols.jsoncore.JsonNodeParser;
+import software.amazon.awssdk.protocols.jsoncore.JsonWriter;
+import software.amazon.awssdk.protocols.jsoncore.JsonWriter.JsonGenerationException;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of shards which make up a sharded object, in order. The manifest
+ * is itself stored as an encrypted object, so the shard keys, lengths and
+ * ETags it records are authenticated.
+ */
+final class ShardManifest {
+
+    static final String VERSION = "1";
+
+    private static final String LENGTH = "length";
+    private static final String SHARDS = "shards";
+    private static final String KEY = "key";
+    private static final String ETAG = "etag";
+
+    private final List<Shard> _shards;
+    private final long _length;
+
+    ShardManifest(List<Shard> shards) {
+        _shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        long length = 0;
+        for (Shard shard : shards) {
+            length += shard.length();
+        }
+        _length = length;
+    }
+
+    List<Shard> shards() {
+        return _shards;
+    }
+
+    /**
+     * The total length of the plaintext of all shards.
+     */
+    long length() {
+        return _length;
+    }
+
+    byte[] toBytes() {
+        try (JsonWriter jsonWriter = JsonWriter.create()) {
+            jsonWriter.writeStartObject();
+            jsonWriter.writeFieldName(LENGTH).writeValue(_length);
+            jsonWriter.writeFieldName(SHARDS).writeStartArray();
+            for (Shard shard : _shards) {
+                jsonWriter.writeStartObject();
+                jsonWriter.writeFieldName(KEY).writeValue(shard.key());
+                jsonWriter.writeFieldName(LENGTH).writeValue(shard.length());
+                jsonWriter.writeFieldName(ETAG).writeValue(shard.eTag());
+                jsonWriter.writeEndObject();
+            }
+            jsonWriter.writeEndArray();
+            jsonWriter.writeEndObject();
+            return jsonWriter.getBytes();
+        } catch (JsonGenerationException e) {
+            throw new S3EncryptionClientException("Cannot serialize shard manifest to JSON.", e);
+        }
+    }
+
+    static ShardManifest fromBytes(byte[] bytes) {
+        try {
+            final Map<String, JsonNode> manifest = JsonNodeParser.create()
+                    .parse(new ByteArrayInputStream(bytes))
+                    .asObject();
+            final List<Shard> shards = new ArrayList<>();
+            for (JsonNode node : manifest.get(SHARDS).asArray()) {
+                final Map<String, JsonNode> shard = node.asObject();
+                shards.add(new Shard(shard.get(KEY).asString(),
+                        Long.parseLong(shard.get(LENGTH).asNumber()),
+                        shard.get(ETAG).asString()));
+            }
+            final ShardManifest result = new ShardManifest(shards);
+            if (result.length() != Long.parseLong(manifest.get(LENGTH).asNumber())) {
+                throw new S3EncryptionClientException("Shard manifest length does not match the length of its shards.");
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (e instanceof S3EncryptionClientException) {
+                throw e;
+            }
+            throw new S3EncryptionClientException("Malformed shard manifest.", e);
+        }
+    }
+
+    static final class Shard {
+        private final String _key;
+        private final long _length;
+        private final String _eTag;
+
+        Shard(String key, long length, String eTag) {
+            _key = key;
+            _length = length;
+            _eTag = eTag;
+        }
+
+        String key() {
+            return _key;
+        }
+
+        long length() {
+            return _length;
+        }
+
+        String eTag() {
+            return _eTag;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.internal.ShardManifest.Shard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Stores content which is too large for a single encrypted object as a
+ * number of separately encrypted shard objects, plus an encrypted manifest
+ * at the requested key which lists them. Shards are uploaded and downloaded
+ * concurrently.
+ * <p>
+ * Shard keys are the requested key followed by {@value #SHARD_KEY_INFIX},
+ * a unique upload id and the shard index, so a sharded object can be
+ * removed by deleting its key and every key beginning with the key followed
+ * by {@value #SHARD_KEY_INFIX}. Deleting by the bare key as a prefix would
+ * also remove unrelated objects whose keys extend it. If an upload fails,
+ * the shards it already wrote are deleted before the failure is returned.
+ * </p>
+ */
+public class ShardedObjectPipeline {
+
+    public static final int DEFAULT_SHARD_SIZE = 32 * 1024 * 1024;
+    public static final int MAX_SHARD_SIZE = 1024 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    static final String SHARD_KEY_INFIX = ".shards/";
+
+    private final PutEncryptedObjectPipeline _putPipeline;
+    private final GetEncryptedObjectPipeline _getPipeline;
+    private final DeleteEncryptedObjectsPipeline _deletePipeline;
+    private final int _shardSize;
+    private final int _maxConcurrency;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private ShardedObjectPipeline(Builder builder) {
+        this._putPipeline = builder._putPipeline;
+        this._getPipeline = builder._getPipeline;
+        this._deletePipeline = builder._deletePipeline;
+        this._shardSize = builder._shardSize;
+        this._maxConcurrency = builder._maxConcurrency;
+    }
+
+    /**
+     * Reads the content into shards and uploads each one as it is read. At most
+     * maxConcurrency shards are buffered in memory at once. The manifest is
+     * uploaded once every shard has completed. If any shard or the manifest
+     * fails, the shards which were uploaded are deleted and the future fails
+     * with the original error.
+     * @param request the request for the manifest object
+     * @param content the content to shard, which is read to its end but not closed
+     * @return a future containing the response of the manifest upload
+     */
+    public CompletableFuture<PutObjectResponse> putShardedObject(PutObjectRequest request, InputStream content) {
+        final String shardKeyPrefix = request.key() + SHARD_KEY_INFIX + UUID.randomUUID() + "/";
+        final List<CompletableFuture<Shard>> shards = new ArrayList<>();
+        final List<CompletableFuture<Shard>> inFlight = new ArrayList<>();
+        try {
+            int length;
+            do {
+                // Wait for an upload to finish before buffering another shard
+                while (inFlight.size() >= _maxConcurrency) {
+                    CompletableFuture.anyOf(inFlight.toArray(new CompletableFuture[0])).join();
+                    inFlight.removeIf(CompletableFuture::isDone);
+                }
+                final byte[] buffer = new byte[_shardSize];
+                length = readFully(content, buffer);
+                if (length > 0) {
+                    final CompletableFuture<Shard> shard = putShard(request, shardKeyPrefix + shards.size(), buffer, length);
+                    shards.add(shard);
+                    inFlight.add(shard);
+                }
+            } while (length == _shardSize);
+        } catch (CompletionException e) {
+            return deleteShards(request, shards, e.getCause());
+        } catch (S3EncryptionClientException e) {
+            return deleteShards(request, shards, e);
+        }
+
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture[0])).thenCompose(ignored -> {
+            final ShardManifest manifest = new ShardManifest(shards.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList()));
+            final byte[] manifestBytes = manifest.toBytes();
+            final Map<String, String> metadata = new HashMap<>(request.metadata());
+            metadata.put(MetadataKeyConstants.SHARD_MANIFEST_VERSION, ShardManifest.VERSION);
+            final PutObjectRequest manifestRequest = request.toBuilder()
+                    .contentLength((long) manifestBytes.length)
+                    .contentMD5(null)
+                    .checksumCRC32(null)
+                    .checksumCRC32C(null)
+                    .checksumSHA1(null)
+                    .checksumSHA256(null)
+                    .metadata(metadata)
+                    .build();
+            return _putPipeline.putObject(manifestRequest, AsyncRequestBody.fromBytes(manifestBytes));
+        }).handle((response, t) -> t == null
+                ? CompletableFuture.completedFuture(response)
+                : this.<PutObjectResponse>deleteShards(request, shards, t instanceof CompletionException ? t.getCause() : t))
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Waits for every shard upload to settle, deletes the shards which were
+     * uploaded and then fails with the original error. A failure to delete is
+     * added to it as suppressed rather than replacing it.
+     */
+    private <T> CompletableFuture<T> deleteShards(PutObjectRequest request, List<CompletableFuture<Shard>> shards,
+                                                  Throwable cause) {
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture[0]))
+                .handle((ignored, t) -> shards.stream()
+                        .filter(shard -> !shard.isCompletedExceptionally())
+                        .map(shard -> ObjectIdentifier.builder().key(shard.join().key()).build())
+                        .collect(Collectors.toList()))
+                .thenCompose(uploaded -> {
+                    if (uploaded.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return _deletePipeline.deleteObjects(DeleteObjectsRequest.builder()
+                            .overrideConfiguration(request.overrideConfiguration().orElse(null))
+                            .bucket(request.bucket())
+                            .expectedBucketOwner(request.expectedBucketOwner())
+                            .requestPayer(request.requestPayer())
+                            .delete(builder -> builder.objects(uploaded).quiet(true))
+                            .build());
+                })
+                .handle((ignored, t) -> {
+                    if (t != null) {
+                        cause.addSuppressed(t instanceof CompletionException ? t.getCause() : t);
+                    }
+                    throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Downloads the manifest and then every shard it lists, writing each shard
+     * into its place in the destination file as it is decrypted.
+     * @param request the request for the manifest object
+     * @param destination the file to write the content to, which is created or truncated
+     * @return a future containing the response of the manifest download
+     */
+    public CompletableFuture<GetObjectResponse> getShardedObject(GetObjectRequest request, Path destination) {
+        if (request.range() != null) {
+            throw new S3EncryptionClientException("Ranged gets are not supported for sharded objects.");
+        }
+        return _getPipeline.getObject(request, AsyncResponseTransformer.toBytes()).thenCompose(manifestBytes -> {
+            final GetObjectResponse response = manifestBytes.response();
+            if (!ShardManifest.VERSION.equals(response.metadata().get(MetadataKeyConstants.SHARD_MANIFEST_VERSION))) {
+                throw new S3EncryptionClientException("Object " + request.key() + " is not a sharded object.");
+            }
+            final ShardManifest manifest = ShardManifest.fromBytes(manifestBytes.asByteArray());
+            return getShards(request, manifest, destination).thenApply(ignored -> response);
+        });
+    }
+
+    private CompletableFuture<Shard> putShard(PutObjectRequest request, String shardKey, byte[] buffer, int length) {
+        final PutObjectRequest shardRequest = PutObjectRequest.builder()
+                .overrideConfiguration(request.overrideConfiguration().orElse(null))
+                .bucket(request.bucket())
+                .key(shardKey)
+                .expectedBucketOwner(request.expectedBucketOwner())
+                .requestPayer(request.requestPayer())
+                .storageClass(request.storageClass())
+                .serverSideEncryption(request.serverSideEncryption())
+                .ssekmsKeyId(request.ssekmsKeyId())
+                .ssekmsEncryptionContext(request.ssekmsEncryptionContext())
+                .bucketKeyEnabled(request.bucketKeyEnabled())
+                .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                .sseCustomerKey(request.sseCustomerKey())
+                .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                .acl(request.acl())
+                .grantFullControl(request.grantFullControl())
+                .grantRead(request.grantRead())
+                .grantReadACP(request.grantReadACP())
+                .grantWriteACP(request.grantWriteACP())
+                .tagging(request.tagging())
+                .objectLockMode(request.objectLockMode())
+                .objectLockRetainUntilDate(request.objectLockRetainUntilDate())
+                .objectLockLegalHoldStatus(request.objectLockLegalHoldStatus())
+                .contentLength((long) length)
+                .build();
+        return _putPipeline.putObject(shardRequest, AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(buffer, 0, length)))
+                .thenApply(response -> new Shard(shardKey, length, response.eTag()));
+    }
+
+    private CompletableFuture<Void> getShards(GetObjectRequest request, ShardManifest manifest, Path destination) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new S3EncryptionClientException("Unable to open " + destination, e);
+        }
+        final List<Supplier<CompletableFuture<GetObjectResponse>>> tasks = new ArrayList<>();
+        long position = 0;
+        for (Shard shard : manifest.shards()) {
+            final long shardPosition = position;
+            // The ETag binds each shard to the version recorded in the authenticated manifest
+            final GetObjectRequest shardRequest = GetObjectRequest.builder()
+                    .overrideConfiguration(request.overrideConfiguration().orElse(null))
+                    .bucket(request.bucket())
+                    .key(shard.key())
+                    .expectedBucketOwner(request.expectedBucketOwner())
+                    .requestPayer(request.requestPayer())
+                    .sseCustomerAlgorithm(request.sseCustomerAlgorithm())
+                    .sseCustomerKey(request.sseCustomerKey())
+                    .sseCustomerKeyMD5(request.sseCustomerKeyMD5())
+                    .ifMatch(shard.eTag())
+                    .build();
+            tasks.add(() -> _getPipeline.getObject(shardRequest,
+                    new FileRegionResponseTransformer(channel, shardPosition, shard.length())));
+            position += shard.length();
+        }
+        return ConcurrencyUtils.runBounded(tasks, _maxConcurrency).handle((ignored, t) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (t == null) {
+                    throw new S3EncryptionClientException("Unable to close " + destination, e);
+                }
+            }
+            if (t != null) {
+                throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+            }
+            return null;
+        });
+    }
+
+    private static int readFully(InputStream content, byte[] buffer) {
+        int offset = 0;
+        try {
+            while (offset < buffer.length) {
+                final int read = content.read(buffer, offset, buffer.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new S3EncryptionClientException("Unable to read content to shard.", e);
+        }
+        return offset;
+    }
+
+    public static class Builder {
+        private PutEncryptedObjectPipeline _putPipeline;
+        private GetEncryptedObjectPipeline _getPipeline;
+        private DeleteEncryptedObjectsPipeline _deletePipeline;
+        private int _shardSize = DEFAULT_SHARD_SIZE;
+        private int _maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private Builder() {
+        }
+
+        public Builder putObjectPipeline(PutEncryptedObjectPipeline putPipeline) {
+            this._putPipeline = putPipeline;
+            return this;
+        }
+
+        public Builder getObjectPipeline(GetEncryptedObjectPipeline getPipeline) {
+            this._getPipeline = getPipeline;
+            return this;
+        }
+
+        /**
+         * The pipeline used to delete the shards of an upload which failed.
+         */
+        public Builder deleteObjectsPipeline(DeleteEncryptedObjectsPipeline deletePipeline) {
+            this._deletePipeline = deletePipeline;
+            return this;
+        }
+
+        /**
+         * The number of plaintext bytes in each shard, other than the last.
+         * Shards larger than 64 MiB can only be read with a segmented algorithm
+         * suite or with delayed authentication enabled.
+         */
+        public Builder shardSize(int shardSize) {
+            if (shardSize < 1 || shardSize > MAX_SHARD_SIZE) {
+                throw new S3EncryptionClientException("shardSize must be between 1 and " + MAX_SHARD_SIZE);
+            }
+            this._shardSize = shardSize;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+            }
+            this._maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public ShardedObjectPipeline build() {
+            if (_putPipeline == null || _getPipeline == null || _deletePipeline == null) {
+                throw new S3EncryptionClientException("Put, get and delete pipelines must be provided.");
+            }
+            return new ShardedObjectPipeline(this);
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class StreamingAesGcmContentStrategy implements AsyncContentEncryptionStr
 
     @Override
     public EncryptedContent encryptContent(EncryptionMaterials materials, AsyncRequestBody content) {
-        if (materials.getPlaintextLength() > AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherMaxContentLengthBytes()) {
+        if (materials.getPlaintextLength() > materials.algorithmSuite().cipherMaxContentLengthBytes()) {
             throw new S3EncryptionClientException("The contentLength of the object you are attempting to encrypt exceeds" +
                     "the maximum length allowed for GCM encryption.");
         }
@@ -47,6 +47,15 @@ public class StreamingAesGcmContentStrategy implements AsyncContentEncryptionStr
         final byte[] iv = new byte[materials.algorithmSuite().iVLengthBytes()];
         _secureRandom.nextBytes(iv);
 
+        if (materials.algorithmSuite().isSegmented()) {
+            // The final segment is marked, so its position must be known in advance
+            if (materials.getPlaintextLength() < 0) {
+                throw new S3EncryptionClientException("The contentLength must be known to use segmented encryption.");
+            }
+            return new EncryptedContent(iv, new SegmentedCipherAsyncRequestBody(content, materials, iv),
+                    materials.getCiphertextLength());
+        }
+
         AsyncRequestBody encryptedAsyncRequestBody = new CipherAsyncRequestBody(content, materials.getCiphertextLength(), materials, iv);
         return new EncryptedContent(iv, encryptedAsyncRequestBody, materials.getCiphertextLength());
     }
@@ -0,0 +1,279 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.SdkPartType;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Uploads content whose length is not known in advance. Up to one part of plaintext
+ * is buffered; if the content ends within it, the object is uploaded with a single
+ * PutObject. Otherwise an encrypted multipart upload is created and the content is
+ * uploaded as parts, in series, while the next part is buffered. Multipart uploads are
+ * only encrypted with {@link MultipartUploadObjectPipeline#MULTIPART_ALGORITHM_SUITE},
+ * so with any other suite content larger than one part fails to upload.
+ */
+public class StreamingPutObjectPipeline {
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final PutEncryptedObjectPipeline _putPipeline;
+    private final MultipartUploadObjectPipeline _multipartPipeline;
+    private final int _partSize;
+
+    private StreamingPutObjectPipeline(Builder builder) {
+        this._putPipeline = builder._putPipeline;
+        this._multipartPipeline = builder._multipartPipeline;
+        this._partSize = builder._partSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return true if neither the request nor the body gives the length of the content
+     */
+    public static boolean isUnknownLength(PutObjectRequest request, AsyncRequestBody requestBody) {
+        return request.contentLength() == null
+                && requestBody.contentLength().map(length -> length < 0).orElse(true);
+    }
+
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody requestBody) {
+        final CompletableFuture<PutObjectResponse> result = new CompletableFuture<>();
+        requestBody.subscribe(new PartSubscriber(request, result));
+        return result;
+    }
+
+    /**
+     * Fills one part at a time. A full part is only uploaded once more content arrives,
+     * so content of exactly one part still uses a single PutObject. While a part is
+     * being uploaded the next one is filled, and then no more content is requested
+     * until the upload completes.
+     */
+    private final class PartSubscriber implements Subscriber<ByteBuffer> {
+        private final PutObjectRequest _request;
+        private final CompletableFuture<PutObjectResponse> _result;
+        private final List<CompletedPart> _completedParts = new ArrayList<>();
+        private Subscription _subscription;
+        private ByteBuffer _pending;
+        private byte[] _part = new byte[_partSize];
+        private int _partLength;
+        private int _partNumber;
+        private CompletableFuture<String> _uploadId;
+        private CompletableFuture<Void> _previousPart = CompletableFuture.completedFuture(null);
+        private boolean _failed;
+
+        PartSubscriber(PutObjectRequest request, CompletableFuture<PutObjectResponse> result) {
+            _request = request;
+            _result = result;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Subscription s) {
+            _subscription = s;
+            s.request(1);
+        }
+
+        @Override
+        public synchronized void onNext(ByteBuffer byteBuffer) {
+            if (_failed) {
+                return;
+            }
+            _pending = byteBuffer;
+            drainPending();
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            if (_failed) {
+                return;
+            }
+            try {
+                if (_uploadId == null) {
+                    _putPipeline.putObject(_request.toBuilder()
+                                    .contentLength((long) _partLength)
+                                    .build(), AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(_part, 0, _partLength)))
+                            .whenComplete((response, error) -> {
+                                if (error != null) {
+                                    _result.completeExceptionally(error);
+                                } else {
+                                    _result.complete(response);
+                                }
+                            });
+                    return;
+                }
+                uploadPart(true);
+                _previousPart.thenCompose(ignored -> _uploadId)
+                        .thenCompose(uploadId -> {
+                            final List<CompletedPart> parts;
+                            synchronized (this) {
+                                parts = new ArrayList<>(_completedParts);
+                            }
+                            parts.sort(Comparator.comparing(CompletedPart::partNumber));
+                            return _multipartPipeline.completeMultipartUploadAsync(CompleteMultipartUploadRequest.builder()
+                                    .bucket(_request.bucket())
+                                    .key(_request.key())
+                                    .uploadId(uploadId)
+                                    .multipartUpload(partBuilder -> partBuilder.parts(parts))
+                                    .build());
+                        })
+                        .whenComplete((response, error) -> {
+                            if (error != null) {
+                                synchronized (this) {
+                                    fail(error);
+                                }
+                            } else {
+                                _result.complete(PutObjectResponse.builder()
+                                        .eTag(response.eTag())
+                                        .versionId(response.versionId())
+                                        .build());
+                            }
+                        });
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void drainPending() {
+            try {
+                while (_pending.hasRemaining()) {
+                    if (_partLength == _partSize) {
+                        if (!_previousPart.isDone() || _previousPart.isCompletedExceptionally()) {
+                            // Resume once the part before this one has been uploaded, or fail
+                            // now if it could not be, rather than read the rest of the content
+                            _previousPart.whenComplete((ignored, error) -> resume(error));
+                            return;
+                        }
+                        uploadPart(false);
+                    }
+                    final int length = Math.min(_pending.remaining(), _partSize - _partLength);
+                    _pending.get(_part, _partLength, length);
+                    _partLength += length;
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            _subscription.request(1);
+        }
+
+        private synchronized void resume(Throwable previousPartError) {
+            if (_failed) {
+                return;
+            }
+            if (previousPartError != null) {
+                fail(previousPartError);
+                return;
+            }
+            drainPending();
+        }
+
+        private void uploadPart(boolean isLastPart) {
+            if (_uploadId == null) {
+                _uploadId = _multipartPipeline.createMultipartUploadAsync(
+                                MultipartUploadObjectPipeline.createMultipartUploadRequest(_request))
+                        .thenApply(CreateMultipartUploadResponse::uploadId);
+            }
+            final int partNumber = ++_partNumber;
+            final ByteBuffer part = ByteBuffer.wrap(_part, 0, _partLength);
+            final long partLength = _partLength;
+            _part = isLastPart ? null : new byte[_partSize];
+            _partLength = 0;
+            final CompletableFuture<String> uploadId = _uploadId;
+            // Parts of an encrypted multipart upload must be uploaded in series
+            _previousPart = _previousPart.thenCompose(ignored -> uploadId)
+                    .thenCompose(id -> _multipartPipeline.uploadPartAsync(MultipartUploadObjectPipeline.uploadPartRequest(_request)
+                            .uploadId(id)
+                            .partNumber(partNumber)
+                            .contentLength(partLength)
+                            .sdkPartType(isLastPart ? SdkPartType.LAST : SdkPartType.DEFAULT)
+                            .build(), AsyncRequestBody.fromByteBuffer(part)))
+                    .thenAccept(response -> {
+                        synchronized (this) {
+                            _completedParts.add(CompletedPart.builder()
+                                    .partNumber(partNumber)
+                                    .eTag(response.eTag())
+                                    .build());
+                        }
+                    });
+        }
+
+        private void fail(Throwable t) {
+            if (_failed) {
+                return;
+            }
+            _failed = true;
+            if (_subscription != null) {
+                _subscription.cancel();
+            }
+            if (_uploadId != null) {
+                _uploadId.thenCompose(uploadId -> _multipartPipeline.abortMultipartUploadAsync(AbortMultipartUploadRequest.builder()
+                        .bucket(_request.bucket())
+                        .key(_request.key())
+                        .uploadId(uploadId)
+                        .build()));
+            }
+            _result.completeExceptionally(t);
+        }
+    }
+
+    public static class Builder {
+        private PutEncryptedObjectPipeline _putPipeline;
+        private MultipartUploadObjectPipeline _multipartPipeline;
+        private int _partSize = DEFAULT_PART_SIZE;
+
+        private Builder() {
+        }
+
+        public Builder putObjectPipeline(PutEncryptedObjectPipeline putPipeline) {
+            this._putPipeline = putPipeline;
+            return this;
+        }
+
+        public Builder multipartPipeline(MultipartUploadObjectPipeline multipartPipeline) {
+            this._multipartPipeline = multipartPipeline;
+            return this;
+        }
+
+        /**
+         * Sets the size of the plaintext parts, which is also the largest object
+         * uploaded with a single PutObject. S3 requires every part but the last to
+         * be at least 5 MiB.
+         */
+        public Builder partSize(int partSize) {
+            final int blockSize = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherBlockSizeBytes();
+            if (partSize < MIN_PART_SIZE || partSize % blockSize != 0) {
+                throw new S3EncryptionClientException("partSize must be at least " + MIN_PART_SIZE
+                        + " and a multiple of the cipher block size (" + blockSize + ")");
+            }
+            this._partSize = partSize;
+            return this;
+        }
+
+        public StreamingPutObjectPipeline build() {
+            return new StreamingPutObjectPipeline(this);
+        }
+    }
+}
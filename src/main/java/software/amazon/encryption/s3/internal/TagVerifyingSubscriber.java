@@ -0,0 +1,155 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.CryptographicMaterials;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumes the ciphertext of a GCM object and completes a future with whether
+ * every tag in it is valid. Segmented objects are verified segment by segment,
+ * using the same nonces as {@link SegmentedCipherSubscriber}. No plaintext is
+ * produced, and consumption stops at the first invalid tag.
+ */
+class TagVerifyingSubscriber implements Subscriber<ByteBuffer> {
+    private final CompletableFuture<Boolean> result;
+    private final GcmTagVerifier verifier;
+    private final byte[] iv;
+    private final boolean segmented;
+    private final long totalLength;
+    private final long messageLength;
+    private final byte[] tag;
+
+    private Subscription subscription;
+    private long offset;
+    private long messageIndex;
+    private long messageOffset;
+    private long currentMessageLength;
+    private boolean done;
+
+    /**
+     * @param result the future completed with the outcome of the verification
+     * @param materials the decryption materials, holding the content key
+     * @param iv the content IV
+     * @param ciphertextLength the length of the entire ciphertext, including tags
+     */
+    TagVerifyingSubscriber(CompletableFuture<Boolean> result, CryptographicMaterials materials, byte[] iv,
+                           long ciphertextLength) {
+        final AlgorithmSuite algorithmSuite = materials.algorithmSuite();
+        this.result = result;
+        this.iv = iv.clone();
+        this.segmented = algorithmSuite.isSegmented();
+        this.totalLength = ciphertextLength;
+        this.tag = new byte[algorithmSuite.cipherTagLengthBytes()];
+        this.messageLength = segmented
+                ? algorithmSuite.cipherSegmentLengthBytes() + algorithmSuite.cipherTagLengthBytes()
+                : ciphertextLength;
+        final int chunkSize = segmented
+                ? algorithmSuite.cipherSegmentLengthBytes()
+                : GcmTagVerifier.DEFAULT_CHUNK_SIZE;
+        this.verifier = new GcmTagVerifier(materials.dataKey(), materials.cryptoProvider(), chunkSize);
+        startMessage();
+    }
+
+    private void startMessage() {
+        messageOffset = 0;
+        currentMessageLength = Math.min(messageLength, totalLength - offset);
+        final boolean isFinal = offset + currentMessageLength == totalLength;
+        verifier.init(segmented ? SegmentedCipherSubscriber.segmentNonce(iv, messageIndex, isFinal) : iv);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        if (totalLength < tag.length) {
+            // Too short to hold even a tag, so it cannot be authentic
+            finish(false);
+            return;
+        }
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        if (done) {
+            return;
+        }
+        try {
+            while (byteBuffer.hasRemaining()) {
+                if (offset == totalLength) {
+                    throw new S3EncryptionClientException("Content continues past its expected length.");
+                }
+                final long bodyLength = currentMessageLength - tag.length;
+                final int length;
+                if (messageOffset < bodyLength) {
+                    length = (int) Math.min(byteBuffer.remaining(), bodyLength - messageOffset);
+                    final ByteBuffer body = byteBuffer.duplicate();
+                    body.limit(body.position() + length);
+                    verifier.update(body);
+                    byteBuffer.position(byteBuffer.position() + length);
+                } else {
+                    length = (int) Math.min(byteBuffer.remaining(), currentMessageLength - messageOffset);
+                    byteBuffer.get(tag, (int) (messageOffset - bodyLength), length);
+                }
+                messageOffset += length;
+                offset += length;
+                if (messageOffset == currentMessageLength) {
+                    if (!verifier.verify(tag)) {
+                        finish(false);
+                        return;
+                    }
+                    messageIndex++;
+                    if (offset < totalLength) {
+                        startMessage();
+                        if (currentMessageLength < tag.length) {
+                            // A truncated final segment cannot be authentic
+                            finish(false);
+                            return;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!done) {
+            done = true;
+            result.completeExceptionally(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+        if (offset != totalLength) {
+            fail(new S3EncryptionClientException("Content ended before its expected length."));
+            return;
+        }
+        done = true;
+        result.complete(true);
+    }
+
+    private void finish(boolean valid) {
+        done = true;
+        subscription.cancel();
+        result.complete(valid);
+    }
+
+    private void fail(RuntimeException e) {
+        done = true;
+        subscription.cancel();
+        result.completeExceptionally(e);
+    }
+}
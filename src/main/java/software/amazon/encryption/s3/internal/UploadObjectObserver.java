@@ -21,13 +21,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 public class UploadObjectObserver {
     private final List<Future<Map<Integer, UploadPartResponse>>> futures = new ArrayList<>();
     private PutObjectRequest request;
-    private String uploadId;
+    private volatile String uploadId;
+    private CompletableFuture<String> uploadIdFuture;
     private S3AsyncClient s3AsyncClient;
     private S3EncryptionClient s3EncryptionClient;
     private ExecutorService es;
@@ -38,6 +40,7 @@ public class UploadObjectObserver {
         this.s3AsyncClient = s3AsyncClient;
         this.s3EncryptionClient = s3EncryptionClient;
         this.es = es;
+        this.uploadIdFuture = null;
         return this;
     }
 
@@ -54,13 +57,26 @@ public class UploadObjectObserver {
     public String onUploadCreation(PutObjectRequest req) {
         CreateMultipartUploadResponse res =
                 s3EncryptionClient.createMultipartUpload(newCreateMultipartUploadRequest(req));
+        this.uploadIdFuture = CompletableFuture.completedFuture(res.uploadId());
         return this.uploadId = res.uploadId();
     }
 
+    /**
+     * Records an upload which is still being created. Parts created before its
+     * upload id is known wait for it on the executor, so the object can be
+     * encrypted while the CreateMultipartUpload request is in flight.
+     * @param uploadId a future containing the upload id
+     */
+    public void onUploadCreation(CompletableFuture<String> uploadId) {
+        this.uploadIdFuture = uploadId.thenApply(id -> this.uploadId = id);
+    }
+
     public void onPartCreate(PartCreationEvent event) {
+        if (uploadIdFuture != null && uploadIdFuture.isCompletedExceptionally()) {
+            // Stop encrypting, since the parts can never be uploaded
+            uploadIdFuture.join();
+        }
         final File part = event.getPart();
-        final UploadPartRequest reqUploadPart =
-                newUploadPartRequest(event);
         final OnFileDelete fileDeleteObserver = event.getFileDeleteObserver();
         futures.add(es.submit(new Callable<Map<Integer, UploadPartResponse>>() {
             @Override
@@ -68,6 +84,9 @@ public class UploadObjectObserver {
                 // Upload the ciphertext directly via the non-encrypting
                 // s3 client
                 try {
+                    awaitUploadId();
+                    final UploadPartRequest reqUploadPart =
+                            newUploadPartRequest(event);
                     AsyncRequestBody noRetriesBody = new NoRetriesAsyncRequestBody(AsyncRequestBody.fromFile(part));
                     return uploadPart(reqUploadPart, noRetriesBody);
                 } finally {
@@ -86,6 +105,7 @@ public class UploadObjectObserver {
     }
 
     public CompleteMultipartUploadResponse onCompletion(List<CompletedPart> partETags) {
+        awaitUploadId();
         return s3EncryptionClient.completeMultipartUpload(builder -> builder
                 .bucket(request.bucket())
                 .key(request.key())
@@ -97,6 +117,12 @@ public class UploadObjectObserver {
         for (Future<?> future : futures()) {
             future.cancel(true);
         }
+        try {
+            // An upload which is still being created must be aborted once it exists
+            awaitUploadId();
+        } catch (RuntimeException e) {
+            LogFactory.getLog(getClass()).debug("Multi-part upload was not created", e);
+        }
         if (uploadId != null) {
             try {
                 s3EncryptionClient.abortMultipartUpload(builder -> builder.bucket(request.bucket())
@@ -131,6 +157,12 @@ public class UploadObjectObserver {
         return Collections.singletonMap(reqUploadPart.partNumber(), s3AsyncClient.uploadPart(reqUploadPart, requestBody).join());
     }
 
+    private void awaitUploadId() {
+        if (uploadIdFuture != null) {
+            uploadIdFuture.join();
+        }
+    }
+
     public List<Future<Map<Integer, UploadPartResponse>>> futures() {
         return futures;
     }
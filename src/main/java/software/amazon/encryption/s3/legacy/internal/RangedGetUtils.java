@@ -8,24 +8,100 @@ import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Utilities for processing Ranged Get functions.
  */
 public class RangedGetUtils {
 
+    private static final Pattern RANGE = Pattern.compile("bytes=([0-9]*)-([0-9]*)");
+
+    /**
+     * Returns the first and last byte positions of a range of the form "bytes=N-M",
+     * or null if the range is absent, open-ended, a suffix range or malformed.
+     */
     public static long[] getRange(String range) {
         if (range == null) {
             return null;
         }
-        if (!range.matches("bytes=[0-9]+-[0-9]+")) {
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || matcher.group(1).isEmpty() || matcher.group(2).isEmpty()) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+        } catch (NumberFormatException e) {
             return null;
         }
-        String[] rangeSplit = range.split("[-=]");
-        long[] adjustedRange = new long[2];
-        adjustedRange[0] = Integer.parseInt(rangeSplit[1]);
-        adjustedRange[1] = Integer.parseInt(rangeSplit[2]);
-        return adjustedRange;
+    }
+
+    /**
+     * Returns true if the range is of the form "bytes=N-" or "bytes=-N", which can
+     * only be resolved once the length of the object is known.
+     */
+    public static boolean isOpenRange(String range) {
+        if (range == null) {
+            return false;
+        }
+        Matcher matcher = RANGE.matcher(range);
+        return matcher.matches() && (matcher.group(1).isEmpty() != matcher.group(2).isEmpty());
+    }
+
+    /**
+     * Resolves a range of the form "bytes=N-M", "bytes=N-" or "bytes=-N" against
+     * the length of the object, clipping it to the end of the object. If no byte
+     * of the object is in the range, the first position returned is after the last.
+     * Returns null if the range is absent or malformed.
+     */
+    public static long[] resolveRange(String range, long length) {
+        if (range == null) {
+            return null;
+        }
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                final long suffixLength = Long.parseLong(matcher.group(2));
+                return new long[]{Math.max(0, length - suffixLength), length - 1};
+            }
+            final long first = Long.parseLong(matcher.group(1));
+            final long last = matcher.group(2).isEmpty() ? length - 1 : Long.parseLong(matcher.group(2));
+            return new long[]{first, Math.min(last, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Merges ranges which overlap or are separated by at most maxGap bytes, so that
+     * nearby ranges are fetched with a single request. Empty ranges are dropped.
+     * @return the merged ranges, in order
+     */
+    public static List<long[]> coalesce(List<long[]> ranges, long maxGap) {
+        final List<long[]> sorted = new ArrayList<>();
+        for (long[] range : ranges) {
+            if (range[0] <= range[1]) {
+                sorted.add(range);
+            }
+        }
+        sorted.sort(Comparator.comparingLong(range -> range[0]));
+        final List<long[]> merged = new ArrayList<>();
+        for (long[] range : sorted) {
+            final long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && range[0] - previous[1] <= maxGap + 1) {
+                previous[1] = Math.max(previous[1], range[1]);
+            } else {
+                merged.add(new long[]{range[0], range[1]});
+            }
+        }
+        return merged;
     }
 
     public static String getCryptoRangeAsString(String desiredRange) {
@@ -45,6 +121,34 @@ public class RangedGetUtils {
         return adjustedCryptoRange;
     }
 
+    /**
+     * Returns the ciphertext range needed to decrypt the given plaintext range of a CBC
+     * object. Decrypting a CBC block needs only the ciphertext block before it, so the
+     * range starts one block early and ends with the block holding the last position.
+     */
+    public static String getCbcCryptoRangeAsString(long[] desiredRange, long ciphertextLength) {
+        final long cipherBlockSize = AlgorithmSuite.ALG_AES_256_CBC_IV16_NO_KDF.cipherBlockSizeBytes();
+        final long first = Math.max(0, (desiredRange[0] / cipherBlockSize - 1) * cipherBlockSize);
+        final long last = Math.min(ciphertextLength, (desiredRange[1] / cipherBlockSize + 1) * cipherBlockSize) - 1;
+        return "bytes=" + first + "-" + last;
+    }
+
+    /**
+     * Returns true if the content range of a response reaches the end of the object.
+     */
+    public static boolean isFinalRange(String contentRange) {
+        if (contentRange == null) {
+            return true;
+        }
+        final int slash = contentRange.lastIndexOf('/');
+        final int dash = contentRange.lastIndexOf('-', slash);
+        if (slash < 0 || dash < 0 || "*".equals(contentRange.substring(slash + 1))) {
+            return true;
+        }
+        return Long.parseLong(contentRange.substring(dash + 1, slash).trim()) + 1
+                == Long.parseLong(contentRange.substring(slash + 1).trim());
+    }
+
     private static long getCipherBlockLowerBound(long leftmostBytePosition) {
         long cipherBlockSize = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF.cipherBlockSizeBytes();
         long offset = leftmostBytePosition % cipherBlockSize;
@@ -0,0 +1,215 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.materials;
+
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A CMM which caches the materials returned by another CMM for a bounded
+ * time, so that the keyring (e.g. KMS) is only called when a cached entry
+ * expires.
+ * <p>
+ * Decryption materials are cached by encrypted data key and encryption
+ * context, for any algorithm suite. Encryption materials are only reused
+ * for algorithm suites which derive a unique content key per object, such as
+ * {@link software.amazon.encryption.s3.algorithms.AlgorithmSuite#ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256};
+ * for other suites every request is passed to the underlying CMM.
+ * </p>
+ */
+public class CachingCryptoMaterialsManager implements CryptographicMaterialsManager {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final CryptographicMaterialsManager _cryptoMaterialsManager;
+    private final long _maxAgeNanos;
+    private final Map<List<Object>, CacheEntry<EncryptionMaterials>> _encryptionCache;
+    private final Map<List<Object>, CacheEntry<DecryptionMaterials>> _decryptionCache;
+
+    private CachingCryptoMaterialsManager(Builder builder) {
+        _cryptoMaterialsManager = builder._cryptoMaterialsManager;
+        _maxAgeNanos = builder._maxAge.toNanos();
+        _encryptionCache = lruMap(builder._maxEntries);
+        _decryptionCache = lruMap(builder._maxEntries);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request) {
+        if (!request.algorithmSuite().usesKdf()) {
+            // Reusing a data key directly as the content key is not safe
+            return _cryptoMaterialsManager.getEncryptionMaterials(request);
+        }
+        final List<Object> cacheKey = Arrays.asList(request.algorithmSuite(),
+                new TreeMap<>(request.encryptionContext()),
+                new TreeMap<>(DecryptMaterialsBatch.requestEncryptionContext(request.s3Request())));
+        EncryptionMaterials materials = get(_encryptionCache, cacheKey);
+        if (materials == null) {
+            materials = _cryptoMaterialsManager.getEncryptionMaterials(request);
+            put(_encryptionCache, cacheKey, materials);
+        }
+        return materials.toBuilder()
+                .s3Request(request.s3Request())
+                .plaintextLength(request.plaintextLength())
+                .build();
+    }
+
+    @Override
+    public DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request) {
+        final List<Object> cacheKey = DecryptMaterialsBatch.materialsKey(request);
+        DecryptionMaterials materials = get(_decryptionCache, cacheKey);
+        if (materials == null) {
+            materials = _cryptoMaterialsManager.decryptMaterials(request);
+            put(_decryptionCache, cacheKey, materials);
+        }
+        return materials.toBuilder()
+                .s3Request(request.s3Request())
+                .ciphertextLength(request.ciphertextLength())
+                .build();
+    }
+
+    /**
+     * Serves what it can from the cache, and passes the remaining requests to the
+     * underlying CMM as a single batch.
+     */
+    @Override
+    public List<DecryptionMaterials> decryptMaterials(List<DecryptMaterialsRequest> requests, int maxConcurrency,
+                                                      Executor executor) {
+        final List<DecryptionMaterials> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        final List<DecryptMaterialsRequest> misses = new ArrayList<>();
+        final List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            final DecryptionMaterials materials = get(_decryptionCache, DecryptMaterialsBatch.materialsKey(requests.get(i)));
+            if (materials == null) {
+                misses.add(requests.get(i));
+                missIndexes.add(i);
+            } else {
+                results.set(i, materials);
+            }
+        }
+        if (!misses.isEmpty()) {
+            final List<DecryptionMaterials> resolved = _cryptoMaterialsManager.decryptMaterials(misses, maxConcurrency, executor);
+            for (int i = 0; i < misses.size(); i++) {
+                put(_decryptionCache, DecryptMaterialsBatch.materialsKey(misses.get(i)), resolved.get(i));
+                results.set(missIndexes.get(i), resolved.get(i));
+            }
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            results.set(i, results.get(i).toBuilder()
+                    .s3Request(requests.get(i).s3Request())
+                    .ciphertextLength(requests.get(i).ciphertextLength())
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Removes all cached materials.
+     */
+    public void clear() {
+        synchronized (_encryptionCache) {
+            _encryptionCache.clear();
+        }
+        synchronized (_decryptionCache) {
+            _decryptionCache.clear();
+        }
+    }
+
+    private <T> T get(Map<List<Object>, CacheEntry<T>> cache, List<Object> cacheKey) {
+        synchronized (cache) {
+            CacheEntry<T> entry = cache.get(cacheKey);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry._createdNanos > _maxAgeNanos) {
+                cache.remove(cacheKey);
+                return null;
+            }
+            return entry._value;
+        }
+    }
+
+    private static <T> void put(Map<List<Object>, CacheEntry<T>> cache, List<Object> cacheKey, T value) {
+        synchronized (cache) {
+            cache.put(cacheKey, new CacheEntry<>(value, System.nanoTime()));
+        }
+    }
+
+    private static <V> Map<List<Object>, V> lruMap(final int maxEntries) {
+        return new LinkedHashMap<List<Object>, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static final class CacheEntry<T> {
+        private final T _value;
+        private final long _createdNanos;
+
+        private CacheEntry(T value, long createdNanos) {
+            _value = value;
+            _createdNanos = createdNanos;
+        }
+    }
+
+    public static class Builder {
+        private CryptographicMaterialsManager _cryptoMaterialsManager;
+        private Duration _maxAge;
+        private int _maxEntries = DEFAULT_MAX_ENTRIES;
+
+        private Builder() {
+        }
+
+        /**
+         * The CMM whose materials are cached.
+         */
+        public Builder cryptoMaterialsManager(CryptographicMaterialsManager cryptoMaterialsManager) {
+            this._cryptoMaterialsManager = cryptoMaterialsManager;
+            return this;
+        }
+
+        /**
+         * The length of time materials may be reused for after they were obtained.
+         */
+        public Builder maxAge(Duration maxAge) {
+            this._maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * The maximum number of encryption materials, and separately of decryption
+         * materials, held at once. The least recently used entries are evicted first.
+         */
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new S3EncryptionClientException("maxEntries must be at least 1");
+            }
+            this._maxEntries = maxEntries;
+            return this;
+        }
+
+        public CachingCryptoMaterialsManager build() {
+            if (_cryptoMaterialsManager == null) {
+                throw new S3EncryptionClientException("A crypto materials manager must be provided to cache.");
+            }
+            if (_maxAge == null || _maxAge.isNegative() || _maxAge.isZero()) {
+                throw new S3EncryptionClientException("A positive maxAge must be provided.");
+            }
+            return new CachingCryptoMaterialsManager(this);
+        }
+    }
+}
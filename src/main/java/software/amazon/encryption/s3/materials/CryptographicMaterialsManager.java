@@ -2,7 +2,26 @@
 // SPDX-License-Identifier: Apache-2.0
 package software.amazon.encryption.s3.materials;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 public interface CryptographicMaterialsManager {
     EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request);
     DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request);
+
+    /**
+     * Decrypts the materials for several requests collectively. Requests with the same
+     * encrypted data keys and encryption contexts are resolved once, and the distinct
+     * requests are resolved concurrently on the given executor, with at most
+     * maxConcurrency in flight, by calling {@link #decryptMaterials(DecryptMaterialsRequest)}.
+     * The calling thread waits for the batch to be resolved.
+     * @param requests the requests to resolve
+     * @param maxConcurrency the maximum number of requests resolved at once
+     * @param executor the executor to resolve the requests on
+     * @return the materials for each request, in the order of the requests
+     */
+    default List<DecryptionMaterials> decryptMaterials(List<DecryptMaterialsRequest> requests, int maxConcurrency,
+                                                       Executor executor) {
+        return DecryptMaterialsBatch.decryptMaterials(this::decryptMaterials, requests, maxConcurrency, executor);
+    }
 }
@@ -0,0 +1,144 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.materials;
+
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.services.s3.model.S3Request;
+import software.amazon.encryption.s3.S3EncryptionClient;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Helpers for resolving decryption materials for many requests at once.
+ */
+final class DecryptMaterialsBatch {
+
+    private DecryptMaterialsBatch() {
+    }
+
+    /**
+     * Returns a key which is equal for requests that resolve to the same materials:
+     * the same algorithm suite, encrypted data keys and encryption contexts. The
+     * request's encryption context is part of the key so that a mismatched context
+     * still reaches the keyring and is rejected there.
+     */
+    static List<Object> materialsKey(DecryptMaterialsRequest request) {
+        final Base64.Encoder encoder = Base64.getEncoder();
+        final StringBuilder encryptedDataKeys = new StringBuilder();
+        for (EncryptedDataKey encryptedDataKey : request.encryptedDataKeys()) {
+            encryptedDataKeys.append(encryptedDataKey.keyProviderId()).append(':')
+                    .append(new String(encryptedDataKey.keyProviderInfo(), StandardCharsets.UTF_8)).append(':')
+                    .append(encoder.encodeToString(encryptedDataKey.encryptedDatakey())).append(';');
+        }
+        return Arrays.asList(request.algorithmSuite(),
+                encryptedDataKeys.toString(),
+                new TreeMap<>(request.encryptionContext()),
+                new TreeMap<>(requestEncryptionContext(request.s3Request())));
+    }
+
+    static Map<String, String> requestEncryptionContext(S3Request s3Request) {
+        if (s3Request == null || !s3Request.overrideConfiguration().isPresent()) {
+            return Collections.emptyMap();
+        }
+        AwsRequestOverrideConfiguration overrideConfig = s3Request.overrideConfiguration().get();
+        Optional<Map<String, String>> optEncryptionContext = overrideConfig
+                .executionAttributes()
+                .getOptionalAttribute(S3EncryptionClient.ENCRYPTION_CONTEXT);
+        return optEncryptionContext.orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Resolves the materials for each request. Requests with equal {@link #materialsKey}s
+     * are resolved once, and distinct requests are resolved by up to maxConcurrency workers,
+     * the calling thread and the rest on the given executor, since each may be a round trip
+     * to a key service. No further requests are started once one has failed.
+     * @return the materials for each request, in order, carrying that request's S3 request
+     *         and ciphertext length
+     */
+    static List<DecryptionMaterials> decryptMaterials(Function<DecryptMaterialsRequest, DecryptionMaterials> resolver,
+                                                     List<DecryptMaterialsRequest> requests, int maxConcurrency,
+                                                     Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new S3EncryptionClientException("maxConcurrency must be at least 1");
+        }
+        final List<List<Object>> keys = new ArrayList<>(requests.size());
+        final Map<List<Object>, DecryptMaterialsRequest> distinct = new LinkedHashMap<>();
+        for (DecryptMaterialsRequest request : requests) {
+            final List<Object> key = materialsKey(request);
+            keys.add(key);
+            distinct.putIfAbsent(key, request);
+        }
+
+        final List<Map.Entry<List<Object>, DecryptMaterialsRequest>> entries = new ArrayList<>(distinct.entrySet());
+        final List<CompletableFuture<DecryptionMaterials>> futures = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < entries.size()) {
+                if (failure.get() != null) {
+                    futures.get(i).completeExceptionally(failure.get());
+                    continue;
+                }
+                try {
+                    futures.get(i).complete(resolver.apply(entries.get(i).getValue()));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    futures.get(i).completeExceptionally(e);
+                }
+            }
+        };
+        // The calling thread is one of the workers, so the batch completes even if the
+        // executor cannot start the others while this thread waits
+        for (int i = 1; i < Math.min(maxConcurrency, entries.size()); i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        worker.run();
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new S3EncryptionClientException("Unable to decrypt materials.", e.getCause());
+        }
+        final Map<List<Object>, DecryptionMaterials> resolved = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            resolved.put(entries.get(i).getKey(), futures.get(i).join());
+        }
+
+        final List<DecryptionMaterials> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final DecryptMaterialsRequest request = requests.get(i);
+            results.add(resolved.get(keys.get(i)).toBuilder()
+                    .s3Request(request.s3Request())
+                    .ciphertextLength(request.ciphertextLength())
+                    .build());
+        }
+        return results;
+    }
+}
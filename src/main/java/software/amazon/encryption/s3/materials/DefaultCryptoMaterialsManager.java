@@ -2,8 +2,6 @@
 // SPDX-License-Identifier: Apache-2.0
 package software.amazon.encryption.s3.materials;
 
-import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
-
 import java.security.Provider;
 
 public class DefaultCryptoMaterialsManager implements CryptographicMaterialsManager {
@@ -22,7 +20,7 @@ public class DefaultCryptoMaterialsManager implements CryptographicMaterialsMana
     public EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request) {
         EncryptionMaterials materials = EncryptionMaterials.builder()
                 .s3Request(request.s3Request())
-                .algorithmSuite(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF)
+                .algorithmSuite(request.algorithmSuite())
                 .encryptionContext(request.encryptionContext())
                 .cryptoProvider(_cryptoProvider)
                 .plaintextLength(request.plaintextLength())
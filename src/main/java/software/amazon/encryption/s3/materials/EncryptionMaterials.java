@@ -42,7 +42,7 @@ final public class EncryptionMaterials implements CryptographicMaterials {
         this._plaintextDataKey = builder._plaintextDataKey;
         this._cryptoProvider = builder._cryptoProvider;
         this._plaintextLength = builder._plaintextLength;
-        this._ciphertextLength = _plaintextLength + _algorithmSuite.cipherTagLengthBytes();
+        this._ciphertextLength = _algorithmSuite.ciphertextLength(_plaintextLength);
     }
 
     static public Builder builder() {
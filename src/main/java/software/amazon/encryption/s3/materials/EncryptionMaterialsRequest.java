@@ -8,17 +8,20 @@ import java.util.Collections;
 import java.util.Map;
 
 import software.amazon.awssdk.services.s3.model.S3Request;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
 
 final public class EncryptionMaterialsRequest {
 
     private final S3Request _s3Request;
     private final Map<String, String> _encryptionContext;
     private final long _plaintextLength;
+    private final AlgorithmSuite _algorithmSuite;
 
     private EncryptionMaterialsRequest(Builder builder) {
         this._s3Request = builder._s3Request;
         this._encryptionContext = builder._encryptionContext;
         this._plaintextLength = builder._plaintextLength;
+        this._algorithmSuite = builder._algorithmSuite;
     }
 
     static public Builder builder() {
@@ -33,6 +36,10 @@ final public class EncryptionMaterialsRequest {
         return _plaintextLength;
     }
 
+    public AlgorithmSuite algorithmSuite() {
+        return _algorithmSuite;
+    }
+
     /**
      * Note that the underlying implementation uses a Collections.unmodifiableMap which is
      * immutable.
@@ -48,6 +55,7 @@ final public class EncryptionMaterialsRequest {
         public S3Request _s3Request = null;
         private Map<String, String> _encryptionContext = Collections.emptyMap();
         private long _plaintextLength = -1;
+        private AlgorithmSuite _algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF;
 
         private Builder() {
         }
@@ -69,6 +77,11 @@ final public class EncryptionMaterialsRequest {
             return this;
         }
 
+        public Builder algorithmSuite(AlgorithmSuite algorithmSuite) {
+            _algorithmSuite = algorithmSuite;
+            return this;
+        }
+
         public EncryptionMaterialsRequest build() {
             return new EncryptionMaterialsRequest(this);
         }
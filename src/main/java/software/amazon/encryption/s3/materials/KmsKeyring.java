@@ -4,7 +4,9 @@ package software.amazon.encryption.s3.materials;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -17,6 +19,8 @@ import software.amazon.awssdk.services.kms.model.DecryptRequest;
 import software.amazon.awssdk.services.kms.model.DecryptResponse;
 import software.amazon.awssdk.services.kms.model.EncryptRequest;
 import software.amazon.awssdk.services.kms.model.EncryptResponse;
+import software.amazon.awssdk.services.kms.model.ReEncryptRequest;
+import software.amazon.awssdk.services.kms.model.ReEncryptResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Request;
 import software.amazon.encryption.s3.S3EncryptionClient;
@@ -172,13 +176,58 @@ public class KmsKeyring extends S3Keyring {
         return _kmsContextStrategy;
     }
 
+    /**
+     * Wraps an existing KMS encrypted data key under this keyring's wrapping key
+     * using KMS ReEncrypt, so the plaintext data key never leaves KMS.
+     * @param materials the materials for the new encrypted data key, without a plaintext data key
+     * @param encryptedDataKey the existing encrypted data key, wrapped by any KMS key
+     * @param sourceEncryptionContext the encryption context the existing data key was wrapped with
+     * @return the materials containing the re-encrypted data key
+     */
+    public EncryptionMaterials onReEncrypt(EncryptionMaterials materials, EncryptedDataKey encryptedDataKey,
+                                           Map<String, String> sourceEncryptionContext) {
+        String keyProviderInfo = new String(encryptedDataKey.keyProviderInfo(), StandardCharsets.UTF_8);
+        DecryptDataKeyStrategy decryptStrategy = decryptStrategies.get(keyProviderInfo);
+        if (decryptStrategy == null) {
+            throw new S3EncryptionClientException("Cannot re-encrypt a data key wrapped with: " + keyProviderInfo);
+        }
+        checkLegacyWrappingAlgorithm(decryptStrategy, keyProviderInfo);
+
+        try {
+            materials = _kmsContextStrategy.modifyMaterials(materials);
+            ReEncryptRequest request = ReEncryptRequest.builder()
+                    .ciphertextBlob(SdkBytes.fromByteArray(encryptedDataKey.encryptedDatakey()))
+                    .sourceEncryptionContext(sourceEncryptionContext)
+                    .destinationKeyId(_wrappingKeyId)
+                    .destinationEncryptionContext(materials.encryptionContext())
+                    .overrideConfiguration(builder -> builder.addApiName(API_NAME))
+                    .build();
+
+            ReEncryptResponse response = _kmsClient.reEncrypt(request);
+            EncryptedDataKey reEncryptedDataKey = EncryptedDataKey.builder()
+                    .keyProviderId(S3Keyring.KEY_PROVIDER_ID)
+                    .keyProviderInfo(_kmsContextStrategy.keyProviderInfo().getBytes(StandardCharsets.UTF_8))
+                    .encryptedDataKey(response.ciphertextBlob().asByteArray())
+                    .build();
+
+            return materials.toBuilder()
+                    .encryptedDataKeys(Collections.singletonList(reEncryptedDataKey))
+                    .build();
+        } catch (S3EncryptionClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new S3EncryptionClientException("Unable to " + keyProviderInfo + " re-encrypt", e);
+        }
+    }
+
     @Override
     protected Map<String, DecryptDataKeyStrategy> decryptStrategies() {
         return decryptStrategies;
     }
 
     public static class Builder extends S3Keyring.Builder<KmsKeyring, Builder> {
-        private KmsClient _kmsClient = KmsClient.builder().build();
+        // If null, a default KmsClient is created in build()
+        private KmsClient _kmsClient;
         private String _wrappingKeyId;
 
         private Builder() { super(); }
@@ -204,6 +253,9 @@ public class KmsKeyring extends S3Keyring {
         }
 
         public KmsKeyring build() {
+            if (_kmsClient == null) {
+                _kmsClient = KmsClient.builder().build();
+            }
             return new KmsKeyring(this);
         }
     }
@@ -9,6 +9,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class MultipartConfiguration {
+    public static final int DEFAULT_MAX_CONNECTIONS = 50;
+
     private final long _partSize;
     private final int _maxConnections;
     private final long _diskLimit;
@@ -56,8 +58,7 @@ public class MultipartConfiguration {
     static public class Builder {
         private final long MIN_PART_SIZE = 5 << 20;
         private MultiFileOutputStream _outputStream = new MultiFileOutputStream();
-        // Default Max Connections is 50
-        private int _maxConnections = 50;
+        private int _maxConnections = DEFAULT_MAX_CONNECTIONS;
         // Set Min Allowed Part Size as Default
         private long _partSize = MIN_PART_SIZE;
         private long _diskLimit = Long.MAX_VALUE;
@@ -88,9 +88,7 @@ abstract public class S3Keyring implements Keyring {
             throw new S3EncryptionClientException("The keyring does not support the object's key wrapping algorithm: " + keyProviderInfo);
         }
 
-        if (decryptStrategy.isLegacy() && !_enableLegacyWrappingAlgorithms) {
-            throw new S3EncryptionClientException("Enable legacy wrapping algorithms to use legacy key wrapping algorithm: " + keyProviderInfo);
-        }
+        checkLegacyWrappingAlgorithm(decryptStrategy, keyProviderInfo);
 
         try {
             byte[] plaintext = decryptStrategy.decryptDataKey(materials, encryptedDataKey.encryptedDatakey());
@@ -100,6 +98,15 @@ abstract public class S3Keyring implements Keyring {
         }
     }
 
+    /**
+     * Rejects data keys wrapped with a legacy algorithm unless legacy wrapping algorithms are enabled.
+     */
+    protected void checkLegacyWrappingAlgorithm(DecryptDataKeyStrategy decryptStrategy, String keyProviderInfo) {
+        if (decryptStrategy.isLegacy() && !_enableLegacyWrappingAlgorithms) {
+            throw new S3EncryptionClientException("Enable legacy wrapping algorithms to use legacy key wrapping algorithm: " + keyProviderInfo);
+        }
+    }
+
     abstract protected Map<String,DecryptDataKeyStrategy> decryptStrategies();
 
     abstract public static class Builder<KeyringT extends S3Keyring, BuilderT extends Builder<KeyringT, BuilderT>> {
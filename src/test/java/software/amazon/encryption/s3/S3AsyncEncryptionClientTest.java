@@ -26,21 +26,33 @@ import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
 import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.encryption.s3.algorithms.DeflateCompressionCodec;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.BUCKET;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.appendTestSuffix;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.deleteObject;
@@ -407,4 +419,100 @@ public class S3AsyncEncryptionClientTest {
         v3AsyncClient.close();
     }
 
+    @Test
+    public void putCompressedAsyncGetDefault() {
+        final String objectKey = appendTestSuffix("put-compressed-async-get-default");
+
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+
+        S3AsyncClient v3AsyncClient = S3AsyncEncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .compressionCodec(new DeflateCompressionCodec())
+                .build();
+
+        StringBuilder inputBuilder = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            inputBuilder.append("PutCompressedAsyncGetDefault");
+        }
+        final String input = inputBuilder.toString();
+
+        v3AsyncClient.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), AsyncRequestBody.fromString(input)).join();
+
+        // The stored ciphertext is smaller than the plaintext
+        HeadObjectResponse headResponse = v3Client.headObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        assertTrue(headResponse.contentLength() < input.length());
+        assertEquals(DeflateCompressionCodec.NAME, headResponse.metadata().get("x-amz-content-compression"));
+
+        // Deflate objects are decompressed without configuring a codec
+        ResponseBytes<GetObjectResponse> getResponse = v3Client.getObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), ResponseTransformer.toBytes());
+        assertEquals(input, getResponse.asUtf8String());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+        v3AsyncClient.close();
+    }
+
+    @Test
+    public void uploadFileOfMissingFileFailsTheFuture() {
+        S3AsyncEncryptionClient v3AsyncClient = S3AsyncEncryptionClient.builder()
+                .wrappedClient(mock(S3AsyncClient.class))
+                .aesKey(AES_KEY)
+                .build();
+
+        CompletableFuture<PutObjectResponse> result = v3AsyncClient.uploadFile(PutObjectRequest.builder()
+                .bucket(BUCKET)
+                .key("missing")
+                .build(), Paths.get("does-not-exist"));
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertTrue(e.getCause() instanceof S3EncryptionClientException);
+        v3AsyncClient.close();
+    }
+
+    @Test
+    public void crtClientIsCreatedOnceAndClosedWithTheClient() {
+        AtomicInteger crtClientsCreated = new AtomicInteger();
+        S3AsyncClient crtClient = mock(S3AsyncClient.class);
+        when(crtClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            AsyncRequestBody body = invocation.getArgument(1);
+            return body.subscribe(buffer -> { })
+                    .thenApply(ignored -> PutObjectResponse.builder().eTag("etag").build());
+        });
+        S3AsyncEncryptionClient v3AsyncClient = S3AsyncEncryptionClient.builder()
+                .wrappedClient(mock(S3AsyncClient.class))
+                .aesKey(AES_KEY)
+                .enableMultipartPutObject(true)
+                .crtClientFactory(() -> {
+                    crtClientsCreated.incrementAndGet();
+                    return crtClient;
+                })
+                .build();
+
+        // Not created until the first multipart putObject
+        assertEquals(0, crtClientsCreated.get());
+        for (int i = 0; i < 3; i++) {
+            final String objectKey = "multipart-" + i;
+            v3AsyncClient.putObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), AsyncRequestBody.fromString("CrtClientIsReused")).join();
+        }
+
+        assertEquals(1, crtClientsCreated.get());
+        verify(crtClient, times(3)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(crtClient, never()).close();
+        v3AsyncClient.close();
+        verify(crtClient).close();
+    }
+
 }
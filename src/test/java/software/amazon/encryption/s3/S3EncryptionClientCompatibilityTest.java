@@ -106,6 +106,47 @@ public class S3EncryptionClientCompatibilityTest {
         v3Client.close();
     }
 
+    @Test
+    public void AesCbcV1toV3ParallelDecryption() {
+        final String objectKey = appendTestSuffix("aes-cbc-v1-to-v3-parallel-decryption");
+
+        // V1 Client
+        EncryptionMaterialsProvider materialsProvider =
+                new StaticEncryptionMaterialsProvider(new EncryptionMaterials(AES_KEY));
+        CryptoConfiguration v1CryptoConfig =
+                new CryptoConfiguration(CryptoMode.EncryptionOnly);
+        AmazonS3Encryption v1Client = AmazonS3EncryptionClient.encryptionBuilder()
+                .withCryptoConfiguration(v1CryptoConfig)
+                .withEncryptionMaterials(materialsProvider)
+                .build();
+
+        // V3 Client
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .enableLegacyWrappingAlgorithms(true)
+                .enableLegacyUnauthenticatedModes(true)
+                .cbcDecryptionParallelism(4)
+                .build();
+
+        // Asserts
+        final StringBuilder inputBuilder = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            inputBuilder.append("AesCbcV1toV3ParallelDecryption-").append(i).append('\n');
+        }
+        final String input = inputBuilder.toString();
+        v1Client.putObject(BUCKET, objectKey, input);
+
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        String output = objectResponse.asUtf8String();
+        assertEquals(input, output);
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
     @Test
     public void AesWrapV1toV3() {
         final String objectKey = appendTestSuffix("aes-wrap-v1-to-v3");
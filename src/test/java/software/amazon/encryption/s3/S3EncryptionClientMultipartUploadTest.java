@@ -16,6 +16,7 @@ import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.SdkPartType;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
@@ -27,10 +28,14 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +43,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static software.amazon.encryption.s3.S3EncryptionClient.withAdditionalConfiguration;
@@ -92,6 +98,39 @@ public class S3EncryptionClientMultipartUploadTest {
         v3Client.close();
     }
 
+    @Test
+    public void multipartPutObjectAsyncReusesCrtClient() throws IOException {
+        final String objectKey = appendTestSuffix("multipart-put-object-async-reuses-crt-client");
+
+        final long fileSizeLimit = 1024 * 1024 * 20;
+
+        S3AsyncClient v3Client = S3AsyncEncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .enableMultipartPutObject(true)
+                .enableDelayedAuthenticationMode(true)
+                .crtTargetThroughputInGbps(10.0)
+                .crtMinimumPartSizeInBytes(8L * 1024 * 1024)
+                .crtMaxConcurrency(8)
+                .cryptoProvider(PROVIDER)
+                .build();
+
+        // Both uploads go through the same client-owned CRT client
+        for (int i = 0; i < 2; i++) {
+            v3Client.putObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), AsyncRequestBody.fromInputStream(new BoundedInputStream(fileSizeLimit),
+                    fileSizeLimit, Executors.newSingleThreadExecutor())).join();
+
+            ResponseInputStream<GetObjectResponse> output = v3Client.getObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), AsyncResponseTransformer.toBlockingInputStream()).join();
+            assertTrue(IOUtils.contentEquals(new BoundedInputStream(fileSizeLimit), output));
+        }
+
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
     @Test
     public void multipartPutObjectAsyncLargeObjectFails() {
         final String objectKey = appendTestSuffix("multipart-put-object-async-large-object-fails");
@@ -153,6 +192,80 @@ public class S3EncryptionClientMultipartUploadTest {
         v3Client.close();
     }
 
+    @Test
+    public void multipartPutObjectThresholdChoosesUploadMethod() throws IOException {
+        final String smallObjectKey = appendTestSuffix("multipart-put-object-threshold-small");
+        final String largeObjectKey = appendTestSuffix("multipart-put-object-threshold-large");
+
+        final long threshold = 1024 * 1024 * 8;
+        final long smallSize = 1024 * 1024;
+        final long largeSize = 1024 * 1024 * 20;
+
+        S3Client v3Client = S3EncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .multipartPutObjectThreshold(threshold)
+                .enableDelayedAuthenticationMode(true)
+                .cryptoProvider(PROVIDER)
+                .build();
+
+        PutObjectResponse smallResponse = v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(smallObjectKey), RequestBody.fromInputStream(new BoundedInputStream(smallSize), smallSize));
+        PutObjectResponse largeResponse = v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(largeObjectKey), RequestBody.fromInputStream(new BoundedInputStream(largeSize), largeSize));
+
+        // Only multipart uploads have an ETag ending in the number of parts
+        assertFalse(smallResponse.eTag().contains("-"));
+        assertTrue(largeResponse.eTag().contains("-"));
+
+        ResponseInputStream<GetObjectResponse> smallOutput = v3Client.getObject(builder -> builder
+                .bucket(BUCKET)
+                .key(smallObjectKey));
+        assertTrue(IOUtils.contentEquals(new BoundedInputStream(smallSize), smallOutput));
+        ResponseInputStream<GetObjectResponse> largeOutput = v3Client.getObject(builder -> builder
+                .bucket(BUCKET)
+                .key(largeObjectKey));
+        assertTrue(IOUtils.contentEquals(new BoundedInputStream(largeSize), largeOutput));
+
+        deleteObject(BUCKET, smallObjectKey, v3Client);
+        deleteObject(BUCKET, largeObjectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void uploadFileEncryptsFileIntoParts() throws IOException {
+        final String objectKey = appendTestSuffix("upload-file-encrypts-file-into-parts");
+
+        final long fileSizeLimit = 1024 * 1024 * 40;
+        final Path source = Files.createTempFile("upload-file", ".tmp");
+        try {
+            Files.copy(new BoundedInputStream(fileSizeLimit), source, StandardCopyOption.REPLACE_EXISTING);
+
+            S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                    .kmsKeyId(KMS_KEY_ID)
+                    .enableDelayedAuthenticationMode(true)
+                    .cryptoProvider(PROVIDER)
+                    .build();
+
+            PutObjectResponse response = v3Client.uploadFile(PutObjectRequest.builder()
+                    .bucket(BUCKET)
+                    .key(objectKey)
+                    .build(), source);
+            assertTrue(response.eTag().contains("-"));
+
+            ResponseInputStream<GetObjectResponse> output = v3Client.getObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey));
+            assertTrue(IOUtils.contentEquals(new BoundedInputStream(fileSizeLimit), output));
+
+            deleteObject(BUCKET, objectKey, v3Client);
+            v3Client.close();
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
     /*
      This test ensures that an object larger than the max safe GCM limit
      cannot be uploaded using the low-level multipart upload API.
@@ -515,4 +628,60 @@ public class S3EncryptionClientMultipartUploadTest {
         v3Client.close();
     }
 
+    @Test
+    public void multipartUploadV3AsyncLowLevel() throws IOException {
+        final String objectKey = appendTestSuffix("multipart-upload-v3-async-low-level");
+
+        // Overall "file" is 30MB, split into 10MB parts
+        final long fileSizeLimit = 1024 * 1024 * 30;
+        final int PART_SIZE = 10 * 1024 * 1024;
+        final InputStream inputStream = new BoundedInputStream(fileSizeLimit);
+        final byte[] input = IoUtils.toByteArray(inputStream);
+
+        S3AsyncClient v3Client = S3AsyncEncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .enableDelayedAuthenticationMode(true)
+                .cryptoProvider(PROVIDER)
+                .build();
+
+        final List<CompletedPart> partETags = new ArrayList<>();
+        final String uploadId = v3Client.createMultipartUpload(builder ->
+                builder.bucket(BUCKET).key(objectKey)).join().uploadId();
+
+        // Parts are chained so that each upload begins once the previous one completes
+        CompletableFuture<Void> uploads = CompletableFuture.completedFuture(null);
+        final int numParts = (int) (fileSizeLimit / PART_SIZE);
+        for (int i = 1; i <= numParts; i++) {
+            final int partNumber = i;
+            final byte[] partBytes = Arrays.copyOfRange(input, (i - 1) * PART_SIZE, i * PART_SIZE);
+            UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                    .bucket(BUCKET)
+                    .key(objectKey)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .sdkPartType(partNumber == numParts ? SdkPartType.LAST : SdkPartType.DEFAULT)
+                    .build();
+            uploads = uploads.thenCompose(ignored -> v3Client.uploadPart(uploadPartRequest, AsyncRequestBody.fromBytes(partBytes)))
+                    .thenAccept(response -> partETags.add(CompletedPart.builder()
+                            .partNumber(partNumber)
+                            .eTag(response.eTag())
+                            .build()));
+        }
+
+        uploads.thenCompose(ignored -> v3Client.completeMultipartUpload(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .uploadId(uploadId)
+                .multipartUpload(partBuilder -> partBuilder.parts(partETags)))).join();
+
+        // Asserts
+        ResponseBytes<GetObjectResponse> result = v3Client.getObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), AsyncResponseTransformer.toBytes()).join();
+        assertTrue(IOUtils.contentEquals(new BoundedInputStream(fileSizeLimit), result.asInputStream()));
+
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
 }
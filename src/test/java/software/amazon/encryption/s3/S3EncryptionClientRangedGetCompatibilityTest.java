@@ -27,6 +27,7 @@ import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.BUCKET;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.appendTestSuffix;
 import static software.amazon.encryption.s3.utils.S3EncryptionClientTestResources.deleteObject;
@@ -129,10 +130,13 @@ public class S3EncryptionClientRangedGetCompatibilityTest {
                 .key(objectKey)
                 .build(), AsyncRequestBody.fromString(input)).join();
 
-        assertThrows(S3EncryptionClientException.class, () -> asyncClient.getObject(builder -> builder
+        // Segmented objects can be read by range without legacy modes, so other objects
+        // are only rejected once the response shows they are not segmented
+        CompletionException exception = assertThrows(CompletionException.class, () -> asyncClient.getObject(builder -> builder
                 .bucket(BUCKET)
                 .range("bytes=10-20")
                 .key(objectKey), AsyncResponseTransformer.toBytes()).join());
+        assertTrue(exception.getCause() instanceof S3EncryptionClientException);
 
         // Cleanup
         deleteObject(BUCKET, objectKey, asyncClient);
@@ -312,6 +316,58 @@ public class S3EncryptionClientRangedGetCompatibilityTest {
         v3Client.close();
     }
 
+    @Test
+    public void AesGcmV3toV3OpenAndSuffixRangedGet() {
+        final String objectKey = appendTestSuffix("aes-gcm-v3-to-v3-open-and-suffix-ranged-get");
+
+        final String input = "0bcdefghijklmnopqrst0BCDEFGHIJKLMNOPQRST" +
+                "1bcdefghijklmnopqrst1BCDEFGHIJKLMNOPQRST" +
+                "2bcdefghijklmnopqrst2BCDEFGHIJKLMNOPQRST" +
+                "3bcdefghijklmnopqrst3BCDEFGHIJKLMNOPQRST" +
+                "4bcdefghijklmnopqrst4BCDEFGHIJKLMNOPQRST";
+
+        // V3 Client
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .enableLegacyUnauthenticatedModes(true)
+                .build();
+        v3Client.putObject(PutObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), RequestBody.fromString(input));
+
+        // Open-ended range, returns object from start index to End of Stream
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=190-")
+                .key(objectKey));
+        assertEquals("KLMNOPQRST", objectResponse.asUtf8String());
+
+        // Suffix range, returns the last bytes of the object
+        objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=-15")
+                .key(objectKey));
+        assertEquals("FGHIJKLMNOPQRST", objectResponse.asUtf8String());
+
+        // Suffix range longer than the object, returns entire object
+        objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=-1000")
+                .key(objectKey));
+        assertEquals(input, objectResponse.asUtf8String());
+
+        // Open-ended range starting past the end of the object is not satisfiable
+        assertThrows(S3EncryptionClientException.class, () -> v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=200-")
+                .key(objectKey)));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
     @Test
     public void AesGcmV3toV3FailsRangeExceededObjectLength() {
         final String objectKey = appendTestSuffix("aes-gcm-v3-to-v3-ranged-get-out-of-range");
@@ -464,6 +520,58 @@ public class S3EncryptionClientRangedGetCompatibilityTest {
         v3Client.close();
     }
 
+    @Test
+    public void AesCbcV1toV3RangedGetMidObject() {
+        final String objectKey = appendTestSuffix("aes-cbc-v1-to-v3-ranged-get-mid-object");
+
+        // V1 Client
+        EncryptionMaterialsProvider materialsProvider =
+                new StaticEncryptionMaterialsProvider(new EncryptionMaterials(AES_KEY));
+        AmazonS3Encryption v1Client = AmazonS3EncryptionClient.encryptionBuilder()
+                .withCryptoConfiguration(new CryptoConfiguration())
+                .withEncryptionMaterials(materialsProvider)
+                .build();
+
+        StringBuilder inputBuilder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            inputBuilder.append(String.format("line-%04d-abcdefghijklmnopqrstuvwxyz%n", i));
+        }
+        final String input = inputBuilder.toString();
+        v1Client.putObject(BUCKET, objectKey, input);
+
+        // V3 Client
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .enableLegacyWrappingAlgorithms(true)
+                .enableLegacyUnauthenticatedModes(true)
+                .build();
+
+        // A slice which ends well before the padded final block
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=1000-1999")
+                .key(objectKey));
+        assertEquals(input.substring(1000, 2000), objectResponse.asUtf8String());
+
+        // A slice which ends on a block boundary
+        objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=32-47")
+                .key(objectKey));
+        assertEquals(input.substring(32, 48), objectResponse.asUtf8String());
+
+        // A slice which reaches the end of the object
+        objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .range("bytes=" + (input.length() - 100) + "-")
+                .key(objectKey));
+        assertEquals(input.substring(input.length() - 100), objectResponse.asUtf8String());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
     @Test
     public void AesCbcV1toV3FailsRangeExceededObjectLength() {
         final String objectKey = appendTestSuffix("aes-cbc-v1-to-v3-ranged-get-out-of-range");
@@ -18,12 +18,24 @@ import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.utils.Pair;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.internal.DecryptedBlockCache;
+import software.amazon.encryption.s3.internal.EncryptedObjectCache;
+import software.amazon.encryption.s3.internal.IntegrityScrubReport;
+import software.amazon.encryption.s3.internal.PackReader;
+import software.amazon.encryption.s3.internal.PrefixScanReader;
+import software.amazon.encryption.s3.internal.StreamingPutObjectPipeline;
+import software.amazon.encryption.s3.materials.AesKeyring;
 import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
 import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
 import software.amazon.encryption.s3.materials.KmsKeyring;
@@ -31,19 +43,32 @@ import software.amazon.encryption.s3.utils.BoundedInputStream;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -116,6 +141,81 @@ public class S3EncryptionClientTest {
         s3EncryptionClient.close();
     }
 
+    @Test
+    public void copyObjectWithInstructionFile() {
+        final String objectKey = appendTestSuffix("copy-object-with-instruction-file-from-here");
+        final String newObjectKey = appendTestSuffix("copy-object-with-instruction-file-to-here");
+
+        // V2 Client
+        EncryptionMaterialsProvider materialsProvider =
+                new StaticEncryptionMaterialsProvider(new EncryptionMaterials(AES_KEY));
+        CryptoConfigurationV2 cryptoConfig =
+                new CryptoConfigurationV2(CryptoMode.StrictAuthenticatedEncryption)
+                        .withStorageMode(CryptoStorageMode.InstructionFile);
+        AmazonS3EncryptionV2 v2Client = AmazonS3EncryptionClientV2.encryptionBuilder()
+                .withCryptoConfiguration(cryptoConfig)
+                .withEncryptionMaterialsProvider(materialsProvider)
+                .build();
+
+        // V3 Client
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+        final String input = "CopyObjectWithInstructionFile";
+        v2Client.putObject(BUCKET, objectKey, input);
+
+        v3Client.copyObject(builder -> builder
+                .sourceBucket(BUCKET)
+                .destinationBucket(BUCKET)
+                .sourceKey(objectKey)
+                .destinationKey(newObjectKey));
+
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(newObjectKey));
+        assertEquals(input, objectResponse.asUtf8String());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        deleteObject(BUCKET, newObjectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void copyObjectReplacingMetadataKeepsEncryptionMetadata() {
+        final String objectKey = appendTestSuffix("copy-object-replace-metadata-from-here");
+        final String newObjectKey = appendTestSuffix("copy-object-replace-metadata-to-here");
+
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+        final String input = "CopyObjectReplacingMetadataKeepsEncryptionMetadata";
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromString(input));
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("custom-key", "custom-value");
+        v3Client.copyObject(builder -> builder
+                .sourceBucket(BUCKET)
+                .destinationBucket(BUCKET)
+                .sourceKey(objectKey)
+                .destinationKey(newObjectKey)
+                .metadataDirective(MetadataDirective.REPLACE)
+                .metadata(metadata));
+
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(newObjectKey));
+        assertEquals(input, objectResponse.asUtf8String());
+        assertEquals("custom-value", objectResponse.response().metadata().get("custom-key"));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        deleteObject(BUCKET, newObjectKey, v3Client);
+        v3Client.close();
+    }
+
     @Test
     public void deleteObjectWithInstructionFileSuccess() {
         final String objectKey = appendTestSuffix("delete-object-with-instruction-file");
@@ -202,6 +302,127 @@ public class S3EncryptionClientTest {
         s3Client.close();
     }
 
+    @Test
+    public void deleteObjectsWithPrefixSuccess() {
+        final String prefix = appendTestSuffix("delete-objects-with-prefix") + "/";
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .enableInstructionFileDeletes(false)
+                .deleteMaxConcurrency(2)
+                .build();
+        final String input = "DeleteObjectsWithPrefixSuccess";
+        for (int i = 0; i < 5; i++) {
+            final String objectKey = prefix + i;
+            v3Client.putObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), RequestBody.fromString(input));
+        }
+
+        DeleteObjectsResponse response = v3Client.deleteObjectsWithPrefix(BUCKET, prefix);
+        assertEquals(5, response.deleted().size());
+
+        S3Client s3Client = S3Client.builder().build();
+        assertEquals(0, s3Client.listObjectsV2(builder -> builder
+                .bucket(BUCKET)
+                .prefix(prefix)).keyCount());
+
+        // Cleanup
+        v3Client.close();
+        s3Client.close();
+    }
+
+    @Test
+    public void rewrapObjectWithAesKeyring() throws NoSuchAlgorithmException {
+        final String objectKey = appendTestSuffix("rewrap-object-with-aes-keyring");
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        SecretKey newAesKey = keyGen.generateKey();
+
+        S3EncryptionClient oldClient = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+        S3Client newClient = S3EncryptionClient.builder()
+                .aesKey(newAesKey)
+                .build();
+
+        final String input = "RewrapObjectWithAesKeyring";
+        oldClient.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromString(input));
+
+        oldClient.rewrapObject(BUCKET, objectKey, AesKeyring.builder()
+                .wrappingKey(newAesKey)
+                .build());
+
+        ResponseBytes<GetObjectResponse> objectResponse = newClient.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        assertEquals(input, objectResponse.asUtf8String());
+        assertThrows(S3EncryptionClientException.class, () -> oldClient.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, newClient);
+        oldClient.close();
+        newClient.close();
+    }
+
+    @Test
+    public void rewrapObjectsWithPrefixWithInstructionFile() throws NoSuchAlgorithmException {
+        final String prefix = appendTestSuffix("rewrap-objects-with-prefix") + "/";
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        SecretKey newAesKey = keyGen.generateKey();
+
+        // V2 Client
+        EncryptionMaterialsProvider materialsProvider =
+                new StaticEncryptionMaterialsProvider(new EncryptionMaterials(AES_KEY));
+        CryptoConfigurationV2 cryptoConfig =
+                new CryptoConfigurationV2(CryptoMode.StrictAuthenticatedEncryption)
+                        .withStorageMode(CryptoStorageMode.InstructionFile);
+        AmazonS3EncryptionV2 v2Client = AmazonS3EncryptionClientV2.encryptionBuilder()
+                .withCryptoConfiguration(cryptoConfig)
+                .withEncryptionMaterialsProvider(materialsProvider)
+                .build();
+
+        // V3 Client
+        S3EncryptionClient oldClient = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .rewrapMaxConcurrency(2)
+                .build();
+        S3Client newClient = S3EncryptionClient.builder()
+                .aesKey(newAesKey)
+                .build();
+
+        final String input = "RewrapObjectsWithPrefix";
+        v2Client.putObject(BUCKET, prefix + "instruction-file", input);
+        oldClient.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(prefix + "object-metadata"), RequestBody.fromString(input));
+
+        AtomicReference<String> checkpoint = new AtomicReference<>();
+        long rewrapped = oldClient.rewrapObjectsWithPrefix(BUCKET, prefix, null, AesKeyring.builder()
+                .wrappingKey(newAesKey)
+                .build(), checkpoint::set);
+        assertEquals(2, rewrapped);
+        assertEquals(prefix + "object-metadata", checkpoint.get());
+
+        for (String objectKey : new String[]{prefix + "instruction-file", prefix + "object-metadata"}) {
+            ResponseBytes<GetObjectResponse> objectResponse = newClient.getObjectAsBytes(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey));
+            assertEquals(input, objectResponse.asUtf8String());
+        }
+
+        // Cleanup
+        deleteObject(BUCKET, prefix + "instruction-file", newClient);
+        deleteObject(BUCKET, prefix + "object-metadata", newClient);
+        oldClient.close();
+        newClient.close();
+    }
+
     @Test
     public void deleteObjectWithWrongObjectKeySuccess() {
         // V3 Client
@@ -668,6 +889,482 @@ public class S3EncryptionClientTest {
         v3Client.close();
     }
 
+    @Test
+    public void segmentedEncryptionWithRangedGet() {
+        final String objectKey = appendTestSuffix("segmented-encryption-with-ranged-get");
+
+        // Ranged gets of segmented objects are authenticated, so legacy modes are not enabled
+        S3Client v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .encryptionAlgorithm(AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF)
+                .build();
+
+        final byte[] input = new byte[200 * 1024 + 17];
+        new SecureRandom().nextBytes(input);
+
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), RequestBody.fromBytes(input));
+
+        ResponseBytes<GetObjectResponse> fullResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        assertArrayEquals(input, fullResponse.asByteArray());
+
+        // Spans a segment boundary
+        ResponseBytes<GetObjectResponse> rangedResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .range("bytes=65000-140000"));
+        assertArrayEquals(Arrays.copyOfRange(input, 65000, 140001), rangedResponse.asByteArray());
+
+        // Includes the final segment and extends past the end of the object
+        ResponseBytes<GetObjectResponse> tailResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .range("bytes=200000-300000"));
+        assertArrayEquals(Arrays.copyOfRange(input, 200000, input.length), tailResponse.asByteArray());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void shardedObjectRoundTrip() throws IOException {
+        final String objectKey = appendTestSuffix("sharded-object-round-trip");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .shardSize(1024 * 1024)
+                .build();
+
+        final byte[] input = new byte[3 * 1024 * 1024 + 17];
+        new SecureRandom().nextBytes(input);
+        v3Client.putShardedObject(PutObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), new ByteArrayInputStream(input));
+
+        final Path destination = Files.createTempFile("sharded-object-round-trip", ".bin");
+        try {
+            v3Client.getShardedObject(GetObjectRequest.builder()
+                    .bucket(BUCKET)
+                    .key(objectKey)
+                    .build(), destination);
+            assertArrayEquals(input, Files.readAllBytes(destination));
+        } finally {
+            Files.deleteIfExists(destination);
+        }
+
+        // Cleanup
+        v3Client.deleteObjectsWithPrefix(BUCKET, objectKey);
+        v3Client.close();
+    }
+
+    @Test
+    public void packedRecordsWithRangedReads() {
+        final String objectKey = appendTestSuffix("packed-records-with-ranged-reads");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+
+        final SecureRandom random = new SecureRandom();
+        final Map<String, byte[]> records = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] record = new byte[2 * 1024 + random.nextInt(18 * 1024)];
+            random.nextBytes(record);
+            records.put("record-" + i, record);
+        }
+        v3Client.putPack(PutObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), records);
+
+        PackReader reader = v3Client.openPack(GetObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build());
+        assertEquals(records.keySet(), reader.recordNames());
+        assertArrayEquals(records.get("record-42"), reader.getRecord("record-42"));
+
+        final Map<String, byte[]> fetched = reader.getRecords(Arrays.asList("record-0", "record-1", "record-99"));
+        assertArrayEquals(records.get("record-0"), fetched.get("record-0"));
+        assertArrayEquals(records.get("record-1"), fetched.get("record-1"));
+        assertArrayEquals(records.get("record-99"), fetched.get("record-99"));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void seekableChannelReadsFooter() throws IOException {
+        final String objectKey = appendTestSuffix("seekable-channel-reads-footer");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .encryptionAlgorithm(AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF)
+                .build();
+
+        final byte[] input = new byte[300 * 1024 + 5];
+        new SecureRandom().nextBytes(input);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromBytes(input));
+
+        try (SeekableByteChannel channel = v3Client.openSeekableChannel(GetObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), 64 * 1024)) {
+            assertEquals(input.length, channel.size());
+
+            // Read the footer, then a chunk from the middle
+            final ByteBuffer footer = ByteBuffer.allocate(8);
+            channel.position(input.length - 8);
+            while (footer.hasRemaining() && channel.read(footer) > 0) {
+                // Keep reading
+            }
+            assertArrayEquals(Arrays.copyOfRange(input, input.length - 8, input.length), footer.array());
+
+            final ByteBuffer chunk = ByteBuffer.allocate(100 * 1024);
+            channel.position(70000);
+            while (chunk.hasRemaining() && channel.read(chunk) > 0) {
+                // Keep reading
+            }
+            assertArrayEquals(Arrays.copyOfRange(input, 70000, 70000 + 100 * 1024), chunk.array());
+        }
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void repeatedRangedGetsUseDecryptedBlockCache() {
+        final String objectKey = appendTestSuffix("repeated-ranged-gets-use-decrypted-block-cache");
+
+        DecryptedBlockCache cache = DecryptedBlockCache.builder()
+                .maxBytes(1024 * 1024)
+                .build();
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .encryptionAlgorithm(AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF)
+                .decryptedBlockCache(cache)
+                .build();
+
+        final byte[] input = new byte[200 * 1024];
+        new SecureRandom().nextBytes(input);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromBytes(input));
+
+        for (int i = 0; i < 3; i++) {
+            ResponseBytes<GetObjectResponse> output = v3Client.getObjectAsBytes(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey)
+                    .range("bytes=70000-139999"));
+            assertArrayEquals(Arrays.copyOfRange(input, 70000, 140000), output.asByteArray());
+        }
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+
+        // Overwriting the object changes its ETag, so the cached plaintext is not used
+        final byte[] replacement = new byte[200 * 1024];
+        new SecureRandom().nextBytes(replacement);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromBytes(replacement));
+        ResponseBytes<GetObjectResponse> output = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey)
+                .range("bytes=70000-139999"));
+        assertArrayEquals(Arrays.copyOfRange(replacement, 70000, 140000), output.asByteArray());
+        assertEquals(2, cache.misses());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void repeatedGetsRevalidateEncryptedObjectCache() {
+        final String objectKey = appendTestSuffix("repeated-gets-revalidate-encrypted-object-cache");
+
+        EncryptedObjectCache cache = EncryptedObjectCache.builder().build();
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .encryptedObjectCache(cache)
+                .build();
+
+        final String input = "ObjectCacheInput";
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromString(input));
+
+        for (int i = 0; i < 3; i++) {
+            ResponseBytes<GetObjectResponse> output = v3Client.getObjectAsBytes(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey));
+            assertEquals(input, output.asUtf8String());
+        }
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+
+        // Overwriting the object fails the conditional get, so it is fetched again
+        final String replacement = "ObjectCacheReplacement";
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromString(replacement));
+        ResponseBytes<GetObjectResponse> output = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        assertEquals(replacement, output.asUtf8String());
+        assertEquals(2, cache.misses());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void getObjectRangesCoalescesNearbyRanges() {
+        final String objectKey = appendTestSuffix("get-object-ranges-coalesces-nearby-ranges");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .encryptionAlgorithm(AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF)
+                .build();
+
+        final byte[] input = new byte[300 * 1024];
+        new SecureRandom().nextBytes(input);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromBytes(input));
+
+        List<byte[]> output = v3Client.getObjectRanges(GetObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(objectKey)
+                .build(), Arrays.asList("bytes=100-199", "bytes=0-49", "bytes=200000-", "bytes=-10"));
+
+        assertArrayEquals(Arrays.copyOfRange(input, 100, 200), output.get(0));
+        assertArrayEquals(Arrays.copyOfRange(input, 0, 50), output.get(1));
+        assertArrayEquals(Arrays.copyOfRange(input, 200000, input.length), output.get(2));
+        assertArrayEquals(Arrays.copyOfRange(input, input.length - 10, input.length), output.get(3));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void getObjectsResolvesMaterialsCollectively() {
+        final String prefix = appendTestSuffix("get-objects-resolves-materials-collectively/");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .build();
+
+        final List<GetObjectRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final String objectKey = prefix + "object-" + i;
+            v3Client.putObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), RequestBody.fromString("GetObjectsResolvesMaterialsCollectively-" + i));
+            requests.add(GetObjectRequest.builder().bucket(BUCKET).key(objectKey).build());
+        }
+
+        List<ResponseBytes<GetObjectResponse>> objects = v3Client.getObjects(requests, 4);
+
+        assertEquals(requests.size(), objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            assertEquals("GetObjectsResolvesMaterialsCollectively-" + i, objects.get(i).asUtf8String());
+        }
+
+        // Cleanup
+        for (GetObjectRequest request : requests) {
+            deleteObject(BUCKET, request.key(), v3Client);
+        }
+        v3Client.close();
+    }
+
+    @Test
+    public void putObjectWithUnknownLengthStreamsMultipartUpload() {
+        final String objectKey = appendTestSuffix("put-object-with-unknown-length-streams-multipart-upload");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+
+        // Larger than one part, and given without a length
+        final byte[] content = new byte[StreamingPutObjectPipeline.DEFAULT_PART_SIZE + 1000];
+        new SecureRandom().nextBytes(content);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey), RequestBody.fromContentProvider(() -> new ByteArrayInputStream(content), "application/octet-stream"));
+
+        ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKey));
+        assertArrayEquals(content, objectResponse.asByteArray());
+
+        // Cleanup
+        deleteObject(BUCKET, objectKey, v3Client);
+        v3Client.close();
+    }
+
+    @Test
+    public void putObjectsUploadsManyObjects() {
+        final String prefix = appendTestSuffix("put-objects-uploads-many-objects/");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .build();
+
+        final List<Pair<PutObjectRequest, RequestBody>> objects = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            objects.add(Pair.of(PutObjectRequest.builder().bucket(BUCKET).key(prefix + "object-" + i).build(),
+                    RequestBody.fromString("PutObjectsUploadsManyObjects-" + i)));
+        }
+
+        assertEquals(objects.size(), v3Client.putObjects(objects, 4).size());
+
+        for (int i = 0; i < objects.size(); i++) {
+            final PutObjectRequest request = objects.get(i).left();
+            ResponseBytes<GetObjectResponse> objectResponse = v3Client.getObjectAsBytes(builder -> builder
+                    .bucket(BUCKET)
+                    .key(request.key()));
+            assertEquals("PutObjectsUploadsManyObjects-" + i, objectResponse.asUtf8String());
+        }
+
+        // Cleanup
+        for (Pair<PutObjectRequest, RequestBody> object : objects) {
+            deleteObject(BUCKET, object.left().key(), v3Client);
+        }
+        v3Client.close();
+    }
+
+    @Test
+    public void scanObjectsWithPrefixPrefetchesObjects() throws IOException {
+        final String prefix = appendTestSuffix("scan-objects-with-prefix-prefetches-objects/");
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final String objectKey = prefix + "object-" + i;
+            keys.add(objectKey);
+            v3Client.putObject(builder -> builder
+                    .bucket(BUCKET)
+                    .key(objectKey), RequestBody.fromString("ScanObjectsWithPrefix-" + i));
+        }
+
+        final List<String> scanned = new ArrayList<>();
+        try (PrefixScanReader reader = v3Client.scanObjectsWithPrefix(BUCKET, prefix, 2, 1024)) {
+            while (reader.hasNext()) {
+                PrefixScanReader.ScannedObject object = reader.next();
+                assertEquals("ScanObjectsWithPrefix-" + scanned.size(), object.object().asUtf8String());
+                scanned.add(object.key());
+            }
+        }
+        assertEquals(keys, scanned);
+
+        // Cleanup
+        for (String objectKey : keys) {
+            deleteObject(BUCKET, objectKey, v3Client);
+        }
+        v3Client.close();
+    }
+
+    @Test
+    public void verifyObjectsDetectsTamperedCiphertext() {
+        final String prefix = appendTestSuffix("verify-objects-detects-tampered-ciphertext/");
+        final String intactKey = prefix + "intact";
+        final String tamperedKey = prefix + "tampered";
+
+        S3EncryptionClient v3Client = S3EncryptionClient.builder()
+                .aesKey(AES_KEY)
+                .build();
+        S3Client plaintextS3Client = S3Client.builder().build();
+
+        final byte[] input = new byte[100 * 1024];
+        new SecureRandom().nextBytes(input);
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(intactKey), RequestBody.fromBytes(input));
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(tamperedKey), RequestBody.fromBytes(input));
+
+        // Flip one bit of the ciphertext, keeping the encryption metadata
+        ResponseBytes<GetObjectResponse> ciphertext = plaintextS3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(tamperedKey));
+        byte[] tampered = ciphertext.asByteArray();
+        tampered[1000] ^= 1;
+        plaintextS3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(tamperedKey)
+                .metadata(ciphertext.response().metadata()), RequestBody.fromBytes(tampered));
+
+        assertTrue(v3Client.verifyObject(GetObjectRequest.builder().bucket(BUCKET).key(intactKey).build()));
+        assertFalse(v3Client.verifyObject(GetObjectRequest.builder().bucket(BUCKET).key(tamperedKey).build()));
+
+        IntegrityScrubReport report = v3Client.verifyObjectsWithPrefix(BUCKET, prefix);
+        assertEquals(Collections.singletonList(intactKey), report.verifiedKeys());
+        assertEquals(Collections.singletonList(tamperedKey), report.failedKeys());
+        assertTrue(report.unverifiableKeys().isEmpty());
+
+        // Cleanup
+        deleteObject(BUCKET, intactKey, v3Client);
+        deleteObject(BUCKET, tamperedKey, v3Client);
+        v3Client.close();
+        plaintextS3Client.close();
+    }
+
+    @Test
+    public void hkdfEncryptionWithCachedDataKey() {
+        final String objectKeyOne = appendTestSuffix("hkdf-encryption-with-cached-data-key-one");
+        final String objectKeyTwo = appendTestSuffix("hkdf-encryption-with-cached-data-key-two");
+
+        S3Client v3Client = S3EncryptionClient.builder()
+                .kmsKeyId(KMS_KEY_ID)
+                .encryptionAlgorithm(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256)
+                .dataKeyCacheMaxAge(Duration.ofMinutes(5))
+                .build();
+
+        final String inputOne = "HkdfEncryptionWithCachedDataKeyOne";
+        final String inputTwo = "HkdfEncryptionWithCachedDataKeyTwo";
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKeyOne), RequestBody.fromString(inputOne));
+        v3Client.putObject(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKeyTwo), RequestBody.fromString(inputTwo));
+
+        ResponseBytes<GetObjectResponse> responseOne = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKeyOne));
+        ResponseBytes<GetObjectResponse> responseTwo = v3Client.getObjectAsBytes(builder -> builder
+                .bucket(BUCKET)
+                .key(objectKeyTwo));
+        assertEquals(inputOne, responseOne.asUtf8String());
+        assertEquals(inputTwo, responseTwo.asUtf8String());
+        // Both objects share a data key but each has its own salt
+        assertTrue(responseOne.response().metadata().containsKey("x-amz-kdf-salt"));
+        assertEquals(responseOne.response().metadata().get("x-amz-key-v2"),
+                responseTwo.response().metadata().get("x-amz-key-v2"));
+
+        // Cleanup
+        deleteObject(BUCKET, objectKeyOne, v3Client);
+        deleteObject(BUCKET, objectKeyTwo, v3Client);
+        v3Client.close();
+    }
+
     /**
      * A simple, reusable round-trip (encryption + decryption) using a given
      * S3Client. Useful for testing client configuration.
@@ -0,0 +1,87 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.encryption.s3.legacy.internal.RangedGetUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CipherPublisherTest {
+
+    private final SecureRandom random = new SecureRandom();
+    private SecretKeySpec key;
+    private byte[] iv;
+
+    @BeforeEach
+    public void setUp() {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        iv = new byte[16];
+        random.nextBytes(iv);
+    }
+
+    @Test
+    public void cbcCryptoRangeStartsOneBlockEarly() {
+        assertEquals("bytes=0-31", RangedGetUtils.getCbcCryptoRangeAsString(new long[]{10, 20}, 208));
+        assertEquals("bytes=16-63", RangedGetUtils.getCbcCryptoRangeAsString(new long[]{40, 50}, 208));
+        assertEquals("bytes=176-207", RangedGetUtils.getCbcCryptoRangeAsString(new long[]{199, 300}, 208));
+        assertFalse(RangedGetUtils.isFinalRange("bytes 16-63/208"));
+        assertTrue(RangedGetUtils.isFinalRange("bytes 176-207/208"));
+    }
+
+    @Test
+    public void decryptsCbcSlicesWithoutTheRestOfTheObject() throws GeneralSecurityException {
+        byte[] plaintext = new byte[1000];
+        random.nextBytes(plaintext);
+        byte[] ciphertext = cipher("AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE).doFinal(plaintext);
+
+        // Within one block, across blocks, from the start, and through the padded final block
+        long[][] ranges = {{40, 45}, {100, 517}, {0, 15}, {950, 999}, {990, 2000}};
+        for (long[] range : ranges) {
+            long last = Math.min(range[1], plaintext.length - 1);
+            assertArrayEquals(Arrays.copyOfRange(plaintext, (int) range[0], (int) last + 1),
+                    decryptRange(ciphertext, range), Arrays.toString(range));
+        }
+    }
+
+    private byte[] decryptRange(byte[] ciphertext, long[] desiredRange) throws GeneralSecurityException {
+        String[] cryptoRange = RangedGetUtils.getCbcCryptoRangeAsString(desiredRange, ciphertext.length)
+                .substring("bytes=".length()).split("-");
+        int first = Integer.parseInt(cryptoRange[0]);
+        int last = Integer.parseInt(cryptoRange[1]);
+        byte[] slice = Arrays.copyOfRange(ciphertext, first, last + 1);
+        String contentRange = "bytes " + first + "-" + last + "/" + ciphertext.length;
+        Cipher cipher = cipher(RangedGetUtils.isFinalRange(contentRange) ? "AES/CBC/PKCS5Padding" : "AES/CBC/NoPadding",
+                Cipher.DECRYPT_MODE);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new CipherPublisher(AsyncRequestBody.fromBytes(slice), (long) slice.length, desiredRange.clone(), contentRange, 0, cipher)
+                .subscribe(buffer -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    output.write(bytes, 0, bytes.length);
+                }).join();
+        return output.toByteArray();
+    }
+
+    private Cipher cipher(String transformation, int mode) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(transformation);
+        cipher.init(mode, key, new IvParameterSpec(iv));
+        return cipher;
+    }
+}
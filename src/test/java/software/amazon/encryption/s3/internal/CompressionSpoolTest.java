@@ -0,0 +1,77 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.algorithms.DeflateCompressionCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionSpoolTest {
+
+    private static final byte[] CONTENT = repeat("CompressionSpoolTest", 10_000);
+
+    @Test
+    public void compressesInMemory() {
+        CompressionSpool spool = CompressionSpool.compress(AsyncRequestBody.fromBytes(CONTENT),
+                new DeflateCompressionCodec(), CompressionSpool.DEFAULT_MEMORY_THRESHOLD).join();
+
+        assertTrue(spool.length() < CONTENT.length);
+        assertEquals(spool.length(), spool.requestBody().contentLength().get());
+        assertArrayEquals(CONTENT, decompress(spool.requestBody()));
+        spool.release();
+    }
+
+    @Test
+    public void spillsToFileBeyondThreshold() {
+        CompressionSpool spool = CompressionSpool.compress(AsyncRequestBody.fromBytes(CONTENT),
+                new DeflateCompressionCodec(), 16).join();
+
+        assertEquals(spool.length(), spool.requestBody().contentLength().get());
+        assertArrayEquals(CONTENT, decompress(spool.requestBody()));
+        spool.release();
+    }
+
+    @Test
+    public void truncatedContentFailsToDecompress() {
+        CompressionSpool spool = CompressionSpool.compress(AsyncRequestBody.fromBytes(CONTENT),
+                new DeflateCompressionCodec(), CompressionSpool.DEFAULT_MEMORY_THRESHOLD).join();
+        byte[] compressed = collect(spool.requestBody());
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+        assertThrows(CompletionException.class, () -> decompress(AsyncRequestBody.fromBytes(truncated)));
+    }
+
+    private static byte[] decompress(SdkPublisher<ByteBuffer> compressed) {
+        return collect(new DecompressingPublisher(compressed, new DeflateCompressionCodec()));
+    }
+
+    private static byte[] collect(SdkPublisher<ByteBuffer> publisher) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        publisher.subscribe(byteBuffer -> {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.get(bytes);
+            output.write(bytes, 0, bytes.length);
+        }).join();
+        return output.toByteArray();
+    }
+
+    private static byte[] repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyUtilsTest {
+
+    @Test
+    public void runsManyCompletedTasksInOrder() {
+        List<Supplier<CompletableFuture<Integer>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            final int value = i;
+            tasks.add(() -> CompletableFuture.completedFuture(value));
+        }
+
+        List<Integer> results = ConcurrencyUtils.runBounded(tasks, 4).join();
+
+        assertEquals(100000, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void stopsStartingTasksAfterFailure() {
+        AtomicInteger started = new AtomicInteger();
+        List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        List<Supplier<CompletableFuture<Integer>>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(() -> {
+                started.incrementAndGet();
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                pending.add(future);
+                return future;
+            });
+        }
+
+        CompletableFuture<List<Integer>> result = ConcurrencyUtils.runBounded(tasks, 2);
+        pending.get(0).completeExceptionally(new IllegalStateException("failed"));
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        pending.get(1).complete(1);
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    public void supplierExceptionFailsTheFuture() {
+        List<Supplier<CompletableFuture<Integer>>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            throw new IllegalArgumentException("bad request");
+        });
+
+        CompletableFuture<List<Integer>> result = ConcurrencyUtils.runBounded(tasks, 2);
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+}
@@ -58,4 +58,10 @@ public class ContentMetadataStrategyTest {
         String expectedContentIv = Arrays.toString(expectedContentMetadata.contentIv());
         assertEquals(expectedContentIv, actualContentIv);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void instructionFileRoundTrip() {
+        byte[] instruction = ContentMetadataStrategy.writeInstructionFile(metadata);
+        assertEquals(metadata, ContentMetadataStrategy.parseInstructionFile(instruction));
+    }
+}
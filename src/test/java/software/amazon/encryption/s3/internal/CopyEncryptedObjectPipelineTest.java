@@ -0,0 +1,188 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectTaggingResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.RequestPayer;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CopyEncryptedObjectPipelineTest {
+
+    private S3AsyncClient mockS3AsyncClient;
+    private CopyEncryptedObjectPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() {
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder()
+                        .contentLength(100L)
+                        .metadata(Collections.singletonMap("user-key", "user-value"))
+                        .build()));
+        when(mockS3AsyncClient.copyObject(any(CopyObjectRequest.class))).thenAnswer(invocation -> {
+            CopyObjectRequest request = invocation.getArgument(0);
+            if (request.sourceKey().endsWith(".instruction")) {
+                CompletableFuture<CopyObjectResponse> missing = new CompletableFuture<>();
+                missing.completeExceptionally(NoSuchKeyException.builder().message("The specified key does not exist.").build());
+                return missing;
+            }
+            return CompletableFuture.completedFuture(CopyObjectResponse.builder()
+                    .copyObjectResult(CopyObjectResult.builder().eTag("copied").build())
+                    .build());
+        });
+        pipeline = CopyEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copiesPlainObjectWithoutInstructionFile() {
+        CopyObjectResponse response = pipeline.copyObject(CopyObjectRequest.builder()
+                .sourceBucket("bucket")
+                .sourceKey("plain")
+                .sourceVersionId("version")
+                .destinationBucket("bucket")
+                .destinationKey("plain-copy")
+                .build()).join();
+
+        assertEquals("copied", response.copyObjectResult().eTag());
+        // Version ids belong to one key, so the latest instruction file is looked for
+        verify(mockS3AsyncClient).copyObject(argThat((CopyObjectRequest request) ->
+                request.sourceKey().equals("plain.instruction") && request.sourceVersionId() == null));
+        verify(mockS3AsyncClient, never()).deleteObject(any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedInstructionFileCopyDeletesCopiedObject() {
+        when(mockS3AsyncClient.copyObject(any(CopyObjectRequest.class))).thenAnswer(invocation -> {
+            CopyObjectRequest request = invocation.getArgument(0);
+            if (request.sourceKey().endsWith(".instruction")) {
+                CompletableFuture<CopyObjectResponse> denied = new CompletableFuture<>();
+                denied.completeExceptionally(S3Exception.builder().statusCode(403).message("Access Denied").build());
+                return denied;
+            }
+            return CompletableFuture.completedFuture(CopyObjectResponse.builder()
+                    .copyObjectResult(CopyObjectResult.builder().eTag("copied").build())
+                    .versionId("copy-version")
+                    .build());
+        });
+        when(mockS3AsyncClient.deleteObject(any(Consumer.class))).thenReturn(
+                CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
+
+        CompletionException error = assertThrows(CompletionException.class, () -> pipeline.copyObject(
+                CopyObjectRequest.builder()
+                        .sourceBucket("bucket")
+                        .sourceKey("encrypted")
+                        .destinationBucket("bucket")
+                        .destinationKey("encrypted-copy")
+                        .build()).join());
+
+        assertTrue(error.getCause() instanceof S3Exception);
+        // Only the version which was just copied is removed
+        ArgumentCaptor<Consumer<DeleteObjectRequest.Builder>> delete = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockS3AsyncClient).deleteObject(delete.capture());
+        DeleteObjectRequest.Builder deleteRequest = DeleteObjectRequest.builder();
+        delete.getValue().accept(deleteRequest);
+        assertEquals("encrypted-copy", deleteRequest.build().key());
+        assertEquals("copy-version", deleteRequest.build().versionId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void multipartCopyForwardsSseCustomerKeysAndSourceTags() {
+        when(mockS3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder()
+                        .contentLength(CopyEncryptedObjectPipeline.MAX_COPY_OBJECT_SIZE + 1)
+                        .eTag("source-etag")
+                        .metadata(Collections.singletonMap(MetadataKeyConstants.ENCRYPTED_DATA_KEY_V2, "key"))
+                        .build()));
+        when(mockS3AsyncClient.getObjectTagging(any(Consumer.class))).thenReturn(CompletableFuture.completedFuture(
+                GetObjectTaggingResponse.builder()
+                        .tagSet(Tag.builder().key("team").value("storage & data").build())
+                        .build()));
+        when(mockS3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build()));
+        when(mockS3AsyncClient.uploadPartCopy(any(UploadPartCopyRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(UploadPartCopyResponse.builder()
+                        .copyPartResult(CopyPartResult.builder().eTag("part").build())
+                        .build()));
+        when(mockS3AsyncClient.completeMultipartUpload(any(Consumer.class))).thenReturn(
+                CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("copied").build()));
+
+        pipeline.copyObject(CopyObjectRequest.builder()
+                .sourceBucket("bucket")
+                .sourceKey("large")
+                .sourceVersionId("version")
+                .destinationBucket("bucket")
+                .destinationKey("large-copy")
+                .copySourceSSECustomerAlgorithm("AES256")
+                .copySourceSSECustomerKey("source-key")
+                .copySourceSSECustomerKeyMD5("source-md5")
+                .sseCustomerAlgorithm("AES256")
+                .sseCustomerKey("destination-key")
+                .sseCustomerKeyMD5("destination-md5")
+                .requestPayer(RequestPayer.REQUESTER)
+                .build()).join();
+
+        ArgumentCaptor<Consumer<GetObjectTaggingRequest.Builder>> tagging = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockS3AsyncClient).getObjectTagging(tagging.capture());
+        GetObjectTaggingRequest.Builder taggingRequest = GetObjectTaggingRequest.builder();
+        tagging.getValue().accept(taggingRequest);
+        assertEquals("version", taggingRequest.build().versionId());
+        verify(mockS3AsyncClient).createMultipartUpload(argThat((CreateMultipartUploadRequest request) ->
+                "team=storage%20%26%20data".equals(request.tagging())
+                        && "destination-key".equals(request.sseCustomerKey())
+                        && request.requestPayer() == RequestPayer.REQUESTER));
+        verify(mockS3AsyncClient, atLeastOnce()).uploadPartCopy(argThat((UploadPartCopyRequest request) ->
+                "source-key".equals(request.copySourceSSECustomerKey())
+                        && "destination-key".equals(request.sseCustomerKey())
+                        && request.requestPayer() == RequestPayer.REQUESTER));
+        verify(mockS3AsyncClient, never()).uploadPartCopy(argThat((UploadPartCopyRequest request) ->
+                !"source-key".equals(request.copySourceSSECustomerKey())));
+        ArgumentCaptor<Consumer<CompleteMultipartUploadRequest.Builder>> complete = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockS3AsyncClient).completeMultipartUpload(complete.capture());
+        CompleteMultipartUploadRequest.Builder completeRequest = CompleteMultipartUploadRequest.builder();
+        complete.getValue().accept(completeRequest);
+        assertEquals("destination-key", completeRequest.build().sseCustomerKey());
+        assertEquals(RequestPayer.REQUESTER, completeRequest.build().requestPayer());
+    }
+}
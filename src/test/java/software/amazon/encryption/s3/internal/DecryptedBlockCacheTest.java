@@ -0,0 +1,85 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DecryptedBlockCacheTest {
+
+    private static final int BLOCK = DecryptedBlockCache.BLOCK_LENGTH;
+
+    @Test
+    public void servesRangesSpanningCachedBlocks() {
+        DecryptedBlockCache cache = DecryptedBlockCache.builder()
+                .maxBytes(4 * BLOCK)
+                .build();
+        final byte[] plaintext = randomBytes(2 * BLOCK + 100);
+
+        assertNull(cache.get("bucket", "key", "etag", 10, 20));
+        cache.put("bucket", "key", "etag", 0, plaintext);
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, BLOCK - 5, 2 * BLOCK + 50),
+                cache.get("bucket", "key", "etag", BLOCK - 5, 2 * BLOCK + 49));
+        // The final block is short, so a range past its end is a miss
+        assertNull(cache.get("bucket", "key", "etag", 2 * BLOCK, 2 * BLOCK + 200));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1.0 / 3, cache.hitRatio(), 1e-9);
+        assertEquals(plaintext.length, cache.size());
+    }
+
+    @Test
+    public void differentETagIsAMiss() {
+        DecryptedBlockCache cache = DecryptedBlockCache.builder()
+                .maxBytes(BLOCK)
+                .offHeap(true)
+                .build();
+        cache.put("bucket", "key", "etag-one", 0, randomBytes(BLOCK));
+
+        assertNull(cache.get("bucket", "key", "etag-two", 0, 10));
+        assertNull(cache.get("bucket", "other-key", "etag-one", 0, 10));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBlocks() {
+        DecryptedBlockCache cache = DecryptedBlockCache.builder()
+                .maxBytes(2 * BLOCK)
+                .build();
+        final byte[] plaintext = randomBytes(3 * BLOCK);
+        cache.put("bucket", "key", "etag", 0, Arrays.copyOfRange(plaintext, 0, 2 * BLOCK));
+        // Touch the first block so the second is evicted
+        cache.get("bucket", "key", "etag", 0, 0);
+        cache.put("bucket", "key", "etag", 2 * BLOCK, Arrays.copyOfRange(plaintext, 2 * BLOCK, 3 * BLOCK));
+
+        assertEquals(2 * BLOCK, cache.size());
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 0, 10), cache.get("bucket", "key", "etag", 0, 9));
+        assertNull(cache.get("bucket", "key", "etag", BLOCK, BLOCK + 9));
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 2 * BLOCK, 2 * BLOCK + 10),
+                cache.get("bucket", "key", "etag", 2 * BLOCK, 2 * BLOCK + 9));
+    }
+
+    @Test
+    public void rejectsUnalignedPlaintext() {
+        DecryptedBlockCache cache = DecryptedBlockCache.builder()
+                .maxBytes(BLOCK)
+                .build();
+
+        assertThrows(S3EncryptionClientException.class, () -> cache.put("bucket", "key", "etag", 16, new byte[16]));
+        assertThrows(S3EncryptionClientException.class, () -> DecryptedBlockCache.builder().build());
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DecryptingSeekableByteChannelTest {
+
+    private final byte[] plaintext = new byte[1000];
+    private final List<long[]> fetches = new ArrayList<>();
+    private DecryptingSeekableByteChannel channel;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < plaintext.length; i++) {
+            plaintext[i] = (byte) i;
+        }
+        channel = new DecryptingSeekableByteChannel((first, last) -> {
+            fetches.add(new long[]{first, last});
+            return CompletableFuture.completedFuture(Arrays.copyOfRange(plaintext, (int) first, (int) last + 1));
+        }, plaintext.length, 16, 100);
+    }
+
+    @Test
+    public void readsSequentiallyWithReadAhead() throws IOException {
+        ByteBuffer all = ByteBuffer.allocate(plaintext.length);
+        while (channel.read(all) > 0) {
+            // Keep reading
+        }
+
+        assertArrayEquals(plaintext, all.array());
+        assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        // Windows are rounded up to whole 16 byte blocks
+        assertArrayEquals(new long[]{0, 111}, fetches.get(0));
+        assertArrayEquals(new long[]{112, 223}, fetches.get(1));
+        assertArrayEquals(new long[]{896, 999}, fetches.get(fetches.size() - 1));
+    }
+
+    @Test
+    public void seeksToAlignedWindow() throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(8);
+        channel.position(990);
+        assertEquals(8, channel.read(footer));
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 990, 998), footer.array());
+        assertEquals(1, fetches.size());
+        assertArrayEquals(new long[]{976, 999}, fetches.get(0));
+        assertEquals(998, channel.position());
+    }
+
+    @Test
+    public void rereadsWithinWindowWithoutFetching() throws IOException {
+        channel.position(500);
+        channel.read(ByteBuffer.allocate(10));
+        channel.position(505);
+        channel.read(ByteBuffer.allocate(10));
+
+        assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void rejectsReadsAfterClose() throws IOException {
+        channel.close();
+        assertThrows(ClosedChannelException.class, () -> channel.read(ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    public void failedFetchSurfacesAsIOException() {
+        DecryptingSeekableByteChannel failing = new DecryptingSeekableByteChannel((first, last) -> {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Authentication failed"));
+            return future;
+        }, 100, 16, 100);
+
+        assertThrows(IOException.class, () -> failing.read(ByteBuffer.allocate(10)));
+    }
+}
@@ -0,0 +1,128 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.RequestCharged;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeleteEncryptedObjectsPipelineTest {
+
+    private S3AsyncClient mockS3AsyncClient;
+
+    @BeforeEach
+    public void setUp() {
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class))).thenAnswer(invocation -> {
+            DeleteObjectsRequest request = invocation.getArgument(0);
+            List<DeletedObject> deleted = request.delete().objects().stream()
+                    .map(o -> DeletedObject.builder().key(o.key()).build())
+                    .collect(Collectors.toList());
+            return CompletableFuture.completedFuture(DeleteObjectsResponse.builder().deleted(deleted).build());
+        });
+    }
+
+    @Test
+    public void deleteObjectsSplitsIntoBatches() {
+        DeleteEncryptedObjectsPipeline pipeline = DeleteEncryptedObjectsPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .build();
+
+        DeleteObjectsResponse response = pipeline.deleteObjects(deleteObjectsRequest(1500)).join();
+
+        // 1500 objects and 1500 instruction files
+        ArgumentCaptor<DeleteObjectsRequest> captor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(mockS3AsyncClient, times(3)).deleteObjects(captor.capture());
+        for (DeleteObjectsRequest request : captor.getAllValues()) {
+            assertTrue(request.delete().objects().size() <= 1000);
+        }
+        // Instruction files are deleted but not reported
+        assertEquals(1500, response.deleted().size());
+        for (DeletedObject deletedObject : response.deleted()) {
+            assertTrue(!deletedObject.key().endsWith(".instruction"));
+        }
+    }
+
+    @Test
+    public void deleteObjectsMergesRequestCharged() {
+        when(mockS3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()),
+                CompletableFuture.completedFuture(DeleteObjectsResponse.builder()
+                        .requestCharged(RequestCharged.REQUESTER)
+                        .build()));
+        DeleteEncryptedObjectsPipeline pipeline = DeleteEncryptedObjectsPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .maxConcurrency(1)
+                .build();
+
+        DeleteObjectsResponse response = pipeline.deleteObjects(deleteObjectsRequest(1000)).join();
+
+        assertEquals(RequestCharged.REQUESTER, response.requestCharged());
+    }
+
+    @Test
+    public void deleteObjectsSkipsInstructionFiles() {
+        DeleteEncryptedObjectsPipeline pipeline = DeleteEncryptedObjectsPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .deleteInstructionFiles(false)
+                .build();
+
+        DeleteObjectsResponse response = pipeline.deleteObjects(deleteObjectsRequest(1000)).join();
+
+        verify(mockS3AsyncClient, times(1)).deleteObjects(any(DeleteObjectsRequest.class));
+        assertEquals(1000, response.deleted().size());
+        for (DeletedObject deletedObject : response.deleted()) {
+            assertTrue(!deletedObject.key().endsWith(".instruction"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deleteObjectSkipsInstructionFile() {
+        when(mockS3AsyncClient.deleteObject(any(DeleteObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
+        DeleteEncryptedObjectsPipeline pipeline = DeleteEncryptedObjectsPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .deleteInstructionFiles(false)
+                .build();
+
+        pipeline.deleteObject(DeleteObjectRequest.builder().bucket("TestBucket").key("TestKey").build()).join();
+
+        verify(mockS3AsyncClient, times(1)).deleteObject(any(DeleteObjectRequest.class));
+        verify(mockS3AsyncClient, never()).deleteObject(any(Consumer.class));
+    }
+
+    private static DeleteObjectsRequest deleteObjectsRequest(int numberOfKeys) {
+        List<ObjectIdentifier> objects = new ArrayList<>();
+        for (int i = 0; i < numberOfKeys; i++) {
+            objects.add(ObjectIdentifier.builder().key("TestKey-" + i).build());
+        }
+        return DeleteObjectsRequest.builder()
+                .bucket("TestBucket")
+                .delete(builder -> builder.objects(objects))
+                .build();
+    }
+}
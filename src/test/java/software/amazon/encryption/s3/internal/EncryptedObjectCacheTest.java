@@ -0,0 +1,109 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EncryptedObjectCacheTest {
+
+    private static final GetObjectResponse RESPONSE = GetObjectResponse.builder()
+            .eTag("\"etag\"")
+            .contentType("application/octet-stream")
+            .lastModified(Instant.ofEpochMilli(1234567890L))
+            .metadata(Collections.singletonMap("x-amz-cek-alg", "AES/GCM/NoPadding"))
+            .build();
+
+    @Test
+    public void evictsLeastRecentlyUsedObjectsFromMemory() {
+        EncryptedObjectCache cache = EncryptedObjectCache.builder()
+                .maxMemoryBytes(20)
+                .build();
+        cache.put("bucket", "one", null, RESPONSE, new byte[10]);
+        cache.put("bucket", "two", null, RESPONSE, new byte[10]);
+        // Touch the first object so the second is evicted
+        cache.get("bucket", "one", null);
+        cache.put("bucket", "three", null, RESPONSE, new byte[10]);
+
+        assertNotNull(cache.get("bucket", "one", null));
+        assertNull(cache.get("bucket", "two", null));
+        assertNotNull(cache.get("bucket", "three", null));
+    }
+
+    @Test
+    public void skipsObjectsLargerThanTheLimit() {
+        EncryptedObjectCache cache = EncryptedObjectCache.builder()
+                .maxObjectBytes(10)
+                .build();
+        cache.put("bucket", "key", null, RESPONSE, new byte[11]);
+
+        assertNull(cache.get("bucket", "key", null));
+    }
+
+    @Test
+    public void diskTierIsSharedBetweenCaches(@TempDir Path directory) {
+        EncryptedObjectCache writer = EncryptedObjectCache.builder()
+                .diskCache(directory, 1024)
+                .build();
+        final byte[] ciphertext = new byte[] {1, 2, 3, 4, 5};
+        writer.put("bucket", "key", "version", RESPONSE, ciphertext);
+
+        EncryptedObjectCache reader = EncryptedObjectCache.builder()
+                .maxMemoryBytes(0)
+                .diskCache(directory, 1024)
+                .build();
+        EncryptedObjectCache.Entry entry = reader.get("bucket", "key", "version");
+
+        assertNotNull(entry);
+        assertArrayEquals(ciphertext, entry.ciphertext());
+        assertEquals(RESPONSE.eTag(), entry.response().eTag());
+        assertEquals(RESPONSE.contentType(), entry.response().contentType());
+        assertEquals(RESPONSE.lastModified(), entry.response().lastModified());
+        assertEquals(RESPONSE.metadata(), entry.response().metadata());
+        assertEquals(5L, entry.response().contentLength());
+        assertNull(reader.get("bucket", "key", "other-version"));
+    }
+
+    @Test
+    public void evictsFilesBeyondTheDiskLimit(@TempDir Path directory) throws IOException {
+        EncryptedObjectCache cache = EncryptedObjectCache.builder()
+                .maxMemoryBytes(0)
+                .diskCache(directory, 600)
+                .build();
+        cache.put("bucket", "one", null, RESPONSE, new byte[256]);
+        cache.put("bucket", "two", null, RESPONSE, new byte[256]);
+
+        assertNull(cache.get("bucket", "one", null));
+        assertNotNull(cache.get("bucket", "two", null));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void damagedFileIsAMiss(@TempDir Path directory) throws IOException {
+        EncryptedObjectCache cache = EncryptedObjectCache.builder()
+                .maxMemoryBytes(0)
+                .diskCache(directory, 1024)
+                .build();
+        cache.put("bucket", "key", null, RESPONSE, new byte[16]);
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.write(files.findFirst().get(), new byte[] {0, 0, 0, 100});
+        }
+
+        assertNull(cache.get("bucket", "key", null));
+    }
+}
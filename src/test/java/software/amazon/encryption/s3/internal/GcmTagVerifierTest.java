@@ -0,0 +1,134 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.DecryptionMaterials;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GcmTagVerifierTest {
+
+    private static final AlgorithmSuite SEGMENTED = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF;
+
+    private final SecureRandom random = new SecureRandom();
+    private byte[] dataKey;
+    private SecretKey key;
+    private byte[] iv;
+
+    @BeforeEach
+    public void setUp() {
+        dataKey = new byte[32];
+        random.nextBytes(dataKey);
+        key = new SecretKeySpec(dataKey, "AES");
+        iv = new byte[12];
+        random.nextBytes(iv);
+    }
+
+    @Test
+    public void matchesJceTagsAcrossChunkBoundaries() throws Exception {
+        // A small chunk size exercises folding many chunks, including partial final ones
+        for (int length : new int[]{0, 1, 15, 16, 17, 63, 64, 65, 1000}) {
+            byte[] ciphertext = encrypt(randomBytes(length));
+            assertTrue(verify(ciphertext, 64), "length " + length);
+            assertTrue(verify(ciphertext, GcmTagVerifier.DEFAULT_CHUNK_SIZE), "length " + length);
+        }
+    }
+
+    @Test
+    public void detectsTamperedCiphertextAndTag() throws Exception {
+        byte[] ciphertext = encrypt(randomBytes(300));
+
+        byte[] tamperedBody = ciphertext.clone();
+        tamperedBody[100] ^= 1;
+        assertFalse(verify(tamperedBody, 64));
+
+        byte[] tamperedTag = ciphertext.clone();
+        tamperedTag[tamperedTag.length - 1] ^= 1;
+        assertFalse(verify(tamperedTag, 64));
+
+        assertFalse(verify(Arrays.copyOf(ciphertext, ciphertext.length - 1), 64));
+    }
+
+    @Test
+    public void verifiesSegmentedCiphertext() {
+        byte[] plaintext = randomBytes(2 * SEGMENTED.cipherSegmentLengthBytes() + 100);
+        EncryptionMaterials encryptionMaterials = EncryptionMaterials.builder()
+                .algorithmSuite(SEGMENTED)
+                .plaintextDataKey(dataKey)
+                .plaintextLength(plaintext.length)
+                .build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SegmentedCipherAsyncRequestBody(AsyncRequestBody.fromBytes(plaintext), encryptionMaterials, iv)
+                .subscribe(buffer -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    output.write(bytes, 0, bytes.length);
+                }).join();
+        byte[] ciphertext = output.toByteArray();
+        DecryptionMaterials materials = DecryptionMaterials.builder()
+                .algorithmSuite(SEGMENTED)
+                .plaintextDataKey(dataKey)
+                .build();
+
+        assertTrue(verifyStream(ciphertext, materials));
+
+        byte[] tampered = ciphertext.clone();
+        tampered[SEGMENTED.cipherSegmentLengthBytes() + 40] ^= 1;
+        assertFalse(verifyStream(tampered, materials));
+
+        // Dropping the final segment leaves a segment whose nonce is not marked final
+        byte[] truncated = Arrays.copyOf(ciphertext, 2 * (SEGMENTED.cipherSegmentLengthBytes() + 16));
+        assertFalse(verifyStream(truncated, materials));
+    }
+
+    private boolean verify(byte[] ciphertext, int chunkSize) {
+        if (ciphertext.length < 16) {
+            return false;
+        }
+        GcmTagVerifier verifier = new GcmTagVerifier(key, null, chunkSize);
+        verifier.init(iv);
+        // Feed the body in uneven pieces
+        int offset = 0;
+        int bodyLength = ciphertext.length - 16;
+        while (offset < bodyLength) {
+            int length = Math.min(37, bodyLength - offset);
+            verifier.update(ByteBuffer.wrap(ciphertext, offset, length));
+            offset += length;
+        }
+        return verifier.verify(Arrays.copyOfRange(ciphertext, bodyLength, ciphertext.length));
+    }
+
+    private boolean verifyStream(byte[] ciphertext, DecryptionMaterials materials) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AsyncRequestBody.fromBytes(ciphertext).subscribe(new TagVerifyingSubscriber(result, materials, iv, ciphertext.length));
+        return result.join();
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return cipher.doFinal(plaintext);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,356 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.legacy.internal.RangedGetUtils;
+import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
+import software.amazon.encryption.s3.materials.DecryptMaterialsRequest;
+import software.amazon.encryption.s3.materials.DecryptionMaterials;
+import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+import software.amazon.encryption.s3.materials.EncryptionMaterialsRequest;
+
+import javax.crypto.KeyGenerator;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GetEncryptedObjectPipelineTest {
+
+    private static final String ETAG = "etag";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void readsCiphertextWhileDataKeyIsUnwrapped() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        CryptographicMaterialsManager cmm = DefaultCryptoMaterialsManager.builder()
+                .keyring(AesKeyring.builder()
+                        .wrappingKey(keyGenerator.generateKey())
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .build();
+
+        // Encrypt an object, keeping what would have been uploaded
+        byte[] plaintext = new byte[100_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        final Map<String, String>[] metadata = new Map[1];
+        final ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            metadata[0] = ((PutObjectRequest) invocation.getArgument(0)).metadata();
+            AsyncRequestBody body = invocation.getArgument(1);
+            return body.subscribe(buffer -> {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                ciphertext.write(bytes, 0, bytes.length);
+            }).thenApply(ignored -> PutObjectResponse.builder().build());
+        });
+        PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .build()
+                .putObject(PutObjectRequest.builder().bucket("bucket").key("key").build(), AsyncRequestBody.fromBytes(plaintext))
+                .join();
+
+        // Hold the data key back until some ciphertext has been read
+        final CountDownLatch releaseKey = new CountDownLatch(1);
+        final AtomicInteger chunksRead = new AtomicInteger();
+        CryptographicMaterialsManager slowCmm = new CryptographicMaterialsManager() {
+            @Override
+            public EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request) {
+                return cmm.getEncryptionMaterials(request);
+            }
+
+            @Override
+            public DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request) {
+                try {
+                    releaseKey.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return cmm.decryptMaterials(request);
+            }
+        };
+        final byte[] ciphertextBytes = ciphertext.toByteArray();
+        when(mockS3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            AsyncResponseTransformer<GetObjectResponse, ?> transformer = invocation.getArgument(1);
+            CompletableFuture<?> result = transformer.prepare();
+            transformer.onResponse(GetObjectResponse.builder()
+                    .metadata(metadata[0])
+                    .contentLength((long) ciphertextBytes.length)
+                    .build());
+            transformer.onStream(AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(ciphertextBytes)).map(buffer -> {
+                chunksRead.incrementAndGet();
+                return buffer;
+            }));
+            return result;
+        });
+        ExecutorService materialsExecutor = Executors.newSingleThreadExecutor();
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(slowCmm)
+                .materialsExecutor(materialsExecutor)
+                .build();
+
+        try {
+            CompletableFuture<ResponseBytes<GetObjectResponse>> result = pipeline.getObject(
+                    GetObjectRequest.builder().bucket("bucket").key("key").build(), AsyncResponseTransformer.toBytes());
+
+            assertTrue(chunksRead.get() > 0);
+            assertFalse(result.isDone());
+            releaseKey.countDown();
+            assertArrayEquals(plaintext, result.get(10, TimeUnit.SECONDS).asByteArray());
+            assertEquals(1, chunksRead.get());
+        } finally {
+            materialsExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void closedRangeOfSegmentedObjectIsFetchedWithoutHead() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        byte[] plaintext = new byte[200_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        List<GetObjectRequest> gets = storeObject(mockS3AsyncClient, cmm,
+                AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF, plaintext);
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .build();
+
+        byte[] range = pipeline.getObject(GetObjectRequest.builder().bucket("bucket").key("key")
+                .range("bytes=70000-140000").build(), AsyncResponseTransformer.toBytes()).join().asByteArray();
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 70000, 140001), range);
+        assertEquals(1, gets.size());
+        verify(mockS3AsyncClient, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void closedRangeOfOtherObjectFailsWithoutLegacyModes() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        List<GetObjectRequest> gets = storeObject(mockS3AsyncClient, cmm,
+                AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, new byte[1000]);
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .build();
+
+        CompletionException error = assertThrows(CompletionException.class, () -> pipeline.getObject(
+                GetObjectRequest.builder().bucket("bucket").key("key").range("bytes=10-20").build(),
+                AsyncResponseTransformer.toBytes()).join());
+
+        assertTrue(error.getCause() instanceof S3EncryptionClientException);
+        assertEquals(1, gets.size());
+        verify(mockS3AsyncClient, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void legacyRangeOfSegmentedObjectIsFetchedAgainBySegment() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        byte[] plaintext = new byte[200_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        List<GetObjectRequest> gets = storeObject(mockS3AsyncClient, cmm,
+                AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF, plaintext);
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .enableLegacyUnauthenticatedModes(true)
+                .build();
+
+        byte[] range = pipeline.getObject(GetObjectRequest.builder().bucket("bucket").key("key")
+                .range("bytes=70000-140000").build(), AsyncResponseTransformer.toBytes()).join().asByteArray();
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 70000, 140001), range);
+        assertEquals(2, gets.size());
+        // The segments are fetched from the same version of the object as the first response
+        assertEquals(ETAG, gets.get(1).ifMatch());
+        verify(mockS3AsyncClient, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void openRangeIsPinnedToHeadETag() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        byte[] plaintext = new byte[100_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        List<GetObjectRequest> gets = storeObject(mockS3AsyncClient, cmm,
+                AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, plaintext);
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .enableLegacyUnauthenticatedModes(true)
+                .build();
+
+        byte[] range = pipeline.getObject(GetObjectRequest.builder().bucket("bucket").key("key")
+                .range("bytes=-1000").build(), AsyncResponseTransformer.toBytes()).join().asByteArray();
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 99_000, 100_000), range);
+        assertEquals(1, gets.size());
+        assertEquals(ETAG, gets.get(0).ifMatch());
+    }
+
+    @Test
+    public void blockCacheHitRequiresDataKey() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        byte[] plaintext = new byte[200_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        List<GetObjectRequest> gets = storeObject(mockS3AsyncClient, cmm,
+                AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF, plaintext);
+        DecryptedBlockCache cache = DecryptedBlockCache.builder().maxBytes(1024 * 1024).build();
+        GetObjectRequest request = GetObjectRequest.builder().bucket("bucket").key("key")
+                .range("bytes=1000-2000").build();
+        byte[] range = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .decryptedBlockCache(cache)
+                .build()
+                .getObject(request, AsyncResponseTransformer.toBytes()).join().asByteArray();
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 1000, 2001), range);
+
+        // A client with another key shares the cache, but cannot decrypt the data key
+        GetEncryptedObjectPipeline otherPipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(aesCmm())
+                .decryptedBlockCache(cache)
+                .build();
+        assertThrows(CompletionException.class,
+                () -> otherPipeline.getObject(request, AsyncResponseTransformer.toBytes()).join());
+        assertEquals(1, cache.hits());
+        assertEquals(1, gets.size());
+    }
+
+    @Test
+    public void blockCacheHitOfLegacyRangeRequiresLegacyModes() throws Exception {
+        CryptographicMaterialsManager cmm = aesCmm();
+        byte[] plaintext = new byte[100_000];
+        new SecureRandom().nextBytes(plaintext);
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        storeObject(mockS3AsyncClient, cmm, AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, plaintext);
+        DecryptedBlockCache cache = DecryptedBlockCache.builder().maxBytes(1024 * 1024).build();
+        GetObjectRequest request = GetObjectRequest.builder().bucket("bucket").key("key")
+                .range("bytes=1000-2000").build();
+        GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .enableLegacyUnauthenticatedModes(true)
+                .decryptedBlockCache(cache)
+                .build()
+                .getObject(request, AsyncResponseTransformer.toBytes()).join();
+
+        GetEncryptedObjectPipeline pipeline = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .decryptedBlockCache(cache)
+                .build();
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> pipeline.getObject(request, AsyncResponseTransformer.toBytes()).join());
+        assertTrue(error.getMessage().contains("Enable legacy unauthenticated modes to use Ranged Get."));
+    }
+
+    private static CryptographicMaterialsManager aesCmm() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        return DefaultCryptoMaterialsManager.builder()
+                .keyring(AesKeyring.builder()
+                        .wrappingKey(keyGenerator.generateKey())
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Encrypts the plaintext and serves the ciphertext from the mock client, honoring
+     * ranges as S3 would. Returns the get requests made to the mock client.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<GetObjectRequest> storeObject(S3AsyncClient mockS3AsyncClient, CryptographicMaterialsManager cmm,
+                                                      AlgorithmSuite algorithmSuite, byte[] plaintext) {
+        final Map<String, String>[] metadata = new Map[1];
+        final ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            metadata[0] = ((PutObjectRequest) invocation.getArgument(0)).metadata();
+            AsyncRequestBody body = invocation.getArgument(1);
+            return body.subscribe(buffer -> {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                stored.write(bytes, 0, bytes.length);
+            }).thenApply(ignored -> PutObjectResponse.builder().build());
+        });
+        PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .algorithmSuite(algorithmSuite)
+                .build()
+                .putObject(PutObjectRequest.builder().bucket("bucket").key("key").build(), AsyncRequestBody.fromBytes(plaintext))
+                .join();
+
+        final byte[] ciphertext = stored.toByteArray();
+        when(mockS3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder()
+                        .metadata(metadata[0])
+                        .contentLength((long) ciphertext.length)
+                        .eTag(ETAG)
+                        .build()));
+        final List<GetObjectRequest> gets = new CopyOnWriteArrayList<>();
+        when(mockS3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            AsyncResponseTransformer<GetObjectResponse, ?> transformer = invocation.getArgument(1);
+            gets.add(request);
+            long[] range = RangedGetUtils.getRange(request.range());
+            int first = range == null ? 0 : (int) range[0];
+            int last = range == null ? ciphertext.length - 1 : (int) Math.min(range[1], ciphertext.length - 1);
+            CompletableFuture<?> result = transformer.prepare();
+            transformer.onResponse(GetObjectResponse.builder()
+                    .metadata(metadata[0])
+                    .eTag(ETAG)
+                    .contentLength((long) (last - first + 1))
+                    .contentRange(range == null ? null : "bytes " + first + "-" + last + "/" + ciphertext.length)
+                    .build());
+            transformer.onStream(AsyncRequestBody.fromBytes(Arrays.copyOfRange(ciphertext, first, last + 1)));
+            return result;
+        });
+        return gets;
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HkdfKeyDerivationTest {
+
+    @Test
+    public void matchesRfc5869TestCase1() {
+        byte[] ikm = new byte[22];
+        Arrays.fill(ikm, (byte) 0x0b);
+        byte[] salt = hex("000102030405060708090a0b0c");
+        byte[] info = hex("f0f1f2f3f4f5f6f7f8f9");
+
+        byte[] okm = HkdfKeyDerivation.hkdf("HmacSHA256", null, ikm, salt, info, 42);
+
+        assertArrayEquals(hex("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf"
+                + "34007208d5b887185865"), okm);
+    }
+
+    @Test
+    public void derivesDistinctKeysPerSalt() {
+        AlgorithmSuite algorithmSuite = AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256;
+        byte[] dataKey = new byte[32];
+        byte[] salt = new byte[HkdfKeyDerivation.SALT_LENGTH_BYTES];
+
+        byte[] first = HkdfKeyDerivation.deriveContentKey(algorithmSuite, dataKey, salt, null);
+        salt[0] = 1;
+        byte[] second = HkdfKeyDerivation.deriveContentKey(algorithmSuite, dataKey, salt, null);
+
+        assertEquals(32, first.length);
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    public void rejectsNonKdfSuiteAndShortSalt() {
+        assertThrows(S3EncryptionClientException.class, () -> HkdfKeyDerivation.deriveContentKey(
+                AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, new byte[32],
+                new byte[HkdfKeyDerivation.SALT_LENGTH_BYTES], null));
+        assertThrows(S3EncryptionClientException.class, () -> HkdfKeyDerivation.deriveContentKey(
+                AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256, new byte[32], new byte[16], null));
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,261 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
+import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
+
+import javax.crypto.KeyGenerator;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultipartUploadObjectPipelineTest {
+
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
+    private CryptographicMaterialsManager cmm;
+    private S3AsyncClient mockS3AsyncClient;
+    private MultipartUploadObjectPipeline pipeline;
+    private Map<Integer, byte[]> uploadedParts;
+    private Map<String, String>[] metadata;
+    private Path file;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        cmm = DefaultCryptoMaterialsManager.builder()
+                .keyring(AesKeyring.builder()
+                        .wrappingKey(keyGenerator.generateKey())
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .build();
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        uploadedParts = new ConcurrentSkipListMap<>();
+        metadata = new Map[1];
+        when(mockS3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenAnswer(invocation -> {
+            metadata[0] = ((CreateMultipartUploadRequest) invocation.getArgument(0)).metadata();
+            return CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        });
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            AsyncRequestBody body = invocation.getArgument(1);
+            ByteArrayOutputStream part = new ByteArrayOutputStream();
+            return body.subscribe(buffer -> {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                part.write(bytes, 0, bytes.length);
+            }).thenApply(ignored -> {
+                assertEquals(request.contentLength().longValue(), part.size());
+                uploadedParts.put(request.partNumber(), part.toByteArray());
+                return UploadPartResponse.builder().eTag("part-" + request.partNumber()).build();
+            });
+        });
+        when(mockS3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("complete").build()));
+        when(mockS3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        pipeline = MultipartUploadObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .secureRandom(new SecureRandom())
+                .build();
+        file = Files.createTempFile("upload-file", ".tmp");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void uploadFileEncryptsFileIntoParts() throws Exception {
+        byte[] plaintext = new byte[(int) (2 * PART_SIZE + 1000)];
+        new SecureRandom().nextBytes(plaintext);
+        Files.write(file, plaintext);
+
+        CompleteMultipartUploadResponse response = pipeline.uploadFile(request(), file, PART_SIZE, 2, Runnable::run).join();
+
+        assertEquals("complete", response.eTag());
+        assertEquals(Arrays.asList(1, 2, 3), uploadedParts.keySet().stream().collect(Collectors.toList()));
+        verify(mockS3AsyncClient).completeMultipartUpload(argThat((CompleteMultipartUploadRequest request) ->
+                request.multipartUpload().parts().stream().map(CompletedPart::eTag).collect(Collectors.toList())
+                        .equals(Arrays.asList("part-1", "part-2", "part-3"))));
+
+        // The parts together are the ciphertext of the file
+        ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+        for (byte[] part : uploadedParts.values()) {
+            ciphertext.write(part, 0, part.length);
+        }
+        assertArrayEquals(plaintext, decrypt(ciphertext.toByteArray()));
+    }
+
+    @Test
+    public void uploadFileBoundsPartsInFlight() throws Exception {
+        Files.write(file, new byte[(int) (4 * PART_SIZE)]);
+        final AtomicInteger partsStarted = new AtomicInteger();
+        final CountDownLatch firstParts = new CountDownLatch(2);
+        final CompletableFuture<Void> releaseParts = new CompletableFuture<>();
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            partsStarted.incrementAndGet();
+            firstParts.countDown();
+            return releaseParts.thenApply(ignored -> UploadPartResponse.builder()
+                    .eTag("part-" + request.partNumber())
+                    .build());
+        });
+
+        CompletableFuture<CompleteMultipartUploadResponse> result = pipeline.uploadFile(request(), file, PART_SIZE, 2,
+                runnable -> new Thread(runnable).start());
+        assertTrue(firstParts.await(10, TimeUnit.SECONDS));
+        // No third part may start until one of the first two has been uploaded
+        Thread.sleep(200);
+        assertEquals(2, partsStarted.get());
+        assertFalse(result.isDone());
+
+        releaseParts.complete(null);
+        assertEquals("complete", result.get(10, TimeUnit.SECONDS).eTag());
+        assertEquals(4, partsStarted.get());
+    }
+
+    @Test
+    public void failedPartAbortsUpload() throws Exception {
+        Files.write(file, new byte[(int) (2 * PART_SIZE)]);
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            CompletableFuture<UploadPartResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("connection reset"));
+            return failed;
+        });
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> pipeline.uploadFile(request(), file, PART_SIZE, 2, Runnable::run).join());
+
+        assertTrue(error.getMessage().contains("connection reset"));
+        verify(mockS3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void otherAlgorithmSuitesAreRejected() throws Exception {
+        Files.write(file, new byte[(int) (2 * PART_SIZE)]);
+        MultipartUploadObjectPipeline hkdfPipeline = MultipartUploadObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .secureRandom(new SecureRandom())
+                .algorithmSuite(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256)
+                .build();
+
+        assertThrows(S3EncryptionClientException.class, () -> hkdfPipeline.createMultipartUpload(
+                CreateMultipartUploadRequest.builder().bucket("bucket").key("key").build()));
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> hkdfPipeline.uploadFile(request(), file, PART_SIZE, 2, Runnable::run).join());
+
+        assertTrue(error.getCause() instanceof S3EncryptionClientException);
+        verify(mockS3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void invalidPartsFailTheFuture() {
+        pipeline.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket("bucket").key("key").build());
+        UploadPartRequest.Builder part = UploadPartRequest.builder().bucket("bucket").key("key").partNumber(1);
+
+        // None of these may throw; each fails the returned future instead
+        CompletableFuture<UploadPartResponse> mismatchedLength = pipeline.uploadPartAsync(
+                part.uploadId("upload").contentLength(32L).build(), AsyncRequestBody.fromBytes(new byte[16]));
+        CompletableFuture<UploadPartResponse> invalidSize = pipeline.uploadPartAsync(
+                part.uploadId("upload").contentLength(15L).build(), AsyncRequestBody.fromBytes(new byte[15]));
+        CompletableFuture<UploadPartResponse> unknownUpload = pipeline.uploadPartAsync(
+                part.uploadId("unknown").contentLength(16L).build(), AsyncRequestBody.fromBytes(new byte[16]));
+
+        for (CompletableFuture<UploadPartResponse> response : Arrays.asList(mismatchedLength, invalidSize, unknownUpload)) {
+            CompletionException error = assertThrows(CompletionException.class, response::join);
+            assertTrue(error.getCause() instanceof S3EncryptionClientException);
+        }
+        verify(mockS3AsyncClient, never()).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void completeWithoutLastPartFailsTheFuture() {
+        pipeline.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket("bucket").key("key").build());
+
+        CompletableFuture<CompleteMultipartUploadResponse> response = pipeline.completeMultipartUploadAsync(
+                CompleteMultipartUploadRequest.builder().bucket("bucket").key("key").uploadId("upload").build());
+
+        CompletionException error = assertThrows(CompletionException.class, response::join);
+        assertTrue(error.getCause() instanceof S3EncryptionClientException);
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private static PutObjectRequest request() {
+        return PutObjectRequest.builder().bucket("bucket").key("key").build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] decrypt(byte[] ciphertext) {
+        when(mockS3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            AsyncResponseTransformer<GetObjectResponse, ?> transformer = invocation.getArgument(1);
+            CompletableFuture<?> result = transformer.prepare();
+            transformer.onResponse(GetObjectResponse.builder()
+                    .metadata(metadata[0])
+                    .contentLength((long) ciphertext.length)
+                    .build());
+            transformer.onStream(AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(ciphertext)));
+            return result;
+        });
+        ResponseBytes<GetObjectResponse> plaintext = GetEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(cmm)
+                .build()
+                .getObject(GetObjectRequest.builder().bucket("bucket").key("key").build(), AsyncResponseTransformer.toBytes())
+                .join();
+        return plaintext.asByteArray();
+    }
+}
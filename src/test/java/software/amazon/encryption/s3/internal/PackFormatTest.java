@@ -0,0 +1,69 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.internal.PackFormat.Entry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PackFormatTest {
+
+    @Test
+    public void indexLocatesEachRecord() {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        records.put("first", "FirstRecord".getBytes(StandardCharsets.UTF_8));
+        records.put("empty", new byte[0]);
+        records.put("third", "ThirdRecord".getBytes(StandardCharsets.UTF_8));
+
+        byte[] pack = PackFormat.encode(records);
+        ByteBuffer buffer = ByteBuffer.wrap(pack);
+        Map<String, Entry> index = PackFormat.decodeIndex(buffer);
+
+        assertEquals(Arrays.asList("first", "empty", "third"), Arrays.asList(index.keySet().toArray()));
+        for (Map.Entry<String, byte[]> record : records.entrySet()) {
+            Entry entry = index.get(record.getKey());
+            byte[] actual = Arrays.copyOfRange(pack, (int) entry.offset(), (int) entry.offset() + entry.length());
+            assertArrayEquals(record.getValue(), actual);
+        }
+        assertEquals(PackFormat.indexEnd(buffer), index.get("first").offset());
+    }
+
+    @Test
+    public void rejectsObjectWhichIsNotAPack() {
+        ByteBuffer notAPack = ByteBuffer.wrap("NotAPackAtAll".getBytes(StandardCharsets.UTF_8));
+        assertThrows(S3EncryptionClientException.class, () -> PackFormat.indexEnd(notAPack));
+    }
+
+    @Test
+    public void rejectsTruncatedIndex() {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        records.put("record", new byte[10]);
+        byte[] pack = PackFormat.encode(records);
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(pack, PackFormat.HEADER_LENGTH + 6));
+        assertThrows(S3EncryptionClientException.class, () -> PackFormat.decodeIndex(truncated));
+    }
+
+    @Test
+    public void coalescesNearbyEntries() {
+        Entry a = new Entry(100, 10);
+        Entry b = new Entry(115, 10);
+        Entry c = new Entry(1000, 10);
+
+        List<List<Entry>> ranges = PackFormat.coalesce(Arrays.asList(c, a, b), 100);
+
+        assertEquals(2, ranges.size());
+        assertEquals(Arrays.asList(a, b), ranges.get(0));
+        assertEquals(Arrays.asList(c), ranges.get(1));
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.S3EncryptionClientSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ParallelCbcCipherSubscriberTest {
+
+    private static final int CHUNK_SIZE = ParallelCbcCipherSubscriber.CHUNK_SIZE;
+    private static final int BUFFER_SIZE = 8 * 1024 + 3;
+
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey key;
+    private byte[] iv;
+
+    @BeforeEach
+    public void setUp() {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        iv = new byte[16];
+        random.nextBytes(iv);
+    }
+
+    @Test
+    public void matchesSerialDecryption() throws GeneralSecurityException {
+        for (int length : new int[]{0, 15, 16, 4 * CHUNK_SIZE, 4 * CHUNK_SIZE - 16, 9 * CHUNK_SIZE + 37}) {
+            byte[] plaintext = new byte[length];
+            random.nextBytes(plaintext);
+            byte[] ciphertext = encrypt(plaintext);
+
+            assertArrayEquals(plaintext, decrypt(ciphertext, 4, null), "length " + length);
+        }
+    }
+
+    @Test
+    public void passesOnOneBufferForEachBufferReceived() throws GeneralSecurityException {
+        byte[] plaintext = new byte[3 * CHUNK_SIZE + 100];
+        random.nextBytes(plaintext);
+        byte[] ciphertext = encrypt(plaintext);
+        AtomicInteger buffers = new AtomicInteger();
+
+        assertArrayEquals(plaintext, decrypt(ciphertext, 2, buffers));
+        // One more for the final blocks decrypted on completion
+        assertEquals((ciphertext.length + BUFFER_SIZE - 1) / BUFFER_SIZE + 1, buffers.get());
+    }
+
+    @Test
+    public void badPaddingFails() throws GeneralSecurityException {
+        byte[] ciphertext = encrypt(new byte[2 * CHUNK_SIZE]);
+        ciphertext[ciphertext.length - 1] ^= 1;
+
+        assertThrows(CompletionException.class, () -> decrypt(ciphertext, 2, null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedBatchCancelsUpstream() {
+        Subscriber<ByteBuffer> wrappedSubscriber = mock(Subscriber.class);
+        Subscription subscription = mock(Subscription.class);
+        // Too short for AES, so the first batch fails to decrypt
+        SecretKey invalidKey = new SecretKeySpec(new byte[7], "AES");
+        ParallelCbcCipherSubscriber subscriber = new ParallelCbcCipherSubscriber(wrappedSubscriber, null, invalidKey,
+                null, iv, 2, Runnable::run);
+
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(ByteBuffer.allocate(3 * CHUNK_SIZE));
+
+        verify(subscription).cancel();
+        verify(wrappedSubscriber).onError(any(S3EncryptionClientSecurityException.class));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+        return cipher.doFinal(plaintext);
+    }
+
+    private byte[] decrypt(byte[] ciphertext, int parallelism, AtomicInteger buffers) {
+        SdkPublisher<ByteBuffer> ciphertextPublisher = AsyncRequestBody.fromBytes(ciphertext).flatMapIterable(buffer -> {
+            List<ByteBuffer> pieces = new ArrayList<>();
+            while (buffer.hasRemaining()) {
+                ByteBuffer piece = buffer.slice();
+                piece.limit(Math.min(BUFFER_SIZE, buffer.remaining()));
+                buffer.position(buffer.position() + piece.remaining());
+                pieces.add(piece);
+            }
+            return pieces;
+        });
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ParallelCbcCipherPublisher(ciphertextPublisher, (long) ciphertext.length, key, null, iv, parallelism,
+                ForkJoinPool.commonPool())
+                .subscribe(buffer -> {
+                    if (buffers != null) {
+                        buffers.incrementAndGet();
+                    }
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    output.write(bytes, 0, bytes.length);
+                }).join();
+        return output.toByteArray();
+    }
+}
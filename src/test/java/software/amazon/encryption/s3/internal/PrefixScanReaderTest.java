@@ -0,0 +1,129 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PrefixScanReaderTest {
+
+    private S3AsyncClient mockS3AsyncClient;
+    private GetEncryptedObjectPipeline mockPipeline;
+    private List<CompletableFuture<ResponseBytes<GetObjectResponse>>> gets;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            if (request.continuationToken() == null) {
+                return CompletableFuture.completedFuture(page(true, "next",
+                        object("scan/a", 10), object("scan/a.instruction", 1), object("scan/dir/", 0), object("scan/b", 10)));
+            }
+            return CompletableFuture.completedFuture(page(false, null, object("scan/c", 10), object("scan/d", 10)));
+        });
+        mockPipeline = mock(GetEncryptedObjectPipeline.class);
+        gets = new ArrayList<>();
+        when(mockPipeline.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            CompletableFuture<ResponseBytes<GetObjectResponse>> future = CompletableFuture.completedFuture(
+                    ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+                            request.key().getBytes(StandardCharsets.UTF_8)));
+            gets.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    public void readsObjectsAcrossPagesInOrder() {
+        PrefixScanReader reader = new PrefixScanReader(mockS3AsyncClient, mockPipeline, "bucket", "scan/", 2, 1000);
+        List<String> keys = new ArrayList<>();
+        while (reader.hasNext()) {
+            PrefixScanReader.ScannedObject object = reader.next();
+            assertEquals(object.key(), object.object().asUtf8String());
+            keys.add(object.key());
+        }
+        reader.close();
+
+        assertEquals(Arrays.asList("scan/a", "scan/b", "scan/c", "scan/d"), keys);
+        verify(mockS3AsyncClient, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void prefetchIsBoundedByObjectsAndBytes() {
+        PrefixScanReader byObjects = new PrefixScanReader(mockS3AsyncClient, mockPipeline, "bucket", "scan/", 3, 1000);
+        assertTrue(byObjects.hasNext());
+        verify(mockPipeline, times(3)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        byObjects.close();
+
+        gets.clear();
+        // Each object is 10 bytes, so only two fit in 25 bytes
+        PrefixScanReader byBytes = new PrefixScanReader(mockS3AsyncClient, mockPipeline, "bucket", "scan/", 8, 25);
+        assertTrue(byBytes.hasNext());
+        assertEquals(2, gets.size());
+        byBytes.next();
+        assertEquals(3, gets.size());
+        byBytes.close();
+        assertFalse(byBytes.hasNext());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedObjectDoesNotEndScan() {
+        when(mockPipeline.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            if (request.key().equals("scan/b")) {
+                CompletableFuture<ResponseBytes<GetObjectResponse>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new S3EncryptionClientException("Unable to decrypt"));
+                return failed;
+            }
+            return CompletableFuture.completedFuture(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+                    request.key().getBytes(StandardCharsets.UTF_8)));
+        });
+        PrefixScanReader reader = new PrefixScanReader(mockS3AsyncClient, mockPipeline, "bucket", "scan/", 2, 1000);
+
+        assertEquals("scan/a", reader.next().key());
+        assertThrows(S3EncryptionClientException.class, reader::next);
+        assertEquals("scan/c", reader.next().key());
+        reader.close();
+    }
+
+    private static ListObjectsV2Response page(boolean truncated, String nextToken, S3Object... objects) {
+        return ListObjectsV2Response.builder()
+                .isTruncated(truncated)
+                .nextContinuationToken(nextToken)
+                .contents(objects)
+                .build();
+    }
+
+    private static S3Object object(String key, long size) {
+        return S3Object.builder().key(key).size(size).build();
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
+import software.amazon.encryption.s3.materials.DecryptMaterialsRequest;
+import software.amazon.encryption.s3.materials.DecryptionMaterials;
+import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+import software.amazon.encryption.s3.materials.EncryptionMaterialsRequest;
+
+import javax.crypto.KeyGenerator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PutEncryptedObjectPipelineTest {
+
+    @Test
+    public void putObjectsBoundsConcurrencyAndKeepsOrder() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger bodiesCreated = new AtomicInteger();
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            // Complete later, as a network upload would
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                return PutObjectResponse.builder().eTag(request.key()).build();
+            });
+        });
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(DefaultCryptoMaterialsManager.builder()
+                        .keyring(AesKeyring.builder()
+                                .wrappingKey(keyGenerator.generateKey())
+                                .secureRandom(new SecureRandom())
+                                .build())
+                        .build())
+                .build();
+
+        List<PutObjectRequest> requests = new ArrayList<>();
+        List<Supplier<AsyncRequestBody>> bodies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(PutObjectRequest.builder().bucket("TestBucket").key("object-" + i).build());
+            final String content = "content-" + i;
+            bodies.add(() -> {
+                bodiesCreated.incrementAndGet();
+                return AsyncRequestBody.fromString(content, StandardCharsets.UTF_8);
+            });
+        }
+
+        List<PutObjectResponse> responses = pipeline.putObjects(requests, bodies, 4).join();
+
+        assertEquals(20, bodiesCreated.get());
+        assertTrue(maxInFlight.get() <= 4);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("object-" + i, responses.get(i).eTag());
+        }
+    }
+
+    @Test
+    public void putObjectsStreamsContentOfUnknownLength() throws Exception {
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            AsyncRequestBody body = invocation.getArgument(1);
+            return body.subscribe(buffer -> { }).thenApply(ignored -> PutObjectResponse.builder().eTag("known").build());
+        });
+        StreamingPutObjectPipeline streamingPipeline = mock(StreamingPutObjectPipeline.class);
+        when(streamingPipeline.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(
+                CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("streamed").build()));
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(DefaultCryptoMaterialsManager.builder()
+                        .keyring(AesKeyring.builder()
+                                .wrappingKey(keyGenerator.generateKey())
+                                .secureRandom(new SecureRandom())
+                                .build())
+                        .build())
+                .build();
+
+        List<PutObjectRequest> requests = Arrays.asList(
+                PutObjectRequest.builder().bucket("TestBucket").key("known").build(),
+                PutObjectRequest.builder().bucket("TestBucket").key("unknown").build());
+        List<Supplier<AsyncRequestBody>> bodies = Arrays.asList(
+                () -> AsyncRequestBody.fromString("known", StandardCharsets.UTF_8),
+                () -> AsyncRequestBody.fromPublisher(AsyncRequestBody.fromString("unknown", StandardCharsets.UTF_8)));
+
+        List<PutObjectResponse> responses = pipeline.putObjects(requests, bodies, 2, streamingPipeline).join();
+
+        assertEquals("known", responses.get(0).eTag());
+        assertEquals("streamed", responses.get(1).eTag());
+        verify(streamingPipeline).putObject(argThat((PutObjectRequest request) -> request.key().equals("unknown")),
+                any(AsyncRequestBody.class));
+        verify(mockS3AsyncClient).putObject(argThat((PutObjectRequest request) -> request.key().equals("known")),
+                any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void readsBodyWhileMaterialsAreObtained() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        CryptographicMaterialsManager cmm = DefaultCryptoMaterialsManager.builder()
+                .keyring(AesKeyring.builder()
+                        .wrappingKey(keyGenerator.generateKey())
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .build();
+        // Hold the materials back until the body has been read
+        final CountDownLatch releaseMaterials = new CountDownLatch(1);
+        CryptographicMaterialsManager slowCmm = new CryptographicMaterialsManager() {
+            @Override
+            public EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request) {
+                try {
+                    releaseMaterials.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return cmm.getEncryptionMaterials(request);
+            }
+
+            @Override
+            public DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request) {
+                return cmm.decryptMaterials(request);
+            }
+        };
+        S3AsyncClient mockS3AsyncClient = mock(S3AsyncClient.class);
+        final AtomicLong uploaded = new AtomicLong();
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            AsyncRequestBody body = invocation.getArgument(1);
+            return body.subscribe(buffer -> uploaded.addAndGet(buffer.remaining()))
+                    .thenApply(ignored -> PutObjectResponse.builder().build());
+        });
+        ExecutorService materialsExecutor = Executors.newSingleThreadExecutor();
+        PutEncryptedObjectPipeline pipeline = PutEncryptedObjectPipeline.builder()
+                .s3AsyncClient(mockS3AsyncClient)
+                .cryptoMaterialsManager(slowCmm)
+                .materialsExecutor(materialsExecutor)
+                .build();
+
+        final AtomicInteger chunksRead = new AtomicInteger();
+        AsyncRequestBody body = AsyncRequestBody.fromBytes(new byte[1000]);
+        AsyncRequestBody countingBody = new AsyncRequestBody() {
+            @Override
+            public Optional<Long> contentLength() {
+                return body.contentLength();
+            }
+
+            @Override
+            public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+                body.map(buffer -> {
+                    chunksRead.incrementAndGet();
+                    return buffer;
+                }).subscribe(subscriber);
+            }
+        };
+
+        try {
+            CompletableFuture<PutObjectResponse> response = pipeline.putObject(
+                    PutObjectRequest.builder().bucket("TestBucket").key("object").build(), countingBody);
+
+            assertEquals(1, chunksRead.get());
+            assertFalse(response.isDone());
+            releaseMaterials.countDown();
+            response.get(10, TimeUnit.SECONDS);
+            // The plaintext and the GCM tag
+            assertEquals(1016, uploaded.get());
+        } finally {
+            materialsExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.SdkPublisher;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReadAheadPublisherTest {
+
+    @Test
+    public void buffersUpToLimitBeforeSubscriberArrives() {
+        ChunkPublisher upstream = new ChunkPublisher(10, 10, null);
+        ReadAheadPublisher readAhead = new ReadAheadPublisher(upstream, 35);
+
+        // Four 10-byte chunks are read, since the buffer was below 35 bytes before the fourth
+        assertEquals(4, upstream.emitted);
+
+        byte[] content = collect(readAhead).join();
+
+        assertEquals(10, upstream.emitted);
+        assertArrayEquals(upstream.expected(), content);
+    }
+
+    @Test
+    public void forwardsErrorAfterBufferedChunks() {
+        ChunkPublisher upstream = new ChunkPublisher(3, 10, new IllegalStateException("connection reset"));
+        ReadAheadPublisher readAhead = new ReadAheadPublisher(upstream, 1024);
+
+        CompletionException error = assertThrows(CompletionException.class, () -> collect(readAhead).join());
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    @Test
+    public void cancelStopsReadingAhead() {
+        ChunkPublisher upstream = new ChunkPublisher(10, 10, null);
+        ReadAheadPublisher readAhead = new ReadAheadPublisher(upstream, 15);
+        assertEquals(2, upstream.emitted);
+
+        readAhead.cancel();
+
+        assertTrue(upstream.cancelled);
+        assertEquals(2, upstream.emitted);
+    }
+
+    private static CompletableFuture<byte[]> collect(SdkPublisher<ByteBuffer> publisher) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        publisher.subscribe(new Subscriber<ByteBuffer>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                byte[] bytes = new byte[byteBuffer.remaining()];
+                byteBuffer.get(bytes);
+                output.write(bytes, 0, bytes.length);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(output.toByteArray());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Emits numbered chunks synchronously as they are requested.
+     */
+    private static final class ChunkPublisher implements SdkPublisher<ByteBuffer> {
+        private final int chunks;
+        private final int chunkSize;
+        private final Throwable error;
+        private int emitted;
+        private boolean cancelled;
+
+        ChunkPublisher(int chunks, int chunkSize, Throwable error) {
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.error = error;
+        }
+
+        byte[] expected() {
+            byte[] bytes = new byte[chunks * chunkSize];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (i / chunkSize);
+            }
+            return bytes;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && !cancelled; i++) {
+                        if (emitted == chunks) {
+                            cancelled = true;
+                            if (error != null) {
+                                subscriber.onError(error);
+                            } else {
+                                subscriber.onComplete();
+                            }
+                            return;
+                        }
+                        byte[] chunk = new byte[chunkSize];
+                        Arrays.fill(chunk, (byte) emitted);
+                        emitted++;
+                        subscriber.onNext(ByteBuffer.wrap(chunk));
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+import software.amazon.encryption.s3.materials.DecryptionMaterials;
+import software.amazon.encryption.s3.materials.EncryptionMaterials;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SegmentedCipherSubscriberTest {
+
+    private static final AlgorithmSuite SUITE = AlgorithmSuite.ALG_AES_256_GCM_SEGMENTED_IV12_TAG16_NO_KDF;
+    private static final int SEGMENT_LENGTH = SUITE.cipherSegmentLengthBytes();
+    private static final int CIPHERTEXT_SEGMENT_LENGTH = SEGMENT_LENGTH + SUITE.cipherTagLengthBytes();
+
+    private final SecureRandom random = new SecureRandom();
+    private byte[] dataKey;
+    private byte[] iv;
+
+    @BeforeEach
+    public void setUp() {
+        dataKey = new byte[32];
+        random.nextBytes(dataKey);
+        iv = new byte[12];
+        random.nextBytes(iv);
+    }
+
+    @Test
+    public void roundTripsAcrossSegmentBoundaries() {
+        for (int length : new int[]{0, 1, SEGMENT_LENGTH, SEGMENT_LENGTH + 1, 3 * SEGMENT_LENGTH - 1}) {
+            byte[] plaintext = randomBytes(length);
+            byte[] ciphertext = encrypt(plaintext);
+
+            assertEquals(SUITE.ciphertextLength(length), ciphertext.length);
+            assertArrayEquals(plaintext, decrypt(ciphertext, 0, ciphertext.length, ciphertext.length, 0, -1));
+        }
+    }
+
+    @Test
+    public void decryptsRangeOfSegments() {
+        byte[] plaintext = randomBytes(4 * SEGMENT_LENGTH + 100);
+        byte[] ciphertext = encrypt(plaintext);
+
+        // Plaintext range [SEGMENT_LENGTH + 10, 3 * SEGMENT_LENGTH + 5] lies within segments 1 to 3
+        byte[] segments = Arrays.copyOfRange(ciphertext, CIPHERTEXT_SEGMENT_LENGTH, 4 * CIPHERTEXT_SEGMENT_LENGTH);
+        byte[] range = decrypt(segments, 1, 4 * CIPHERTEXT_SEGMENT_LENGTH, ciphertext.length, 10, 2 * SEGMENT_LENGTH - 4);
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, SEGMENT_LENGTH + 10, 3 * SEGMENT_LENGTH + 6), range);
+    }
+
+    @Test
+    public void decryptsFinalSegmentRange() {
+        byte[] plaintext = randomBytes(2 * SEGMENT_LENGTH + 100);
+        byte[] ciphertext = encrypt(plaintext);
+
+        byte[] lastSegment = Arrays.copyOfRange(ciphertext, 2 * CIPHERTEXT_SEGMENT_LENGTH, ciphertext.length);
+        byte[] range = decrypt(lastSegment, 2, ciphertext.length, ciphertext.length, 0, -1);
+
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 2 * SEGMENT_LENGTH, plaintext.length), range);
+    }
+
+    @Test
+    public void tamperedSegmentFails() {
+        byte[] ciphertext = encrypt(randomBytes(2 * SEGMENT_LENGTH));
+        ciphertext[SEGMENT_LENGTH + 20] ^= 1;
+
+        assertThrows(CompletionException.class, () -> decrypt(ciphertext, 0, ciphertext.length, ciphertext.length, 0, -1));
+    }
+
+    @Test
+    public void truncatedContentFails() {
+        byte[] ciphertext = encrypt(randomBytes(2 * SEGMENT_LENGTH + 100));
+        // Drop the final segment and present the remainder as the whole object
+        byte[] truncated = Arrays.copyOf(ciphertext, 2 * CIPHERTEXT_SEGMENT_LENGTH);
+
+        assertThrows(CompletionException.class, () -> decrypt(truncated, 0, truncated.length, truncated.length, 0, -1));
+    }
+
+    @Test
+    public void truncatedRangeFails() {
+        byte[] ciphertext = encrypt(randomBytes(4 * SEGMENT_LENGTH));
+        byte[] segments = Arrays.copyOfRange(ciphertext, CIPHERTEXT_SEGMENT_LENGTH, 3 * CIPHERTEXT_SEGMENT_LENGTH - 5);
+
+        assertThrows(CompletionException.class,
+                () -> decrypt(segments, 1, 3 * CIPHERTEXT_SEGMENT_LENGTH, ciphertext.length, 0, -1));
+    }
+
+    @Test
+    public void reorderedSegmentsFail() {
+        byte[] ciphertext = encrypt(randomBytes(3 * SEGMENT_LENGTH));
+        byte[] reordered = ciphertext.clone();
+        System.arraycopy(ciphertext, 0, reordered, CIPHERTEXT_SEGMENT_LENGTH, CIPHERTEXT_SEGMENT_LENGTH);
+        System.arraycopy(ciphertext, CIPHERTEXT_SEGMENT_LENGTH, reordered, 0, CIPHERTEXT_SEGMENT_LENGTH);
+
+        assertThrows(CompletionException.class, () -> decrypt(reordered, 0, reordered.length, reordered.length, 0, -1));
+    }
+
+    private byte[] encrypt(byte[] plaintext) {
+        EncryptionMaterials materials = EncryptionMaterials.builder()
+                .algorithmSuite(SUITE)
+                .plaintextDataKey(dataKey)
+                .plaintextLength(plaintext.length)
+                .build();
+        return collect(new SegmentedCipherAsyncRequestBody(AsyncRequestBody.fromBytes(plaintext), materials, iv));
+    }
+
+    private byte[] decrypt(byte[] ciphertext, long firstSegment, long ciphertextEnd, long totalCiphertextLength,
+                           long skip, long length) {
+        DecryptionMaterials materials = DecryptionMaterials.builder()
+                .algorithmSuite(SUITE)
+                .plaintextDataKey(dataKey)
+                .build();
+        return collect(new SegmentedCipherPublisher(AsyncRequestBody.fromBytes(ciphertext), materials, iv,
+                firstSegment, ciphertextEnd, totalCiphertextLength, skip, length));
+    }
+
+    private static byte[] collect(SdkPublisher<ByteBuffer> publisher) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        publisher.subscribe(byteBuffer -> {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.get(bytes);
+            output.write(bytes, 0, bytes.length);
+        }).join();
+        return output.toByteArray();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
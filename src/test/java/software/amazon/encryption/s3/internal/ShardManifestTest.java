@@ -0,0 +1,44 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.internal.ShardManifest.Shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardManifestTest {
+
+    @Test
+    public void roundTrips() {
+        ShardManifest manifest = new ShardManifest(Arrays.asList(
+                new Shard("key.shards/id/0", 5_000_000_000L, "\"etag-0\""),
+                new Shard("key.shards/id/1", 17, "\"etag-1\"")));
+
+        ShardManifest decoded = ShardManifest.fromBytes(manifest.toBytes());
+
+        assertEquals(5_000_000_017L, decoded.length());
+        assertEquals(2, decoded.shards().size());
+        assertEquals("key.shards/id/1", decoded.shards().get(1).key());
+        assertEquals(5_000_000_000L, decoded.shards().get(0).length());
+        assertEquals("\"etag-1\"", decoded.shards().get(1).eTag());
+    }
+
+    @Test
+    public void rejectsInconsistentLength() {
+        byte[] manifest = "{\"length\":10,\"shards\":[{\"key\":\"k\",\"length\":9,\"etag\":\"e\"}]}"
+                .getBytes(StandardCharsets.UTF_8);
+        assertThrows(S3EncryptionClientException.class, () -> ShardManifest.fromBytes(manifest));
+    }
+
+    @Test
+    public void rejectsMalformedManifest() {
+        byte[] manifest = "{\"length\":10}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(S3EncryptionClientException.class, () -> ShardManifest.fromBytes(manifest));
+    }
+}
@@ -0,0 +1,226 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectLockLegalHoldStatus;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.RequestPayer;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ShardedObjectPipelineTest {
+
+    // Stands in for the bucket: key to plaintext and user metadata
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> metadata = new ConcurrentHashMap<>();
+    private PutEncryptedObjectPipeline putPipeline;
+    private GetEncryptedObjectPipeline getPipeline;
+    private DeleteEncryptedObjectsPipeline deletePipeline;
+    private ShardedObjectPipeline pipeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        putPipeline = mock(PutEncryptedObjectPipeline.class);
+        when(putPipeline.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            AsyncRequestBody body = invocation.getArgument(1);
+            return collect(body).thenApply(bytes -> {
+                assertEquals(request.contentLength().longValue(), bytes.length);
+                objects.put(request.key(), bytes);
+                metadata.put(request.key(), request.metadata());
+                return PutObjectResponse.builder().eTag("etag-" + request.key()).build();
+            });
+        });
+        getPipeline = mock(GetEncryptedObjectPipeline.class);
+        when(getPipeline.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            AsyncResponseTransformer<GetObjectResponse, Object> transformer = invocation.getArgument(1);
+            CompletableFuture<Object> result = transformer.prepare();
+            if (request.ifMatch() != null && !request.ifMatch().equals("etag-" + request.key())) {
+                transformer.exceptionOccurred(new S3EncryptionClientException("Precondition failed"));
+                return result;
+            }
+            transformer.onResponse(GetObjectResponse.builder().metadata(metadata.get(request.key())).build());
+            transformer.onStream(AsyncRequestBody.fromBytes(objects.get(request.key())));
+            return result;
+        });
+        deletePipeline = mock(DeleteEncryptedObjectsPipeline.class);
+        when(deletePipeline.deleteObjects(any(DeleteObjectsRequest.class))).thenAnswer(invocation -> {
+            DeleteObjectsRequest request = invocation.getArgument(0);
+            request.delete().objects().forEach(object -> objects.remove(object.key()));
+            return CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build());
+        });
+        pipeline = ShardedObjectPipeline.builder()
+                .putObjectPipeline(putPipeline)
+                .getObjectPipeline(getPipeline)
+                .deleteObjectsPipeline(deletePipeline)
+                .shardSize(10)
+                .maxConcurrency(2)
+                .build();
+    }
+
+    @Test
+    public void roundTripsAcrossShards() throws Exception {
+        byte[] content = new byte[95];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        pipeline.putShardedObject(PutObjectRequest.builder().bucket("TestBucket").key("TestKey").build(),
+                new ByteArrayInputStream(content)).join();
+
+        // Ten shards plus the manifest
+        assertEquals(11, objects.size());
+        assertEquals(ShardManifest.VERSION, metadata.get("TestKey").get(MetadataKeyConstants.SHARD_MANIFEST_VERSION));
+        for (String key : objects.keySet()) {
+            assertTrue(key.equals("TestKey") || key.startsWith("TestKey" + ShardedObjectPipeline.SHARD_KEY_INFIX));
+        }
+
+        Path destination = Files.createTempFile("sharded", ".bin");
+        try {
+            pipeline.getShardedObject(GetObjectRequest.builder().bucket("TestBucket").key("TestKey").build(),
+                    destination).join();
+            assertArrayEquals(content, Files.readAllBytes(destination));
+        } finally {
+            Files.deleteIfExists(destination);
+        }
+    }
+
+    @Test
+    public void roundTripsEmptyContent() throws Exception {
+        pipeline.putShardedObject(PutObjectRequest.builder().bucket("TestBucket").key("TestKey").build(),
+                new ByteArrayInputStream(new byte[0])).join();
+
+        assertEquals(1, objects.size());
+        Path destination = Files.createTempFile("sharded", ".bin");
+        try {
+            pipeline.getShardedObject(GetObjectRequest.builder().bucket("TestBucket").key("TestKey").build(),
+                    destination).join();
+            assertEquals(0, Files.size(destination));
+        } finally {
+            Files.deleteIfExists(destination);
+        }
+    }
+
+    @Test
+    public void shardsCarryRequestSettings() throws Exception {
+        pipeline.putShardedObject(PutObjectRequest.builder().bucket("TestBucket").key("TestKey")
+                        .sseCustomerAlgorithm("AES256").sseCustomerKey("key").sseCustomerKeyMD5("md5")
+                        .tagging("team=storage").objectLockLegalHoldStatus(ObjectLockLegalHoldStatus.ON)
+                        .requestPayer(RequestPayer.REQUESTER).build(),
+                new ByteArrayInputStream(new byte[25])).join();
+
+        verify(putPipeline, times(4)).putObject(argThat((PutObjectRequest request) ->
+                "key".equals(request.sseCustomerKey()) && "team=storage".equals(request.tagging())
+                        && request.objectLockLegalHoldStatus() == ObjectLockLegalHoldStatus.ON
+                        && request.requestPayer() == RequestPayer.REQUESTER), any(AsyncRequestBody.class));
+
+        Path destination = Files.createTempFile("sharded", ".bin");
+        try {
+            pipeline.getShardedObject(GetObjectRequest.builder().bucket("TestBucket").key("TestKey")
+                    .sseCustomerAlgorithm("AES256").sseCustomerKey("key").sseCustomerKeyMD5("md5").build(),
+                    destination).join();
+        } finally {
+            Files.deleteIfExists(destination);
+        }
+        verify(getPipeline, times(4)).getObject(argThat((GetObjectRequest request) ->
+                "key".equals(request.sseCustomerKey()) && "md5".equals(request.sseCustomerKeyMD5())),
+                any(AsyncResponseTransformer.class));
+    }
+
+    @Test
+    public void failedShardDeletesUploadedShards() {
+        when(putPipeline.putObject(argThat((PutObjectRequest request) -> request.key().endsWith("/3")),
+                any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            CompletableFuture<PutObjectResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("connection reset"));
+            return failed;
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, () -> pipeline.putShardedObject(
+                PutObjectRequest.builder().bucket("TestBucket").key("TestKey").build(),
+                new ByteArrayInputStream(new byte[95])).join());
+
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        // Only the shards which were uploaded are deleted, and no manifest is written
+        verify(deletePipeline).deleteObjects(argThat((DeleteObjectsRequest request) ->
+                "TestBucket".equals(request.bucket()) && !request.delete().objects().isEmpty()));
+        assertTrue(objects.isEmpty());
+    }
+
+    @Test
+    public void rejectsObjectWithoutManifest() throws Exception {
+        objects.put("TestKey", new byte[10]);
+        metadata.put("TestKey", new ConcurrentHashMap<>());
+
+        Path destination = Files.createTempFile("sharded", ".bin");
+        try {
+            CompletionException e = assertThrows(CompletionException.class, () -> pipeline.getShardedObject(
+                    GetObjectRequest.builder().bucket("TestBucket").key("TestKey").build(), destination).join());
+            assertTrue(e.getCause() instanceof S3EncryptionClientException);
+        } finally {
+            Files.deleteIfExists(destination);
+        }
+    }
+
+    private static CompletableFuture<byte[]> collect(AsyncRequestBody body) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                byte[] bytes = new byte[byteBuffer.remaining()];
+                byteBuffer.get(bytes);
+                out.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(out.toByteArray());
+            }
+        });
+        return result;
+    }
+}
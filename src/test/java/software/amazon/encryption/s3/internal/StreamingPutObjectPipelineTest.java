@@ -0,0 +1,252 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.SdkPartType;
+import software.amazon.awssdk.services.s3.model.ServerSideEncryption;
+import software.amazon.awssdk.services.s3.model.StorageClass;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.materials.AesKeyring;
+import software.amazon.encryption.s3.materials.CryptographicMaterialsManager;
+import software.amazon.encryption.s3.materials.DefaultCryptoMaterialsManager;
+
+import javax.crypto.KeyGenerator;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StreamingPutObjectPipelineTest {
+
+    private static final int PART_SIZE = StreamingPutObjectPipeline.MIN_PART_SIZE;
+    // Not a divisor of the part size, so parts are filled from several chunks
+    private static final int CHUNK_SIZE = 1_000_000;
+
+    private S3AsyncClient mockS3AsyncClient;
+    private StreamingPutObjectPipeline pipeline;
+    private List<UploadPartRequest> partRequests;
+    private List<Long> partLengths;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        CryptographicMaterialsManager cmm = DefaultCryptoMaterialsManager.builder()
+                .keyring(AesKeyring.builder()
+                        .wrappingKey(keyGenerator.generateKey())
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .build();
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        partRequests = new ArrayList<>();
+        partLengths = new ArrayList<>();
+        when(mockS3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            AsyncRequestBody body = invocation.getArgument(1);
+            AtomicLong length = new AtomicLong();
+            return body.subscribe(buffer -> length.addAndGet(buffer.remaining()))
+                    .thenApply(ignored -> PutObjectResponse.builder().eTag("put-" + length.get()).build());
+        });
+        when(mockS3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build()));
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            AsyncRequestBody body = invocation.getArgument(1);
+            AtomicLong length = new AtomicLong();
+            return body.subscribe(buffer -> length.addAndGet(buffer.remaining())).thenApply(ignored -> {
+                synchronized (partRequests) {
+                    partRequests.add(request);
+                    partLengths.add(length.get());
+                }
+                return UploadPartResponse.builder().eTag("part-" + request.partNumber()).build();
+            });
+        });
+        when(mockS3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("complete").build()));
+        when(mockS3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        pipeline = StreamingPutObjectPipeline.builder()
+                .putObjectPipeline(PutEncryptedObjectPipeline.builder()
+                        .s3AsyncClient(mockS3AsyncClient)
+                        .cryptoMaterialsManager(cmm)
+                        .build())
+                .multipartPipeline(MultipartUploadObjectPipeline.builder()
+                        .s3AsyncClient(mockS3AsyncClient)
+                        .cryptoMaterialsManager(cmm)
+                        .secureRandom(new SecureRandom())
+                        .build())
+                .partSize(PART_SIZE)
+                .build();
+    }
+
+    @Test
+    public void contentWithinOnePartUsesSinglePut() {
+        // Exactly one part is still a single PutObject
+        PutObjectResponse response = pipeline.putObject(request(), unknownLengthBody(PART_SIZE, CHUNK_SIZE)).join();
+
+        assertEquals("put-" + (PART_SIZE + 16), response.eTag());
+        verify(mockS3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void longerContentBecomesMultipartUpload() {
+        PutObjectResponse response = pipeline.putObject(request(), unknownLengthBody(3 * PART_SIZE + 8, CHUNK_SIZE)).join();
+
+        assertEquals("complete", response.eTag());
+        verify(mockS3AsyncClient, times(1)).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        verify(mockS3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(Arrays.asList(1, 2, 3, 4), partRequests.stream().map(UploadPartRequest::partNumber).collect(Collectors.toList()));
+        // Only the last part carries the tag
+        assertEquals(Arrays.asList((long) PART_SIZE, (long) PART_SIZE, (long) PART_SIZE, 8L + 16), partLengths);
+        assertEquals(SdkPartType.LAST, partRequests.get(3).sdkPartType());
+        assertTrue(partRequests.stream().allMatch(request -> "upload".equals(request.uploadId())));
+        verify(mockS3AsyncClient).completeMultipartUpload(argThat((CompleteMultipartUploadRequest request) ->
+                request.multipartUpload().parts().stream().map(CompletedPart::eTag).collect(Collectors.toList())
+                        .equals(Arrays.asList("part-1", "part-2", "part-3", "part-4"))));
+    }
+
+    @Test
+    public void multipartUploadKeepsRequestHeaders() {
+        PutObjectRequest request = request().toBuilder()
+                .contentType("text/plain")
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .tagging("team=storage")
+                .acl(ObjectCannedACL.BUCKET_OWNER_FULL_CONTROL)
+                .storageClass(StorageClass.STANDARD_IA)
+                .expectedBucketOwner("111122223333")
+                .build();
+
+        pipeline.putObject(request, unknownLengthBody(3 * PART_SIZE + 8, CHUNK_SIZE)).join();
+
+        verify(mockS3AsyncClient).createMultipartUpload(argThat((CreateMultipartUploadRequest create) ->
+                "text/plain".equals(create.contentType())
+                        && create.serverSideEncryption() == ServerSideEncryption.AES256
+                        && "team=storage".equals(create.tagging())
+                        && create.acl() == ObjectCannedACL.BUCKET_OWNER_FULL_CONTROL
+                        && create.storageClass() == StorageClass.STANDARD_IA
+                        && "111122223333".equals(create.expectedBucketOwner())));
+        assertTrue(partRequests.stream().allMatch(part -> "111122223333".equals(part.expectedBucketOwner())));
+    }
+
+    @Test
+    public void failedPartAbortsUpload() {
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            CompletableFuture<UploadPartResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("connection reset"));
+            return failed;
+        });
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> pipeline.putObject(request(), unknownLengthBody(3 * PART_SIZE + 8, CHUNK_SIZE)).join());
+
+        assertTrue(error.getMessage().contains("connection reset"));
+        verify(mockS3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockS3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void failedPartStopsReadingContent() {
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            CompletableFuture<UploadPartResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("connection reset"));
+            return failed;
+        });
+        AtomicLong emitted = new AtomicLong();
+
+        assertThrows(CompletionException.class,
+                () -> pipeline.putObject(request(), unknownLengthBody(10 * PART_SIZE, CHUNK_SIZE, emitted)).join());
+
+        // The first part fails while the second is filled, so no more than two are read
+        assertTrue(emitted.get() <= 2L * PART_SIZE + CHUNK_SIZE);
+        verify(mockS3AsyncClient, times(1)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void partSizeBelowMinimumIsRejected() {
+        assertThrows(S3EncryptionClientException.class, () -> StreamingPutObjectPipeline.builder()
+                .partSize(StreamingPutObjectPipeline.MIN_PART_SIZE - 16));
+    }
+
+    private static PutObjectRequest request() {
+        return PutObjectRequest.builder().bucket("bucket").key("key").build();
+    }
+
+    /**
+     * Emits the content in chunks as they are requested, without giving its length.
+     */
+    private static AsyncRequestBody unknownLengthBody(int length, int chunkSize) {
+        return unknownLengthBody(length, chunkSize, new AtomicLong());
+    }
+
+    private static AsyncRequestBody unknownLengthBody(int length, int chunkSize, AtomicLong emittedBytes) {
+        return new AsyncRequestBody() {
+            @Override
+            public Optional<Long> contentLength() {
+                return Optional.empty();
+            }
+
+            @Override
+            public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+                subscriber.onSubscribe(new Subscription() {
+                    private int emitted;
+                    private boolean done;
+
+                    @Override
+                    public void request(long n) {
+                        for (long i = 0; i < n && !done; i++) {
+                            if (emitted == length) {
+                                done = true;
+                                subscriber.onComplete();
+                                return;
+                            }
+                            int size = Math.min(chunkSize, length - emitted);
+                            emitted += size;
+                            emittedBytes.addAndGet(size);
+                            subscriber.onNext(ByteBuffer.wrap(new byte[size]));
+                        }
+                    }
+
+                    @Override
+                    public void cancel() {
+                        done = true;
+                    }
+                });
+            }
+        };
+    }
+}
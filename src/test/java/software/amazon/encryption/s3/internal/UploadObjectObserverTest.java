@@ -0,0 +1,89 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadObjectObserverTest {
+
+    private S3AsyncClient mockS3AsyncClient;
+    private ExecutorService executor;
+    private UploadObjectObserver observer;
+
+    @BeforeEach
+    public void setUp() {
+        mockS3AsyncClient = mock(S3AsyncClient.class);
+        when(mockS3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(UploadPartResponse.builder()
+                    .eTag(request.uploadId() + "-" + request.partNumber())
+                    .build());
+        });
+        executor = Executors.newSingleThreadExecutor();
+        observer = new UploadObjectObserver().init(PutObjectRequest.builder().bucket("bucket").key("key").build(),
+                mockS3AsyncClient, null, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void partsWaitForUploadToBeCreated() throws Exception {
+        CompletableFuture<String> uploadId = new CompletableFuture<>();
+        observer.onUploadCreation(uploadId);
+
+        observer.onPartCreate(new PartCreationEvent(newPart(), 1, true, null));
+        Thread.sleep(100);
+        verify(mockS3AsyncClient, never()).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        assertFalse(observer.futures().get(0).isDone());
+
+        uploadId.complete("upload");
+        Map<Integer, UploadPartResponse> response = observer.futures().get(0).get(10, TimeUnit.SECONDS);
+        assertEquals("upload-1", response.get(1).eTag());
+    }
+
+    @Test
+    public void failedCreationStopsNewParts() throws Exception {
+        CompletableFuture<String> uploadId = new CompletableFuture<>();
+        observer.onUploadCreation(uploadId);
+        uploadId.completeExceptionally(new IllegalStateException("access denied"));
+
+        assertThrows(CompletionException.class, () -> observer.onPartCreate(new PartCreationEvent(newPart(), 1, true, null)));
+        // There is nothing to abort
+        observer.onAbort();
+    }
+
+    private static File newPart() throws Exception {
+        File part = Files.createTempFile("part", ".tmp").toFile();
+        part.deleteOnExit();
+        Files.write(part.toPath(), new byte[]{1, 2, 3});
+        return part;
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.legacy.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RangedGetUtilsTest {
+
+    private static final long FIVE_GIB = 5L * 1024 * 1024 * 1024;
+
+    @Test
+    public void getRangeSupportsOffsetsBeyondTwoGiB() {
+        assertArrayEquals(new long[]{FIVE_GIB, FIVE_GIB + 99}, RangedGetUtils.getRange("bytes=" + FIVE_GIB + "-" + (FIVE_GIB + 99)));
+        assertArrayEquals(new long[]{FIVE_GIB - 16, FIVE_GIB + 128},
+                RangedGetUtils.getCryptoRange("bytes=" + FIVE_GIB + "-" + (FIVE_GIB + 99)));
+    }
+
+    @Test
+    public void getRangeRejectsOpenAndMalformedRanges() {
+        assertNull(RangedGetUtils.getRange(null));
+        assertNull(RangedGetUtils.getRange("10-20"));
+        assertNull(RangedGetUtils.getRange("bytes=10-"));
+        assertNull(RangedGetUtils.getRange("bytes=-10"));
+        assertNull(RangedGetUtils.getRange("bytes=99999999999999999999-1"));
+        assertTrue(RangedGetUtils.isOpenRange("bytes=10-"));
+        assertTrue(RangedGetUtils.isOpenRange("bytes=-10"));
+        assertFalse(RangedGetUtils.isOpenRange("bytes=10-20"));
+        assertFalse(RangedGetUtils.isOpenRange("bytes=-"));
+    }
+
+    @Test
+    public void resolveRangeAgainstLength() {
+        assertArrayEquals(new long[]{10, 99}, RangedGetUtils.resolveRange("bytes=10-", 100));
+        assertArrayEquals(new long[]{90, 99}, RangedGetUtils.resolveRange("bytes=-10", 100));
+        assertArrayEquals(new long[]{0, 99}, RangedGetUtils.resolveRange("bytes=-1000", 100));
+        assertArrayEquals(new long[]{10, 99}, RangedGetUtils.resolveRange("bytes=10-1000", 100));
+        assertArrayEquals(new long[]{FIVE_GIB - 10, FIVE_GIB - 1}, RangedGetUtils.resolveRange("bytes=-10", FIVE_GIB));
+        // Nothing to read
+        long[] empty = RangedGetUtils.resolveRange("bytes=100-", 100);
+        assertTrue(empty[0] > empty[1]);
+        assertNull(RangedGetUtils.resolveRange("bytes=-", 100));
+    }
+
+    @Test
+    public void coalesceMergesNearbyRanges() {
+        List<long[]> merged = RangedGetUtils.coalesce(Arrays.asList(
+                new long[]{100, 199},
+                new long[]{0, 49},
+                new long[]{60, 90},
+                new long[]{1000, 1099},
+                new long[]{5, 1}), 16);
+
+        assertEquals(2, merged.size());
+        assertArrayEquals(new long[]{0, 199}, merged.get(0));
+        assertArrayEquals(new long[]{1000, 1099}, merged.get(1));
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.materials;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingCryptoMaterialsManagerTest {
+
+    private CryptographicMaterialsManager mockCmm;
+
+    @BeforeEach
+    public void setUp() {
+        mockCmm = mock(CryptographicMaterialsManager.class);
+        when(mockCmm.getEncryptionMaterials(any(EncryptionMaterialsRequest.class))).thenAnswer(invocation -> {
+            EncryptionMaterialsRequest request = invocation.getArgument(0);
+            return EncryptionMaterials.builder()
+                    .s3Request(request.s3Request())
+                    .algorithmSuite(request.algorithmSuite())
+                    .encryptionContext(request.encryptionContext())
+                    .plaintextDataKey(new byte[32])
+                    .plaintextLength(request.plaintextLength())
+                    .build();
+        });
+        when(mockCmm.decryptMaterials(any(DecryptMaterialsRequest.class))).thenAnswer(invocation -> {
+            DecryptMaterialsRequest request = invocation.getArgument(0);
+            return DecryptionMaterials.builder()
+                    .s3Request(request.s3Request())
+                    .algorithmSuite(request.algorithmSuite())
+                    .encryptionContext(request.encryptionContext())
+                    .plaintextDataKey(new byte[32])
+                    .ciphertextLength(request.ciphertextLength())
+                    .build();
+        });
+    }
+
+    @Test
+    public void cachesEncryptionMaterialsForKdfSuite() {
+        CachingCryptoMaterialsManager cmm = CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .maxAge(Duration.ofMinutes(5))
+                .build();
+
+        PutObjectRequest secondRequest = PutObjectRequest.builder().bucket("TestBucket").key("second").build();
+        cmm.getEncryptionMaterials(encryptionRequest(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256,
+                PutObjectRequest.builder().bucket("TestBucket").key("first").build(), 10));
+        EncryptionMaterials materials = cmm.getEncryptionMaterials(encryptionRequest(
+                AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_HKDF_SHA256, secondRequest, 20));
+
+        verify(mockCmm, times(1)).getEncryptionMaterials(any(EncryptionMaterialsRequest.class));
+        assertSame(secondRequest, materials.s3Request());
+        assertEquals(20, materials.getPlaintextLength());
+    }
+
+    @Test
+    public void doesNotCacheEncryptionMaterialsWithoutKdf() {
+        CachingCryptoMaterialsManager cmm = CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .maxAge(Duration.ofMinutes(5))
+                .build();
+        PutObjectRequest s3Request = PutObjectRequest.builder().bucket("TestBucket").key("TestKey").build();
+
+        cmm.getEncryptionMaterials(encryptionRequest(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, s3Request, 10));
+        cmm.getEncryptionMaterials(encryptionRequest(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF, s3Request, 10));
+
+        verify(mockCmm, times(2)).getEncryptionMaterials(any(EncryptionMaterialsRequest.class));
+    }
+
+    @Test
+    public void cachesDecryptionMaterialsByEncryptedDataKey() {
+        CachingCryptoMaterialsManager cmm = CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .maxAge(Duration.ofMinutes(5))
+                .build();
+
+        cmm.decryptMaterials(decryptRequest("first"));
+        DecryptionMaterials materials = cmm.decryptMaterials(decryptRequest("first"));
+        cmm.decryptMaterials(decryptRequest("second"));
+
+        verify(mockCmm, times(2)).decryptMaterials(any(DecryptMaterialsRequest.class));
+        assertEquals(100, materials.ciphertextLength());
+    }
+
+    @Test
+    public void batchPassesOnlyMissesToUnderlyingCmm() {
+        CachingCryptoMaterialsManager cmm = CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .maxAge(Duration.ofMinutes(5))
+                .build();
+        cmm.decryptMaterials(decryptRequest("first"));
+
+        List<DecryptMaterialsRequest> requests = Arrays.asList(decryptRequest("first"), decryptRequest("second"));
+        List<DecryptMaterialsRequest> misses = Collections.singletonList(requests.get(1));
+        List<DecryptionMaterials> resolved = Collections.singletonList(mockCmm.decryptMaterials(requests.get(1)));
+        Executor executor = Runnable::run;
+        when(mockCmm.decryptMaterials(misses, 4, executor)).thenReturn(resolved);
+        List<DecryptionMaterials> materials = cmm.decryptMaterials(requests, 4, executor);
+
+        verify(mockCmm, times(1)).decryptMaterials(misses, 4, executor);
+        assertEquals(2, materials.size());
+        assertSame(requests.get(1).s3Request(), materials.get(1).s3Request());
+
+        // The batch result is cached as well
+        cmm.decryptMaterials(decryptRequest("second"));
+        verify(mockCmm, times(2)).decryptMaterials(any(DecryptMaterialsRequest.class));
+    }
+
+    @Test
+    public void expiredMaterialsAreNotReused() throws InterruptedException {
+        CachingCryptoMaterialsManager cmm = CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .maxAge(Duration.ofMillis(1))
+                .build();
+
+        cmm.decryptMaterials(decryptRequest("first"));
+        Thread.sleep(10);
+        cmm.decryptMaterials(decryptRequest("first"));
+
+        verify(mockCmm, times(2)).decryptMaterials(any(DecryptMaterialsRequest.class));
+    }
+
+    @Test
+    public void buildRequiresMaxAge() {
+        assertThrows(S3EncryptionClientException.class, () -> CachingCryptoMaterialsManager.builder()
+                .cryptoMaterialsManager(mockCmm)
+                .build());
+    }
+
+    private static EncryptionMaterialsRequest encryptionRequest(AlgorithmSuite algorithmSuite,
+                                                                PutObjectRequest s3Request, long plaintextLength) {
+        return EncryptionMaterialsRequest.builder()
+                .s3Request(s3Request)
+                .algorithmSuite(algorithmSuite)
+                .encryptionContext(Collections.singletonMap("testKey", "testValue"))
+                .plaintextLength(plaintextLength)
+                .build();
+    }
+
+    private static DecryptMaterialsRequest decryptRequest(String encryptedDataKey) {
+        List<EncryptedDataKey> encryptedDataKeys = Collections.singletonList(EncryptedDataKey.builder()
+                .keyProviderId("S3Keyring")
+                .keyProviderInfo("AES/GCM".getBytes(StandardCharsets.UTF_8))
+                .encryptedDataKey(encryptedDataKey.getBytes(StandardCharsets.UTF_8))
+                .build());
+        return DecryptMaterialsRequest.builder()
+                .s3Request(GetObjectRequest.builder().bucket("TestBucket").key("TestKey").build())
+                .algorithmSuite(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF)
+                .encryptedDataKeys(encryptedDataKeys)
+                .encryptionContext(Collections.singletonMap("testKey", "testValue"))
+                .ciphertextLength(100)
+                .build();
+    }
+}
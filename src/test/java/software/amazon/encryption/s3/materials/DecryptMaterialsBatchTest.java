@@ -0,0 +1,127 @@
+// Copyright Amazon.com Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+package software.amazon.encryption.s3.materials;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.encryption.s3.S3EncryptionClientException;
+import software.amazon.encryption.s3.algorithms.AlgorithmSuite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DecryptMaterialsBatchTest {
+
+    @Test
+    public void resolvesIdenticalKeysOnceAndBoundsConcurrency() {
+        CountingCryptoMaterialsManager cmm = new CountingCryptoMaterialsManager();
+        List<DecryptMaterialsRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // 10 distinct encrypted data keys, each shared by 4 objects
+            requests.add(decryptRequest("key-" + (i % 10), "object-" + i, i));
+        }
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<DecryptionMaterials> materials;
+        try {
+            materials = cmm.decryptMaterials(requests, 3, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(10, cmm.calls.get());
+        assertTrue(cmm.maxInFlight.get() <= 3);
+        assertTrue(cmm.maxInFlight.get() > 1);
+        assertEquals(40, materials.size());
+        for (int i = 0; i < 40; i++) {
+            assertSame(requests.get(i).s3Request(), materials.get(i).s3Request());
+            assertEquals(i, materials.get(i).ciphertextLength());
+        }
+    }
+
+    @Test
+    public void failureIsRethrown() {
+        CryptographicMaterialsManager cmm = new CountingCryptoMaterialsManager() {
+            @Override
+            public DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request) {
+                throw new S3EncryptionClientException("Unable to decrypt data key");
+            }
+        };
+        List<DecryptMaterialsRequest> requests = new ArrayList<>();
+        requests.add(decryptRequest("first", "first", 1));
+        requests.add(decryptRequest("second", "second", 1));
+
+        assertThrows(S3EncryptionClientException.class, () -> cmm.decryptMaterials(requests, 2, Runnable::run));
+    }
+
+    @Test
+    public void completesWhenExecutorCannotRunWorkers() {
+        CountingCryptoMaterialsManager cmm = new CountingCryptoMaterialsManager();
+        List<DecryptMaterialsRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(decryptRequest("key-" + i, "object-" + i, i));
+        }
+
+        // An executor which never runs its tasks, as a busy single-thread executor would not
+        List<DecryptionMaterials> materials = cmm.decryptMaterials(requests, 3, runnable -> { });
+
+        assertEquals(5, cmm.calls.get());
+        assertEquals(5, materials.size());
+    }
+
+    private static DecryptMaterialsRequest decryptRequest(String encryptedDataKey, String key, long ciphertextLength) {
+        List<EncryptedDataKey> encryptedDataKeys = Collections.singletonList(EncryptedDataKey.builder()
+                .keyProviderId("S3Keyring")
+                .keyProviderInfo("AES/GCM".getBytes(StandardCharsets.UTF_8))
+                .encryptedDataKey(encryptedDataKey.getBytes(StandardCharsets.UTF_8))
+                .build());
+        return DecryptMaterialsRequest.builder()
+                .s3Request(GetObjectRequest.builder().bucket("TestBucket").key(key).build())
+                .algorithmSuite(AlgorithmSuite.ALG_AES_256_GCM_IV12_TAG16_NO_KDF)
+                .encryptedDataKeys(encryptedDataKeys)
+                .encryptionContext(Collections.singletonMap("testKey", "testValue"))
+                .ciphertextLength(ciphertextLength)
+                .build();
+    }
+
+    private static class CountingCryptoMaterialsManager implements CryptographicMaterialsManager {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public EncryptionMaterials getEncryptionMaterials(EncryptionMaterialsRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DecryptionMaterials decryptMaterials(DecryptMaterialsRequest request) {
+            calls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // Simulate a round trip to a key service
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return DecryptionMaterials.builder()
+                    .s3Request(request.s3Request())
+                    .algorithmSuite(request.algorithmSuite())
+                    .plaintextDataKey(new byte[32])
+                    .ciphertextLength(request.ciphertextLength())
+                    .build();
+        }
+    }
+}
@@ -3,9 +3,18 @@
 package software.amazon.encryption.s3.materials;
 
 import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.kms.KmsClient;
+import software.amazon.awssdk.services.kms.model.ReEncryptRequest;
 import software.amazon.encryption.s3.S3EncryptionClientException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class KmsKeyringTest {
 
@@ -19,4 +28,21 @@ public class KmsKeyringTest {
         assertThrows(S3EncryptionClientException.class, () -> AesKeyring.builder().dataKeyGenerator(null));
     }
 
+    @Test
+    public void reEncryptLegacyDataKeyWithoutLegacyWrappingAlgorithmsFails() {
+        KmsClient mockKmsClient = mock(KmsClient.class);
+        KmsKeyring keyring = KmsKeyring.builder()
+                .kmsClient(mockKmsClient)
+                .wrappingKeyId("key-id")
+                .build();
+        EncryptedDataKey legacyDataKey = EncryptedDataKey.builder()
+                .keyProviderId(S3Keyring.KEY_PROVIDER_ID)
+                .keyProviderInfo("kms".getBytes(StandardCharsets.UTF_8))
+                .encryptedDataKey(new byte[32])
+                .build();
+
+        assertThrows(S3EncryptionClientException.class, () -> keyring.onReEncrypt(EncryptionMaterials.builder().build(),
+                legacyDataKey, Collections.emptyMap()));
+        verify(mockKmsClient, never()).reEncrypt(any(ReEncryptRequest.class));
+    }
 }